@@ -0,0 +1,87 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.microbean.servicebroker.api.CompositeServiceBroker;
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of {@link CompositeServiceBroker#getCatalog()}
+ * as the number of child brokers and the number of services each
+ * child offers grow.
+ *
+ * <p>The children are {@link StubServiceBroker}s that return the
+ * same preconstructed {@link Catalog} every time, so what is measured
+ * is the composite's own aggregation and bookkeeping.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class CatalogAggregationBenchmark {
+
+  @Param({ "1", "10", "100" })
+  public int brokerCount;
+
+  @Param({ "1", "10", "100" })
+  public int servicesPerBroker;
+
+  @Param({ "4" })
+  public int plansPerService;
+
+  @Param({ "false", "true" })
+  public boolean parallelServiceDiscovery;
+
+  private CompositeServiceBroker serviceBroker;
+
+  public CatalogAggregationBenchmark() {
+    super();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.serviceBroker = new CompositeServiceBroker(this.parallelServiceDiscovery);
+    for (int b = 0; b < this.brokerCount; b++) {
+      this.serviceBroker.addServiceBroker(new StubServiceBroker(Catalogs.synthesize("broker" + b, this.servicesPerBroker, this.plansPerService)));
+    }
+  }
+
+  @Benchmark
+  public Catalog getCatalog() throws ServiceBrokerException {
+    return this.serviceBroker.getCatalog();
+  }
+
+}
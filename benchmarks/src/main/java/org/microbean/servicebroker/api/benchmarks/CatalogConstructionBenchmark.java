@@ -0,0 +1,116 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import java.util.concurrent.TimeUnit;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of constructing {@link Plan}s, {@link Service}s
+ * and {@link Catalog}s from already-built inputs.
+ *
+ * <p>Run this benchmark with the GC profiler ({@code -prof gc}) to
+ * see how many bytes each construction allocates; the {@code
+ * gc.alloc.rate.norm} figure is the number that matters.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class CatalogConstructionBenchmark {
+
+  @Param({ "1", "10", "100" })
+  public int servicesPerCatalog;
+
+  @Param({ "1", "10" })
+  public int plansPerService;
+
+  private Map<String, Object> metadata;
+
+  private Set<String> tags;
+
+  private Set<Plan> plans;
+
+  private Set<Service> services;
+
+  public CatalogConstructionBenchmark() {
+    super();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Catalog catalog = Catalogs.synthesize("benchmark", this.servicesPerCatalog, this.plansPerService);
+    this.services = new LinkedHashSet<>(catalog.getServices());
+    final Service service = this.services.iterator().next();
+    this.plans = new LinkedHashSet<>(service.getPlans());
+    this.tags = new LinkedHashSet<>(service.getTags());
+    this.metadata = new LinkedHashMap<>(service.getMetadata());
+  }
+
+  @Benchmark
+  public Plan plan() {
+    return new Plan("plan-id", "plan-name", "A plan", this.metadata, true, null);
+  }
+
+  @Benchmark
+  public Service service() {
+    return new Service("service-id",
+                       "service-name",
+                       "A service",
+                       this.tags,
+                       null,
+                       true,
+                       this.metadata,
+                       null,
+                       false,
+                       this.plans);
+  }
+
+  @Benchmark
+  public Catalog catalog() {
+    return new Catalog(this.services);
+  }
+
+  @Benchmark
+  public Catalog synthesizedCatalog() {
+    return Catalogs.synthesize("benchmark", this.servicesPerCatalog, this.plansPerService);
+  }
+
+}
@@ -0,0 +1,85 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+
+/**
+ * A command-line tool that reports the retained heap footprint of
+ * {@linkplain Catalogs#synthesize(String, int, int) synthesized}
+ * {@link Catalog}s.
+ *
+ * <p>Usage: {@code java -cp benchmarks.jar
+ * org.microbean.servicebroker.api.benchmarks.CatalogFootprint
+ * [catalogs [services [plans]]]}.  The defaults are {@code 100}
+ * catalogs of {@code 50} services of {@code 10} plans each.</p>
+ *
+ * <p>The figure reported is the growth in used heap, after repeated
+ * garbage collections, caused by holding on to the {@link Catalog}s.
+ * It includes the identifier and description strings, which do not
+ * change with the {@link Catalog} representation, so it is most
+ * useful for comparing one representation with another.  Run it with
+ * a fixed, generous heap and {@code -XX:+UseSerialGC} for stable
+ * numbers.</p>
+ */
+public final class CatalogFootprint {
+
+  private CatalogFootprint() {
+    super();
+  }
+
+  /**
+   * Runs the tool.
+   *
+   * @param args up to three positive integers: the number of {@link
+   * Catalog}s, the number of services in each, and the number of
+   * plans in each service
+   */
+  public static final void main(final String[] args) {
+    final int catalogCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    final int serviceCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    final int planCount = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    final long before = usedHeap(memory);
+    final Catalog[] catalogs = new Catalog[catalogCount];
+    for (int i = 0; i < catalogCount; i++) {
+      catalogs[i] = Catalogs.synthesize("catalog-" + i, serviceCount, planCount);
+    }
+    final long after = usedHeap(memory);
+    final long bytes = after - before;
+    final long plans = (long)catalogCount * serviceCount * planCount;
+    System.out.println(catalogCount + " catalogs x " + serviceCount + " services x " + planCount + " plans");
+    System.out.println("retained bytes:      " + bytes);
+    System.out.println("bytes per catalog:   " + bytes / Math.max(1, catalogCount));
+    System.out.println("bytes per plan:      " + bytes / Math.max(1L, plans));
+    // Keep the catalogs reachable until after the measurement.
+    System.out.println("(" + catalogs[catalogCount - 1].getServices().size() + ")");
+  }
+
+  private static final long usedHeap(final MemoryMXBean memory) {
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+    }
+    return used;
+  }
+
+}
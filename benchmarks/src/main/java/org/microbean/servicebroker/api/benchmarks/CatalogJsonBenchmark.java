@@ -0,0 +1,95 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.microbean.servicebroker.api.json.CatalogCodec;
+import org.microbean.servicebroker.api.json.JsonWriter;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares serializing a {@link Catalog} to JSON on every request
+ * with serving its {@linkplain Catalog#getJson() cached} and
+ * {@linkplain Catalog#getGzippedJson() cached, compressed} forms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class CatalogJsonBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int services;
+
+  @Param({ "10" })
+  public int plansPerService;
+
+  private Catalog catalog;
+
+  public CatalogJsonBenchmark() {
+    super();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.catalog = Catalogs.synthesize("benchmark", this.services, this.plansPerService);
+    this.catalog.getJson();
+    this.catalog.getGzippedJson();
+  }
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+    try (final JsonWriter writer = new JsonWriter(bytes)) {
+      CatalogCodec.write(writer, this.catalog);
+    }
+    return bytes.toByteArray();
+  }
+
+  @Benchmark
+  public ByteBuffer cached() {
+    return this.catalog.getJson();
+  }
+
+  @Benchmark
+  public ByteBuffer cachedGzipped() {
+    return this.catalog.getGzippedJson();
+  }
+
+}
@@ -0,0 +1,194 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+
+/**
+ * Produces synthetic {@link Catalog}s of a given shape for use by
+ * benchmarks.
+ *
+ * <p>The identifiers produced are deterministic: the {@link Service}
+ * at position {@code s} in a {@link Catalog} produced with a given
+ * {@code prefix} always has the {@linkplain Service#getId()
+ * identifier} returned by {@link #serviceId(String, int)
+ * serviceId(prefix, s)}, and so on.</p>
+ */
+public final class Catalogs {
+
+  private Catalogs() {
+    super();
+  }
+
+  /**
+   * Returns the {@linkplain Service#getId() identifier} of the {@link
+   * Service} at the supplied position in a {@link Catalog} {@linkplain
+   * #synthesize(String, int, int) synthesized} with the supplied
+   * {@code prefix}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param prefix the prefix; must not be {@code null}
+   *
+   * @param service the zero-based position of the {@link Service}
+   *
+   * @return a non-{@code null} {@link Service} identifier
+   */
+  public static final String serviceId(final String prefix, final int service) {
+    Objects.requireNonNull(prefix, () -> "prefix must not be null");
+    return prefix + "-service-" + service;
+  }
+
+  /**
+   * Returns the {@linkplain Plan#getId() identifier} of the {@link
+   * Plan} at the supplied position in the {@link Service} at the
+   * supplied position in a {@link Catalog} {@linkplain
+   * #synthesize(String, int, int) synthesized} with the supplied
+   * {@code prefix}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param prefix the prefix; must not be {@code null}
+   *
+   * @param service the zero-based position of the {@link Service}
+   *
+   * @param plan the zero-based position of the {@link Plan}
+   *
+   * @return a non-{@code null} {@link Plan} identifier
+   */
+  public static final String planId(final String prefix, final int service, final int plan) {
+    return serviceId(prefix, service) + "-plan-" + plan;
+  }
+
+  /**
+   * Returns a new {@link Catalog} with {@code serviceCount} {@link
+   * Service}s, each of which has {@code planCount} {@link Plan}s, a
+   * couple of tags and a small metadata {@link Map}, which is roughly
+   * what real service brokers return.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param prefix a prefix used to make identifiers unique across
+   * {@link Catalog}s; must not be {@code null}
+   *
+   * @param serviceCount the number of {@link Service}s; must not be
+   * negative
+   *
+   * @param planCount the number of {@link Plan}s per {@link Service};
+   * must be greater than zero
+   *
+   * @return a new, non-{@code null} {@link Catalog}
+   *
+   * @exception NullPointerException if {@code prefix} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code serviceCount} is
+   * negative or {@code planCount} is less than {@code 1}
+   */
+  public static final Catalog synthesize(final String prefix, final int serviceCount, final int planCount) {
+    Objects.requireNonNull(prefix, () -> "prefix must not be null");
+    if (serviceCount < 0) {
+      throw new IllegalArgumentException("serviceCount < 0: " + serviceCount);
+    }
+    if (planCount < 1) {
+      throw new IllegalArgumentException("planCount < 1: " + planCount);
+    }
+    final Set<Service> services = new LinkedHashSet<>();
+    for (int s = 0; s < serviceCount; s++) {
+      services.add(synthesizeService(prefix, s, planCount));
+    }
+    return new Catalog(services);
+  }
+
+  /**
+   * Returns a new {@link Service} as it would appear at position
+   * {@code service} in a {@link Catalog} {@linkplain
+   * #synthesize(String, int, int) synthesized} with the supplied
+   * arguments.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param prefix the prefix; must not be {@code null}
+   *
+   * @param service the zero-based position of the {@link Service}
+   *
+   * @param planCount the number of {@link Plan}s; must be greater
+   * than zero
+   *
+   * @return a new, non-{@code null} {@link Service}
+   */
+  public static final Service synthesizeService(final String prefix, final int service, final int planCount) {
+    final Set<Plan> plans = new LinkedHashSet<>();
+    for (int p = 0; p < planCount; p++) {
+      plans.add(synthesizePlan(prefix, service, p));
+    }
+    final Set<String> tags = new LinkedHashSet<>();
+    tags.add("benchmark");
+    tags.add("tag-" + (service % 8));
+    final Map<String, Object> metadata = new LinkedHashMap<>();
+    metadata.put("displayName", "Service " + service);
+    metadata.put("providerDisplayName", prefix);
+    final String id = serviceId(prefix, service);
+    return new Service(id,
+                       id,
+                       "A synthetic service",
+                       tags,
+                       null,
+                       true,
+                       metadata,
+                       null,
+                       service % 2 == 0,
+                       plans);
+  }
+
+  /**
+   * Returns a new {@link Plan} as it would appear at position {@code
+   * plan} in the {@link Service} at position {@code service} in a
+   * {@link Catalog} {@linkplain #synthesize(String, int, int)
+   * synthesized} with the supplied {@code prefix}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param prefix the prefix; must not be {@code null}
+   *
+   * @param service the zero-based position of the {@link Service}
+   *
+   * @param plan the zero-based position of the {@link Plan}
+   *
+   * @return a new, non-{@code null} {@link Plan}
+   */
+  public static final Plan synthesizePlan(final String prefix, final int service, final int plan) {
+    final Map<String, Object> metadata = new LinkedHashMap<>();
+    metadata.put("displayName", "Plan " + plan);
+    metadata.put("costs", "free");
+    final String id = planId(prefix, service, plan);
+    return new Plan(id,
+                    id,
+                    "A synthetic plan",
+                    metadata,
+                    true,
+                    plan % 4 == 3 ? Boolean.FALSE : null);
+  }
+
+}
@@ -0,0 +1,152 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.util.Collections;
+
+import org.microbean.servicebroker.api.CompositeServiceBroker;
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A JMH {@link State} holding a {@link CompositeServiceBroker} that
+ * multiplexes a configurable number of {@link StubServiceBroker}s,
+ * together with prebuilt commands and queries, one per {@linkplain
+ * org.microbean.servicebroker.api.query.state.Catalog.Service
+ * service} known to the composite, to route through it.
+ *
+ * <p>Commands are prebuilt so that dispatch benchmarks measure
+ * routing and not command construction.  They are spread across all
+ * services so that successive dispatches land on different child
+ * brokers.</p>
+ *
+ * @see DispatchBenchmark
+ *
+ * @see ConcurrentDispatchBenchmark
+ */
+@State(Scope.Benchmark)
+public class CompositeServiceBrokerState {
+
+  @Param({ "1", "10", "100" })
+  public int brokerCount;
+
+  @Param({ "10" })
+  public int servicesPerBroker;
+
+  public CompositeServiceBroker serviceBroker;
+
+  public ProvisionServiceInstanceCommand[] provisionServiceInstanceCommands;
+
+  public UpdateServiceInstanceCommand[] updateServiceInstanceCommands;
+
+  public DeleteServiceInstanceCommand[] deleteServiceInstanceCommands;
+
+  public ProvisionBindingCommand[] provisionBindingCommands;
+
+  public DeleteBindingCommand[] deleteBindingCommands;
+
+  public LastOperationQuery[] lastOperationQueries;
+
+  public CompositeServiceBrokerState() {
+    super();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws ServiceBrokerException {
+    this.serviceBroker = new CompositeServiceBroker();
+    for (int b = 0; b < this.brokerCount; b++) {
+      this.serviceBroker.addServiceBroker(new StubServiceBroker(Catalogs.synthesize("broker" + b, this.servicesPerBroker, 1)));
+    }
+    // Establish the service-to-broker associations that routing relies upon.
+    this.serviceBroker.getCatalog();
+
+    final int size = this.brokerCount * this.servicesPerBroker;
+    this.provisionServiceInstanceCommands = new ProvisionServiceInstanceCommand[size];
+    this.updateServiceInstanceCommands = new UpdateServiceInstanceCommand[size];
+    this.deleteServiceInstanceCommands = new DeleteServiceInstanceCommand[size];
+    this.provisionBindingCommands = new ProvisionBindingCommand[size];
+    this.deleteBindingCommands = new DeleteBindingCommand[size];
+    this.lastOperationQueries = new LastOperationQuery[size];
+    int i = 0;
+    for (int s = 0; s < this.servicesPerBroker; s++) {
+      for (int b = 0; b < this.brokerCount; b++) {
+        final String prefix = "broker" + b;
+        final String serviceId = Catalogs.serviceId(prefix, s);
+        final String planId = Catalogs.planId(prefix, s, 0);
+        final String instanceId = "instance-" + i;
+        final String bindingId = "binding-" + i;
+        this.provisionServiceInstanceCommands[i] =
+          new ProvisionServiceInstanceCommand(instanceId, serviceId, planId, Collections.singletonMap("size", "small"), "org", "space");
+        this.updateServiceInstanceCommands[i] =
+          new UpdateServiceInstanceCommand(instanceId, serviceId, planId, Collections.singletonMap("size", "large"), null);
+        this.deleteServiceInstanceCommands[i] =
+          new DeleteServiceInstanceCommand(instanceId, serviceId, planId);
+        this.provisionBindingCommands[i] =
+          new ProvisionBindingCommand(bindingId, instanceId, serviceId, planId, null, null);
+        this.deleteBindingCommands[i] =
+          new DeleteBindingCommand(bindingId, instanceId, serviceId, planId);
+        this.lastOperationQueries[i] =
+          new LastOperationQuery(serviceId, instanceId, planId, null);
+        i++;
+      }
+    }
+  }
+
+  /**
+   * A per-thread cursor over the prebuilt commands in a {@link
+   * CompositeServiceBrokerState}.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private int position;
+
+    public Cursor() {
+      super();
+    }
+
+    /**
+     * Returns the next index to use, wrapping at the supplied {@code
+     * size}.
+     *
+     * @param size the number of prebuilt commands; must be greater
+     * than zero
+     *
+     * @return the next index
+     */
+    public final int next(final int size) {
+      final int returnValue = this.position;
+      this.position = returnValue + 1 == size ? 0 : returnValue + 1;
+      return returnValue;
+    }
+
+  }
+
+}
@@ -0,0 +1,109 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures single-threaded throughput of routing each kind of
+ * command, and the last operation query, through a {@link
+ * org.microbean.servicebroker.api.CompositeServiceBroker} to {@link
+ * StubServiceBroker}s that do no work.
+ *
+ * @see ConcurrentDispatchBenchmark
+ *
+ * @see CompositeServiceBrokerState
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+public class DispatchBenchmark {
+
+  public DispatchBenchmark() {
+    super();
+  }
+
+  @Benchmark
+  public ProvisionServiceInstanceCommand.Response provisionServiceInstance(final CompositeServiceBrokerState state,
+                                                                           final CompositeServiceBrokerState.Cursor cursor)
+    throws ServiceBrokerException {
+    final ProvisionServiceInstanceCommand[] commands = state.provisionServiceInstanceCommands;
+    return state.serviceBroker.execute(commands[cursor.next(commands.length)]);
+  }
+
+  @Benchmark
+  public UpdateServiceInstanceCommand.Response updateServiceInstance(final CompositeServiceBrokerState state,
+                                                                     final CompositeServiceBrokerState.Cursor cursor)
+    throws ServiceBrokerException {
+    final UpdateServiceInstanceCommand[] commands = state.updateServiceInstanceCommands;
+    return state.serviceBroker.execute(commands[cursor.next(commands.length)]);
+  }
+
+  @Benchmark
+  public DeleteServiceInstanceCommand.Response deleteServiceInstance(final CompositeServiceBrokerState state,
+                                                                     final CompositeServiceBrokerState.Cursor cursor)
+    throws ServiceBrokerException {
+    final DeleteServiceInstanceCommand[] commands = state.deleteServiceInstanceCommands;
+    return state.serviceBroker.execute(commands[cursor.next(commands.length)]);
+  }
+
+  @Benchmark
+  public ProvisionBindingCommand.Response provisionBinding(final CompositeServiceBrokerState state,
+                                                           final CompositeServiceBrokerState.Cursor cursor)
+    throws ServiceBrokerException {
+    final ProvisionBindingCommand[] commands = state.provisionBindingCommands;
+    return state.serviceBroker.execute(commands[cursor.next(commands.length)]);
+  }
+
+  @Benchmark
+  public DeleteBindingCommand.Response deleteBinding(final CompositeServiceBrokerState state,
+                                                     final CompositeServiceBrokerState.Cursor cursor)
+    throws ServiceBrokerException {
+    final DeleteBindingCommand[] commands = state.deleteBindingCommands;
+    return state.serviceBroker.execute(commands[cursor.next(commands.length)]);
+  }
+
+  @Benchmark
+  public LastOperation getLastOperation(final CompositeServiceBrokerState state,
+                                        final CompositeServiceBrokerState.Cursor cursor)
+    throws ServiceBrokerException {
+    return state.serviceBroker.getLastOperation(state.lastOperationQueries[cursor.next(state.lastOperationQueries.length)]);
+  }
+
+}
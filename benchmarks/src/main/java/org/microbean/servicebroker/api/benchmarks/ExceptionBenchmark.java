@@ -0,0 +1,98 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.NoSuchServiceInstanceException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures throwing and catching a {@link
+ * NoSuchServiceInstanceException}, the outcome of an ordinary retried
+ * deprovisioning request, from a given call depth, with and without
+ * the {@code org.microbean.servicebroker.api.stacklessExceptions}
+ * system property set.
+ *
+ * <p>Because that system property is read once, the two variants run
+ * in separate forks.</p>
+ *
+ * @see org.microbean.servicebroker.api.ServiceBrokerException#isExpectedOutcome()
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class ExceptionBenchmark {
+
+  /**
+   * The number of frames between the catch and the throw, roughly
+   * that of a request passing through a web framework, a {@link
+   * org.microbean.servicebroker.api.CompositeServiceBroker} and a
+   * delegate.
+   */
+  @Param({ "16", "64" })
+  public int depth;
+
+  private final DeleteServiceInstanceCommand command;
+
+  public ExceptionBenchmark() {
+    super();
+    this.command = new DeleteServiceInstanceCommand("instance", "service", "plan");
+  }
+
+  @Benchmark
+  @Fork(1)
+  public Object withStackTrace() {
+    return this.throwAndCatch();
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "-Dorg.microbean.servicebroker.api.stacklessExceptions=true")
+  public Object stackless() {
+    return this.throwAndCatch();
+  }
+
+  private final Object throwAndCatch() {
+    try {
+      this.call(this.depth);
+      return null;
+    } catch (final NoSuchServiceInstanceException noSuchServiceInstanceException) {
+      return noSuchServiceInstanceException;
+    }
+  }
+
+  private final void call(final int depth) throws NoSuchServiceInstanceException {
+    if (depth <= 0) {
+      throw new NoSuchServiceInstanceException("No such instance: instance", this.command);
+    }
+    this.call(depth - 1);
+  }
+
+}
@@ -0,0 +1,120 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Comparator;
+
+import java.util.concurrent.TimeUnit;
+
+import java.util.stream.Stream;
+
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.journal.Journal;
+import org.microbean.servicebroker.api.journal.JournalingServiceBroker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of durable appends to a {@link Journal},
+ * and of provisioning requests executed through a {@link
+ * JournalingServiceBroker}, with as many threads as there are
+ * processors, so that the effect of committing syncs in groups shows
+ * up.
+ *
+ * <p>Results depend almost entirely on how fast the file system
+ * holding the temporary directory can force writes to disk.</p>
+ *
+ * @see Journal#sync(long)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+
+  private Path directory;
+
+  private Journal journal;
+
+  private JournalingServiceBroker serviceBroker;
+
+  private ByteBuffer record;
+
+  private ProvisionServiceInstanceCommand command;
+
+  public JournalBenchmark() {
+    super();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("journal");
+    this.journal = new Journal(this.directory);
+    this.serviceBroker =
+      new JournalingServiceBroker(new StubServiceBroker(Catalogs.synthesize("s", 1, 1)), new Journal(this.directory.resolve("broker")));
+    this.record = ByteBuffer.allocate(200);
+    this.command =
+      new ProvisionServiceInstanceCommand("instance", Catalogs.serviceId("s", 0), Catalogs.planId("s", 0, 0), null, "org", "space");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    this.journal.close();
+    this.serviceBroker.getJournal().close();
+    try (final Stream<Path> paths = Files.walk(this.directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public long appendAndSync() throws IOException {
+    final long position = this.journal.append(this.record);
+    this.journal.sync(position);
+    return position;
+  }
+
+  @Benchmark
+  public ProvisionServiceInstanceCommand.Response journaledProvisionServiceInstance() throws ServiceBrokerException {
+    return this.serviceBroker.execute(this.command);
+  }
+
+}
@@ -0,0 +1,164 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+import org.microbean.servicebroker.api.registry.OffHeapIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares looking up service instances by GUID in an {@link
+ * OffHeapIndex} with looking them up in an on-heap {@link
+ * ConcurrentHashMap} keyed by {@link String}, with as many threads as
+ * there are processors.
+ *
+ * <p>Run this benchmark with the GC profiler ({@code -prof gc}) and a
+ * large {@code instances} value to compare the cost to the garbage
+ * collector of keeping the on-heap map.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class OffHeapIndexBenchmark {
+
+  @Param({ "1000000" })
+  public int instances;
+
+  private String[] guids;
+
+  private OffHeapIndex index;
+
+  private Map<String, Instance> map;
+
+  public OffHeapIndexBenchmark() {
+    super();
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Random random = new Random(1L);
+    this.guids = new String[this.instances];
+    this.index = new OffHeapIndex(this.instances);
+    this.map = new ConcurrentHashMap<>(this.instances);
+    for (int i = 0; i < this.instances; i++) {
+      final String guid = new UUID(random.nextLong(), random.nextLong()).toString();
+      this.guids[i] = guid;
+      this.index.put(guid, i % 8, i % 100, i % 1000, i % 10000, LastOperation.State.SUCCEEDED);
+      this.map.put(guid, new Instance(i % 8, i % 100, "org-" + i % 1000, "space-" + i % 10000, LastOperation.State.SUCCEEDED));
+    }
+  }
+
+  @Benchmark
+  public int offHeapGet(final Cursor cursor, final Cursor.Holder holder) {
+    final String guid = this.guids[cursor.next(this.guids.length)];
+    final OffHeapIndex.Entry entry = holder.entry;
+    return this.index.get(OffHeapIndex.mostSignificantBits(guid), OffHeapIndex.leastSignificantBits(guid), entry) ? entry.getPlanIndex() : -1;
+  }
+
+  @Benchmark
+  public int onHeapGet(final Cursor cursor) {
+    final Instance instance = this.map.get(this.guids[cursor.next(this.guids.length)]);
+    return instance == null ? -1 : instance.planIndex;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private final Random random;
+
+    public Cursor() {
+      super();
+      this.random = new Random();
+    }
+
+    final int next(final int bound) {
+      return this.random.nextInt(bound);
+    }
+
+    @State(Scope.Thread)
+    public static class Holder {
+
+      final OffHeapIndex.Entry entry;
+
+      public Holder() {
+        super();
+        this.entry = new OffHeapIndex.Entry();
+      }
+
+    }
+
+  }
+
+  private static final class Instance {
+
+    private final int brokerIndex;
+
+    private final int planIndex;
+
+    private final String organizationGuid;
+
+    private final String spaceGuid;
+
+    private final LastOperation.State operationState;
+
+    private Instance(final int brokerIndex,
+                     final int planIndex,
+                     final String organizationGuid,
+                     final String spaceGuid,
+                     final LastOperation.State operationState) {
+      super();
+      this.brokerIndex = brokerIndex;
+      this.planIndex = planIndex;
+      this.organizationGuid = organizationGuid;
+      this.spaceGuid = spaceGuid;
+      this.operationState = operationState;
+    }
+
+  }
+
+}
@@ -0,0 +1,102 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Map;
+
+import java.util.concurrent.TimeUnit;
+
+import org.microbean.servicebroker.api.json.JsonReader;
+
+import org.microbean.servicebroker.api.schema.ParameterSchema;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares validating provisioning parameters against a {@linkplain
+ * ParameterSchema#compile(Map) compiled} plan schema with compiling
+ * the schema on every request, which approximates the cost of
+ * interpreting it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class ParameterValidationBenchmark {
+
+  private static final String SCHEMA =
+    "{\"$schema\":\"http://json-schema.org/draft-04/schema#\",\"type\":\"object\"," +
+    "\"required\":[\"size\",\"region\"],\"additionalProperties\":false," +
+    "\"properties\":{" +
+    "\"size\":{\"type\":\"integer\",\"minimum\":1,\"maximum\":64}," +
+    "\"region\":{\"enum\":[\"us-east\",\"us-west\",\"eu-central\",\"ap-south\"]}," +
+    "\"name\":{\"type\":\"string\",\"minLength\":3,\"maxLength\":63,\"pattern\":\"^[a-z][a-z0-9-]*$\"}," +
+    "\"tags\":{\"type\":\"array\",\"items\":{\"type\":\"string\"},\"uniqueItems\":true,\"maxItems\":16}," +
+    "\"backup\":{\"type\":\"object\",\"properties\":{\"enabled\":{\"type\":\"boolean\"},\"retentionDays\":{\"type\":\"integer\",\"minimum\":1}}}}}";
+
+  private static final String PARAMETERS =
+    "{\"size\":8,\"region\":\"eu-central\",\"name\":\"orders-db\",\"tags\":[\"team-a\",\"prod\"]," +
+    "\"backup\":{\"enabled\":true,\"retentionDays\":14}}";
+
+  private Map<String, ?> schema;
+
+  private ParameterSchema parameterSchema;
+
+  private Map<String, ?> parameters;
+
+  public ParameterValidationBenchmark() {
+    super();
+  }
+
+  @Setup(Level.Trial)
+  @SuppressWarnings("unchecked")
+  public void setUp() throws IOException {
+    this.schema = (Map<String, ?>)new JsonReader(SCHEMA.getBytes(StandardCharsets.UTF_8)).readValue();
+    this.parameterSchema = ParameterSchema.compile(this.schema);
+    this.parameters = (Map<String, ?>)new JsonReader(PARAMETERS.getBytes(StandardCharsets.UTF_8)).readValue();
+    if (this.parameterSchema.validate(this.parameters) != null) {
+      throw new IllegalStateException(this.parameterSchema.validate(this.parameters));
+    }
+  }
+
+  @Benchmark
+  public String validateCompiled() {
+    return this.parameterSchema.validate(this.parameters);
+  }
+
+  @Benchmark
+  public String compileAndValidate() {
+    return ParameterSchema.compile(this.schema).validate(this.parameters);
+  }
+
+}
@@ -0,0 +1,117 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks;
+
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.ServiceBroker;
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+/**
+ * A {@link ServiceBroker} that does no work at all: it returns a
+ * fixed {@link Catalog} and preallocated responses, so that
+ * benchmarks built around it measure only the cost of whatever sits
+ * in front of it.
+ *
+ * @see Catalogs
+ */
+public class StubServiceBroker extends ServiceBroker {
+
+  private static final ProvisionBindingCommand.Response PROVISION_BINDING_RESPONSE = new ProvisionBindingCommand.Response();
+
+  private static final DeleteBindingCommand.Response DELETE_BINDING_RESPONSE = new DeleteBindingCommand.Response();
+
+  private static final ProvisionServiceInstanceCommand.Response PROVISION_SERVICE_INSTANCE_RESPONSE = new ProvisionServiceInstanceCommand.Response();
+
+  private static final UpdateServiceInstanceCommand.Response UPDATE_SERVICE_INSTANCE_RESPONSE = new UpdateServiceInstanceCommand.Response();
+
+  private static final DeleteServiceInstanceCommand.Response DELETE_SERVICE_INSTANCE_RESPONSE = new DeleteServiceInstanceCommand.Response();
+
+  private static final LastOperation LAST_OPERATION = new LastOperation(LastOperation.State.SUCCEEDED);
+
+  @NotNull
+  private final Catalog catalog;
+
+  /**
+   * Creates a new {@link StubServiceBroker}.
+   *
+   * @param catalog the {@link Catalog} to return from the {@link
+   * #getCatalog()} method; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code catalog} is {@code
+   * null}
+   */
+  public StubServiceBroker(@NotNull final Catalog catalog) {
+    super();
+    Objects.requireNonNull(catalog, () -> "catalog must not be null");
+    this.catalog = catalog;
+  }
+
+  @Override
+  public LastOperation getLastOperation(@NotNull final LastOperationQuery lastOperationQuery) throws ServiceBrokerException {
+    return LAST_OPERATION;
+  }
+
+  @Override
+  public boolean isPlanBindable(final String serviceId, final String planId) throws ServiceBrokerException {
+    return true;
+  }
+
+  @Override
+  public Catalog getCatalog() throws ServiceBrokerException {
+    return this.catalog;
+  }
+
+  @Override
+  public ProvisionBindingCommand.Response execute(@NotNull final ProvisionBindingCommand command) throws ServiceBrokerException {
+    return PROVISION_BINDING_RESPONSE;
+  }
+
+  @Override
+  public DeleteBindingCommand.Response execute(@NotNull final DeleteBindingCommand command) throws ServiceBrokerException {
+    return DELETE_BINDING_RESPONSE;
+  }
+
+  @Override
+  public ProvisionServiceInstanceCommand.Response execute(@NotNull final ProvisionServiceInstanceCommand command) throws ServiceBrokerException {
+    return PROVISION_SERVICE_INSTANCE_RESPONSE;
+  }
+
+  @Override
+  public UpdateServiceInstanceCommand.Response execute(@NotNull final UpdateServiceInstanceCommand command) throws ServiceBrokerException {
+    return UPDATE_SERVICE_INSTANCE_RESPONSE;
+  }
+
+  @Override
+  public DeleteServiceInstanceCommand.Response execute(@NotNull final DeleteServiceInstanceCommand command) throws ServiceBrokerException {
+    return DELETE_SERVICE_INSTANCE_RESPONSE;
+  }
+
+}
@@ -0,0 +1,212 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks.load;
+
+import java.util.Random;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A source of simulated latencies, expressed in nanoseconds.
+ *
+ * <p>Instances of this class are immutable and safe for concurrent
+ * use by multiple threads, provided that the {@link Random} supplied
+ * to the {@link #nextNanos(Random)} method is.</p>
+ *
+ * @see SimulatedServiceBroker#setLatencyDistribution(RequestKind,
+ * LatencyDistribution)
+ */
+public abstract class LatencyDistribution {
+
+  /**
+   * A {@link LatencyDistribution} that always returns {@code 0L}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  public static final LatencyDistribution NONE = fixed(0L, TimeUnit.NANOSECONDS);
+
+  protected LatencyDistribution() {
+    super();
+  }
+
+  /**
+   * Returns the next simulated latency in nanoseconds.
+   *
+   * <p>Implementations of this method must not return a negative
+   * number.</p>
+   *
+   * @param random the {@link Random} to draw from; must not be
+   * {@code null}
+   *
+   * @return a non-negative number of nanoseconds
+   *
+   * @exception NullPointerException if {@code random} is {@code
+   * null}
+   */
+  public abstract long nextNanos(final Random random);
+
+  /**
+   * Returns a {@link LatencyDistribution} that always returns the
+   * supplied latency.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param latency the latency; must not be negative
+   *
+   * @param unit the {@link TimeUnit} of {@code latency}; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link LatencyDistribution}
+   *
+   * @exception IllegalArgumentException if {@code latency} is
+   * negative
+   */
+  public static final LatencyDistribution fixed(final long latency, final TimeUnit unit) {
+    if (latency < 0L) {
+      throw new IllegalArgumentException("latency < 0: " + latency);
+    }
+    final long nanos = unit.toNanos(latency);
+    return new LatencyDistribution() {
+      @Override
+      public final long nextNanos(final Random random) {
+        return nanos;
+      }
+
+      @Override
+      public final String toString() {
+        return "fixed(" + nanos + "ns)";
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link LatencyDistribution} whose latencies are
+   * uniformly distributed between the supplied bounds.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param minimum the inclusive lower bound; must not be negative
+   *
+   * @param maximum the exclusive upper bound; must be greater than
+   * {@code minimum}
+   *
+   * @param unit the {@link TimeUnit} of the bounds; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link LatencyDistribution}
+   *
+   * @exception IllegalArgumentException if the bounds are invalid
+   */
+  public static final LatencyDistribution uniform(final long minimum, final long maximum, final TimeUnit unit) {
+    if (minimum < 0L || maximum <= minimum) {
+      throw new IllegalArgumentException("minimum: " + minimum + "; maximum: " + maximum);
+    }
+    final long minimumNanos = unit.toNanos(minimum);
+    final double range = unit.toNanos(maximum) - minimumNanos;
+    return new LatencyDistribution() {
+      @Override
+      public final long nextNanos(final Random random) {
+        return minimumNanos + (long)(random.nextDouble() * range);
+      }
+
+      @Override
+      public final String toString() {
+        return "uniform(" + minimumNanos + "ns, " + (minimumNanos + (long)range) + "ns)";
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link LatencyDistribution} whose latencies are
+   * exponentially distributed with the supplied mean.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param mean the mean; must be greater than zero
+   *
+   * @param unit the {@link TimeUnit} of {@code mean}; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link LatencyDistribution}
+   *
+   * @exception IllegalArgumentException if {@code mean} is not
+   * positive
+   */
+  public static final LatencyDistribution exponential(final long mean, final TimeUnit unit) {
+    if (mean <= 0L) {
+      throw new IllegalArgumentException("mean <= 0: " + mean);
+    }
+    final double meanNanos = unit.toNanos(mean);
+    return new LatencyDistribution() {
+      @Override
+      public final long nextNanos(final Random random) {
+        return (long)(-meanNanos * Math.log(1.0 - random.nextDouble()));
+      }
+
+      @Override
+      public final String toString() {
+        return "exponential(" + (long)meanNanos + "ns)";
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link LatencyDistribution} whose latencies are
+   * log-normally distributed with the supplied median and shape.
+   *
+   * <p>Log-normal distributions have the long right tail typical of
+   * real network services; a {@code sigma} of around {@code 0.5}
+   * puts the 99th percentile at a little over three times the
+   * median.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param median the median; must be greater than zero
+   *
+   * @param sigma the standard deviation of the underlying normal
+   * distribution; must not be negative
+   *
+   * @param unit the {@link TimeUnit} of {@code median}; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link LatencyDistribution}
+   *
+   * @exception IllegalArgumentException if {@code median} is not
+   * positive or {@code sigma} is negative
+   */
+  public static final LatencyDistribution logNormal(final long median, final double sigma, final TimeUnit unit) {
+    if (median <= 0L) {
+      throw new IllegalArgumentException("median <= 0: " + median);
+    }
+    if (sigma < 0.0) {
+      throw new IllegalArgumentException("sigma < 0: " + sigma);
+    }
+    final double mu = Math.log(unit.toNanos(median));
+    return new LatencyDistribution() {
+      @Override
+      public final long nextNanos(final Random random) {
+        return (long)Math.exp(mu + sigma * random.nextGaussian());
+      }
+
+      @Override
+      public final String toString() {
+        return "logNormal(" + (long)Math.exp(mu) + "ns, " + sigma + ")";
+      }
+    };
+  }
+
+}
@@ -0,0 +1,135 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks.load;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, log-linear histogram of latencies in nanoseconds
+ * that is safe for concurrent recording by multiple threads.
+ *
+ * <p>Each power of two is split into {@value #SUB_BUCKETS} linear
+ * sub-buckets, so any {@linkplain #getValueAtPercentile(double)
+ * reported percentile} is within about three percent of the true
+ * value.</p>
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private final AtomicLongArray counts;
+
+  private final LongAdder totalCount;
+
+  private final LongAccumulator maximum;
+
+  public LatencyHistogram() {
+    super();
+    this.counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    this.totalCount = new LongAdder();
+    this.maximum = new LongAccumulator(Math::max, 0L);
+  }
+
+  /**
+   * Records the supplied latency.
+   *
+   * @param nanos the latency in nanoseconds; negative values are
+   * treated as {@code 0}
+   */
+  public final void record(final long nanos) {
+    final long value = Math.max(0L, nanos);
+    this.counts.incrementAndGet(index(value));
+    this.totalCount.increment();
+    this.maximum.accumulate(value);
+  }
+
+  /**
+   * Returns the number of latencies recorded so far.
+   *
+   * @return the number of latencies recorded so far
+   */
+  public final long getTotalCount() {
+    return this.totalCount.sum();
+  }
+
+  /**
+   * Returns the largest latency recorded so far, exactly.
+   *
+   * @return the largest latency recorded so far, in nanoseconds, or
+   * {@code 0L} if nothing has been recorded
+   */
+  public final long getMaximum() {
+    return this.maximum.get();
+  }
+
+  /**
+   * Returns an approximation of the latency at the supplied
+   * percentile.
+   *
+   * @param percentile a number between {@code 0.0} and {@code 100.0},
+   * inclusive
+   *
+   * @return the latency in nanoseconds, or {@code 0L} if nothing has
+   * been recorded
+   *
+   * @exception IllegalArgumentException if {@code percentile} is out
+   * of range
+   */
+  public final long getValueAtPercentile(final double percentile) {
+    if (percentile < 0.0 || percentile > 100.0) {
+      throw new IllegalArgumentException("percentile: " + percentile);
+    }
+    final long total = this.getTotalCount();
+    if (total == 0L) {
+      return 0L;
+    }
+    final long target = Math.max(1L, (long)Math.ceil(percentile / 100.0 * total));
+    long seen = 0L;
+    final int length = this.counts.length();
+    for (int i = 0; i < length; i++) {
+      seen += this.counts.get(i);
+      if (seen >= target) {
+        return Math.min(highestValue(i), this.getMaximum());
+      }
+    }
+    return this.getMaximum();
+  }
+
+  private static final int index(final long value) {
+    if (value < SUB_BUCKETS) {
+      return (int)value;
+    }
+    final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    final int shift = magnitude - SUB_BUCKET_BITS;
+    final int subBucket = (int)(value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  private static final long highestValue(final int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    final int shift = index / SUB_BUCKETS - 1;
+    final long subBucket = index % SUB_BUCKETS;
+    return ((SUB_BUCKETS + subBucket + 1L) << shift) - 1L;
+  }
+
+}
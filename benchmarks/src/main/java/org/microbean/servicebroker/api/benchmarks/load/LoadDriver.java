@@ -0,0 +1,534 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks.load;
+
+import java.io.PrintStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import java.util.concurrent.locks.LockSupport;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.CompositeServiceBroker;
+import org.microbean.servicebroker.api.ServiceBroker;
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+
+/**
+ * Drives a {@link ServiceBroker}, typically a {@link
+ * CompositeServiceBroker} in front of {@link
+ * SimulatedServiceBroker}s, at a target request rate and reports the
+ * throughput and latency distribution it achieved.
+ *
+ * <p>The driver is <em>open-loop</em>: requests are issued on a fixed
+ * schedule regardless of how quickly earlier requests complete, and
+ * each request's latency is measured from the time it was
+ * <em>scheduled</em> to start.  Queueing delay caused by an
+ * overloaded target therefore shows up in the reported latencies
+ * instead of silently lowering the request rate.</p>
+ *
+ * <p>Commands are drawn at random from the {@link Service}s and
+ * {@link Plan}s of a supplied {@link Catalog}, according to
+ * {@linkplain #setWeight(RequestKind, int) configurable weights} for
+ * each {@link RequestKind}.</p>
+ *
+ * @see #main(String[])
+ *
+ * @see SimulatedServiceBroker
+ */
+public class LoadDriver {
+
+
+  /*
+   * Instance variables.
+   */
+
+
+  @NotNull
+  private final ServiceBroker serviceBroker;
+
+  @NotNull
+  private final List<String[]> servicePlanPairs;
+
+  @NotNull
+  private final Map<RequestKind, Integer> weights;
+
+  private final int threads;
+
+  @NotNull
+  private final AtomicLong counter;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link LoadDriver}.
+   *
+   * @param serviceBroker the {@link ServiceBroker} to drive; must not
+   * be {@code null}
+   *
+   * @param catalog a {@link Catalog} whose {@link Service}s and {@link
+   * Plan}s commands will target; must not be {@code null} and must
+   * contain at least one {@link Plan}
+   *
+   * @param threads the number of threads that will issue requests;
+   * must be greater than zero
+   *
+   * @exception NullPointerException if {@code serviceBroker} or
+   * {@code catalog} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code catalog} has no
+   * {@link Plan}s or {@code threads} is not positive
+   */
+  public LoadDriver(@NotNull final ServiceBroker serviceBroker, @NotNull final Catalog catalog, final int threads) {
+    super();
+    Objects.requireNonNull(serviceBroker, () -> "serviceBroker must not be null");
+    Objects.requireNonNull(catalog, () -> "catalog must not be null");
+    if (threads <= 0) {
+      throw new IllegalArgumentException("threads <= 0: " + threads);
+    }
+    this.serviceBroker = serviceBroker;
+    this.threads = threads;
+    final List<String[]> servicePlanPairs = new ArrayList<>();
+    for (final Service service : catalog.getServices()) {
+      for (final Plan plan : service.getPlans()) {
+        servicePlanPairs.add(new String[] { service.getId(), plan.getId() });
+      }
+    }
+    if (servicePlanPairs.isEmpty()) {
+      throw new IllegalArgumentException("catalog has no plans");
+    }
+    this.servicePlanPairs = Collections.unmodifiableList(servicePlanPairs);
+    this.weights = new EnumMap<>(RequestKind.class);
+    this.weights.put(RequestKind.GET_CATALOG, Integer.valueOf(0));
+    this.weights.put(RequestKind.GET_LAST_OPERATION, Integer.valueOf(30));
+    this.weights.put(RequestKind.PROVISION_SERVICE_INSTANCE, Integer.valueOf(20));
+    this.weights.put(RequestKind.UPDATE_SERVICE_INSTANCE, Integer.valueOf(10));
+    this.weights.put(RequestKind.DELETE_SERVICE_INSTANCE, Integer.valueOf(10));
+    this.weights.put(RequestKind.PROVISION_BINDING, Integer.valueOf(20));
+    this.weights.put(RequestKind.DELETE_BINDING, Integer.valueOf(10));
+    this.counter = new AtomicLong();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Sets the relative weight with which requests of the supplied
+   * {@link RequestKind} are issued.
+   *
+   * <p>By default, {@link RequestKind#GET_CATALOG} requests are not
+   * issued at all, and last operation queries make up the largest
+   * share of the mix, as they do in practice.</p>
+   *
+   * @param kind the {@link RequestKind}; must not be {@code null}
+   *
+   * @param weight the weight; must not be negative
+   *
+   * @exception NullPointerException if {@code kind} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code weight} is negative
+   */
+  public void setWeight(@NotNull final RequestKind kind, final int weight) {
+    Objects.requireNonNull(kind, () -> "kind must not be null");
+    if (weight < 0) {
+      throw new IllegalArgumentException("weight < 0: " + weight);
+    }
+    this.weights.put(kind, Integer.valueOf(weight));
+  }
+
+  /**
+   * Issues requests at the supplied rate for the supplied duration,
+   * waits for all of them to finish, and returns a {@link Report}
+   * describing what happened.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param requestsPerSecond the target request rate; must be greater
+   * than zero
+   *
+   * @param duration how long to issue requests for; must be greater
+   * than zero
+   *
+   * @param unit the {@link TimeUnit} of {@code duration}; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link Report}
+   *
+   * @exception IllegalArgumentException if {@code requestsPerSecond}
+   * or {@code duration} is not positive, or if every weight is zero
+   *
+   * @exception InterruptedException if the calling thread is
+   * interrupted
+   */
+  public Report run(final double requestsPerSecond, final long duration, @NotNull final TimeUnit unit) throws InterruptedException {
+    Objects.requireNonNull(unit, () -> "unit must not be null");
+    if (requestsPerSecond <= 0.0) {
+      throw new IllegalArgumentException("requestsPerSecond <= 0: " + requestsPerSecond);
+    }
+    if (duration <= 0L) {
+      throw new IllegalArgumentException("duration <= 0: " + duration);
+    }
+    final RequestKind[] schedule = this.buildSchedule();
+    final Report report = new Report();
+    final ExecutorService executorService = Executors.newFixedThreadPool(this.threads);
+    final double intervalNanos = TimeUnit.SECONDS.toNanos(1L) / requestsPerSecond;
+    final long start = System.nanoTime();
+    final long end = start + unit.toNanos(duration);
+    try {
+      for (long i = 0L; ; i++) {
+        final long intendedStart = start + (long)(i * intervalNanos);
+        if (intendedStart >= end) {
+          break;
+        }
+        long wait;
+        while ((wait = intendedStart - System.nanoTime()) > 0L) {
+          LockSupport.parkNanos(wait);
+          if (Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+        }
+        final RequestKind kind = schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+        executorService.execute(() -> {
+            boolean failed = false;
+            try {
+              this.issue(kind);
+            } catch (final ServiceBrokerException | RuntimeException exception) {
+              failed = true;
+            }
+            report.record(kind, System.nanoTime() - intendedStart, failed);
+          });
+      }
+    } finally {
+      executorService.shutdown();
+      executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      report.elapsedNanos = System.nanoTime() - start;
+    }
+    return report;
+  }
+
+  private final RequestKind[] buildSchedule() {
+    final List<RequestKind> schedule = new ArrayList<>();
+    for (final Map.Entry<RequestKind, Integer> entry : this.weights.entrySet()) {
+      for (int i = 0; i < entry.getValue().intValue(); i++) {
+        schedule.add(entry.getKey());
+      }
+    }
+    if (schedule.isEmpty()) {
+      throw new IllegalArgumentException("every weight is zero");
+    }
+    return schedule.toArray(new RequestKind[schedule.size()]);
+  }
+
+  private final void issue(final RequestKind kind) throws ServiceBrokerException {
+    final String[] pair = this.servicePlanPairs.get(ThreadLocalRandom.current().nextInt(this.servicePlanPairs.size()));
+    final String serviceId = pair[0];
+    final String planId = pair[1];
+    final long n = this.counter.incrementAndGet();
+    final String instanceId = "instance-" + n;
+    final String bindingId = "binding-" + n;
+    switch (kind) {
+    case GET_CATALOG:
+      this.serviceBroker.getCatalog();
+      break;
+    case GET_LAST_OPERATION:
+      this.serviceBroker.getLastOperation(new LastOperationQuery(serviceId, instanceId, planId, null));
+      break;
+    case PROVISION_SERVICE_INSTANCE:
+      this.serviceBroker.execute(new ProvisionServiceInstanceCommand(instanceId, serviceId, planId, null, true, "org", "space"));
+      break;
+    case UPDATE_SERVICE_INSTANCE:
+      this.serviceBroker.execute(new UpdateServiceInstanceCommand(instanceId, serviceId, planId, null, true, null));
+      break;
+    case DELETE_SERVICE_INSTANCE:
+      this.serviceBroker.execute(new DeleteServiceInstanceCommand(instanceId, serviceId, planId, true));
+      break;
+    case PROVISION_BINDING:
+      this.serviceBroker.execute(new ProvisionBindingCommand(bindingId, instanceId, serviceId, planId, null, null));
+      break;
+    case DELETE_BINDING:
+      this.serviceBroker.execute(new DeleteBindingCommand(bindingId, instanceId, serviceId, planId));
+      break;
+    default:
+      throw new IllegalArgumentException("kind: " + kind);
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Builds a {@link CompositeServiceBroker} in front of a number of
+   * {@link SimulatedServiceBroker}s, drives it with a {@link
+   * LoadDriver} and prints a {@link Report} to {@link System#out}.
+   *
+   * <p>Arguments take the form {@code --name=value}.  Recognized
+   * names, with their defaults, are:</p>
+   *
+   * <ul>
+   *
+   * <li>{@code rate} ({@code 1000}): requests per second</li>
+   *
+   * <li>{@code duration} ({@code 30}): seconds</li>
+   *
+   * <li>{@code threads} ({@code 64})</li>
+   *
+   * <li>{@code brokers} ({@code 4}): the number of child brokers</li>
+   *
+   * <li>{@code services} ({@code 10}): services per child broker</li>
+   *
+   * <li>{@code plans} ({@code 3}): plans per service</li>
+   *
+   * <li>{@code medianLatencyMillis} ({@code 5}) and {@code sigma}
+   * ({@code 0.5}): parameters of the log-normal latency applied to
+   * every request</li>
+   *
+   * <li>{@code failureRate} ({@code 0.001}): the rate of {@link
+   * ServiceBrokerException}s for every request kind</li>
+   *
+   * <li>{@code notFoundRate} ({@code 0.01}): the rate of not-found
+   * outcomes for every request kind</li>
+   *
+   * <li>{@code asynchronousRate} ({@code 0.5}) and {@code
+   * inProgressPolls} ({@code 3})</li>
+   *
+   * </ul>
+   *
+   * @param args the command line arguments; may be {@code null}
+   *
+   * @exception Exception if an error occurs
+   */
+  public static final void main(final String[] args) throws Exception {
+    final Map<String, String> options = new HashMap<>();
+    if (args != null) {
+      for (final String arg : args) {
+        if (arg != null && arg.startsWith("--")) {
+          final int equalsIndex = arg.indexOf('=');
+          if (equalsIndex > 2) {
+            options.put(arg.substring(2, equalsIndex), arg.substring(equalsIndex + 1));
+          }
+        }
+      }
+    }
+    final double rate = Double.parseDouble(options.getOrDefault("rate", "1000"));
+    final long duration = Long.parseLong(options.getOrDefault("duration", "30"));
+    final int threads = Integer.parseInt(options.getOrDefault("threads", "64"));
+    final int brokers = Integer.parseInt(options.getOrDefault("brokers", "4"));
+    final int services = Integer.parseInt(options.getOrDefault("services", "10"));
+    final int plans = Integer.parseInt(options.getOrDefault("plans", "3"));
+    final long medianLatencyMillis = Long.parseLong(options.getOrDefault("medianLatencyMillis", "5"));
+    final double sigma = Double.parseDouble(options.getOrDefault("sigma", "0.5"));
+    final double failureRate = Double.parseDouble(options.getOrDefault("failureRate", "0.001"));
+    final double notFoundRate = Double.parseDouble(options.getOrDefault("notFoundRate", "0.01"));
+    final double asynchronousRate = Double.parseDouble(options.getOrDefault("asynchronousRate", "0.5"));
+    final int inProgressPolls = Integer.parseInt(options.getOrDefault("inProgressPolls", "3"));
+
+    final CompositeServiceBroker compositeServiceBroker = new CompositeServiceBroker();
+    final Set<Service> allServices = new LinkedHashSet<>();
+    for (int b = 0; b < brokers; b++) {
+      final SimulatedServiceBroker child = new SimulatedServiceBroker("broker" + b, services, plans);
+      allServices.addAll(child.getCatalog().getServices());
+      child.setLatencyDistribution(LatencyDistribution.logNormal(medianLatencyMillis, sigma, TimeUnit.MILLISECONDS));
+      for (final RequestKind kind : RequestKind.values()) {
+        if (kind != RequestKind.GET_CATALOG) {
+          child.setFailureRate(kind, failureRate);
+          child.setNotFoundRate(kind, notFoundRate);
+        }
+      }
+      child.setAsynchronousRate(asynchronousRate);
+      child.setInProgressPolls(inProgressPolls);
+      compositeServiceBroker.addServiceBroker(child);
+    }
+    // Establish the service-to-broker associations that routing relies upon.
+    compositeServiceBroker.getCatalog();
+
+    final LoadDriver driver = new LoadDriver(compositeServiceBroker, new Catalog(allServices), threads);
+    final Report report = driver.run(rate, duration, TimeUnit.SECONDS);
+    System.out.println("Target rate: " + rate + " requests/second; threads: " + threads + "; brokers: " + brokers);
+    report.print(System.out);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The outcome of a {@linkplain LoadDriver#run(double, long,
+   * TimeUnit) load run}.
+   *
+   * <p>Latencies include time spent queued behind earlier requests;
+   * failed requests are included in the latency figures.</p>
+   */
+  public static final class Report {
+
+    private final Map<RequestKind, LatencyHistogram> histograms;
+
+    private final Map<RequestKind, LongAdder> failures;
+
+    private final LatencyHistogram overall;
+
+    private volatile long elapsedNanos;
+
+    private Report() {
+      super();
+      this.histograms = new EnumMap<>(RequestKind.class);
+      this.failures = new EnumMap<>(RequestKind.class);
+      for (final RequestKind kind : RequestKind.values()) {
+        this.histograms.put(kind, new LatencyHistogram());
+        this.failures.put(kind, new LongAdder());
+      }
+      this.overall = new LatencyHistogram();
+    }
+
+    private final void record(final RequestKind kind, final long nanos, final boolean failed) {
+      this.histograms.get(kind).record(nanos);
+      this.overall.record(nanos);
+      if (failed) {
+        this.failures.get(kind).increment();
+      }
+    }
+
+    /**
+     * Returns the {@link LatencyHistogram} for all requests.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link LatencyHistogram}
+     */
+    public final LatencyHistogram getLatencyHistogram() {
+      return this.overall;
+    }
+
+    /**
+     * Returns the {@link LatencyHistogram} for requests of the
+     * supplied {@link RequestKind}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @param kind the {@link RequestKind}; must not be {@code null}
+     *
+     * @return a non-{@code null} {@link LatencyHistogram}
+     */
+    public final LatencyHistogram getLatencyHistogram(@NotNull final RequestKind kind) {
+      Objects.requireNonNull(kind, () -> "kind must not be null");
+      return this.histograms.get(kind);
+    }
+
+    /**
+     * Returns the number of requests of the supplied {@link
+     * RequestKind} that failed, for any reason.
+     *
+     * @param kind the {@link RequestKind}; must not be {@code null}
+     *
+     * @return the number of failed requests
+     */
+    public final long getFailureCount(@NotNull final RequestKind kind) {
+      Objects.requireNonNull(kind, () -> "kind must not be null");
+      return this.failures.get(kind).sum();
+    }
+
+    /**
+     * Returns the achieved throughput in requests per second.
+     *
+     * @return the achieved throughput in requests per second
+     */
+    public final double getThroughput() {
+      final long elapsedNanos = this.elapsedNanos;
+      return elapsedNanos <= 0L ? 0.0 : this.overall.getTotalCount() * (double)TimeUnit.SECONDS.toNanos(1L) / elapsedNanos;
+    }
+
+    /**
+     * Prints a human-readable summary of this {@link Report} to the
+     * supplied {@link PrintStream}.
+     *
+     * @param out the {@link PrintStream}; must not be {@code null}
+     */
+    public final void print(@NotNull final PrintStream out) {
+      Objects.requireNonNull(out, () -> "out must not be null");
+      out.printf("Throughput: %.1f requests/second%n", this.getThroughput());
+      out.printf("%-28s %10s %8s %10s %10s %10s %10s %10s%n",
+                 "kind", "count", "errors", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+      for (final RequestKind kind : RequestKind.values()) {
+        this.print(out, kind.toString(), this.histograms.get(kind), this.failures.get(kind).sum());
+      }
+      long failures = 0L;
+      for (final LongAdder adder : this.failures.values()) {
+        failures += adder.sum();
+      }
+      this.print(out, "ALL", this.overall, failures);
+    }
+
+    private final void print(final PrintStream out, final String label, final LatencyHistogram histogram, final long failures) {
+      if (histogram.getTotalCount() > 0L) {
+        out.printf("%-28s %10d %8d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                   label,
+                   histogram.getTotalCount(),
+                   failures,
+                   millis(histogram.getValueAtPercentile(50.0)),
+                   millis(histogram.getValueAtPercentile(90.0)),
+                   millis(histogram.getValueAtPercentile(99.0)),
+                   millis(histogram.getValueAtPercentile(99.9)),
+                   millis(histogram.getMaximum()));
+      }
+    }
+
+    private static final double millis(final long nanos) {
+      return nanos / 1000000.0;
+    }
+
+  }
+
+}
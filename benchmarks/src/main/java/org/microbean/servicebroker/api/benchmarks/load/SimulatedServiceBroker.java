@@ -0,0 +1,446 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.benchmarks.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.util.concurrent.locks.LockSupport;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.ServiceBroker;
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.benchmarks.Catalogs;
+
+import org.microbean.servicebroker.api.command.AbstractCommand;
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.NoSuchBindingException;
+import org.microbean.servicebroker.api.command.NoSuchServiceInstanceException;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.InvalidServiceBrokerQueryException;
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+/**
+ * A {@link ServiceBroker} that stands in for a real backend by
+ * serving a synthetic {@link Catalog}, sleeping for a configurable,
+ * randomly distributed time on every request, and failing a
+ * configurable fraction of requests.
+ *
+ * <p>For each {@link RequestKind}, the following may be
+ * configured:</p>
+ *
+ * <ul>
+ *
+ * <li>a {@linkplain #setLatencyDistribution(RequestKind,
+ * LatencyDistribution) latency distribution}</li>
+ *
+ * <li>the {@linkplain #setFailureRate(RequestKind, double) rate} at
+ * which a {@link ServiceBrokerException} is thrown</li>
+ *
+ * <li>the {@linkplain #setNotFoundRate(RequestKind, double) rate} at
+ * which the target of the request is reported not to exist, by
+ * throwing a {@link NoSuchServiceInstanceException}, {@link
+ * NoSuchBindingException} or {@link
+ * InvalidServiceBrokerQueryException} as appropriate</li>
+ *
+ * </ul>
+ *
+ * <p>In addition, a {@linkplain #setAsynchronousRate(double)
+ * fraction} of service instance commands that {@linkplain
+ * org.microbean.servicebroker.api.command.AbstractServiceInstanceCommand#getAcceptsIncomplete()
+ * accept incomplete results} complete asynchronously: they return an
+ * operation identifier, and the {@link
+ * #getLastOperation(LastOperationQuery)} method reports {@link
+ * LastOperation.State#IN_PROGRESS} for that operation for a
+ * {@linkplain #setInProgressPolls(int) configurable number of polls}
+ * before reporting {@link LastOperation.State#SUCCEEDED}.</p>
+ *
+ * <p>Configuration methods are intended to be called before an
+ * instance of this class is shared among threads.  All other methods
+ * are safe for concurrent use by multiple threads.</p>
+ *
+ * @see LoadDriver
+ */
+public class SimulatedServiceBroker extends ServiceBroker {
+
+
+  /*
+   * Instance variables.
+   */
+
+
+  @NotNull
+  private final Catalog catalog;
+
+  @NotNull
+  private final Map<RequestKind, LatencyDistribution> latencyDistributions;
+
+  @NotNull
+  private final Map<RequestKind, Double> failureRates;
+
+  @NotNull
+  private final Map<RequestKind, Double> notFoundRates;
+
+  private double asynchronousRate;
+
+  private int inProgressPolls;
+
+  @NotNull
+  private final Map<String, AtomicInteger> operations;
+
+  @NotNull
+  private final AtomicLong operationCounter;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link SimulatedServiceBroker} whose {@link
+   * Catalog} is {@linkplain Catalogs#synthesize(String, int, int)
+   * synthesized} from the supplied arguments.
+   *
+   * @param prefix a prefix that makes the identifiers in the
+   * synthesized {@link Catalog} unique; must not be {@code null}
+   *
+   * @param serviceCount the number of {@link Service}s to offer;
+   * must not be negative
+   *
+   * @param planCount the number of {@link Plan}s per {@link Service};
+   * must be greater than zero
+   *
+   * @see Catalogs#synthesize(String, int, int)
+   */
+  public SimulatedServiceBroker(@NotNull final String prefix, final int serviceCount, final int planCount) {
+    this(Catalogs.synthesize(prefix, serviceCount, planCount));
+  }
+
+  /**
+   * Creates a new {@link SimulatedServiceBroker}.
+   *
+   * @param catalog the {@link Catalog} to offer; must not be {@code
+   * null}
+   *
+   * @exception NullPointerException if {@code catalog} is {@code
+   * null}
+   */
+  public SimulatedServiceBroker(@NotNull final Catalog catalog) {
+    super();
+    Objects.requireNonNull(catalog, () -> "catalog must not be null");
+    this.catalog = catalog;
+    this.latencyDistributions = new EnumMap<>(RequestKind.class);
+    this.failureRates = new EnumMap<>(RequestKind.class);
+    this.notFoundRates = new EnumMap<>(RequestKind.class);
+    for (final RequestKind kind : RequestKind.values()) {
+      this.latencyDistributions.put(kind, LatencyDistribution.NONE);
+      this.failureRates.put(kind, Double.valueOf(0.0));
+      this.notFoundRates.put(kind, Double.valueOf(0.0));
+    }
+    this.inProgressPolls = 1;
+    this.operations = new ConcurrentHashMap<>();
+    this.operationCounter = new AtomicLong();
+  }
+
+
+  /*
+   * Configuration methods.
+   */
+
+
+  /**
+   * Sets the {@link LatencyDistribution} applied to requests of the
+   * supplied {@link RequestKind}.
+   *
+   * @param kind the {@link RequestKind}; must not be {@code null}
+   *
+   * @param latencyDistribution the {@link LatencyDistribution}; if
+   * {@code null}, then {@link LatencyDistribution#NONE} will be used
+   * instead
+   *
+   * @exception NullPointerException if {@code kind} is {@code null}
+   */
+  public void setLatencyDistribution(@NotNull final RequestKind kind, final LatencyDistribution latencyDistribution) {
+    Objects.requireNonNull(kind, () -> "kind must not be null");
+    this.latencyDistributions.put(kind, latencyDistribution == null ? LatencyDistribution.NONE : latencyDistribution);
+  }
+
+  /**
+   * Sets the {@link LatencyDistribution} applied to requests of every
+   * {@link RequestKind}.
+   *
+   * @param latencyDistribution the {@link LatencyDistribution}; if
+   * {@code null}, then {@link LatencyDistribution#NONE} will be used
+   * instead
+   */
+  public void setLatencyDistribution(final LatencyDistribution latencyDistribution) {
+    for (final RequestKind kind : RequestKind.values()) {
+      this.setLatencyDistribution(kind, latencyDistribution);
+    }
+  }
+
+  /**
+   * Sets the fraction of requests of the supplied {@link
+   * RequestKind} that fail with a {@link ServiceBrokerException}.
+   *
+   * @param kind the {@link RequestKind}; must not be {@code null}
+   *
+   * @param rate a number between {@code 0.0} and {@code 1.0},
+   * inclusive
+   *
+   * @exception NullPointerException if {@code kind} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code rate} is out of
+   * range
+   */
+  public void setFailureRate(@NotNull final RequestKind kind, final double rate) {
+    Objects.requireNonNull(kind, () -> "kind must not be null");
+    this.failureRates.put(kind, Double.valueOf(validateRate(rate)));
+  }
+
+  /**
+   * Sets the fraction of requests of the supplied {@link
+   * RequestKind} whose target is reported not to exist.
+   *
+   * <p>The setting has no effect on {@link RequestKind#GET_CATALOG}
+   * requests.</p>
+   *
+   * @param kind the {@link RequestKind}; must not be {@code null}
+   *
+   * @param rate a number between {@code 0.0} and {@code 1.0},
+   * inclusive
+   *
+   * @exception NullPointerException if {@code kind} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code rate} is out of
+   * range
+   */
+  public void setNotFoundRate(@NotNull final RequestKind kind, final double rate) {
+    Objects.requireNonNull(kind, () -> "kind must not be null");
+    this.notFoundRates.put(kind, Double.valueOf(validateRate(rate)));
+  }
+
+  /**
+   * Sets the fraction of service instance commands accepting
+   * incomplete results that complete asynchronously.
+   *
+   * @param rate a number between {@code 0.0} and {@code 1.0},
+   * inclusive
+   *
+   * @exception IllegalArgumentException if {@code rate} is out of
+   * range
+   *
+   * @see #setInProgressPolls(int)
+   */
+  public void setAsynchronousRate(final double rate) {
+    this.asynchronousRate = validateRate(rate);
+  }
+
+  /**
+   * Sets the number of times the {@link
+   * #getLastOperation(LastOperationQuery)} method reports an
+   * asynchronous operation as {@linkplain
+   * LastOperation.State#IN_PROGRESS in progress} before reporting it
+   * as {@linkplain LastOperation.State#SUCCEEDED succeeded}.
+   *
+   * @param inProgressPolls the number of polls; must not be negative
+   *
+   * @exception IllegalArgumentException if {@code inProgressPolls} is
+   * negative
+   *
+   * @see #setAsynchronousRate(double)
+   */
+  public void setInProgressPolls(final int inProgressPolls) {
+    if (inProgressPolls < 0) {
+      throw new IllegalArgumentException("inProgressPolls < 0: " + inProgressPolls);
+    }
+    this.inProgressPolls = inProgressPolls;
+  }
+
+
+  /*
+   * ServiceBroker methods.
+   */
+
+
+  @Override
+  public Catalog getCatalog() throws ServiceBrokerException {
+    this.simulate(RequestKind.GET_CATALOG);
+    return this.catalog;
+  }
+
+  @Override
+  public boolean isPlanBindable(final String serviceId, final String planId) throws ServiceBrokerException {
+    for (final Service service : this.catalog.getServices()) {
+      if (service.getId().equals(serviceId)) {
+        for (final Plan plan : service.getPlans()) {
+          if (plan.getId().equals(planId)) {
+            final Boolean bindable = plan.getBindable();
+            return bindable == null ? service.isBindable() : bindable.booleanValue();
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public LastOperation getLastOperation(@NotNull final LastOperationQuery lastOperationQuery) throws ServiceBrokerException {
+    Objects.requireNonNull(lastOperationQuery, () -> "lastOperationQuery must not be null");
+    this.simulate(RequestKind.GET_LAST_OPERATION);
+    if (this.roll(this.notFoundRates, RequestKind.GET_LAST_OPERATION)) {
+      throw new InvalidServiceBrokerQueryException("Simulated missing operation", lastOperationQuery);
+    }
+    final String operationId = lastOperationQuery.getOperationId();
+    if (operationId != null) {
+      final AtomicInteger remainingPolls = this.operations.get(operationId);
+      if (remainingPolls != null) {
+        if (remainingPolls.getAndDecrement() > 0) {
+          return new LastOperation(LastOperation.State.IN_PROGRESS);
+        }
+        this.operations.remove(operationId);
+      }
+    }
+    return new LastOperation(LastOperation.State.SUCCEEDED);
+  }
+
+  @Override
+  public ProvisionServiceInstanceCommand.Response execute(@NotNull final ProvisionServiceInstanceCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    this.simulate(RequestKind.PROVISION_SERVICE_INSTANCE, command);
+    final String operation = this.startOperation(command.getAcceptsIncomplete());
+    return operation == null ? new ProvisionServiceInstanceCommand.Response() : new ProvisionServiceInstanceCommand.Response(operation);
+  }
+
+  @Override
+  public UpdateServiceInstanceCommand.Response execute(@NotNull final UpdateServiceInstanceCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    this.simulate(RequestKind.UPDATE_SERVICE_INSTANCE, command);
+    final String operation = this.startOperation(command.getAcceptsIncomplete());
+    return operation == null ? new UpdateServiceInstanceCommand.Response() : new UpdateServiceInstanceCommand.Response(operation);
+  }
+
+  @Override
+  public DeleteServiceInstanceCommand.Response execute(@NotNull final DeleteServiceInstanceCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    this.simulate(RequestKind.DELETE_SERVICE_INSTANCE, command);
+    final String operation = this.startOperation(command.getAcceptsIncomplete());
+    return operation == null ? new DeleteServiceInstanceCommand.Response() : new DeleteServiceInstanceCommand.Response(operation);
+  }
+
+  @Override
+  public ProvisionBindingCommand.Response execute(@NotNull final ProvisionBindingCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    this.simulate(RequestKind.PROVISION_BINDING, command);
+    return new ProvisionBindingCommand.Response();
+  }
+
+  @Override
+  public DeleteBindingCommand.Response execute(@NotNull final DeleteBindingCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    this.simulate(RequestKind.DELETE_BINDING);
+    if (this.roll(this.notFoundRates, RequestKind.DELETE_BINDING)) {
+      throw new NoSuchBindingException("Simulated missing binding", null);
+    }
+    return new DeleteBindingCommand.Response();
+  }
+
+
+  /*
+   * Simulation methods.
+   */
+
+
+  private final void simulate(final RequestKind kind, final AbstractCommand command) throws ServiceBrokerException {
+    this.simulate(kind);
+    if (this.roll(this.notFoundRates, kind)) {
+      throw new NoSuchServiceInstanceException("Simulated missing service instance", command);
+    }
+  }
+
+  private final void simulate(final RequestKind kind) throws ServiceBrokerException {
+    pause(this.latencyDistributions.get(kind).nextNanos(ThreadLocalRandom.current()));
+    if (this.roll(this.failureRates, kind)) {
+      throw new ServiceBrokerException("Simulated " + kind + " failure");
+    }
+  }
+
+  private final boolean roll(final Map<RequestKind, Double> rates, final RequestKind kind) {
+    final double rate = rates.get(kind).doubleValue();
+    return rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate;
+  }
+
+  private final String startOperation(final boolean acceptsIncomplete) {
+    final String returnValue;
+    final double asynchronousRate = this.asynchronousRate;
+    if (acceptsIncomplete && asynchronousRate > 0.0 && ThreadLocalRandom.current().nextDouble() < asynchronousRate) {
+      returnValue = "operation-" + this.operationCounter.incrementAndGet();
+      this.operations.put(returnValue, new AtomicInteger(this.inProgressPolls));
+    } else {
+      returnValue = null;
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final double validateRate(final double rate) {
+    if (rate < 0.0 || rate > 1.0) {
+      throw new IllegalArgumentException("rate: " + rate);
+    }
+    return rate;
+  }
+
+  private static final void pause(final long nanos) throws ServiceBrokerException {
+    if (nanos > 0L) {
+      final long deadline = System.nanoTime() + nanos;
+      long remaining = nanos;
+      while (remaining > 0L) {
+        LockSupport.parkNanos(remaining);
+        if (Thread.interrupted()) {
+          Thread.currentThread().interrupt();
+          throw new ServiceBrokerException(new InterruptedException());
+        }
+        remaining = deadline - System.nanoTime();
+      }
+    }
+  }
+
+}
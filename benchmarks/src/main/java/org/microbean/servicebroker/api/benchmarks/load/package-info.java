@@ -0,0 +1,27 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+/**
+ * Provides a {@linkplain SimulatedServiceBroker simulated service
+ * broker} with configurable latency and faults, and a {@linkplain
+ * LoadDriver load driver} that reports the throughput and tail
+ * latency a {@link org.microbean.servicebroker.api.ServiceBroker}
+ * achieves at a target request rate.
+ *
+ * @see LoadDriver#main(String[])
+ */
+package org.microbean.servicebroker.api.benchmarks.load;
@@ -17,38 +17,94 @@
 package org.microbean.servicebroker.api;
 
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.microbean.servicebroker.api.util.ImmutableArrayMap;
+
 public abstract class AbstractStatefulObject {
 
-  private final Map<String, Object> properties;
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<AbstractStatefulObject, ImmutableArrayMap> PROPERTIES =
+    AtomicReferenceFieldUpdater.newUpdater(AbstractStatefulObject.class, ImmutableArrayMap.class, "properties");
+
+  /**
+   * The properties of this object, or {@code null} if none has ever
+   * been {@linkplain #setProperty(String, Object) set}.
+   *
+   * <p>Most instances never have properties set, so nothing is
+   * allocated until one is.  Properties are then held in an immutable
+   * array that {@link #setProperty(String, Object)} replaces with a
+   * compare-and-set, so that interceptors on different threads may
+   * annotate the same object without locking and readers always see
+   * a consistent snapshot.</p>
+   */
+  private volatile ImmutableArrayMap<String, Object> properties;
   
   protected AbstractStatefulObject() {
     super();
-    this.properties = new LinkedHashMap<>();
   }
 
+  /**
+   * Returns an immutable snapshot of the properties of this object.
+   *
+   * <p>Properties {@linkplain #setProperty(String, Object) set}
+   * afterwards are not reflected in the returned {@link Map}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link Map}
+   */
   public Map<? extends String, ?> getProperties() {
-    return Collections.unmodifiableMap(this.properties);
+    final Map<String, Object> properties = this.properties;
+    if (properties == null) {
+      return Collections.emptyMap();
+    }
+    return properties;
   }
 
   public Object getProperty(final String name) {
     final Object returnValue;
-    if (name == null) {
+    final Map<String, Object> properties = this.properties;
+    if (name == null || properties == null) {
       returnValue = null;
     } else {
-      returnValue = this.properties.get(name);
+      returnValue = properties.get(name);
     }
     return returnValue;
   }
 
+  /**
+   * Sets the property with the supplied name to the supplied value
+   * and returns its previous value.
+   *
+   * <p>This method is safe for concurrent use by multiple
+   * threads.</p>
+   *
+   * @param name the name of the property; if {@code null} then this
+   * method does nothing and returns {@code null}
+   *
+   * @param property the value; may be {@code null}
+   *
+   * @return the previous value of the property, or {@code null}
+   */
+  @SuppressWarnings("unchecked")
   public Object setProperty(final String name, final Object property) {
-    final Object returnValue;
-    if (name == null) {
-      returnValue = null;
-    } else {
-      returnValue = this.properties.put(name, property);
+    Object returnValue = null;
+    if (name != null) {
+      ImmutableArrayMap<String, Object> properties;
+      ImmutableArrayMap<String, Object> newProperties;
+      do {
+        properties = this.properties;
+        if (properties == null) {
+          returnValue = null;
+          newProperties = ImmutableArrayMap.of(name, property);
+        } else {
+          returnValue = properties.get(name);
+          newProperties = properties.with(name, property);
+        }
+      } while (!PROPERTIES.compareAndSet(this, properties, newProperties));
     }
     return returnValue;
   }
@@ -16,6 +16,10 @@
  */
 package org.microbean.servicebroker.api;
 
+import java.io.IOException;
+
+import java.nio.file.Path;
+
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException; // for javadoc only
@@ -27,11 +31,19 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import java.util.function.Function;
+
 import java.util.stream.Stream;
 
 // import javax.validation.constraints.NotEmpty;
@@ -41,16 +53,24 @@ import org.microbean.servicebroker.api.query.InvalidServiceBrokerQueryException;
 import org.microbean.servicebroker.api.query.LastOperationQuery;
 
 import org.microbean.servicebroker.api.query.state.Catalog;
+import org.microbean.servicebroker.api.query.state.CatalogCanonicalizer;
+import org.microbean.servicebroker.api.query.state.CatalogDelta;
 import org.microbean.servicebroker.api.query.state.Catalog.Service;
 import org.microbean.servicebroker.api.query.state.LastOperation;
 
+import org.microbean.servicebroker.api.command.AbstractCommand;
+import org.microbean.servicebroker.api.command.AbstractResponse;
 import org.microbean.servicebroker.api.command.DeleteBindingCommand;
 import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
 import org.microbean.servicebroker.api.command.InvalidServiceBrokerCommandException;
+import org.microbean.servicebroker.api.command.Outcome;
 import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
 import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UnbindablePlanException;
 import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
 
+import org.microbean.servicebroker.api.schema.ParameterSchema;
+
 /**
  * A {@link ServiceBroker} that multiplexes other {@link
  * ServiceBroker}s.
@@ -92,6 +112,57 @@ public class CompositeServiceBroker extends ServiceBroker {
 
   private boolean parallelServiceDiscovery;
 
+  /**
+   * Replaces the {@link Service}s reported by the {@link
+   * ServiceBroker}s this {@link CompositeServiceBroker} multiplexes
+   * with equal ones retained from the previous {@link #getCatalog()}
+   * invocation, so that unchanged catalogs do not produce long-lived
+   * garbage.
+   *
+   * <p>This field is never {@code null}.  It is guarded by the write
+   * lock of {@link #serviceBrokerAssociationLock}.</p>
+   */
+  @NotNull
+  private final CatalogCanonicalizer catalogCanonicalizer;
+
+  /**
+   * The {@link Catalog} most recently returned by the {@link
+   * #getCatalog()} method or {@linkplain #restoreSnapshot(Path,
+   * Function) restored from a snapshot}, together with the {@link PlanRules} used
+   * to reject commands that are bound to fail before they are
+   * dispatched.
+   *
+   * <p>This field may be {@code null}, in which case no commands are
+   * rejected before dispatch.</p>
+   *
+   * @see CatalogRules
+   */
+  private volatile CatalogRules catalogRules;
+
+  /**
+   * The number of the most recently begun sweep of the {@link
+   * ServiceBroker}s for their {@link Catalog}s by the {@link
+   * #getCatalog()} method.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #publishedCatalogSweep
+   */
+  @NotNull
+  private final AtomicLong catalogSweep;
+
+  /**
+   * The number of the sweep whose results were most recently
+   * published, so that a sweep that was overtaken by a newer one does
+   * not replace the newer one's results with its older ones.
+   *
+   * <p>This field is guarded by the write lock of {@link
+   * #serviceBrokerAssociationLock}.</p>
+   *
+   * @see #catalogSweep
+   */
+  private long publishedCatalogSweep;
+
 
   /*
    * Constructors.
@@ -115,6 +186,8 @@ public class CompositeServiceBroker extends ServiceBroker {
     this.serviceBrokersLock = new ReentrantReadWriteLock();
     this.serviceBrokerAssociationLock = new ReentrantReadWriteLock();
     this.parallelServiceDiscovery = parallelServiceDiscovery;
+    this.catalogCanonicalizer = new CatalogCanonicalizer();
+    this.catalogSweep = new AtomicLong();
     this.serviceBrokers = new HashSet<>();
     this.serviceBrokersByServiceId = new HashMap<>();
     if (serviceBrokers != null) {
@@ -591,7 +664,23 @@ public class CompositeServiceBroker extends ServiceBroker {
    * value of the {@link #getParallelServiceDiscovery()} method: if
    * {@code true}, then the {@link ServiceBroker}s that this {@link
    * CompositeServiceBroker} multiplexes are consulted for their
-   * {@link Catalog} instances in parallel.</p>
+   * {@link Catalog} instances in parallel.  Either way, they are
+   * consulted without holding the lock that guards the associations
+   * between {@link Service}s and {@link ServiceBroker}s, so commands
+   * continue to be routed according to the previous associations
+   * until the new ones are in place.</p>
+   *
+   * <p>If another invocation of this method began consulting the
+   * {@link ServiceBroker}s later than this one but finished first,
+   * its results are kept and its {@link Catalog} is returned.</p>
+   *
+   * <p>If the resulting {@link Catalog} has the same {@linkplain
+   * Catalog#contentEquals(Catalog) content} as the one this method
+   * returned last, that earlier {@link Catalog} is returned instead,
+   * so that callers can detect that nothing has changed with an
+   * identity comparison, and so that work already done on its behalf,
+   * such as {@linkplain Catalog#getJson() serializing it}, is not
+   * repeated.</p>
    *
    * <p>Throughout the implementation of this method, appropriate
    * locking semantics are used such that overrides of the various
@@ -615,10 +704,12 @@ public class CompositeServiceBroker extends ServiceBroker {
   @NotNull
   @Override
   public final Catalog getCatalog() throws ServiceBrokerException {
-    Catalog returnValue = null;
+    Catalog returnValue;
     Set<ServiceBroker> serviceBrokers = null;
+    final long sweep;
     try {
       this.serviceBrokersLock.readLock().lock();
+      sweep = this.catalogSweep.incrementAndGet();
       serviceBrokers = this.getServiceBrokers();
       if (serviceBrokers == null || serviceBrokers.isEmpty()) {
         serviceBrokers = Collections.emptySet();
@@ -629,79 +720,289 @@ public class CompositeServiceBroker extends ServiceBroker {
       this.serviceBrokersLock.readLock().unlock();
     }
     assert serviceBrokers != null;
+    // Consult the ServiceBrokers without holding the association
+    // lock, so that commands can continue to be routed according to
+    // the previous associations, or to a restored snapshot, while
+    // possibly slow ServiceBrokers respond.
+    final Map<Service, ServiceBroker> associations = new ConcurrentHashMap<>();
     if (!serviceBrokers.isEmpty()) {
-      final Set<Service> allServices = new HashSet<>();
-      try {
-        this.serviceBrokerAssociationLock.writeLock().lock();
-        this.removeServices();
-        final Map<Service, ServiceBroker> associations = new ConcurrentHashMap<>();
-        final Stream<ServiceBroker> serviceBrokerStream;
-        if (this.getParallelServiceDiscovery()) {
-          serviceBrokerStream = serviceBrokers.parallelStream();
-        } else {
-          serviceBrokerStream = serviceBrokers.stream();
-        }        
-        try {
-          serviceBrokerStream
-            .forEach(serviceBroker -> {
-                if (serviceBroker != null) {
-                  Catalog catalog = null;
-                  try {
-                    catalog = this.getCatalog(serviceBroker);
-                  } catch (final ServiceBrokerException serviceBrokerException) {
-                    throw new IllegalStateException(serviceBrokerException);
-                  }
-                  if (catalog != null) {
-                    final Iterable<? extends Service> services = catalog.getServices();
-                    if (services != null) {
-                      for (final Service service : services) {
-                        if (service != null) {
-                          associations.put(service, serviceBroker);
-                        }
-                      }
+      final Stream<ServiceBroker> serviceBrokerStream;
+      if (this.getParallelServiceDiscovery()) {
+        serviceBrokerStream = serviceBrokers.parallelStream();
+      } else {
+        serviceBrokerStream = serviceBrokers.stream();
+      }
+      // Record the first failure rather than tunneling it out of the
+      // stream inside an unchecked exception, and skip the
+      // ServiceBrokers not yet consulted once there is one.
+      final AtomicReference<ServiceBrokerException> failure = new AtomicReference<>();
+      serviceBrokerStream
+        .forEach(serviceBroker -> {
+            if (serviceBroker != null && failure.get() == null) {
+              Catalog catalog = null;
+              try {
+                catalog = this.getCatalog(serviceBroker);
+              } catch (final ServiceBrokerException serviceBrokerException) {
+                failure.compareAndSet(null, serviceBrokerException);
+                return;
+              }
+              if (catalog != null) {
+                final Iterable<? extends Service> services = catalog.getServices();
+                if (services != null) {
+                  for (final Service service : services) {
+                    if (service != null) {
+                      associations.put(service, serviceBroker);
                     }
                   }
                 }
-              });
-        } catch (final IllegalStateException illegalStateException) {
-          final Throwable cause = illegalStateException.getCause();
-          if (cause instanceof ServiceBrokerException) {
-            throw (ServiceBrokerException)cause;
-          }
-          throw illegalStateException;
-        }
-        associations.entrySet().stream()
-          .forEach(entry -> {
-              assert entry != null;
-              final Service service = entry.getKey();
-              assert service != null;
-              final String id = service.getId();
-              if (id != null) {
-                final ServiceBroker serviceBroker = entry.getValue();
-                assert serviceBroker != null;
-                this.putServiceBrokerForServiceId(id, serviceBroker);
               }
-            });
-      } finally {
-        this.serviceBrokerAssociationLock.writeLock().unlock();
+            }
+          });
+      final ServiceBrokerException serviceBrokerException = failure.get();
+      if (serviceBrokerException != null) {
+        throw serviceBrokerException;
+      }
+    }
+    try {
+      this.serviceBrokerAssociationLock.writeLock().lock();
+      if (sweep < this.publishedCatalogSweep) {
+        // A sweep that began after this one has already published
+        // fresher results; return them rather than overwrite them.
+        return this.catalogRules.catalog;
       }
-      if (!allServices.isEmpty()) {
+      this.removeServices();
+      final Set<Service> allServices = new HashSet<>(this.catalogCanonicalizer.canonicalize(associations.keySet()));
+      associations.entrySet().stream()
+        .forEach(entry -> {
+            assert entry != null;
+            final Service service = entry.getKey();
+            assert service != null;
+            final String id = service.getId();
+            if (id != null) {
+              final ServiceBroker serviceBroker = entry.getValue();
+              assert serviceBroker != null;
+              this.putServiceBrokerForServiceId(id, serviceBroker);
+            }
+          });
+      if (allServices.isEmpty()) {
+        returnValue = new Catalog();
+      } else {
         returnValue = new Catalog(allServices);
       }
-    }
-    if (returnValue == null) {
-      returnValue = new Catalog();
+      final CatalogRules catalogRules = this.catalogRules;
+      if (catalogRules != null && catalogRules.catalog.contentEquals(returnValue)) {
+        // Nothing has changed, so hand out the previous Catalog, whose
+        // JSON forms, indices and compiled schemas have already been
+        // built, and keep its rules.
+        returnValue = catalogRules.catalog;
+      } else {
+        this.catalogRules = new CatalogRules(returnValue, catalogRules);
+      }
+      this.publishedCatalogSweep = sweep;
+    } finally {
+      this.serviceBrokerAssociationLock.writeLock().unlock();
     }
     return returnValue;
   }
 
+  /**
+   * Arranges for the {@link #getCatalog()} method to be called using
+   * the supplied {@link Executor} and returns a {@link
+   * CompletableFuture} representing its eventual result.
+   *
+   * <p>Commands continue to be routed according to the last known
+   * associations between {@link Service}s and {@link ServiceBroker}s,
+   * such as those {@linkplain #restoreSnapshot(Path, Function)
+   * restored from a snapshot}, until the refresh completes.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param executor the {@link Executor} to use; must not be {@code
+   * null}
+   *
+   * @return a non-{@code null} {@link CompletableFuture} that will be
+   * completed with the new {@link Catalog}, or exceptionally with a
+   * {@link CompletionException} wrapping any {@link
+   * ServiceBrokerException} thrown
+   *
+   * @exception NullPointerException if {@code executor} is {@code
+   * null}
+   *
+   * @see #getCatalog()
+   */
+  @NotNull
+  public final CompletableFuture<Catalog> refreshCatalog(@NotNull final Executor executor) {
+    Objects.requireNonNull(executor, () -> "executor must not be null");
+    return CompletableFuture.supplyAsync(() -> {
+        try {
+          return this.getCatalog();
+        } catch (final ServiceBrokerException serviceBrokerException) {
+          throw new CompletionException(serviceBrokerException);
+        }
+      }, executor);
+  }
+
+  /**
+   * Writes the {@link Catalog} most recently returned by the {@link
+   * #getCatalog()} method, together with the current associations
+   * between its {@link Service}s and the {@link ServiceBroker}s
+   * responsible for them, to a compact snapshot file at the supplied
+   * {@link Path}, replacing any file already there.
+   *
+   * <p>Because {@link ServiceBroker}s themselves cannot be written,
+   * each is recorded by the name the supplied {@link Function}
+   * assigns it.  {@link Service}s whose {@link ServiceBroker} is
+   * assigned a {@code null} name are not routed when the snapshot is
+   * {@linkplain #restoreSnapshot(Path, Function) restored}.</p>
+   *
+   * <p>The file is written to a temporary file first and then
+   * atomically moved into place.</p>
+   *
+   * @param path the {@link Path} to write to; must not be {@code
+   * null}
+   *
+   * @param namer a {@link Function} that returns a name, stable
+   * across restarts, for each {@link ServiceBroker} this {@link
+   * CompositeServiceBroker} multiplexes; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IllegalStateException if the {@link #getCatalog()}
+   * method has not yet completed successfully and no snapshot has been
+   * restored
+   *
+   * @exception IOException if the snapshot could not be written
+   *
+   * @see #restoreSnapshot(Path, Function)
+   */
+  public final void writeSnapshot(@NotNull final Path path,
+                                  @NotNull final Function<? super ServiceBroker, ? extends String> namer)
+    throws IOException {
+    Objects.requireNonNull(path, () -> "path must not be null");
+    Objects.requireNonNull(namer, () -> "namer must not be null");
+    final Catalog catalog;
+    final Map<String, String> serviceBrokerNamesByServiceId = new HashMap<>();
+    try {
+      this.serviceBrokerAssociationLock.readLock().lock();
+      final CatalogRules catalogRules = this.catalogRules;
+      if (catalogRules == null) {
+        throw new IllegalStateException("No catalog has been computed or restored");
+      }
+      catalog = catalogRules.catalog;
+      for (final Service service : catalog.getServices()) {
+        final String serviceId = service.getId();
+        final ServiceBroker serviceBroker = this.getServiceBrokerForServiceId(serviceId);
+        if (serviceBroker != null) {
+          final String name = namer.apply(serviceBroker);
+          if (name != null) {
+            serviceBrokerNamesByServiceId.put(serviceId, name);
+          }
+        }
+      }
+    } finally {
+      this.serviceBrokerAssociationLock.readLock().unlock();
+    }
+    new RoutingSnapshot(catalog, serviceBrokerNamesByServiceId).write(path);
+  }
+
+  /**
+   * Maps a snapshot file previously written by the {@link
+   * #writeSnapshot(Path, Function)} method into memory and, if the
+   * {@link #getCatalog()} method has not yet completed, adopts its
+   * {@link Catalog} and its associations between {@link Service}s and
+   * {@link ServiceBroker}s, so that commands can be validated and
+   * routed immediately after a restart instead of only after every
+   * multiplexed {@link ServiceBroker} has been consulted.
+   *
+   * <p>Callers will normally follow a successful invocation of this
+   * method with an invocation of the {@link
+   * #refreshCatalog(Executor)} method.</p>
+   *
+   * <p>Each name recorded in the snapshot is turned back into a
+   * {@link ServiceBroker} by the supplied {@link Function}.  {@link
+   * Service}s whose name the {@link Function} does not resolve, or
+   * resolves to a {@link ServiceBroker} that this {@link
+   * CompositeServiceBroker} does not {@linkplain #getServiceBrokers()
+   * multiplex}, are left out of the adopted {@link Catalog}.</p>
+   *
+   * @param path the {@link Path} of the snapshot; must not be {@code
+   * null}
+   *
+   * @param resolver a {@link Function} that returns the {@link
+   * ServiceBroker} with a given name, or {@code null}; must not be
+   * {@code null}
+   *
+   * @return {@code true} if the snapshot was adopted; {@code false}
+   * if the {@link #getCatalog()} method had already completed, in
+   * which case its results are fresher than the snapshot
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if the snapshot could not be read, or is
+   * truncated or corrupt
+   *
+   * @see #writeSnapshot(Path, Function)
+   *
+   * @see #refreshCatalog(Executor)
+   */
+  public final boolean restoreSnapshot(@NotNull final Path path,
+                                       @NotNull final Function<? super String, ? extends ServiceBroker> resolver)
+    throws IOException {
+    Objects.requireNonNull(path, () -> "path must not be null");
+    Objects.requireNonNull(resolver, () -> "resolver must not be null");
+    if (this.catalogRules != null) {
+      return false;
+    }
+    final RoutingSnapshot snapshot = RoutingSnapshot.read(path);
+    final Set<ServiceBroker> serviceBrokers;
+    try {
+      this.serviceBrokersLock.readLock().lock();
+      final Set<ServiceBroker> liveServiceBrokers = this.getServiceBrokers();
+      serviceBrokers = liveServiceBrokers == null ? Collections.emptySet() : new HashSet<>(liveServiceBrokers);
+    } finally {
+      this.serviceBrokersLock.readLock().unlock();
+    }
+    final Map<String, ServiceBroker> resolved = new HashMap<>();
+    final Map<Service, ServiceBroker> associations = new HashMap<>();
+    final Map<String, String> serviceBrokerNamesByServiceId = snapshot.getServiceBrokerNamesByServiceId();
+    for (final Service service : snapshot.getCatalog().getServices()) {
+      final String name = serviceBrokerNamesByServiceId.get(service.getId());
+      if (name != null) {
+        final ServiceBroker serviceBroker = resolved.computeIfAbsent(name, resolver);
+        if (serviceBroker != null && serviceBroker != this && serviceBrokers.contains(serviceBroker)) {
+          associations.put(service, serviceBroker);
+        }
+      }
+    }
+    try {
+      this.serviceBrokerAssociationLock.writeLock().lock();
+      if (this.catalogRules != null) {
+        return false;
+      }
+      final Set<Service> services = this.catalogCanonicalizer.canonicalize(associations.keySet());
+      for (final Entry<Service, ServiceBroker> entry : associations.entrySet()) {
+        this.putServiceBrokerForServiceId(entry.getKey().getId(), entry.getValue());
+      }
+      this.catalogRules = new CatalogRules(services.isEmpty() ? new Catalog() : new Catalog(services), null);
+    } finally {
+      this.serviceBrokerAssociationLock.writeLock().unlock();
+    }
+    return true;
+  }
+
   @NotNull
   public ProvisionBindingCommand.Response execute(@NotNull final ProvisionBindingCommand command) throws ServiceBrokerException {
     Objects.requireNonNull(command, () -> "command must not be null");
     ProvisionBindingCommand.Response returnValue = null;
+    ServiceBroker serviceBroker = null;
     final String serviceId = command.getServiceId();
     if (serviceId != null) {
-      ServiceBroker serviceBroker = null;
+      final Violation violation = this.validate(command);
+      if (violation != null) {
+        throw violation.toException(command);
+      }
       try {
         this.serviceBrokerAssociationLock.readLock().lock();
         serviceBroker = this.getServiceBrokerForServiceId(serviceId);
@@ -713,7 +1014,7 @@ public class CompositeServiceBroker extends ServiceBroker {
       }
     }
     if (returnValue == null) {
-      throw new InvalidServiceBrokerCommandException(command);
+      throw new InvalidServiceBrokerCommandException(unroutable(command, serviceId, serviceBroker), command);
     }
     return returnValue;
   }
@@ -722,9 +1023,9 @@ public class CompositeServiceBroker extends ServiceBroker {
   public DeleteBindingCommand.Response execute(@NotNull final DeleteBindingCommand command) throws ServiceBrokerException {
     Objects.requireNonNull(command, () -> "command must not be null");
     DeleteBindingCommand.Response returnValue = null;
+    ServiceBroker serviceBroker = null;
     final String serviceId = command.getServiceId();
     if (serviceId != null) {
-      ServiceBroker serviceBroker = null;
       try {
         this.serviceBrokerAssociationLock.readLock().lock();
         serviceBroker = this.getServiceBrokerForServiceId(serviceId);
@@ -736,7 +1037,7 @@ public class CompositeServiceBroker extends ServiceBroker {
       }
     }
     if (returnValue == null) {
-      throw new InvalidServiceBrokerCommandException(command);
+      throw new InvalidServiceBrokerCommandException(unroutable(command, serviceId, serviceBroker), command);
     }
     return returnValue;
   }
@@ -746,9 +1047,9 @@ public class CompositeServiceBroker extends ServiceBroker {
   public DeleteServiceInstanceCommand.Response execute(@NotNull final DeleteServiceInstanceCommand command) throws ServiceBrokerException {
     Objects.requireNonNull(command, () -> "command must not be null");
     DeleteServiceInstanceCommand.Response returnValue = null;
+    ServiceBroker serviceBroker = null;
     final String serviceId = command.getServiceId();
     if (serviceId != null) {
-      ServiceBroker serviceBroker = null;
       try {
         this.serviceBrokerAssociationLock.readLock().lock();
         serviceBroker = this.getServiceBrokerForServiceId(serviceId);
@@ -760,7 +1061,7 @@ public class CompositeServiceBroker extends ServiceBroker {
       }
     }
     if (returnValue == null) {
-      throw new InvalidServiceBrokerCommandException(command);
+      throw new InvalidServiceBrokerCommandException(unroutable(command, serviceId, serviceBroker), command);
     }
     return returnValue;
   }
@@ -770,9 +1071,13 @@ public class CompositeServiceBroker extends ServiceBroker {
   public ProvisionServiceInstanceCommand.Response execute(@NotNull final ProvisionServiceInstanceCommand command) throws ServiceBrokerException {
     Objects.requireNonNull(command, () -> "command must not be null");
     ProvisionServiceInstanceCommand.Response returnValue = null;
+    ServiceBroker serviceBroker = null;
     final String serviceId = command.getServiceId();
     if (serviceId != null) {
-      ServiceBroker serviceBroker = null;
+      final Violation violation = this.validate(command);
+      if (violation != null) {
+        throw violation.toException(command);
+      }
       try {
         this.serviceBrokerAssociationLock.readLock().lock();
         serviceBroker = this.getServiceBrokerForServiceId(serviceId);
@@ -784,7 +1089,7 @@ public class CompositeServiceBroker extends ServiceBroker {
       }
     }
     if (returnValue == null) {
-      throw new InvalidServiceBrokerCommandException(command);
+      throw new InvalidServiceBrokerCommandException(unroutable(command, serviceId, serviceBroker), command);
     }
     return returnValue;
   }
@@ -794,9 +1099,13 @@ public class CompositeServiceBroker extends ServiceBroker {
   public UpdateServiceInstanceCommand.Response execute(@NotNull final UpdateServiceInstanceCommand command) throws ServiceBrokerException {
     Objects.requireNonNull(command, () -> "command must not be null");
     UpdateServiceInstanceCommand.Response returnValue = null;
+    ServiceBroker serviceBroker = null;
     final String serviceId = command.getServiceId();
     if (serviceId != null) {
-      ServiceBroker serviceBroker = null;
+      final Violation violation = this.validate(command);
+      if (violation != null) {
+        throw violation.toException(command);
+      }
       try {
         this.serviceBrokerAssociationLock.readLock().lock();
         serviceBroker = this.getServiceBrokerForServiceId(serviceId);
@@ -808,11 +1117,257 @@ public class CompositeServiceBroker extends ServiceBroker {
       }
     }
     if (returnValue == null) {
-      throw new InvalidServiceBrokerCommandException(command);
+      throw new InvalidServiceBrokerCommandException(unroutable(command, serviceId, serviceBroker), command);
     }
     return returnValue;
   }
 
+  @NotNull
+  @Override
+  public Outcome<ProvisionBindingCommand.Response> tryExecute(@NotNull final ProvisionBindingCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final String serviceId = command.getServiceId();
+    if (serviceId != null) {
+      final Violation violation = this.validate(command);
+      if (violation != null) {
+        return violation.toOutcome();
+      }
+      final ServiceBroker serviceBroker = this.route(serviceId);
+      if (serviceBroker != null) {
+        return serviceBroker.tryExecute(command);
+      }
+    }
+    return Outcome.invalid(unroutable(command, serviceId, null));
+  }
+
+  @NotNull
+  @Override
+  public Outcome<DeleteBindingCommand.Response> tryExecute(@NotNull final DeleteBindingCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final String serviceId = command.getServiceId();
+    if (serviceId != null) {
+      final ServiceBroker serviceBroker = this.route(serviceId);
+      if (serviceBroker != null) {
+        return serviceBroker.tryExecute(command);
+      }
+    }
+    return Outcome.invalid(unroutable(command, serviceId, null));
+  }
+
+  @NotNull
+  @Override
+  public Outcome<ProvisionServiceInstanceCommand.Response> tryExecute(@NotNull final ProvisionServiceInstanceCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final String serviceId = command.getServiceId();
+    if (serviceId != null) {
+      final Violation violation = this.validate(command);
+      if (violation != null) {
+        return violation.toOutcome();
+      }
+      final ServiceBroker serviceBroker = this.route(serviceId);
+      if (serviceBroker != null) {
+        return serviceBroker.tryExecute(command);
+      }
+    }
+    return Outcome.invalid(unroutable(command, serviceId, null));
+  }
+
+  @NotNull
+  @Override
+  public Outcome<UpdateServiceInstanceCommand.Response> tryExecute(@NotNull final UpdateServiceInstanceCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final String serviceId = command.getServiceId();
+    if (serviceId != null) {
+      final Violation violation = this.validate(command);
+      if (violation != null) {
+        return violation.toOutcome();
+      }
+      final ServiceBroker serviceBroker = this.route(serviceId);
+      if (serviceBroker != null) {
+        return serviceBroker.tryExecute(command);
+      }
+    }
+    return Outcome.invalid(unroutable(command, serviceId, null));
+  }
+
+  @NotNull
+  @Override
+  public Outcome<DeleteServiceInstanceCommand.Response> tryExecute(@NotNull final DeleteServiceInstanceCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final String serviceId = command.getServiceId();
+    if (serviceId != null) {
+      final ServiceBroker serviceBroker = this.route(serviceId);
+      if (serviceBroker != null) {
+        return serviceBroker.tryExecute(command);
+      }
+    }
+    return Outcome.invalid(unroutable(command, serviceId, null));
+  }
+
+  /**
+   * Returns the {@link ServiceBroker} responsible for the {@link
+   * Service} with the supplied identifier, or {@code null}, acquiring
+   * and releasing the association read lock as appropriate.
+   */
+  private final ServiceBroker route(@NotNull final String serviceId) {
+    try {
+      this.serviceBrokerAssociationLock.readLock().lock();
+      return this.getServiceBrokerForServiceId(serviceId);
+    } finally {
+      this.serviceBrokerAssociationLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns a message explaining why the supplied {@code command}
+   * could not be dispatched.
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @param serviceId the identifier of the {@link Service} it targets;
+   * may be {@code null}
+   *
+   * @param serviceBroker the {@link ServiceBroker} it was routed to;
+   * may be {@code null}
+   *
+   * @return a non-{@code null} message
+   */
+  @NotNull
+  private static final String unroutable(@NotNull final AbstractCommand command, final String serviceId, final ServiceBroker serviceBroker) {
+    if (serviceId == null) {
+      return "No service was named by " + command;
+    } else if (serviceBroker == null) {
+      return "No service broker offers service " + serviceId;
+    } else {
+      return "No response was produced for " + command;
+    }
+  }
+
+  /**
+   * Checks the supplied {@link ProvisionServiceInstanceCommand}
+   * against the plan the targeted {@link Service} offers and the
+   * plan's schema.
+   *
+   * @param command the {@link ProvisionServiceInstanceCommand} to
+   * validate; must not be {@code null}
+   *
+   * @return a {@link Violation} if the supplied {@code command} is
+   * bound to fail, or {@code null}
+   *
+   * @see #getCatalog()
+   */
+  private final Violation validate(@NotNull final ProvisionServiceInstanceCommand command) {
+    final String serviceId = command.getServiceId();
+    final String planId = command.getPlanId();
+    final Map<String, PlanRules> planRulesByPlanId = this.getPlanRules(serviceId);
+    if (planRulesByPlanId == null || planId == null) {
+      return null;
+    }
+    final PlanRules planRules = planRulesByPlanId.get(planId);
+    if (planRules == null) {
+      return Violation.noSuchPlan(serviceId, planId);
+    }
+    return planRules.validateParameters(planRules.provisionParameters, command.getParameters());
+  }
+
+  /**
+   * Checks the supplied {@link UpdateServiceInstanceCommand} against
+   * the plan it names, which the targeted {@link Service} must offer,
+   * against the {@link Service}'s {@linkplain
+   * Service#isPlanUpdatable() willingness} to change plans, and
+   * against the schema of the plan it names or, if it names none, the
+   * schema of the plan its {@linkplain
+   * UpdateServiceInstanceCommand#getPreviousValues() previous values}
+   * name.
+   *
+   * <p>A plan change can only be detected, and so is only rejected,
+   * when the previous plan is known.</p>
+   *
+   * @param command the {@link UpdateServiceInstanceCommand} to
+   * validate; must not be {@code null}
+   *
+   * @return a {@link Violation} if the supplied {@code command} is
+   * bound to fail, or {@code null}
+   *
+   * @see #getCatalog()
+   */
+  private final Violation validate(@NotNull final UpdateServiceInstanceCommand command) {
+    final String serviceId = command.getServiceId();
+    final Map<String, PlanRules> planRulesByPlanId = this.getPlanRules(serviceId);
+    if (planRulesByPlanId == null) {
+      return null;
+    }
+    final String planId = command.getPlanId();
+    final UpdateServiceInstanceCommand.PreviousValues previousValues = command.getPreviousValues();
+    final String previousPlanId = previousValues == null ? null : previousValues.getPlanId();
+    final PlanRules planRules;
+    if (planId == null) {
+      planRules = previousPlanId == null ? null : planRulesByPlanId.get(previousPlanId);
+    } else {
+      planRules = planRulesByPlanId.get(planId);
+      if (planRules == null) {
+        return Violation.noSuchPlan(serviceId, planId);
+      }
+      if (!planRules.planUpdatable && previousPlanId != null && !planId.equals(previousPlanId)) {
+        return new Violation(false, "Service " + serviceId + " does not support changing plans");
+      }
+    }
+    return planRules == null ? null : planRules.validateParameters(planRules.updateParameters, command.getParameters());
+  }
+
+  /**
+   * Checks the supplied {@link ProvisionBindingCommand} against the
+   * plan the targeted {@link Service} offers, that plan's
+   * bindability, and the plan's schema.
+   *
+   * @param command the {@link ProvisionBindingCommand} to validate;
+   * must not be {@code null}
+   *
+   * @return a {@link Violation}, which will be {@linkplain
+   * Violation#unbindable unbindable} if the plan is not bindable, if
+   * the supplied {@code command} is bound to fail, or {@code null}
+   *
+   * @see #getCatalog()
+   */
+  private final Violation validate(@NotNull final ProvisionBindingCommand command) {
+    final String serviceId = command.getServiceId();
+    final String planId = command.getPlanId();
+    final Map<String, PlanRules> planRulesByPlanId = this.getPlanRules(serviceId);
+    if (planRulesByPlanId == null || planId == null) {
+      return null;
+    }
+    final PlanRules planRules = planRulesByPlanId.get(planId);
+    if (planRules == null) {
+      return Violation.noSuchPlan(serviceId, planId);
+    }
+    if (!planRules.bindable) {
+      return new Violation(true, "Plan " + planId + " is not bindable");
+    }
+    return planRules.validateParameters(planRules.bindParameters, command.getParameters());
+  }
+
+  /**
+   * Returns the {@link PlanRules} for the plans of the {@link
+   * Service} identified by the supplied {@code serviceId}, indexed by
+   * plan identifier, or {@code null} if there are none.
+   *
+   * <p>Unknown services yield {@code null}; they are rejected at
+   * dispatch.</p>
+   *
+   * @param serviceId the identifier of a {@link Service}; may be
+   * {@code null}
+   *
+   * @return the {@link PlanRules} for the identified {@link
+   * Service}'s plans, or {@code null}
+   */
+  private final Map<String, PlanRules> getPlanRules(final String serviceId) {
+    final CatalogRules catalogRules = this.catalogRules;
+    if (catalogRules == null || serviceId == null) {
+      return null;
+    }
+    return catalogRules.planRules.get(serviceId);
+  }
+
   /**
    * Invokes the {@link System#identityHashCode(Object)} method with
    * {@code this} as its argument and returns the result.
@@ -841,4 +1396,180 @@ public class CompositeServiceBroker extends ServiceBroker {
     return this == other;
   }
 
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * What a {@link CompositeServiceBroker} needs to know about a
+   * {@link Catalog.Service.Plan} in order to reject commands that
+   * target it before they are dispatched, flattened out of the plan
+   * and its {@link Service} so that it can be consulted in constant
+   * time.
+   */
+  private static final class PlanRules {
+
+    private final boolean bindable;
+
+    private final boolean planUpdatable;
+
+    private final Catalog.Service.Plan.Schema.InputParameters provisionParameters;
+
+    private final Catalog.Service.Plan.Schema.InputParameters updateParameters;
+
+    private final Catalog.Service.Plan.Schema.InputParameters bindParameters;
+
+    private PlanRules(@NotNull final Service service, @NotNull final Catalog.Service.Plan plan) {
+      super();
+      final Boolean bindable = plan.getBindable();
+      this.bindable = bindable == null ? service.isBindable() : bindable.booleanValue();
+      this.planUpdatable = service.isPlanUpdatable();
+      final Catalog.Service.Plan.Schema schemas = plan.getSchemas();
+      final Catalog.Service.Plan.Schema.ServiceInstance serviceInstance = schemas == null ? null : schemas.getServiceInstance();
+      final Catalog.Service.Plan.Schema.ServiceBinding serviceBinding = schemas == null ? null : schemas.getServiceBinding();
+      this.provisionParameters = serviceInstance == null ? null : serviceInstance.getCreate();
+      this.updateParameters = serviceInstance == null ? null : serviceInstance.getUpdate();
+      this.bindParameters = serviceBinding == null ? null : serviceBinding.getCreate();
+    }
+
+    /**
+     * Validates the supplied {@code parameters} against the schema
+     * described by the supplied {@link
+     * Catalog.Service.Plan.Schema.InputParameters}, which is compiled
+     * once per {@link Catalog}, not once per command.
+     *
+     * <p>Absent {@code parameters} are validated as an empty
+     * object.</p>
+     *
+     * @return a {@link Violation} if the supplied {@code parameters}
+     * do not conform, or {@code null}
+     *
+     * @see Catalog.Service.Plan.Schema.InputParameters#getParameterSchema()
+     */
+    private final Violation validateParameters(final Catalog.Service.Plan.Schema.InputParameters inputParameters,
+                                               final Map<? extends String, ?> parameters) {
+      if (inputParameters != null) {
+        final ParameterSchema parameterSchema = inputParameters.getParameterSchema();
+        if (!parameterSchema.acceptsAll()) {
+          final String violation = parameterSchema.validate(parameters == null ? Collections.emptyMap() : parameters);
+          if (violation != null) {
+            return new Violation(false, "Invalid parameters: " + violation);
+          }
+        }
+      }
+      return null;
+    }
+
+  }
+
+  /**
+   * Why a {@link CompositeServiceBroker} rejected a command before
+   * dispatching it.
+   *
+   * <p>Validation produces these rather than throwing, so that
+   * rejections cost no stack trace; {@code execute} methods turn them
+   * into exceptions and {@code tryExecute} methods into {@link
+   * Outcome}s.</p>
+   */
+  private static final class Violation {
+
+    /**
+     * Whether the command was rejected because it asked for a
+     * binding to a plan that is not bindable.
+     */
+    private final boolean unbindable;
+
+    @NotNull
+    private final String message;
+
+    private Violation(final boolean unbindable, @NotNull final String message) {
+      super();
+      this.unbindable = unbindable;
+      this.message = message;
+    }
+
+    @NotNull
+    private final <R extends AbstractResponse> Outcome<R> toOutcome() {
+      return this.unbindable ? Outcome.unbindable(this.message) : Outcome.invalid(this.message);
+    }
+
+    @NotNull
+    private final InvalidServiceBrokerCommandException toException(@NotNull final AbstractCommand command) {
+      if (this.unbindable && command instanceof ProvisionBindingCommand) {
+        return new UnbindablePlanException(this.message, (ProvisionBindingCommand)command);
+      }
+      return new InvalidServiceBrokerCommandException(this.message, command);
+    }
+
+    @NotNull
+    private static final Violation noSuchPlan(final String serviceId, final String planId) {
+      return new Violation(false, "Service " + serviceId + " has no plan " + planId);
+    }
+
+  }
+
+  /**
+   * A {@link Catalog} together with {@link PlanRules} for each of its
+   * {@link Catalog.Service.Plan}s, indexed by {@linkplain
+   * Service#getId() service identifier} and then by {@linkplain
+   * Catalog.Service.Plan#getId() plan identifier}.
+   *
+   * <p>The two are held together so that they can be replaced
+   * atomically.</p>
+   */
+  private static final class CatalogRules {
+
+    @NotNull
+    private final Catalog catalog;
+
+    @NotNull
+    private final Map<String, Map<String, PlanRules>> planRules;
+
+    /**
+     * Creates a new {@link CatalogRules} for the supplied {@link
+     * Catalog}, reusing the {@link PlanRules} of those {@link
+     * Service}s that the supplied {@code previous} {@link
+     * CatalogRules} already covers and that have not changed.
+     *
+     * @param catalog the {@link Catalog}; must not be {@code null}
+     *
+     * @param previous the {@link CatalogRules} for an earlier {@link
+     * Catalog}; may be {@code null}
+     *
+     * @see CatalogDelta
+     */
+    private CatalogRules(@NotNull final Catalog catalog, final CatalogRules previous) {
+      super();
+      this.catalog = catalog;
+      final CatalogDelta delta = CatalogDelta.between(previous == null ? null : previous.catalog, catalog);
+      final Map<String, Map<String, PlanRules>> planRules = previous == null ? new HashMap<>() : new HashMap<>(previous.planRules);
+      for (final Service service : delta.getRemovedServices()) {
+        planRules.remove(service.getId());
+      }
+      for (final Service service : delta.getAddedServices()) {
+        planRules.put(service.getId(), index(service));
+      }
+      for (final CatalogDelta.ServiceDelta serviceDelta : delta.getModifiedServices()) {
+        final Service service = serviceDelta.getCurrent();
+        planRules.put(service.getId(), index(service));
+      }
+      this.planRules = planRules;
+    }
+
+    @NotNull
+    private static final Map<String, PlanRules> index(@NotNull final Service service) {
+      final Map<String, PlanRules> returnValue = new HashMap<>();
+      for (final Catalog.Service.Plan plan : service.getPlans()) {
+        if (plan != null) {
+          returnValue.put(plan.getId(), new PlanRules(service, plan));
+        }
+      }
+      return returnValue;
+    }
+
+  }
+
 }
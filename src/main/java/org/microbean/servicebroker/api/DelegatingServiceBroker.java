@@ -0,0 +1,194 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api;
+
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+import org.microbean.servicebroker.api.command.AbstractServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+/**
+ * A {@link ServiceBroker} that forwards every method invocation to
+ * another {@link ServiceBroker}.
+ *
+ * <p>This class is intended to be subclassed by decorators that
+ * observe or alter the behavior of an existing {@link
+ * ServiceBroker}.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #getDelegate()
+ */
+public class DelegatingServiceBroker extends ServiceBroker {
+
+  /**
+   * The {@link ServiceBroker} to which all method invocations are
+   * forwarded.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #getDelegate()
+   */
+  @NotNull
+  private final ServiceBroker delegate;
+
+  /**
+   * Creates a new {@link DelegatingServiceBroker}.
+   *
+   * @param delegate the {@link ServiceBroker} to which all method
+   * invocations will be forwarded; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code delegate} is {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code delegate} is this
+   * very {@link DelegatingServiceBroker}
+   */
+  public DelegatingServiceBroker(@NotNull final ServiceBroker delegate) {
+    super();
+    Objects.requireNonNull(delegate, () -> "delegate must not be null");
+    if (delegate == this) {
+      throw new IllegalArgumentException("delegate == this");
+    }
+    this.delegate = delegate;
+  }
+
+  /**
+   * Returns the {@link ServiceBroker} to which all method invocations
+   * are forwarded.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link ServiceBroker} to which all
+   * method invocations are forwarded
+   */
+  @NotNull
+  public final ServiceBroker getDelegate() {
+    return this.delegate;
+  }
+
+  @NotNull
+  @Override
+  public LastOperation getLastOperation(@NotNull final LastOperationQuery lastOperationQuery) throws ServiceBrokerException {
+    return this.delegate.getLastOperation(lastOperationQuery);
+  }
+
+  @Override
+  public boolean isSupportedServiceId(final String serviceId) throws ServiceBrokerException {
+    return this.delegate.isSupportedServiceId(serviceId);
+  }
+
+  @Override
+  public boolean isSupportedPlanId(final String serviceId, final String planId) throws ServiceBrokerException {
+    return this.delegate.isSupportedPlanId(serviceId, planId);
+  }
+
+  @Override
+  public boolean isLive() throws ServiceBrokerException {
+    return this.delegate.isLive();
+  }
+
+  @Override
+  public boolean isReady() throws ServiceBrokerException {
+    return this.delegate.isReady();
+  }
+
+  @Override
+  public boolean isPlanBindable(final String serviceId, final String planId) throws ServiceBrokerException {
+    return this.delegate.isPlanBindable(serviceId, planId);
+  }
+
+  @Override
+  public boolean isAsynchronousOnly() {
+    return this.delegate.isAsynchronousOnly();
+  }
+
+  @NotNull
+  @Override
+  public Catalog getCatalog() throws ServiceBrokerException {
+    return this.delegate.getCatalog();
+  }
+
+  @NotNull
+  @Override
+  public ProvisionBindingCommand.Response execute(@NotNull final ProvisionBindingCommand command) throws ServiceBrokerException {
+    return this.delegate.execute(command);
+  }
+
+  @NotNull
+  @Override
+  public DeleteBindingCommand.Response execute(@NotNull final DeleteBindingCommand command) throws ServiceBrokerException {
+    return this.delegate.execute(command);
+  }
+
+  @NotNull
+  @Override
+  public ProvisionServiceInstanceCommand.Response execute(@NotNull final ProvisionServiceInstanceCommand command) throws ServiceBrokerException {
+    return this.delegate.execute(command);
+  }
+
+  @NotNull
+  @Override
+  public UpdateServiceInstanceCommand.Response execute(@NotNull final UpdateServiceInstanceCommand command) throws ServiceBrokerException {
+    return this.delegate.execute(command);
+  }
+
+  @NotNull
+  @Override
+  public DeleteServiceInstanceCommand.Response execute(@NotNull final DeleteServiceInstanceCommand command) throws ServiceBrokerException {
+    return this.delegate.execute(command);
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@code command}, to which
+   * the {@linkplain #getDelegate() delegate} responded with the
+   * supplied {@code operation}, will complete asynchronously.
+   *
+   * <p>A command completes asynchronously only if it {@linkplain
+   * AbstractServiceInstanceCommand#getAcceptsIncomplete() accepts
+   * incomplete results} and either its response names an operation
+   * or the delegate is {@linkplain #isAsynchronousOnly() only
+   * asynchronous}.</p>
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @param operation the operation named by the response to {@code
+   * command}; may be {@code null}
+   *
+   * @return {@code true} if {@code command} will complete
+   * asynchronously
+   *
+   * @exception NullPointerException if {@code command} is {@code
+   * null}
+   */
+  protected final boolean isAsynchronous(@NotNull final AbstractServiceInstanceCommand command, final String operation) {
+    return command.getAcceptsIncomplete() && (operation != null || this.isAsynchronousOnly());
+  }
+
+}
@@ -0,0 +1,234 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.binary.BinaryCodec;
+import org.microbean.servicebroker.api.binary.BinaryReader;
+import org.microbean.servicebroker.api.binary.BinaryWriter;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+
+/**
+ * A {@link Catalog} together with the names of the {@link
+ * ServiceBroker}s responsible for each of its {@link
+ * Catalog.Service}s, as saved to and restored from a file by a {@link
+ * CompositeServiceBroker}.
+ *
+ * <p>The file consists of the {@linkplain #MAGIC magic number}, a
+ * {@linkplain #VERSION version} byte, the {@linkplain
+ * Catalog#getFingerprint() fingerprint} of the {@link Catalog}, and a
+ * message in the format written by a {@link BinaryWriter}.  The
+ * message holds the number of routes, each route as a {@linkplain
+ * Catalog.Service#getId() service identifier} and the name of a
+ * {@link ServiceBroker}, and finally the {@link Catalog} as written
+ * by {@link BinaryCodec}.  Because the message's string table holds
+ * each distinct string once, a {@link ServiceBroker} name shared by
+ * many routes, or a service identifier that appears both in a route
+ * and in the {@link Catalog}, is stored only once.</p>
+ *
+ * @see CompositeServiceBroker#writeSnapshot(Path, java.util.function.Function)
+ *
+ * @see CompositeServiceBroker#restoreSnapshot(Path, java.util.function.Function)
+ */
+final class RoutingSnapshot {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final int MAGIC = 0x4F534253; // "OSBS"
+
+  private static final byte VERSION = 2;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  @NotNull
+  private final Catalog catalog;
+
+  @NotNull
+  private final Map<String, String> serviceBrokerNamesByServiceId;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  RoutingSnapshot(@NotNull final Catalog catalog, @NotNull final Map<String, String> serviceBrokerNamesByServiceId) {
+    super();
+    Objects.requireNonNull(catalog, () -> "catalog must not be null");
+    Objects.requireNonNull(serviceBrokerNamesByServiceId, () -> "serviceBrokerNamesByServiceId must not be null");
+    this.catalog = catalog;
+    this.serviceBrokerNamesByServiceId = Collections.unmodifiableMap(serviceBrokerNamesByServiceId);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @NotNull
+  final Catalog getCatalog() {
+    return this.catalog;
+  }
+
+  @NotNull
+  final Map<String, String> getServiceBrokerNamesByServiceId() {
+    return this.serviceBrokerNamesByServiceId;
+  }
+
+  /**
+   * Writes this {@link RoutingSnapshot} to a temporary file in the
+   * same directory as the supplied {@link Path} and then atomically
+   * moves it into place, so that a concurrent or interrupted write
+   * never leaves a partial snapshot behind.
+   *
+   * @param path the {@link Path} to write to; must not be {@code
+   * null}
+   *
+   * @exception NullPointerException if {@code path} is {@code null}
+   *
+   * @exception IOException if the file could not be written
+   */
+  final void write(@NotNull final Path path) throws IOException {
+    Objects.requireNonNull(path, () -> "path must not be null");
+    final Path absolutePath = path.toAbsolutePath();
+    final Path temporaryFile = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+    try {
+      try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+        this.write(out);
+      }
+      Files.move(temporaryFile, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  private final void write(final DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.write(this.catalog.getFingerprint().toByteArray());
+
+    final BinaryWriter writer = new BinaryWriter();
+    writer.writeVarLong(this.serviceBrokerNamesByServiceId.size());
+    for (final Map.Entry<String, String> entry : this.serviceBrokerNamesByServiceId.entrySet()) {
+      writer.writeString(entry.getKey()).writeString(entry.getValue());
+    }
+    BinaryCodec.write(writer, this.catalog);
+    final ByteBuffer message = writer.endMessage();
+    out.write(message.array(), message.arrayOffset() + message.position(), message.remaining());
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Maps the file at the supplied {@link Path} into memory and reads
+   * a {@link RoutingSnapshot} from it.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param path the {@link Path} to read; must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link RoutingSnapshot}
+   *
+   * @exception NullPointerException if {@code path} is {@code null}
+   *
+   * @exception IOException if the file could not be read, is not a
+   * snapshot, or is truncated or corrupt
+   */
+  @NotNull
+  static final RoutingSnapshot read(@NotNull final Path path) throws IOException {
+    Objects.requireNonNull(path, () -> "path must not be null");
+    final MappedByteBuffer buffer;
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+    }
+    try {
+      final int magic = buffer.getInt();
+      if (magic != MAGIC) {
+        throw new IOException("Not a snapshot: " + Integer.toHexString(magic));
+      }
+      final byte version = buffer.get();
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot version: " + version);
+      }
+      final byte[] fingerprint = new byte[32];
+      buffer.get(fingerprint);
+
+      final BinaryReader reader = new BinaryReader();
+      if (!reader.beginMessage(buffer)) {
+        throw new IOException("Truncated snapshot");
+      }
+      final long routeCount = reader.readVarLong();
+      if (routeCount < 0L || routeCount > buffer.remaining()) {
+        throw new IOException("Invalid route count: " + routeCount);
+      }
+      final Map<String, String> serviceBrokerNamesByServiceId = new HashMap<>();
+      for (long i = 0L; i < routeCount; i++) {
+        final String serviceId = reader.readString();
+        final String name = reader.readString();
+        if (serviceId == null || name == null) {
+          throw new IOException("Invalid route: " + serviceId + " -> " + name);
+        }
+        serviceBrokerNamesByServiceId.put(serviceId, name);
+      }
+      final Catalog catalog = BinaryCodec.read(reader, Catalog.class);
+      reader.endMessage();
+      if (!Arrays.equals(fingerprint, catalog.getFingerprint().toByteArray())) {
+        throw new IOException("Snapshot catalog does not match its fingerprint");
+      }
+      return new RoutingSnapshot(catalog, serviceBrokerNamesByServiceId);
+    } catch (final BufferUnderflowException | IllegalArgumentException exception) {
+      throw new IOException("Truncated snapshot", exception);
+    }
+  }
+
+}
@@ -23,8 +23,12 @@ import org.microbean.servicebroker.api.query.LastOperationQuery;
 import org.microbean.servicebroker.api.query.state.Catalog;
 import org.microbean.servicebroker.api.query.state.LastOperation;
 
+import org.microbean.servicebroker.api.command.AbstractCommand;
+import org.microbean.servicebroker.api.command.AbstractCommandException;
+import org.microbean.servicebroker.api.command.AbstractResponse;
 import org.microbean.servicebroker.api.command.DeleteBindingCommand;
 import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.Outcome;
 import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
 import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
 import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
@@ -76,4 +80,166 @@ public abstract class ServiceBroker {
   @NotNull
   public abstract DeleteServiceInstanceCommand.Response execute(@NotNull final DeleteServiceInstanceCommand command) throws ServiceBrokerException;
 
+  /**
+   * Executes the supplied {@link ProvisionBindingCommand} and returns its {@link
+   * Outcome}, reporting outcomes that are part of the normal course
+   * of events, such as an identical binding already existing, as
+   * values rather than as exceptions.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The default implementation adapts the {@link
+   * #execute(ProvisionBindingCommand)} method, {@linkplain
+   * Outcome#of(ServiceBrokerException, Class) translating} the
+   * exceptions it throws for such outcomes, so that existing brokers
+   * work unchanged.  Brokers on hot paths should override it to
+   * return those outcomes directly, and may then implement {@link
+   * #execute(ProvisionBindingCommand)} in terms of it with {@link
+   * Outcome#getResponseOrThrow(AbstractCommand)}.  A {@code null}
+   * response, which {@link #execute(ProvisionBindingCommand)} must
+   * not return, is reported as an outcome of {@link
+   * Outcome.Kind#INVALID} rather than as a success.  The other {@code
+   * tryExecute} methods behave in the same way.</p>
+   *
+   * @param command the command to execute; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Outcome}
+   *
+   * @exception ServiceBrokerException if the command failed for a
+   * reason that no {@link Outcome.Kind} covers
+   *
+   * @see Outcome
+   */
+  @NotNull
+  public Outcome<ProvisionBindingCommand.Response> tryExecute(@NotNull final ProvisionBindingCommand command) throws ServiceBrokerException {
+    try {
+      return outcome(this.execute(command), command);
+    } catch (final AbstractCommandException exception) {
+      final Outcome<ProvisionBindingCommand.Response> outcome = Outcome.of(exception, ProvisionBindingCommand.Response.class);
+      if (outcome == null) {
+        throw exception;
+      }
+      return outcome;
+    }
+  }
+
+  /**
+   * Executes the supplied {@link DeleteBindingCommand} and returns its {@link
+   * Outcome}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param command the command to execute; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Outcome}
+   *
+   * @exception ServiceBrokerException if the command failed for a
+   * reason that no {@link Outcome.Kind} covers
+   *
+   * @see #tryExecute(ProvisionBindingCommand)
+   */
+  @NotNull
+  public Outcome<DeleteBindingCommand.Response> tryExecute(@NotNull final DeleteBindingCommand command) throws ServiceBrokerException {
+    try {
+      return outcome(this.execute(command), command);
+    } catch (final AbstractCommandException exception) {
+      final Outcome<DeleteBindingCommand.Response> outcome = Outcome.of(exception, DeleteBindingCommand.Response.class);
+      if (outcome == null) {
+        throw exception;
+      }
+      return outcome;
+    }
+  }
+
+  /**
+   * Executes the supplied {@link ProvisionServiceInstanceCommand} and returns its {@link
+   * Outcome}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param command the command to execute; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Outcome}
+   *
+   * @exception ServiceBrokerException if the command failed for a
+   * reason that no {@link Outcome.Kind} covers
+   *
+   * @see #tryExecute(ProvisionBindingCommand)
+   */
+  @NotNull
+  public Outcome<ProvisionServiceInstanceCommand.Response> tryExecute(@NotNull final ProvisionServiceInstanceCommand command) throws ServiceBrokerException {
+    try {
+      return outcome(this.execute(command), command);
+    } catch (final AbstractCommandException exception) {
+      final Outcome<ProvisionServiceInstanceCommand.Response> outcome = Outcome.of(exception, ProvisionServiceInstanceCommand.Response.class);
+      if (outcome == null) {
+        throw exception;
+      }
+      return outcome;
+    }
+  }
+
+  /**
+   * Executes the supplied {@link UpdateServiceInstanceCommand} and returns its {@link
+   * Outcome}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param command the command to execute; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Outcome}
+   *
+   * @exception ServiceBrokerException if the command failed for a
+   * reason that no {@link Outcome.Kind} covers
+   *
+   * @see #tryExecute(ProvisionBindingCommand)
+   */
+  @NotNull
+  public Outcome<UpdateServiceInstanceCommand.Response> tryExecute(@NotNull final UpdateServiceInstanceCommand command) throws ServiceBrokerException {
+    try {
+      return outcome(this.execute(command), command);
+    } catch (final AbstractCommandException exception) {
+      final Outcome<UpdateServiceInstanceCommand.Response> outcome = Outcome.of(exception, UpdateServiceInstanceCommand.Response.class);
+      if (outcome == null) {
+        throw exception;
+      }
+      return outcome;
+    }
+  }
+
+  /**
+   * Executes the supplied {@link DeleteServiceInstanceCommand} and returns its {@link
+   * Outcome}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param command the command to execute; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link Outcome}
+   *
+   * @exception ServiceBrokerException if the command failed for a
+   * reason that no {@link Outcome.Kind} covers
+   *
+   * @see #tryExecute(ProvisionBindingCommand)
+   */
+  @NotNull
+  public Outcome<DeleteServiceInstanceCommand.Response> tryExecute(@NotNull final DeleteServiceInstanceCommand command) throws ServiceBrokerException {
+    try {
+      return outcome(this.execute(command), command);
+    } catch (final AbstractCommandException exception) {
+      final Outcome<DeleteServiceInstanceCommand.Response> outcome = Outcome.of(exception, DeleteServiceInstanceCommand.Response.class);
+      if (outcome == null) {
+        throw exception;
+      }
+      return outcome;
+    }
+  }
+
+  private static final <R extends AbstractResponse> Outcome<R> outcome(final R response, final AbstractCommand command) {
+    if (response == null) {
+      return Outcome.invalid("No response was produced for " + command);
+    }
+    return Outcome.success(response);
+  }
+
 }
@@ -22,6 +22,19 @@ public class ServiceBrokerException extends Exception {
 
   private static final long serialVersionUID = 1L;
 
+  /**
+   * Whether {@linkplain #isExpectedOutcome() expected outcomes} skip
+   * capturing their stack traces.
+   *
+   * <p>This is {@code true} only if the {@code
+   * org.microbean.servicebroker.api.stacklessExceptions} system
+   * property is {@code true} when this class is initialized.</p>
+   *
+   * @see #fillInStackTrace()
+   */
+  private static final boolean STACKLESS_EXPECTED_OUTCOMES =
+    Boolean.getBoolean("org.microbean.servicebroker.api.stacklessExceptions");
+
   public ServiceBrokerException() {
     super();
   }
@@ -38,6 +51,48 @@ public class ServiceBrokerException extends Exception {
     super(message, cause);
   }
 
+  /**
+   * Returns {@code true} if this exception represents an outcome that
+   * occurs in the normal course of events, such as a retried request
+   * finding that the service instance it would create already exists,
+   * rather than a failure that someone may need to diagnose.
+   *
+   * <p>If the {@code org.microbean.servicebroker.api.stacklessExceptions}
+   * system property is {@code true}, exceptions for which this method
+   * returns {@code true} do not capture a stack trace, which is by
+   * far the most expensive part of creating one.</p>
+   *
+   * <p>The default implementation returns {@code false}.  Overrides
+   * are called while this exception is being constructed, and so must
+   * not depend on the state of the exception.</p>
+   *
+   * @return {@code true} if this exception represents an expected
+   * outcome; {@code false} otherwise
+   *
+   * @see #fillInStackTrace()
+   */
+  protected boolean isExpectedOutcome() {
+    return false;
+  }
+
+  /**
+   * Captures the current stack trace, unless this exception
+   * {@linkplain #isExpectedOutcome() represents an expected outcome}
+   * and the {@code org.microbean.servicebroker.api.stacklessExceptions}
+   * system property was {@code true} when this class was initialized,
+   * in which case this method does nothing and {@link
+   * #getStackTrace()} will return an empty array.
+   *
+   * @return this exception
+   */
+  @Override
+  public Throwable fillInStackTrace() {
+    if (STACKLESS_EXPECTED_OUTCOMES && this.isExpectedOutcome()) {
+      return this;
+    }
+    return super.fillInStackTrace();
+  }
+
   public <T extends Throwable> T getRootCause(final Class<T> type) {
     Objects.requireNonNull(type, () -> "type must not be null");
     Throwable returnValue = this;
@@ -0,0 +1,673 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.binary;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.AbstractStatefulObject;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.DashboardClient;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan.Schema;
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+/**
+ * Reads and writes the commands, queries, responses and states in
+ * this project as objects in the {@linkplain BinaryFormat binary
+ * format} understood by {@link BinaryWriter} and {@link
+ * BinaryReader}.
+ *
+ * <p>The supported types are the five concrete commands and their
+ * {@code Response}s, {@link LastOperationQuery}, {@link
+ * LastOperation} and {@link Catalog}.  An instance of a subclass of
+ * one of these is written as that type.</p>
+ *
+ * <p>Every object is written with a version.  A later version of
+ * this class may add fields to the end of an object; this version
+ * skips them when reading, and would use defaults for them if they
+ * were missing.  Properties set with {@link
+ * AbstractStatefulObject#setProperty(String, Object)} are not
+ * written.</p>
+ *
+ * @see BinaryWriter
+ *
+ * @see BinaryReader
+ */
+public final class BinaryCodec {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final int VERSION = 1;
+
+  private static final int PROVISION_SERVICE_INSTANCE_COMMAND = 1;
+
+  private static final int PROVISION_SERVICE_INSTANCE_RESPONSE = 2;
+
+  private static final int UPDATE_SERVICE_INSTANCE_COMMAND = 3;
+
+  private static final int UPDATE_SERVICE_INSTANCE_RESPONSE = 4;
+
+  private static final int DELETE_SERVICE_INSTANCE_COMMAND = 5;
+
+  private static final int DELETE_SERVICE_INSTANCE_RESPONSE = 6;
+
+  private static final int PROVISION_BINDING_COMMAND = 7;
+
+  private static final int PROVISION_BINDING_RESPONSE = 8;
+
+  private static final int DELETE_BINDING_COMMAND = 9;
+
+  private static final int DELETE_BINDING_RESPONSE = 10;
+
+  private static final int LAST_OPERATION_QUERY = 11;
+
+  private static final int LAST_OPERATION = 12;
+
+  private static final int CATALOG = 13;
+
+  private static final int SERVICE = 14;
+
+  private static final int PLAN = 15;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private BinaryCodec() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a new {@link ByteBuffer}, ready for reading, containing a
+   * message that consists of the supplied object alone.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param object the object to encode; must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link ByteBuffer}
+   *
+   * @exception NullPointerException if {@code object} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code object} is not of a
+   * supported type
+   *
+   * @see #decode(ByteBuffer, Class)
+   */
+  @NotNull
+  public static final ByteBuffer encode(@NotNull final AbstractStatefulObject object) {
+    final BinaryWriter writer = new BinaryWriter();
+    write(writer, object);
+    return writer.endMessage();
+  }
+
+  /**
+   * Writes a message that consists of the supplied object alone into
+   * the supplied {@link ByteBuffer}.
+   *
+   * @param object the object to encode; must not be {@code null}
+   *
+   * @param target the {@link ByteBuffer} to write to; must not be
+   * {@code null}
+   *
+   * @return the number of bytes written
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code object} is not of a
+   * supported type
+   *
+   * @exception BufferOverflowException if {@code target} does not
+   * have enough room for the message, in which case nothing has been
+   * written to it
+   *
+   * @see BinaryWriter#endMessage(ByteBuffer)
+   */
+  public static final int encode(@NotNull final AbstractStatefulObject object, @NotNull final ByteBuffer target) {
+    final BinaryWriter writer = new BinaryWriter();
+    write(writer, object);
+    return writer.endMessage(target);
+  }
+
+  /**
+   * Reads a message that consists of a single object of the supplied
+   * type from the supplied {@link ByteBuffer}, leaving its position
+   * just past the message.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type of object
+   *
+   * @param source the {@link ByteBuffer} to read from; must not be
+   * {@code null}
+   *
+   * @param type the type of object expected; must not be {@code null}
+   *
+   * @return a new, non-{@code null} object
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception MalformedBinaryException if {@code source} does not
+   * hold a complete, well-formed message, or the object it holds is
+   * not of the expected type
+   *
+   * @see #encode(AbstractStatefulObject)
+   */
+  @NotNull
+  public static final <T extends AbstractStatefulObject> T decode(@NotNull final ByteBuffer source, @NotNull final Class<T> type)
+    throws MalformedBinaryException {
+    Objects.requireNonNull(type, () -> "type must not be null");
+    final BinaryReader reader = new BinaryReader();
+    if (!reader.beginMessage(source)) {
+      throw new MalformedBinaryException("Truncated message", source.position());
+    }
+    final T returnValue = read(reader, type);
+    reader.endMessage();
+    return returnValue;
+  }
+
+  /**
+   * Writes the supplied object as an object field to the supplied
+   * {@link BinaryWriter}.
+   *
+   * @param writer the {@link BinaryWriter} to write to; must not be
+   * {@code null}
+   *
+   * @param object the object to write; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code object} is not of a
+   * supported type
+   *
+   * @see #read(BinaryReader)
+   */
+  public static final void write(@NotNull final BinaryWriter writer, @NotNull final AbstractStatefulObject object) {
+    Objects.requireNonNull(writer, () -> "writer must not be null");
+    Objects.requireNonNull(object, () -> "object must not be null");
+    if (object instanceof ProvisionServiceInstanceCommand) {
+      final ProvisionServiceInstanceCommand command = (ProvisionServiceInstanceCommand)object;
+      writer.beginObject(PROVISION_SERVICE_INSTANCE_COMMAND, VERSION)
+        .writeString(command.getInstanceId())
+        .writeString(command.getServiceId())
+        .writeString(command.getPlanId())
+        .writeValue(command.getContext())
+        .writeBoolean(command.getAcceptsIncomplete())
+        .writeString(command.getOrganizationGuid())
+        .writeString(command.getSpaceGuid())
+        .writeValue(command.getParameters());
+    } else if (object instanceof UpdateServiceInstanceCommand) {
+      final UpdateServiceInstanceCommand command = (UpdateServiceInstanceCommand)object;
+      writer.beginObject(UPDATE_SERVICE_INSTANCE_COMMAND, VERSION)
+        .writeString(command.getInstanceId())
+        .writeValue(command.getContext())
+        .writeString(command.getServiceId())
+        .writeString(command.getPlanId())
+        .writeValue(command.getParameters())
+        .writeBoolean(command.getAcceptsIncomplete());
+      final UpdateServiceInstanceCommand.PreviousValues previousValues = command.getPreviousValues();
+      writer.writeBoolean(previousValues != null);
+      if (previousValues != null) {
+        @SuppressWarnings("deprecation")
+        final String previousServiceId = previousValues.getServiceId();
+        writer.writeString(previousServiceId)
+          .writeString(previousValues.getPlanId())
+          .writeString(previousValues.getOrganizationId())
+          .writeString(previousValues.getSpaceId());
+      }
+    } else if (object instanceof DeleteServiceInstanceCommand) {
+      final DeleteServiceInstanceCommand command = (DeleteServiceInstanceCommand)object;
+      writer.beginObject(DELETE_SERVICE_INSTANCE_COMMAND, VERSION)
+        .writeString(command.getInstanceId())
+        .writeString(command.getServiceId())
+        .writeString(command.getPlanId())
+        .writeBoolean(command.getAcceptsIncomplete());
+    } else if (object instanceof ProvisionBindingCommand) {
+      final ProvisionBindingCommand command = (ProvisionBindingCommand)object;
+      writer.beginObject(PROVISION_BINDING_COMMAND, VERSION)
+        .writeString(command.getBindingId())
+        .writeString(command.getInstanceId())
+        .writeString(command.getServiceId())
+        .writeString(command.getPlanId());
+      final ProvisionBindingCommand.BindResource bindResource = command.getBindResource();
+      writer.writeBoolean(bindResource != null);
+      if (bindResource != null) {
+        writer.writeString(bindResource.getAppGuid());
+        writeUri(writer, bindResource.getRoute());
+      }
+      writer.writeValue(command.getParameters());
+    } else if (object instanceof DeleteBindingCommand) {
+      final DeleteBindingCommand command = (DeleteBindingCommand)object;
+      writer.beginObject(DELETE_BINDING_COMMAND, VERSION)
+        .writeString(command.getBindingId())
+        .writeString(command.getInstanceId())
+        .writeString(command.getServiceId())
+        .writeString(command.getPlanId());
+    } else if (object instanceof ProvisionServiceInstanceCommand.Response) {
+      final ProvisionServiceInstanceCommand.Response response = (ProvisionServiceInstanceCommand.Response)object;
+      writer.beginObject(PROVISION_SERVICE_INSTANCE_RESPONSE, VERSION);
+      writeUri(writer, response.getDashboardUri());
+      writer.writeString(response.getOperation());
+    } else if (object instanceof UpdateServiceInstanceCommand.Response) {
+      writer.beginObject(UPDATE_SERVICE_INSTANCE_RESPONSE, VERSION)
+        .writeString(((UpdateServiceInstanceCommand.Response)object).getOperation());
+    } else if (object instanceof DeleteServiceInstanceCommand.Response) {
+      writer.beginObject(DELETE_SERVICE_INSTANCE_RESPONSE, VERSION)
+        .writeString(((DeleteServiceInstanceCommand.Response)object).getOperation());
+    } else if (object instanceof ProvisionBindingCommand.Response) {
+      final ProvisionBindingCommand.Response response = (ProvisionBindingCommand.Response)object;
+      writer.beginObject(PROVISION_BINDING_RESPONSE, VERSION).writeValue(response.getCredentials());
+      writeUri(writer, response.getSyslogDrainUri());
+      writeUri(writer, response.getRouteServiceUri());
+      writer.writeValue(response.getVolumeMounts());
+    } else if (object instanceof DeleteBindingCommand.Response) {
+      writer.beginObject(DELETE_BINDING_RESPONSE, VERSION);
+    } else if (object instanceof LastOperationQuery) {
+      final LastOperationQuery query = (LastOperationQuery)object;
+      writer.beginObject(LAST_OPERATION_QUERY, VERSION)
+        .writeString(query.getServiceId())
+        .writeString(query.getInstanceId())
+        .writeString(query.getPlanId())
+        .writeString(query.getOperationId());
+    } else if (object instanceof LastOperation) {
+      final LastOperation lastOperation = (LastOperation)object;
+      writer.beginObject(LAST_OPERATION, VERSION)
+        .writeString(lastOperation.getState().name())
+        .writeString(lastOperation.getDescription());
+    } else if (object instanceof Catalog) {
+      final Set<? extends Service> services = ((Catalog)object).getServices();
+      writer.beginObject(CATALOG, VERSION).writeVarLong(services.size());
+      for (final Service service : services) {
+        write(writer, service);
+      }
+    } else {
+      throw new IllegalArgumentException("Unsupported type: " + object.getClass().getName());
+    }
+    writer.endObject();
+  }
+
+  /**
+   * Reads an object field written by the {@link #write(BinaryWriter,
+   * AbstractStatefulObject)} method from the supplied {@link
+   * BinaryReader}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param reader the {@link BinaryReader} to read from; must not be
+   * {@code null}
+   *
+   * @return a new, non-{@code null} object
+   *
+   * @exception NullPointerException if {@code reader} is {@code null}
+   *
+   * @exception MalformedBinaryException if the object is malformed or
+   * of an unknown kind, or if it could not be constructed from the
+   * fields read
+   *
+   * @see #read(BinaryReader, Class)
+   */
+  @NotNull
+  public static final AbstractStatefulObject read(@NotNull final BinaryReader reader) throws MalformedBinaryException {
+    Objects.requireNonNull(reader, () -> "reader must not be null");
+    final int kind = reader.beginObject();
+    final AbstractStatefulObject returnValue;
+    try {
+      switch (kind) {
+      case PROVISION_SERVICE_INSTANCE_COMMAND: {
+        final String instanceId = reader.readString();
+        final String serviceId = reader.readString();
+        final String planId = reader.readString();
+        final Map<String, Object> context = reader.readMap();
+        final boolean acceptsIncomplete = reader.readBoolean();
+        final String organizationGuid = reader.readString();
+        final String spaceGuid = reader.readString();
+        final Map<String, Object> parameters = reader.readMap();
+        returnValue =
+          new ProvisionServiceInstanceCommand(instanceId, serviceId, planId, context, acceptsIncomplete, organizationGuid, spaceGuid, parameters);
+        break;
+      }
+      case UPDATE_SERVICE_INSTANCE_COMMAND: {
+        final String instanceId = reader.readString();
+        final Map<String, Object> context = reader.readMap();
+        final String serviceId = reader.readString();
+        final String planId = reader.readString();
+        final Map<String, Object> parameters = reader.readMap();
+        final boolean acceptsIncomplete = reader.readBoolean();
+        final UpdateServiceInstanceCommand.PreviousValues previousValues;
+        if (reader.readBoolean()) {
+          previousValues =
+            new UpdateServiceInstanceCommand.PreviousValues(reader.readString(), reader.readString(), reader.readString(), reader.readString());
+        } else {
+          previousValues = null;
+        }
+        returnValue = new UpdateServiceInstanceCommand(instanceId, context, serviceId, planId, parameters, acceptsIncomplete, previousValues);
+        break;
+      }
+      case DELETE_SERVICE_INSTANCE_COMMAND:
+        returnValue = new DeleteServiceInstanceCommand(reader.readString(), reader.readString(), reader.readString(), reader.readBoolean());
+        break;
+      case PROVISION_BINDING_COMMAND: {
+        final String bindingId = reader.readString();
+        final String instanceId = reader.readString();
+        final String serviceId = reader.readString();
+        final String planId = reader.readString();
+        final ProvisionBindingCommand.BindResource bindResource;
+        if (reader.readBoolean()) {
+          bindResource = new ProvisionBindingCommand.BindResource(reader.readString(), readUri(reader));
+        } else {
+          bindResource = null;
+        }
+        returnValue = new ProvisionBindingCommand(bindingId, instanceId, serviceId, planId, bindResource, reader.readMap());
+        break;
+      }
+      case DELETE_BINDING_COMMAND:
+        returnValue = new DeleteBindingCommand(reader.readString(), reader.readString(), reader.readString(), reader.readString());
+        break;
+      case PROVISION_SERVICE_INSTANCE_RESPONSE:
+        returnValue = new ProvisionServiceInstanceCommand.Response(readUri(reader), reader.readString());
+        break;
+      case UPDATE_SERVICE_INSTANCE_RESPONSE:
+        returnValue = new UpdateServiceInstanceCommand.Response(reader.readString());
+        break;
+      case DELETE_SERVICE_INSTANCE_RESPONSE:
+        final String operation = reader.readString();
+        returnValue = operation == null ? new DeleteServiceInstanceCommand.Response() : new DeleteServiceInstanceCommand.Response(operation);
+        break;
+      case PROVISION_BINDING_RESPONSE: {
+        final Map<String, Object> credentials = reader.readMap();
+        final URI syslogDrainUri = readUri(reader);
+        final URI routeServiceUri = readUri(reader);
+        final Object volumeMounts = reader.readValue();
+        Set<Map<? extends String, ?>> volumeMountSet = null;
+        if (volumeMounts instanceof Collection) {
+          volumeMountSet = new LinkedHashSet<>();
+          for (final Object volumeMount : (Collection<?>)volumeMounts) {
+            if (!(volumeMount instanceof Map)) {
+              throw new IllegalArgumentException("Invalid volume mount: " + volumeMount);
+            }
+            @SuppressWarnings("unchecked")
+            final Map<? extends String, ?> map = (Map<? extends String, ?>)volumeMount;
+            volumeMountSet.add(map);
+          }
+        }
+        returnValue = new ProvisionBindingCommand.Response(credentials, syslogDrainUri, routeServiceUri, volumeMountSet);
+        break;
+      }
+      case DELETE_BINDING_RESPONSE:
+        returnValue = new DeleteBindingCommand.Response();
+        break;
+      case LAST_OPERATION_QUERY:
+        returnValue = new LastOperationQuery(reader.readString(), reader.readString(), reader.readString(), reader.readString());
+        break;
+      case LAST_OPERATION:
+        returnValue = new LastOperation(LastOperation.State.valueOf(reader.readString()), reader.readString());
+        break;
+      case CATALOG:
+        final int count = readCount(reader);
+        final Set<Service> services = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+          services.add(readService(reader));
+        }
+        returnValue = services.isEmpty() ? new Catalog() : new Catalog(services);
+        break;
+      default:
+        throw reader.formatError("Unknown kind: " + kind);
+      }
+    } catch (final RuntimeException runtimeException) {
+      final MalformedBinaryException malformedBinaryException =
+        reader.formatError("Invalid object of kind " + kind + ": " + runtimeException.getMessage());
+      malformedBinaryException.initCause(runtimeException);
+      throw malformedBinaryException;
+    }
+    reader.endObject();
+    return returnValue;
+  }
+
+  /**
+   * Reads an object field of the supplied type written by the {@link
+   * #write(BinaryWriter, AbstractStatefulObject)} method from the
+   * supplied {@link BinaryReader}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type of object
+   *
+   * @param reader the {@link BinaryReader} to read from; must not be
+   * {@code null}
+   *
+   * @param type the type of object expected; must not be {@code null}
+   *
+   * @return a new, non-{@code null} object
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception MalformedBinaryException if the object is malformed,
+   * of an unknown kind, or not of the expected type
+   *
+   * @see #read(BinaryReader)
+   */
+  @NotNull
+  public static final <T extends AbstractStatefulObject> T read(@NotNull final BinaryReader reader, @NotNull final Class<T> type)
+    throws MalformedBinaryException {
+    Objects.requireNonNull(type, () -> "type must not be null");
+    final AbstractStatefulObject object = read(reader);
+    if (!type.isInstance(object)) {
+      throw reader.formatError("Expected " + type.getName() + " but got " + object.getClass().getName());
+    }
+    return type.cast(object);
+  }
+
+  private static final void write(final BinaryWriter writer, final Service service) {
+    writer.beginObject(SERVICE, VERSION)
+      .writeString(service.getId())
+      .writeString(service.getName())
+      .writeString(service.getDescription());
+    writeStrings(writer, service.getTags());
+    writeStrings(writer, service.getRequires());
+    writer.writeBoolean(service.isBindable()).writeValue(service.getMetadata());
+    final DashboardClient dashboardClient = service.getDashboardClient();
+    writer.writeBoolean(dashboardClient != null);
+    if (dashboardClient != null) {
+      writer.writeString(dashboardClient.getOAuthClientId()).writeString(dashboardClient.getSecret());
+      writeUri(writer, dashboardClient.getRedirectUri());
+    }
+    writer.writeBoolean(service.isPlanUpdatable());
+    final Set<? extends Plan> plans = service.getPlans();
+    writer.writeVarLong(plans.size());
+    for (final Plan plan : plans) {
+      write(writer, plan);
+    }
+    writer.endObject();
+  }
+
+  private static final Service readService(final BinaryReader reader) throws MalformedBinaryException {
+    final int kind = reader.beginObject();
+    if (kind != SERVICE) {
+      throw reader.formatError("Expected a service but got kind " + kind);
+    }
+    final String id = reader.readString();
+    final String name = reader.readString();
+    final String description = reader.readString();
+    final Set<String> tags = readStrings(reader);
+    final Set<String> requires = readStrings(reader);
+    final boolean bindable = reader.readBoolean();
+    final Map<String, Object> metadata = reader.readMap();
+    final DashboardClient dashboardClient;
+    if (reader.readBoolean()) {
+      dashboardClient = new DashboardClient(reader.readString(), reader.readString(), readUri(reader));
+    } else {
+      dashboardClient = null;
+    }
+    final boolean planUpdatable = reader.readBoolean();
+    final int count = readCount(reader);
+    final Set<Plan> plans = new LinkedHashSet<>();
+    for (int i = 0; i < count; i++) {
+      plans.add(readPlan(reader));
+    }
+    reader.endObject();
+    return new Service(id, name, description, tags, requires, bindable, metadata, dashboardClient, planUpdatable, plans);
+  }
+
+  private static final void write(final BinaryWriter writer, final Plan plan) {
+    writer.beginObject(PLAN, VERSION)
+      .writeString(plan.getId())
+      .writeString(plan.getName())
+      .writeString(plan.getDescription())
+      .writeValue(plan.getMetadata())
+      .writeBoolean(plan.isFree());
+    final Boolean bindable = plan.getBindable();
+    writer.writeByte(bindable == null ? 0 : bindable.booleanValue() ? 2 : 1);
+    final Schema schemas = plan.getSchemas();
+    writer.writeBoolean(schemas != null);
+    if (schemas != null) {
+      final Schema.ServiceInstance serviceInstance = schemas.getServiceInstance();
+      writer.writeBoolean(serviceInstance != null);
+      if (serviceInstance != null) {
+        writeInputParameters(writer, serviceInstance.getCreate());
+        writeInputParameters(writer, serviceInstance.getUpdate());
+      }
+      final Schema.ServiceBinding serviceBinding = schemas.getServiceBinding();
+      writer.writeBoolean(serviceBinding != null);
+      if (serviceBinding != null) {
+        writeInputParameters(writer, serviceBinding.getCreate());
+      }
+    }
+    writer.endObject();
+  }
+
+  private static final Plan readPlan(final BinaryReader reader) throws MalformedBinaryException {
+    final int kind = reader.beginObject();
+    if (kind != PLAN) {
+      throw reader.formatError("Expected a plan but got kind " + kind);
+    }
+    final String id = reader.readString();
+    final String name = reader.readString();
+    final String description = reader.readString();
+    final Map<String, Object> metadata = reader.readMap();
+    final boolean free = reader.readBoolean();
+    final byte bindable = reader.readByte();
+    Schema schemas = null;
+    if (reader.readBoolean()) {
+      final Schema.ServiceInstance serviceInstance;
+      if (reader.readBoolean()) {
+        serviceInstance = new Schema.ServiceInstance(readInputParameters(reader), readInputParameters(reader));
+      } else {
+        serviceInstance = null;
+      }
+      final Schema.ServiceBinding serviceBinding;
+      if (reader.readBoolean()) {
+        serviceBinding = new Schema.ServiceBinding(readInputParameters(reader));
+      } else {
+        serviceBinding = null;
+      }
+      schemas = new Schema(serviceInstance, serviceBinding);
+    }
+    reader.endObject();
+    return new Plan(id, name, description, metadata, free, bindable == 0 ? null : Boolean.valueOf(bindable == 2), schemas);
+  }
+
+  private static final void writeInputParameters(final BinaryWriter writer, final Schema.InputParameters inputParameters) {
+    writer.writeBoolean(inputParameters != null);
+    if (inputParameters != null) {
+      writer.writeValue(inputParameters.getParameters());
+    }
+  }
+
+  private static final Schema.InputParameters readInputParameters(final BinaryReader reader) throws MalformedBinaryException {
+    return reader.readBoolean() ? new Schema.InputParameters(reader.readMap()) : null;
+  }
+
+  private static final void writeStrings(final BinaryWriter writer, final Collection<? extends String> strings) {
+    if (strings == null) {
+      writer.writeVarLong(0L);
+    } else {
+      writer.writeVarLong(strings.size());
+      for (final String string : strings) {
+        writer.writeString(string);
+      }
+    }
+  }
+
+  private static final Set<String> readStrings(final BinaryReader reader) throws MalformedBinaryException {
+    final int count = readCount(reader);
+    final Set<String> strings = new LinkedHashSet<>();
+    for (int i = 0; i < count; i++) {
+      strings.add(reader.readString());
+    }
+    return strings;
+  }
+
+  private static final int readCount(final BinaryReader reader) throws MalformedBinaryException {
+    final long count = reader.readVarLong();
+    if (count < 0L || count > Integer.MAX_VALUE) {
+      throw reader.formatError("Invalid count: " + count);
+    }
+    return (int)count;
+  }
+
+  private static final void writeUri(final BinaryWriter writer, final URI uri) {
+    writer.writeString(uri == null ? null : uri.toString());
+  }
+
+  private static final URI readUri(final BinaryReader reader) throws MalformedBinaryException {
+    final String uri = reader.readString();
+    try {
+      return uri == null ? null : new URI(uri);
+    } catch (final URISyntaxException uriSyntaxException) {
+      throw new IllegalArgumentException("Invalid URI: " + uri, uriSyntaxException);
+    }
+  }
+
+}
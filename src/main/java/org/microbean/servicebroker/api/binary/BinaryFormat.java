@@ -0,0 +1,129 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.binary;
+
+/**
+ * Constants describing the binary format written by a {@link
+ * BinaryWriter} and read by a {@link BinaryReader}.
+ *
+ * <p>A message consists of a string table block followed by a body.
+ * The string table block is the number of strings the message adds
+ * to the string table, followed by each such string as its length in
+ * UTF-8 bytes and those bytes.  The body is its length in bytes
+ * followed by that many bytes of fields.</p>
+ *
+ * <p>All integers are unsigned variable-length integers, seven bits
+ * to a byte, least significant group first, unless they are signed,
+ * in which case they are first zig-zag encoded.</p>
+ *
+ * <p>A string field is a single integer: {@code 0} for {@code null};
+ * an odd number <em>n</em> for the string at index <em>n</em>{@code
+ * >>> 1} of the string table; or an even number <em>n</em> for a
+ * string written in place whose length in UTF-8 bytes is
+ * (<em>n</em>{@code >>> 1}) - 1 and whose bytes follow.</p>
+ *
+ * <p>An object field is a kind byte, a version byte, and the length
+ * of its fields in bytes followed by those fields.  A reader that
+ * does not recognize a field at the end of an object, because the
+ * object was written by a later version, skips it; a reader that
+ * finds fewer fields than it expects, because the object was written
+ * by an earlier version, uses defaults for the missing ones.</p>
+ *
+ * <p>Arbitrary values, such as those found in parameter maps, are
+ * written as a tag byte followed by a tag-specific encoding.  {@code
+ * double}s and {@code float}s are written as their IEEE 754 bits in
+ * eight and four bytes respectively, most significant first.</p>
+ */
+final class BinaryFormat {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The maximum length, in {@code char}s, of a string that will be
+   * added to the string table; longer strings are written in
+   * place.
+   */
+  static final int MAX_TABLE_STRING_LENGTH = 128;
+
+  /**
+   * The maximum number of strings a string table may hold; once it is
+   * full, further strings are written in place.
+   */
+  static final int MAX_TABLE_SIZE = 1 << 16;
+
+  static final byte NULL = 0;
+
+  static final byte STRING = 1;
+
+  static final byte TRUE = 2;
+
+  static final byte FALSE = 3;
+
+  static final byte INTEGER = 4;
+
+  static final byte LONG = 5;
+
+  static final byte DOUBLE = 6;
+
+  static final byte FLOAT = 7;
+
+  static final byte BIG_INTEGER = 8;
+
+  static final byte BIG_DECIMAL = 9;
+
+  static final byte LIST = 10;
+
+  static final byte MAP = 11;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private BinaryFormat() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  static final int varLongSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0L) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  static final long zigZag(final long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  static final long unZigZag(final long value) {
+    return (value >>> 1) ^ -(value & 1L);
+  }
+
+}
@@ -0,0 +1,575 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.binary;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Reads fields from messages in the {@linkplain BinaryFormat binary
+ * format} written by a {@link BinaryWriter}, directly from a {@link
+ * ByteBuffer}.
+ *
+ * <p>A {@link BinaryReader} must be created the same way as the
+ * {@link BinaryWriter} that wrote the messages it reads: if the
+ * {@link BinaryWriter} {@linkplain BinaryWriter#BinaryWriter(boolean)
+ * retained strings} from one message to the next, then so must the
+ * {@link BinaryReader}, and it must read every message, in
+ * order.</p>
+ *
+ * <p>Instances of this class are not safe for concurrent use by
+ * multiple threads.</p>
+ *
+ * @see BinaryWriter
+ *
+ * @see BinaryCodec
+ */
+public final class BinaryReader {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The maximum nesting depth of lists and maps read by the {@link
+   * #readValue()} method; deeper input is rejected rather than
+   * risking a {@link StackOverflowError}.
+   */
+  private static final int MAX_DEPTH = 512;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final boolean retainStrings;
+
+  @NotNull
+  private final List<String> stringTable;
+
+  private ByteBuffer source;
+
+  private int messageEnd;
+
+  @NotNull
+  private int[] objectEnds;
+
+  @NotNull
+  private int[] objectVersions;
+
+  private int depth;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link BinaryReader} for messages that can each be
+   * read on their own.
+   *
+   * @see #BinaryReader(boolean)
+   */
+  public BinaryReader() {
+    this(false);
+  }
+
+  /**
+   * Creates a new {@link BinaryReader}.
+   *
+   * @param retainStrings whether the {@link BinaryWriter} that wrote
+   * the messages this {@link BinaryReader} will read {@linkplain
+   * BinaryWriter#BinaryWriter(boolean) retained strings} from one
+   * message to the next
+   */
+  public BinaryReader(final boolean retainStrings) {
+    super();
+    this.retainStrings = retainStrings;
+    this.stringTable = new ArrayList<>();
+    this.objectEnds = new int[8];
+    this.objectVersions = new int[8];
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Begins reading the message at the current position of the
+   * supplied {@link ByteBuffer}, if all of it is there.
+   *
+   * <p>If this method returns {@code true}, the position of {@code
+   * source} is left at the first field of the message's body, and
+   * fields may be read until the {@link #endMessage()} method is
+   * called, during which time {@code source} must not otherwise be
+   * read or repositioned.  If it returns {@code false}, {@code
+   * source} is left as it was, and this method may be called again
+   * once more of the message is available.</p>
+   *
+   * @param source the {@link ByteBuffer} to read from; must not be
+   * {@code null}
+   *
+   * @return {@code true} if a complete message is available; {@code
+   * false} if {@code source} holds only part of a message
+   *
+   * @exception NullPointerException if {@code source} is {@code null}
+   *
+   * @exception MalformedBinaryException if the message is not
+   * well-formed
+   */
+  public final boolean beginMessage(@NotNull final ByteBuffer source) throws MalformedBinaryException {
+    Objects.requireNonNull(source, () -> "source must not be null");
+    final int start = source.position();
+    if (!this.retainStrings) {
+      this.stringTable.clear();
+    }
+    final int tableSize = this.stringTable.size();
+    try {
+      final long count = getVarLong(source);
+      if (count < 0L || tableSize + count > BinaryFormat.MAX_TABLE_SIZE) {
+        throw new MalformedBinaryException("Invalid string count: " + count, start);
+      }
+      for (int i = 0; i < count; i++) {
+        final long length = getVarLong(source);
+        if (length < 0L || length > Integer.MAX_VALUE) {
+          throw new MalformedBinaryException("Invalid string length: " + length, source.position());
+        }
+        if (length > source.remaining()) {
+          throw new BufferUnderflowException();
+        }
+        this.stringTable.add(decode(source, (int)length));
+      }
+      final long bodyLength = getVarLong(source);
+      if (bodyLength < 0L || bodyLength > Integer.MAX_VALUE) {
+        throw new MalformedBinaryException("Invalid body length: " + bodyLength, source.position());
+      }
+      if (bodyLength > source.remaining()) {
+        throw new BufferUnderflowException();
+      }
+      this.messageEnd = source.position() + (int)bodyLength;
+    } catch (final BufferUnderflowException | MalformedBinaryException exception) {
+      this.stringTable.subList(tableSize, this.stringTable.size()).clear();
+      source.position(start);
+      if (exception instanceof MalformedBinaryException) {
+        throw (MalformedBinaryException)exception;
+      }
+      return false;
+    }
+    this.source = source;
+    this.depth = 0;
+    return true;
+  }
+
+  /**
+   * Finishes reading the current message, skipping any of its fields
+   * that have not been read, and leaves the position of its {@link
+   * ByteBuffer} just past it.
+   *
+   * @exception IllegalStateException if no message is being read
+   */
+  public final void endMessage() {
+    final ByteBuffer source = this.source();
+    source.position(this.messageEnd);
+    this.source = null;
+    this.depth = 0;
+  }
+
+  /**
+   * Returns {@code true} if the current object, or, if no object has
+   * been {@linkplain #beginObject() begun}, the current message, has
+   * fields that have not yet been read.
+   *
+   * <p>Readers of objects whose layout has gained fields in a later
+   * version should read each such field only if this method returns
+   * {@code true}.</p>
+   *
+   * @return {@code true} if there are more fields to read
+   *
+   * @exception IllegalStateException if no message is being read
+   */
+  public final boolean hasMore() {
+    return this.source().position() < this.limit();
+  }
+
+  /**
+   * Reads a {@code boolean} field.
+   *
+   * @return the value read
+   *
+   * @exception IllegalStateException if no message is being read
+   *
+   * @exception MalformedBinaryException if there are no more fields
+   *
+   * @see BinaryWriter#writeBoolean(boolean)
+   */
+  public final boolean readBoolean() throws MalformedBinaryException {
+    return this.readByte() != 0;
+  }
+
+  /**
+   * Reads a {@code byte} field.
+   *
+   * @return the value read
+   *
+   * @exception IllegalStateException if no message is being read
+   *
+   * @exception MalformedBinaryException if there are no more fields
+   *
+   * @see BinaryWriter#writeByte(int)
+   */
+  public final byte readByte() throws MalformedBinaryException {
+    final ByteBuffer source = this.source();
+    if (source.position() >= this.limit()) {
+      throw new MalformedBinaryException("Unexpected end of " + (this.depth == 0 ? "message" : "object"), source.position());
+    }
+    return source.get();
+  }
+
+  /**
+   * Reads a variable-length {@code long} field.
+   *
+   * @return the value read
+   *
+   * @exception IllegalStateException if no message is being read
+   *
+   * @exception MalformedBinaryException if there are no more fields or
+   * the value is malformed
+   *
+   * @see BinaryWriter#writeVarLong(long)
+   */
+  public final long readVarLong() throws MalformedBinaryException {
+    long value = 0L;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final byte b = this.readByte();
+      value |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new MalformedBinaryException("Malformed variable-length integer", this.source.position());
+  }
+
+  /**
+   * Reads a {@link String} field.
+   *
+   * @return the value read, which may be {@code null}
+   *
+   * @exception IllegalStateException if no message is being read
+   *
+   * @exception MalformedBinaryException if there are no more fields or
+   * the value is malformed
+   *
+   * @see BinaryWriter#writeString(String)
+   */
+  public final String readString() throws MalformedBinaryException {
+    final long value = this.readVarLong();
+    if (value == 0L) {
+      return null;
+    }
+    final long n = value >>> 1;
+    if ((value & 1L) != 0L) {
+      if (n >= this.stringTable.size()) {
+        throw new MalformedBinaryException("Invalid string reference: " + n, this.source.position());
+      }
+      return this.stringTable.get((int)n);
+    }
+    final long length = n - 1L;
+    if (length > this.limit() - this.source.position()) {
+      throw new MalformedBinaryException("Invalid string length: " + length, this.source.position());
+    }
+    return decode(this.source, (int)length);
+  }
+
+  /**
+   * Reads a tagged field written by the {@link
+   * BinaryWriter#writeValue(Object)} method.
+   *
+   * <p>{@link Map}s are read as mutable {@link LinkedHashMap}s and
+   * collections as mutable {@link ArrayList}s.</p>
+   *
+   * @return the value read, which may be {@code null}
+   *
+   * @exception IllegalStateException if no message is being read
+   *
+   * @exception MalformedBinaryException if there are no more fields or
+   * the value is malformed or too deeply nested
+   */
+  public final Object readValue() throws MalformedBinaryException {
+    return this.readValue(0);
+  }
+
+  private final Object readValue(final int depth) throws MalformedBinaryException {
+    if (depth > MAX_DEPTH) {
+      throw new MalformedBinaryException("Nesting too deep", this.source().position());
+    }
+    final byte tag = this.readByte();
+    switch (tag) {
+    case BinaryFormat.NULL:
+      return null;
+    case BinaryFormat.STRING:
+      return this.readString();
+    case BinaryFormat.TRUE:
+      return Boolean.TRUE;
+    case BinaryFormat.FALSE:
+      return Boolean.FALSE;
+    case BinaryFormat.INTEGER:
+      return Integer.valueOf((int)BinaryFormat.unZigZag(this.readVarLong()));
+    case BinaryFormat.LONG:
+      return Long.valueOf(BinaryFormat.unZigZag(this.readVarLong()));
+    case BinaryFormat.DOUBLE:
+      return Double.valueOf(Double.longBitsToDouble(this.readFixed(8)));
+    case BinaryFormat.FLOAT:
+      return Float.valueOf(Float.intBitsToFloat((int)this.readFixed(4)));
+    case BinaryFormat.BIG_INTEGER:
+      return this.readBigInteger();
+    case BinaryFormat.BIG_DECIMAL:
+      return this.readBigDecimal();
+    case BinaryFormat.LIST:
+      final int length = this.readCount();
+      final List<Object> list = new ArrayList<>(length);
+      for (int i = 0; i < length; i++) {
+        list.add(this.readValue(depth + 1));
+      }
+      return list;
+    case BinaryFormat.MAP:
+      final int size = this.readCount();
+      final Map<String, Object> map = new LinkedHashMap<>();
+      for (int i = 0; i < size; i++) {
+        map.put(this.readString(), this.readValue(depth + 1));
+      }
+      return map;
+    default:
+      throw new MalformedBinaryException("Invalid value tag: " + tag, this.source.position() - 1);
+    }
+  }
+
+  /**
+   * Reads a tagged field written by the {@link
+   * BinaryWriter#writeValue(Object)} method that is either {@code
+   * null} or a {@link Map}.
+   *
+   * @return the {@link Map} read, which may be {@code null}
+   *
+   * @exception IllegalStateException if no message is being read
+   *
+   * @exception MalformedBinaryException if there are no more fields,
+   * the value is malformed, or the value is not a {@link Map}
+   *
+   * @see #readValue()
+   */
+  @SuppressWarnings("unchecked")
+  public final Map<String, Object> readMap() throws MalformedBinaryException {
+    final int position = this.source().position();
+    final Object value = this.readValue();
+    if (value == null || value instanceof Map) {
+      return (Map<String, Object>)value;
+    }
+    throw new MalformedBinaryException("Expected a map but got: " + value, position);
+  }
+
+  /**
+   * Begins reading an object field written between calls to the
+   * {@link BinaryWriter#beginObject(int, int)} and {@link
+   * BinaryWriter#endObject()} methods, and returns its kind.
+   *
+   * <p>Until the matching call to the {@link #endObject()} method,
+   * only the object's own fields may be read.</p>
+   *
+   * @return the kind of the object, from {@code 0} to {@code 255}
+   *
+   * @exception IllegalStateException if no message is being read
+   *
+   * @exception MalformedBinaryException if there are no more fields or
+   * the object is malformed
+   *
+   * @see #getObjectVersion()
+   */
+  public final int beginObject() throws MalformedBinaryException {
+    final int kind = this.readByte() & 0xFF;
+    final int version = this.readByte() & 0xFF;
+    final long length = this.readVarLong();
+    if (length < 0L || length > this.limit() - this.source.position()) {
+      throw new MalformedBinaryException("Invalid object length: " + length, this.source.position());
+    }
+    if (this.depth == this.objectEnds.length) {
+      final int[] newObjectEnds = new int[this.depth * 2];
+      System.arraycopy(this.objectEnds, 0, newObjectEnds, 0, this.depth);
+      this.objectEnds = newObjectEnds;
+      final int[] newObjectVersions = new int[this.depth * 2];
+      System.arraycopy(this.objectVersions, 0, newObjectVersions, 0, this.depth);
+      this.objectVersions = newObjectVersions;
+    }
+    this.objectEnds[this.depth] = this.source.position() + (int)length;
+    this.objectVersions[this.depth++] = version;
+    return kind;
+  }
+
+  /**
+   * Returns the version with which the object most recently
+   * {@linkplain #beginObject() begun} was written.
+   *
+   * @return the version of the current object, from {@code 0} to
+   * {@code 255}
+   *
+   * @exception IllegalStateException if no object is being read
+   */
+  public final int getObjectVersion() {
+    if (this.depth == 0) {
+      throw new IllegalStateException("no object");
+    }
+    return this.objectVersions[this.depth - 1];
+  }
+
+  /**
+   * Finishes reading the object most recently {@linkplain
+   * #beginObject() begun}, skipping any of its fields that have not
+   * been read.
+   *
+   * @exception IllegalStateException if no object is being read
+   */
+  public final void endObject() {
+    if (this.depth == 0) {
+      throw new IllegalStateException("no object to end");
+    }
+    this.source().position(this.objectEnds[--this.depth]);
+  }
+
+  /**
+   * Returns a {@link MalformedBinaryException} describing a problem
+   * at the current position, for use by codecs that find well-formed
+   * fields of the wrong shape.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param message a description of the problem; may be {@code null}
+   *
+   * @return a new, non-{@code null} {@link MalformedBinaryException}
+   */
+  @NotNull
+  public final MalformedBinaryException formatError(final String message) {
+    return new MalformedBinaryException(message, this.source == null ? 0 : this.source.position());
+  }
+
+  private final String readRequiredString() throws MalformedBinaryException {
+    final int position = this.source().position();
+    final String value = this.readString();
+    if (value == null) {
+      throw new MalformedBinaryException("Unexpected null string", position);
+    }
+    return value;
+  }
+
+  private final BigInteger readBigInteger() throws MalformedBinaryException {
+    final int position = this.source().position();
+    final String value = this.readRequiredString();
+    try {
+      return new BigInteger(value);
+    } catch (final NumberFormatException numberFormatException) {
+      throw new MalformedBinaryException("Invalid integer: " + value, position);
+    }
+  }
+
+  private final BigDecimal readBigDecimal() throws MalformedBinaryException {
+    final int position = this.source().position();
+    final String value = this.readRequiredString();
+    try {
+      return new BigDecimal(value);
+    } catch (final NumberFormatException numberFormatException) {
+      throw new MalformedBinaryException("Invalid decimal: " + value, position);
+    }
+  }
+
+  private final int readCount() throws MalformedBinaryException {
+    final long count = this.readVarLong();
+    // Every element takes at least one byte.
+    if (count < 0L || count > this.limit() - this.source.position()) {
+      throw new MalformedBinaryException("Invalid count: " + count, this.source.position());
+    }
+    return (int)count;
+  }
+
+  private final long readFixed(final int bytes) throws MalformedBinaryException {
+    long value = 0L;
+    for (int i = 0; i < bytes; i++) {
+      value = (value << 8) | (this.readByte() & 0xFFL);
+    }
+    return value;
+  }
+
+  private final ByteBuffer source() {
+    final ByteBuffer source = this.source;
+    if (source == null) {
+      throw new IllegalStateException("no message");
+    }
+    return source;
+  }
+
+  private final int limit() {
+    return this.depth == 0 ? this.messageEnd : this.objectEnds[this.depth - 1];
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final long getVarLong(final ByteBuffer source) throws MalformedBinaryException {
+    long value = 0L;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final byte b = source.get();
+      value |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new MalformedBinaryException("Malformed variable-length integer", source.position());
+  }
+
+  private static final String decode(final ByteBuffer source, final int length) {
+    final String value;
+    if (source.hasArray()) {
+      value = new String(source.array(), source.arrayOffset() + source.position(), length, StandardCharsets.UTF_8);
+      source.position(source.position() + length);
+    } else {
+      final byte[] bytes = new byte[length];
+      source.get(bytes);
+      value = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return value;
+  }
+
+}
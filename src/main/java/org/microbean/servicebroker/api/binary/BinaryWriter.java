@@ -0,0 +1,523 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.binary;
+
+import java.lang.reflect.Array;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Writes fields into a message in the {@linkplain BinaryFormat binary
+ * format} that a {@link BinaryReader} can read back, and then writes
+ * the finished message into a {@link ByteBuffer}.
+ *
+ * <p>Each string that is written is recorded in a string table the
+ * first time it is seen, and is thereafter written as a reference to
+ * its entry.  The identifiers, names and map keys that make up most
+ * of a command therefore cost their full length only once.  A message
+ * carries the strings it adds to the table ahead of its body, so that
+ * a reader can skip fields it does not understand without losing its
+ * place in the table.</p>
+ *
+ * <p>By default the string table is cleared after every message, so
+ * that each message can be read on its own.  A {@link BinaryWriter}
+ * {@linkplain #BinaryWriter(boolean) created to retain strings}
+ * instead keeps its string table from one message to the next, which
+ * is appropriate for a stream of messages that will be read in order,
+ * from the beginning, by a {@link BinaryReader} created the same
+ * way.</p>
+ *
+ * <p>Instances of this class are not safe for concurrent use by
+ * multiple threads.</p>
+ *
+ * @see BinaryReader
+ *
+ * @see BinaryCodec
+ */
+public final class BinaryWriter {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final boolean retainStrings;
+
+  @NotNull
+  private final Map<String, Integer> stringTable;
+
+  @NotNull
+  private final List<String> newStrings;
+
+  @NotNull
+  private final Bytes strings;
+
+  @NotNull
+  private final Bytes body;
+
+  @NotNull
+  private int[] objectStarts;
+
+  private int depth;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link BinaryWriter} whose messages can each be
+   * read on their own.
+   *
+   * @see #BinaryWriter(boolean)
+   */
+  public BinaryWriter() {
+    this(false);
+  }
+
+  /**
+   * Creates a new {@link BinaryWriter}.
+   *
+   * @param retainStrings if {@code true}, strings added to the string
+   * table by one message may be referred to by later ones, and the
+   * messages must therefore be read in order by a {@link
+   * BinaryReader} {@linkplain BinaryReader#BinaryReader(boolean)
+   * created to retain strings}; if {@code false}, each message can be
+   * read on its own
+   */
+  public BinaryWriter(final boolean retainStrings) {
+    super();
+    this.retainStrings = retainStrings;
+    this.stringTable = new HashMap<>();
+    this.newStrings = new ArrayList<>();
+    this.strings = new Bytes(256);
+    this.body = new Bytes(256);
+    this.objectStarts = new int[8];
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Writes a {@code boolean} field.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param value the value to write
+   *
+   * @return this {@link BinaryWriter}
+   */
+  @NotNull
+  public final BinaryWriter writeBoolean(final boolean value) {
+    this.body.put(value ? 1 : 0);
+    return this;
+  }
+
+  /**
+   * Writes a {@code byte} field.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param value the value to write; only its low eight bits are
+   * written
+   *
+   * @return this {@link BinaryWriter}
+   */
+  @NotNull
+  public final BinaryWriter writeByte(final int value) {
+    this.body.put(value);
+    return this;
+  }
+
+  /**
+   * Writes a {@code long} field as a variable-length integer.
+   *
+   * <p>Small non-negative values take the fewest bytes; negative
+   * values take ten.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param value the value to write
+   *
+   * @return this {@link BinaryWriter}
+   */
+  @NotNull
+  public final BinaryWriter writeVarLong(final long value) {
+    this.body.putVarLong(value);
+    return this;
+  }
+
+  /**
+   * Writes a {@link String} field, adding it to the string table if
+   * it is short enough and is not there already.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param value the value to write; may be {@code null}
+   *
+   * @return this {@link BinaryWriter}
+   */
+  @NotNull
+  public final BinaryWriter writeString(final String value) {
+    if (value == null) {
+      return this.writeVarLong(0L);
+    }
+    if (value.length() <= BinaryFormat.MAX_TABLE_STRING_LENGTH) {
+      Integer index = this.stringTable.get(value);
+      if (index == null && this.stringTable.size() < BinaryFormat.MAX_TABLE_SIZE) {
+        index = Integer.valueOf(this.stringTable.size());
+        this.stringTable.put(value, index);
+        this.newStrings.add(value);
+        this.strings.putUtf8(value, false);
+      }
+      if (index != null) {
+        return this.writeVarLong(((long)index.intValue() << 1) | 1L);
+      }
+    }
+    this.body.putUtf8(value, true);
+    return this;
+  }
+
+  /**
+   * Writes an arbitrary value, such as one found in a parameter map,
+   * as a tagged field.
+   *
+   * <p>Strings, {@link Boolean}s, the standard {@link Number}s, and
+   * {@link Map}s, {@link Collection}s and arrays of them are written
+   * so that they are read back as equal values, except that {@link
+   * Short}s and {@link Byte}s are read back as {@link Integer}s,
+   * collections and arrays as {@link List}s, and map keys as {@link
+   * String}s.  Any other value is written as its {@linkplain
+   * Object#toString() string representation}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param value the value to write; may be {@code null}
+   *
+   * @return this {@link BinaryWriter}
+   *
+   * @see BinaryReader#readValue()
+   */
+  @NotNull
+  public final BinaryWriter writeValue(final Object value) {
+    if (value == null) {
+      this.writeByte(BinaryFormat.NULL);
+    } else if (value instanceof CharSequence) {
+      this.writeByte(BinaryFormat.STRING).writeString(value.toString());
+    } else if (value instanceof Boolean) {
+      this.writeByte(((Boolean)value).booleanValue() ? BinaryFormat.TRUE : BinaryFormat.FALSE);
+    } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      this.writeByte(BinaryFormat.INTEGER).writeVarLong(BinaryFormat.zigZag(((Number)value).intValue()));
+    } else if (value instanceof Long) {
+      this.writeByte(BinaryFormat.LONG).writeVarLong(BinaryFormat.zigZag(((Long)value).longValue()));
+    } else if (value instanceof Double) {
+      this.writeByte(BinaryFormat.DOUBLE).writeFixed(Double.doubleToRawLongBits(((Double)value).doubleValue()), 8);
+    } else if (value instanceof Float) {
+      this.writeByte(BinaryFormat.FLOAT).writeFixed(Float.floatToRawIntBits(((Float)value).floatValue()), 4);
+    } else if (value instanceof BigInteger) {
+      this.writeByte(BinaryFormat.BIG_INTEGER).writeString(value.toString());
+    } else if (value instanceof BigDecimal) {
+      this.writeByte(BinaryFormat.BIG_DECIMAL).writeString(value.toString());
+    } else if (value instanceof Map) {
+      final Map<?, ?> map = (Map<?, ?>)value;
+      this.writeByte(BinaryFormat.MAP).writeVarLong(map.size());
+      for (final Map.Entry<?, ?> entry : map.entrySet()) {
+        final Object key = entry.getKey();
+        this.writeString(key == null ? null : key.toString());
+        this.writeValue(entry.getValue());
+      }
+    } else if (value instanceof Collection) {
+      final Collection<?> collection = (Collection<?>)value;
+      this.writeByte(BinaryFormat.LIST).writeVarLong(collection.size());
+      for (final Object element : collection) {
+        this.writeValue(element);
+      }
+    } else if (value.getClass().isArray()) {
+      final int length = Array.getLength(value);
+      this.writeByte(BinaryFormat.LIST).writeVarLong(length);
+      for (int i = 0; i < length; i++) {
+        this.writeValue(Array.get(value, i));
+      }
+    } else {
+      this.writeByte(BinaryFormat.STRING).writeString(value.toString());
+    }
+    return this;
+  }
+
+  private final void writeFixed(final long value, final int bytes) {
+    for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+      this.body.put((int)(value >>> shift));
+    }
+  }
+
+  /**
+   * Begins an object field, whose own fields are written next and
+   * which is ended by a matching call to the {@link #endObject()}
+   * method.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param kind a number identifying the kind of object; only its
+   * low eight bits are written
+   *
+   * @param version the version of the layout of the object's fields;
+   * only its low eight bits are written
+   *
+   * @return this {@link BinaryWriter}
+   *
+   * @see BinaryReader#beginObject()
+   */
+  @NotNull
+  public final BinaryWriter beginObject(final int kind, final int version) {
+    this.writeByte(kind).writeByte(version);
+    if (this.depth == this.objectStarts.length) {
+      final int[] newObjectStarts = new int[this.depth * 2];
+      System.arraycopy(this.objectStarts, 0, newObjectStarts, 0, this.depth);
+      this.objectStarts = newObjectStarts;
+    }
+    this.objectStarts[this.depth++] = this.body.size;
+    return this;
+  }
+
+  /**
+   * Ends the object field most recently {@linkplain #beginObject(int,
+   * int) begun}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return this {@link BinaryWriter}
+   *
+   * @exception IllegalStateException if there is no object to end
+   */
+  @NotNull
+  public final BinaryWriter endObject() {
+    if (this.depth == 0) {
+      throw new IllegalStateException("no object to end");
+    }
+    final Bytes body = this.body;
+    final int start = this.objectStarts[--this.depth];
+    final int length = body.size - start;
+    final int lengthSize = BinaryFormat.varLongSize(length);
+    body.ensureCapacity(lengthSize);
+    System.arraycopy(body.array, start, body.array, start + lengthSize, length);
+    body.size = start;
+    body.putVarLong(length);
+    body.size += length;
+    return this;
+  }
+
+  /**
+   * Writes the fields written since the last message ended, preceded
+   * by the strings they added to the string table, as a message into
+   * the supplied {@link ByteBuffer}, and begins a new message.
+   *
+   * <p>If {@code target} does not have enough room for the message,
+   * nothing is written to it, the message remains pending, and this
+   * method may be called again with a larger buffer.</p>
+   *
+   * @param target the {@link ByteBuffer} to write to; must not be
+   * {@code null}
+   *
+   * @return the number of bytes written
+   *
+   * @exception NullPointerException if {@code target} is {@code null}
+   *
+   * @exception IllegalStateException if an object has been begun but
+   * not ended
+   *
+   * @exception BufferOverflowException if {@code target} does not
+   * have enough room for the message
+   *
+   * @exception java.nio.ReadOnlyBufferException if {@code target} is
+   * read-only
+   */
+  public final int endMessage(@NotNull final ByteBuffer target) {
+    Objects.requireNonNull(target, () -> "target must not be null");
+    if (this.depth != 0) {
+      throw new IllegalStateException("unterminated object");
+    }
+    final int messageSize = this.getMessageSize();
+    if (target.remaining() < messageSize) {
+      throw new BufferOverflowException();
+    }
+    putVarLong(target, this.newStrings.size());
+    target.put(this.strings.array, 0, this.strings.size);
+    putVarLong(target, this.body.size);
+    target.put(this.body.array, 0, this.body.size);
+    this.strings.size = 0;
+    this.body.size = 0;
+    this.newStrings.clear();
+    if (!this.retainStrings) {
+      this.stringTable.clear();
+    }
+    return messageSize;
+  }
+
+  /**
+   * Returns a new {@link ByteBuffer}, ready for reading, containing
+   * the fields written since the last message ended as a message, and
+   * begins a new message.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null} {@link ByteBuffer} whose
+   * remaining bytes are the message
+   *
+   * @exception IllegalStateException if an object has been begun but
+   * not ended
+   *
+   * @see #endMessage(ByteBuffer)
+   */
+  @NotNull
+  public final ByteBuffer endMessage() {
+    final ByteBuffer target = ByteBuffer.allocate(this.getMessageSize());
+    this.endMessage(target);
+    target.flip();
+    return target;
+  }
+
+  /**
+   * Returns the number of bytes that the message consisting of the
+   * fields written since the last message ended would occupy.
+   *
+   * @return the size of the pending message in bytes
+   */
+  public final int getMessageSize() {
+    return
+      BinaryFormat.varLongSize(this.newStrings.size()) + this.strings.size +
+      BinaryFormat.varLongSize(this.body.size) + this.body.size;
+  }
+
+  /**
+   * Discards any fields written since the last message ended,
+   * together with any strings they added to the string table.
+   */
+  public final void reset() {
+    for (final String string : this.newStrings) {
+      this.stringTable.remove(string);
+    }
+    this.newStrings.clear();
+    this.strings.size = 0;
+    this.body.size = 0;
+    this.depth = 0;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final void putVarLong(final ByteBuffer target, long value) {
+    while ((value & ~0x7FL) != 0L) {
+      target.put((byte)((value & 0x7FL) | 0x80L));
+      value >>>= 7;
+    }
+    target.put((byte)value);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  private static final class Bytes {
+
+    private byte[] array;
+
+    private int size;
+
+    private Bytes(final int capacity) {
+      super();
+      this.array = new byte[capacity];
+    }
+
+    private final void put(final int value) {
+      this.ensureCapacity(1);
+      this.array[this.size++] = (byte)value;
+    }
+
+    private final void putVarLong(long value) {
+      this.ensureCapacity(10);
+      while ((value & ~0x7FL) != 0L) {
+        this.array[this.size++] = (byte)((value & 0x7FL) | 0x80L);
+        value >>>= 7;
+      }
+      this.array[this.size++] = (byte)value;
+    }
+
+    /**
+     * Writes the UTF-8 encoding of the supplied {@link String},
+     * preceded by its length, either as is or in the form of a string
+     * field written in place.
+     */
+    private final void putUtf8(final String value, final boolean inPlace) {
+      final int length = value.length();
+      int i = 0;
+      while (i < length && value.charAt(i) < 0x80) {
+        i++;
+      }
+      if (i == length) {
+        // Pure ASCII, which includes every identifier the
+        // specification defines; copy it without an intermediate
+        // array.
+        this.putVarLong(inPlace ? (length + 1L) << 1 : length);
+        this.ensureCapacity(length);
+        for (int j = 0; j < length; j++) {
+          this.array[this.size++] = (byte)value.charAt(j);
+        }
+      } else {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.putVarLong(inPlace ? (bytes.length + 1L) << 1 : bytes.length);
+        this.ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, this.array, this.size, bytes.length);
+        this.size += bytes.length;
+      }
+    }
+
+    private final void ensureCapacity(final int needed) {
+      if (this.array.length - this.size < needed) {
+        final byte[] newArray = new byte[Math.max(this.array.length * 2, this.size + needed)];
+        System.arraycopy(this.array, 0, newArray, 0, this.size);
+        this.array = newArray;
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,57 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.binary;
+
+import java.io.IOException;
+
+/**
+ * An {@link IOException} indicating that input being read by a
+ * {@link BinaryReader} is not a well-formed message, or is not of the
+ * shape the caller expected.
+ *
+ * @see BinaryReader
+ */
+public class MalformedBinaryException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int offset;
+
+  /**
+   * Creates a new {@link MalformedBinaryException}.
+   *
+   * @param message a description of the problem; may be {@code null}
+   *
+   * @param offset the zero-based position in the input buffer at
+   * which the problem was detected
+   */
+  public MalformedBinaryException(final String message, final int offset) {
+    super(message + " at offset " + offset);
+    this.offset = offset;
+  }
+
+  /**
+   * Returns the zero-based position in the input buffer at which the
+   * problem was detected.
+   *
+   * @return the position at which the problem was detected
+   */
+  public final int getOffset() {
+    return this.offset;
+  }
+
+}
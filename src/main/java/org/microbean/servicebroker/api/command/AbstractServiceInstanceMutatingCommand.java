@@ -18,8 +18,6 @@ package org.microbean.servicebroker.api.command;
 
 import java.net.URI;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -32,6 +30,18 @@ public abstract class AbstractServiceInstanceMutatingCommand extends AbstractSer
   
   private Map</* @NotNull */ ? extends String, ?> parameters;
 
+  /**
+   * The {@linkplain #getParameters() parameters} most recently
+   * {@linkplain #bindParameters(Class) bound}, or {@code null}.
+   */
+  private volatile Object boundParameters;
+
+  /**
+   * The {@linkplain #getContext() context} most recently {@linkplain
+   * #bindContext(Class) bound}, or {@code null}.
+   */
+  private volatile Object boundContext;
+
   protected AbstractServiceInstanceMutatingCommand(final String instanceId,
                                                    @NotNull /* @NotEmpty */ final String serviceId,
                                                    @NotNull /* @NotEmpty */ final String planId,
@@ -62,16 +72,8 @@ public abstract class AbstractServiceInstanceMutatingCommand extends AbstractSer
                                                    final Map</* @NotNull */ ? extends String, ?> parameters,
                                                    final boolean acceptsIncomplete) {
     super(instanceId, serviceId, planId, acceptsIncomplete);
-    if (context == null || context.isEmpty()) {
-      this.context = Collections.emptyMap();
-    } else {
-      this.context = Collections.unmodifiableMap(new HashMap<>(context));
-    }
-    if (parameters == null || parameters.isEmpty()) {
-      this.parameters = Collections.emptyMap();
-    } else {
-      this.parameters = Collections.unmodifiableMap(new HashMap<>(parameters));
-    }
+    this.context = ImmutableInputs.own(context);
+    this.parameters = ImmutableInputs.own(parameters);
   }
 
   public final Map</* @NotNull */ ? extends String, ?> getContext() {
@@ -88,13 +90,92 @@ public abstract class AbstractServiceInstanceMutatingCommand extends AbstractSer
     T returnValue = null;
     final Map<? extends String, ?> parameters = this.getParameters();
     if (parameters != null && !parameters.isEmpty()) {
-      try {
-        returnValue = type.cast(parameters.get(name));
-      } catch (final ClassCastException classCastException) {
-        returnValue = null;
+      final Object parameter = parameters.get(name);
+      if (type.isInstance(parameter)) {
+        returnValue = type.cast(parameter);
       }
     }
     return returnValue;
   }
 
+  /**
+   * Returns the {@linkplain #getParameters() parameters} of this
+   * command {@linkplain ParameterBinder bound} to a new instance of
+   * the supplied {@link Class}.
+   *
+   * <p>The parameters are bound at most once per {@link Class}: if
+   * this method is called again with the same {@link Class} as the
+   * last time, the same instance is returned.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type to bind to
+   *
+   * @param type the {@link Class} to bind to, typically one a
+   * service broker declares for the plan {@linkplain #getPlanId()
+   * identified by} this command; must not be {@code null}
+   *
+   * @return a non-{@code null} instance of {@code type}
+   *
+   * @exception NullPointerException if {@code type} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code type} cannot be
+   * bound
+   *
+   * @exception InvalidServiceBrokerCommandException if the
+   * parameters are missing a required member or have a member of the
+   * wrong type
+   *
+   * @see ParameterBinder
+   */
+  @NotNull
+  public final <T> T bindParameters(@NotNull final Class<T> type) throws InvalidServiceBrokerCommandException {
+    final Object boundParameters = this.boundParameters;
+    if (boundParameters != null && boundParameters.getClass() == type) {
+      return type.cast(boundParameters);
+    }
+    final T returnValue = ParameterBinder.of(type).bind(this, this.getParameters());
+    this.boundParameters = returnValue;
+    return returnValue;
+  }
+
+  /**
+   * Returns the {@linkplain #getContext() context} of this command
+   * {@linkplain ParameterBinder bound} to a new instance of the
+   * supplied {@link Class}.
+   *
+   * <p>The context is bound at most once per {@link Class}: if this
+   * method is called again with the same {@link Class} as the last
+   * time, the same instance is returned.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type to bind to
+   *
+   * @param type the {@link Class} to bind to; must not be {@code
+   * null}
+   *
+   * @return a non-{@code null} instance of {@code type}
+   *
+   * @exception NullPointerException if {@code type} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code type} cannot be
+   * bound
+   *
+   * @exception InvalidServiceBrokerCommandException if the context
+   * is missing a required member or has a member of the wrong type
+   *
+   * @see ParameterBinder
+   */
+  @NotNull
+  public final <T> T bindContext(@NotNull final Class<T> type) throws InvalidServiceBrokerCommandException {
+    final Object boundContext = this.boundContext;
+    if (boundContext != null && boundContext.getClass() == type) {
+      return type.cast(boundContext);
+    }
+    final T returnValue = ParameterBinder.of(type).bind(this, this.getContext());
+    this.boundContext = returnValue;
+    return returnValue;
+  }
+
 }
@@ -30,5 +30,16 @@ public class BindingAlreadyExistsException extends AbstractCommandException {
   public AbstractResponse getResponse() {
     return this.response;
   }
-  
+
+  /**
+   * Returns {@code true}, because finding that a binding already
+   * exists is a normal consequence of retries.
+   *
+   * @return {@code true}
+   */
+  @Override
+  protected boolean isExpectedOutcome() {
+    return true;
+  }
+
 }
@@ -0,0 +1,247 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.command;
+
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Checks the constraints declared on the constructor parameters of
+ * the commands in this package when those commands are constructed.
+ *
+ * <p>The {@linkplain #getDefault() default policy} is resolved once,
+ * when this class is initialized: it is {@link #LENIENT} if the
+ * {@code org.microbean.servicebroker.api.lenient} system property is
+ * {@code true} and {@link #STRICT} otherwise.  It may be replaced
+ * with the {@link #setDefault(CommandValidationPolicy)} method, but
+ * the system property is never consulted again, so constructing a
+ * command costs a single volatile read rather than a synchronized
+ * {@link System#getProperty(String)} lookup.</p>
+ *
+ * <p>Each {@code validate} method checks, with straight-line code,
+ * exactly the {@link NotNull} constraints declared on the
+ * corresponding command's constructors, so no reflective Bean
+ * Validation machinery is involved.  Subclasses may override any of
+ * them to check more, or less.  Overrides are called from
+ * constructors, after all fields of the command being validated have
+ * been assigned but possibly before those of any subclass have been,
+ * and should signal a violation by throwing a {@link
+ * RuntimeException}.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads, and overrides must be too.</p>
+ *
+ * @see #getDefault()
+ */
+public class CommandValidationPolicy {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * A {@link CommandValidationPolicy} that checks every declared
+   * constraint.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  @NotNull
+  public static final CommandValidationPolicy STRICT = new CommandValidationPolicy();
+
+  /**
+   * A {@link CommandValidationPolicy} that checks nothing, for the
+   * benefit of clients that, contrary to the specification, do not
+   * supply all required values.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  @NotNull
+  public static final CommandValidationPolicy LENIENT = new CommandValidationPolicy() {
+      @Override
+      public final void validate(@NotNull final ProvisionServiceInstanceCommand command) {
+
+      }
+
+      @Override
+      public final void validate(@NotNull final UpdateServiceInstanceCommand command) {
+
+      }
+
+      @Override
+      public final void validate(@NotNull final DeleteServiceInstanceCommand command) {
+
+      }
+
+      @Override
+      public final void validate(@NotNull final ProvisionBindingCommand command) {
+
+      }
+
+      @Override
+      public final void validate(@NotNull final DeleteBindingCommand command) {
+
+      }
+    };
+
+  @NotNull
+  private static volatile CommandValidationPolicy defaultPolicy =
+    Boolean.getBoolean("org.microbean.servicebroker.api.lenient") ? LENIENT : STRICT;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link CommandValidationPolicy}.
+   */
+  protected CommandValidationPolicy() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Validates the supplied {@link ProvisionServiceInstanceCommand}.
+   *
+   * <p>The default implementation requires a non-{@code null}
+   * service identifier, plan identifier, organization GUID and space
+   * GUID.</p>
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @exception NullPointerException if a required value is {@code
+   * null}
+   */
+  public void validate(@NotNull final ProvisionServiceInstanceCommand command) {
+    Objects.requireNonNull(command.getServiceId(), "serviceId must not be null");
+    Objects.requireNonNull(command.getPlanId(), "planId must not be null");
+    Objects.requireNonNull(command.getOrganizationGuid(), "organizationGuid must not be null");
+    Objects.requireNonNull(command.getSpaceGuid(), "spaceGuid must not be null");
+  }
+
+  /**
+   * Validates the supplied {@link UpdateServiceInstanceCommand}.
+   *
+   * <p>The default implementation requires a non-{@code null}
+   * service identifier.</p>
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @exception NullPointerException if a required value is {@code
+   * null}
+   */
+  public void validate(@NotNull final UpdateServiceInstanceCommand command) {
+    Objects.requireNonNull(command.getServiceId(), "serviceId must not be null");
+  }
+
+  /**
+   * Validates the supplied {@link DeleteServiceInstanceCommand}.
+   *
+   * <p>The default implementation requires a non-{@code null}
+   * service identifier and plan identifier, as the specification
+   * does, even though some clients do not supply them.</p>
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @exception NullPointerException if a required value is {@code
+   * null}
+   */
+  public void validate(@NotNull final DeleteServiceInstanceCommand command) {
+    Objects.requireNonNull(command.getServiceId(), "serviceId must not be null");
+    Objects.requireNonNull(command.getPlanId(), "planId must not be null");
+  }
+
+  /**
+   * Validates the supplied {@link ProvisionBindingCommand}.
+   *
+   * <p>The default implementation requires a non-{@code null}
+   * service identifier and plan identifier.</p>
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @exception NullPointerException if a required value is {@code
+   * null}
+   */
+  public void validate(@NotNull final ProvisionBindingCommand command) {
+    Objects.requireNonNull(command.getServiceId(), "serviceId must not be null");
+    Objects.requireNonNull(command.getPlanId(), "planId must not be null");
+  }
+
+  /**
+   * Validates the supplied {@link DeleteBindingCommand}.
+   *
+   * <p>The default implementation requires a non-{@code null}
+   * service identifier and plan identifier.</p>
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @exception NullPointerException if a required value is {@code
+   * null}
+   */
+  public void validate(@NotNull final DeleteBindingCommand command) {
+    Objects.requireNonNull(command.getServiceId(), "serviceId must not be null");
+    Objects.requireNonNull(command.getPlanId(), "planId must not be null");
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@link CommandValidationPolicy} that command
+   * constructors apply.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} default {@link
+   * CommandValidationPolicy}
+   *
+   * @see #setDefault(CommandValidationPolicy)
+   */
+  @NotNull
+  public static final CommandValidationPolicy getDefault() {
+    return defaultPolicy;
+  }
+
+  /**
+   * Installs the supplied {@link CommandValidationPolicy} as the one
+   * that command constructors apply from now on.
+   *
+   * @param policy the new default {@link CommandValidationPolicy};
+   * must not be {@code null}
+   *
+   * @exception NullPointerException if {@code policy} is {@code null}
+   *
+   * @see #getDefault()
+   */
+  public static final void setDefault(@NotNull final CommandValidationPolicy policy) {
+    Objects.requireNonNull(policy, () -> "policy must not be null");
+    defaultPolicy = policy;
+  }
+
+}
@@ -0,0 +1,85 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.command;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.microbean.servicebroker.api.json.LazyJsonObject;
+
+import org.microbean.servicebroker.api.util.ImmutableArrayMap;
+import org.microbean.servicebroker.api.util.ImmutableArraySet;
+import org.microbean.servicebroker.api.util.PersistentHashMap;
+
+/**
+ * Turns the maps and sets supplied to command and response
+ * constructors into immutable ones, taking ownership of those that
+ * are already immutable instead of copying them.
+ *
+ * <p>Maps freshly decoded from a request body are {@link
+ * LazyJsonObject}s, and copying one would decode every value, so in
+ * the common case no copy is made at all.  Anything else is copied
+ * once into a compact {@link ImmutableArrayMap} or {@link
+ * ImmutableArraySet}.</p>
+ */
+final class ImmutableInputs {
+
+  private ImmutableInputs() {
+    super();
+  }
+
+  /**
+   * Returns an immutable {@link Map} with the mappings of the
+   * supplied {@link Map}, which is returned as is if it is already
+   * immutable.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <K> the type of key
+   *
+   * @param <V> the type of value
+   *
+   * @param map the {@link Map}; may be {@code null}
+   *
+   * @return a non-{@code null}, immutable {@link Map}
+   */
+  @SuppressWarnings("unchecked")
+  static final <K, V> Map<K, V> own(final Map<? extends K, ? extends V> map) {
+    if (map != null && !map.isEmpty() && (map instanceof LazyJsonObject || map instanceof PersistentHashMap)) {
+      return (Map<K, V>)map;
+    }
+    return ImmutableArrayMap.copyOf(map);
+  }
+
+  /**
+   * Returns an immutable {@link Set} with the elements of the
+   * supplied {@link Set}, which is returned as is if it is already
+   * immutable.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <E> the type of element
+   *
+   * @param set the {@link Set}; may be {@code null}
+   *
+   * @return a non-{@code null}, immutable {@link Set}
+   */
+  static final <E> Set<E> own(final Set<? extends E> set) {
+    return ImmutableArraySet.copyOf(set);
+  }
+
+}
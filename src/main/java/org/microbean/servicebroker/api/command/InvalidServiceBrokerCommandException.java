@@ -35,5 +35,16 @@ public class InvalidServiceBrokerCommandException extends AbstractCommandExcepti
   public InvalidServiceBrokerCommandException(final Throwable cause, final AbstractCommand command) {
     super(cause, command);
   }
-  
+
+  /**
+   * Returns {@code true}, because rejecting an invalid command is part
+   * of normal request handling.
+   *
+   * @return {@code true}
+   */
+  @Override
+  protected boolean isExpectedOutcome() {
+    return true;
+  }
+
 }
@@ -34,5 +34,16 @@ public class NoSuchBindingException extends AbstractCommandException {
   public final AbstractResponse getResponse() {
     return this.response;
   }
-  
+
+  /**
+   * Returns {@code true}, because deleting a binding that is already
+   * gone is a normal consequence of retries.
+   *
+   * @return {@code true}
+   */
+  @Override
+  protected boolean isExpectedOutcome() {
+    return true;
+  }
+
 }
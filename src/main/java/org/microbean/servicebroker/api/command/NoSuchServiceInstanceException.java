@@ -38,5 +38,16 @@ public class NoSuchServiceInstanceException extends AbstractCommandException {
   public final AbstractResponse getResponse() {
     return this.response;
   }
-  
+
+  /**
+   * Returns {@code true}, because deleting or querying a service
+   * instance that is already gone is a normal consequence of retries.
+   *
+   * @return {@code true}
+   */
+  @Override
+  protected boolean isExpectedOutcome() {
+    return true;
+  }
+
 }
@@ -0,0 +1,394 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.command;
+
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+/**
+ * The result of {@linkplain
+ * org.microbean.servicebroker.api.ServiceBroker#tryExecute(ProvisionServiceInstanceCommand)
+ * executing a command} without throwing exceptions for outcomes that
+ * are part of its normal course.
+ *
+ * <p>An {@link Outcome} is of exactly one {@link Kind}.  Instances
+ * are created only by the static factory methods of this class, one
+ * per {@link Kind}, so the set of possible outcomes is closed, and
+ * callers can {@code switch} exhaustively on {@link #getKind()}.</p>
+ *
+ * <p>{@link #of(ServiceBrokerException, Class)} and {@link
+ * #getResponseOrThrow(AbstractCommand)} translate between outcomes
+ * and the exceptions that signal them in the {@code execute}
+ * methods, so that brokers written against either form can be used
+ * through the other.</p>
+ *
+ * @param <R> the type of {@link AbstractResponse} a successful
+ * outcome carries
+ *
+ * @see org.microbean.servicebroker.api.ServiceBroker
+ */
+public final class Outcome<R extends AbstractResponse> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  @NotNull
+  private final Kind kind;
+
+  private final R response;
+
+  private final String message;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private Outcome(@NotNull final Kind kind, final R response, final String message) {
+    super();
+    this.kind = kind;
+    this.response = response;
+    this.message = message;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Kind} of this {@link Outcome}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link Kind} of this {@link Outcome}
+   */
+  @NotNull
+  public final Kind getKind() {
+    return this.kind;
+  }
+
+  /**
+   * Returns {@code true} if this {@link Outcome} is of {@link
+   * Kind#SUCCESS} or {@link Kind#IDENTICAL_ALREADY_EXISTS}, in which
+   * case the command's goal has been reached.
+   *
+   * @return {@code true} if the command's goal has been reached
+   */
+  public final boolean isSuccessful() {
+    return this.kind == Kind.SUCCESS || this.kind == Kind.IDENTICAL_ALREADY_EXISTS;
+  }
+
+  /**
+   * Returns the response carried by this {@link Outcome}.
+   *
+   * <p>Outcomes of {@link Kind#SUCCESS} always carry a response.
+   * Those of {@link Kind#IDENTICAL_ALREADY_EXISTS} and {@link
+   * Kind#NOT_FOUND} may.  Others never do.</p>
+   *
+   * @return the response, or {@code null}
+   */
+  public final R getResponse() {
+    return this.response;
+  }
+
+  /**
+   * Returns a message describing this {@link Outcome}, or {@code
+   * null}.
+   *
+   * @return a message, or {@code null}
+   */
+  public final String getMessage() {
+    return this.message;
+  }
+
+  /**
+   * Returns the {@linkplain #getResponse() response} of this {@link
+   * Outcome} if it is {@linkplain #isSuccessful() successful} and
+   * otherwise throws the exception that signals this {@link Outcome}
+   * in the {@code execute} methods of {@link
+   * org.microbean.servicebroker.api.ServiceBroker}.
+   *
+   * <p>Outcomes of {@link Kind#IDENTICAL_ALREADY_EXISTS} are
+   * successful here too, but are signalled by throwing, as the
+   * {@code execute} methods require.</p>
+   *
+   * @param command the command that had this {@link Outcome}; must
+   * not be {@code null}
+   *
+   * @return the response of this {@link Outcome}, which will be
+   * non-{@code null} for an outcome of {@link Kind#SUCCESS}
+   *
+   * @exception NullPointerException if {@code command} is {@code
+   * null}
+   *
+   * @exception ServiceBrokerException if this {@link Outcome} is not
+   * of {@link Kind#SUCCESS}
+   */
+  public final R getResponseOrThrow(@NotNull final AbstractCommand command) throws ServiceBrokerException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final boolean binding = command instanceof AbstractBindingCommand;
+    switch (this.kind) {
+    case SUCCESS:
+      return this.response;
+    case IDENTICAL_ALREADY_EXISTS:
+      if (binding) {
+        throw new IdenticalBindingAlreadyExistsException(this.message, null, this.response);
+      }
+      throw new IdenticalServiceInstanceAlreadyExistsException(this.message, null, this.response);
+    case CONFLICT:
+      if (binding) {
+        throw new BindingAlreadyExistsException(this.message, null, null);
+      }
+      throw new ServiceInstanceAlreadyExistsException(this.message, null, null);
+    case NOT_FOUND:
+      if (binding) {
+        throw new NoSuchBindingException(this.message, null, this.response);
+      }
+      throw new NoSuchServiceInstanceException(this.message, null, command, this.response);
+    case UNBINDABLE:
+      if (command instanceof ProvisionBindingCommand) {
+        final ProvisionBindingCommand provisionBindingCommand = (ProvisionBindingCommand)command;
+        throw this.message == null ? new UnbindablePlanException(provisionBindingCommand) : new UnbindablePlanException(this.message, provisionBindingCommand);
+      }
+      // Only bindings can target an unbindable plan; report anything
+      // else as merely invalid.
+      throw this.message == null ? new InvalidServiceBrokerCommandException(command) : new InvalidServiceBrokerCommandException(this.message, command);
+    case INVALID:
+      throw this.message == null ? new InvalidServiceBrokerCommandException(command) : new InvalidServiceBrokerCommandException(this.message, command);
+    default:
+      throw new AssertionError(this.kind);
+    }
+  }
+
+  @Override
+  public final String toString() {
+    return this.message == null ? this.kind.toString() : this.kind + ": " + this.message;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns an {@link Outcome} of {@link Kind#SUCCESS} carrying the
+   * supplied response.
+   *
+   * @param <R> the type of response
+   *
+   * @param response the response; must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link Outcome}
+   *
+   * @exception NullPointerException if {@code response} is {@code
+   * null}
+   */
+  @NotNull
+  public static final <R extends AbstractResponse> Outcome<R> success(@NotNull final R response) {
+    Objects.requireNonNull(response, () -> "response must not be null");
+    return new Outcome<>(Kind.SUCCESS, response, null);
+  }
+
+  /**
+   * Returns an {@link Outcome} of {@link
+   * Kind#IDENTICAL_ALREADY_EXISTS} carrying the supplied response.
+   *
+   * @param <R> the type of response
+   *
+   * @param response the response; may be {@code null}
+   *
+   * @return a new, non-{@code null} {@link Outcome}
+   */
+  @NotNull
+  public static final <R extends AbstractResponse> Outcome<R> identicalAlreadyExists(final R response) {
+    return new Outcome<>(Kind.IDENTICAL_ALREADY_EXISTS, response, null);
+  }
+
+  /**
+   * Returns an {@link Outcome} of {@link Kind#CONFLICT}.
+   *
+   * @param <R> the type of response
+   *
+   * @param message a message describing the conflict; may be {@code
+   * null}
+   *
+   * @return a new, non-{@code null} {@link Outcome}
+   */
+  @NotNull
+  public static final <R extends AbstractResponse> Outcome<R> conflict(final String message) {
+    return new Outcome<>(Kind.CONFLICT, null, message);
+  }
+
+  /**
+   * Returns an {@link Outcome} of {@link Kind#NOT_FOUND}.
+   *
+   * @param <R> the type of response
+   *
+   * @param message a message describing what was not found; may be
+   * {@code null}
+   *
+   * @param response a response to return to the client anyway; may
+   * be {@code null}
+   *
+   * @return a new, non-{@code null} {@link Outcome}
+   */
+  @NotNull
+  public static final <R extends AbstractResponse> Outcome<R> notFound(final String message, final R response) {
+    return new Outcome<>(Kind.NOT_FOUND, response, message);
+  }
+
+  /**
+   * Returns an {@link Outcome} of {@link Kind#INVALID}.
+   *
+   * @param <R> the type of response
+   *
+   * @param message a message describing why the command is invalid;
+   * may be {@code null}
+   *
+   * @return a new, non-{@code null} {@link Outcome}
+   */
+  @NotNull
+  public static final <R extends AbstractResponse> Outcome<R> invalid(final String message) {
+    return new Outcome<>(Kind.INVALID, null, message);
+  }
+
+  /**
+   * Returns an {@link Outcome} of {@link Kind#UNBINDABLE}.
+   *
+   * @param <R> the type of response
+   *
+   * @param message a message describing why the plan cannot be bound
+   * to; may be {@code null}
+   *
+   * @return a new, non-{@code null} {@link Outcome}
+   */
+  @NotNull
+  public static final <R extends AbstractResponse> Outcome<R> unbindable(final String message) {
+    return new Outcome<>(Kind.UNBINDABLE, null, message);
+  }
+
+  /**
+   * Returns the {@link Outcome} that the supplied exception, thrown
+   * by an {@code execute} method, signals, or {@code null} if it does
+   * not signal one.
+   *
+   * @param <R> the type of response
+   *
+   * @param exception the exception; must not be {@code null}
+   *
+   * @param responseType the type of response the command that threw
+   * {@code exception} produces; responses of other types carried by
+   * {@code exception} are dropped; must not be {@code null}
+   *
+   * @return a new {@link Outcome}, or {@code null} if {@code
+   * exception} represents an unexpected failure that should be
+   * propagated
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  public static final <R extends AbstractResponse> Outcome<R> of(@NotNull final ServiceBrokerException exception,
+                                                                 @NotNull final Class<R> responseType) {
+    Objects.requireNonNull(exception, () -> "exception must not be null");
+    Objects.requireNonNull(responseType, () -> "responseType must not be null");
+    final Outcome<R> returnValue;
+    if (exception instanceof IdenticalServiceInstanceAlreadyExistsException) {
+      returnValue = identicalAlreadyExists(cast(((ServiceInstanceAlreadyExistsException)exception).getResponse(), responseType));
+    } else if (exception instanceof IdenticalBindingAlreadyExistsException) {
+      returnValue = identicalAlreadyExists(cast(((BindingAlreadyExistsException)exception).getResponse(), responseType));
+    } else if (exception instanceof ServiceInstanceAlreadyExistsException || exception instanceof BindingAlreadyExistsException) {
+      returnValue = conflict(exception.getMessage());
+    } else if (exception instanceof NoSuchServiceInstanceException) {
+      returnValue = notFound(exception.getMessage(), cast(((NoSuchServiceInstanceException)exception).getResponse(), responseType));
+    } else if (exception instanceof NoSuchBindingException) {
+      returnValue = notFound(exception.getMessage(), cast(((NoSuchBindingException)exception).getResponse(), responseType));
+    } else if (exception instanceof UnbindablePlanException) {
+      returnValue = unbindable(exception.getMessage());
+    } else if (exception instanceof InvalidServiceBrokerCommandException) {
+      returnValue = invalid(exception.getMessage());
+    } else {
+      returnValue = null;
+    }
+    return returnValue;
+  }
+
+  private static final <R> R cast(final Object response, final Class<R> responseType) {
+    return responseType.isInstance(response) ? responseType.cast(response) : null;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The kinds of {@link Outcome}.
+   */
+  public static enum Kind {
+
+    /**
+     * The command did what it was asked to do.
+     */
+    SUCCESS,
+
+    /**
+     * The command asked for a service instance or binding that
+     * already exists with identical attributes, so there was nothing
+     * to do.
+     */
+    IDENTICAL_ALREADY_EXISTS,
+
+    /**
+     * The command asked for a service instance or binding that
+     * already exists with different attributes.
+     */
+    CONFLICT,
+
+    /**
+     * The command referred to a service instance or binding that
+     * does not exist.
+     */
+    NOT_FOUND,
+
+    /**
+     * The command was malformed or cannot be satisfied by the service
+     * or plan it names.
+     */
+    INVALID,
+
+    /**
+     * The command asked for a binding to a plan that is not bindable.
+     * This is a more specific form of {@link #INVALID}, kept apart so
+     * that it survives translation to and from {@link
+     * UnbindablePlanException}.
+     */
+    UNBINDABLE
+
+  }
+
+}
@@ -0,0 +1,414 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.command;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import java.util.function.Function;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Binds a {@link Map} of parameters, such as the {@linkplain
+ * AbstractServiceInstanceMutatingCommand#getParameters() parameters}
+ * or {@linkplain AbstractServiceInstanceMutatingCommand#getContext()
+ * context} of a command, to a new instance of a plain Java class that
+ * a service broker declares for a plan, so that the parameters can
+ * afterwards be read as ordinary fields.
+ *
+ * <p>The class must have a constructor that takes no arguments.
+ * Every field of the class or its superclasses that is neither
+ * {@code static}, {@code final} nor {@code transient} is bound to the
+ * member of the same name, or of the name given by a {@link Name}
+ * annotation.  Members without a corresponding field are ignored, and
+ * fields without a corresponding member keep their initial values
+ * unless they are annotated with {@link NotNull}, in which case the
+ * member is required.  That annotation is recognized by name, so the
+ * Bean Validation API need not be present at runtime.</p>
+ *
+ * <p>Values are converted to the type of their field as
+ * follows:</p>
+ *
+ * <ul>
+ *
+ * <li>numbers are converted to any primitive or boxed numeric type,
+ * {@link BigInteger} or {@link BigDecimal}, failing if the
+ * conversion to an integral type would lose information;</li>
+ *
+ * <li>strings are converted to enum constants by name;</li>
+ *
+ * <li>{@link Map}s are bound, recursively, to fields of any other
+ * class that this class can bind;</li>
+ *
+ * <li>all other values must already be instances of the field's
+ * type.</li>
+ *
+ * </ul>
+ *
+ * <p>Everything that can be worked out from the class alone, namely
+ * its fields, their names, {@link MethodHandle}s that set them and
+ * the conversions they need, is worked out once per class when its
+ * {@link ParameterBinder} is first {@linkplain #of(Class)
+ * requested}, so binding costs little more than reading the members
+ * and setting the fields.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @param <T> the type of object this {@link ParameterBinder} binds
+ *
+ * @see #of(Class)
+ *
+ * @see AbstractServiceInstanceMutatingCommand#bindParameters(Class)
+ */
+public final class ParameterBinder<T> {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final ClassValue<ParameterBinder<?>> binders = new ClassValue<ParameterBinder<?>>() {
+      @Override
+      protected final ParameterBinder<?> computeValue(final Class<?> type) {
+        return new ParameterBinder<>(type);
+      }
+    };
+
+  private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  /**
+   * The name of the annotation that marks a field as required.
+   *
+   * <p>The annotation is matched by name because the Bean Validation
+   * API is not required at runtime.</p>
+   */
+  private static final String NOT_NULL = "javax.validation.constraints.NotNull";
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  @NotNull
+  private final Class<T> type;
+
+  @NotNull
+  private final MethodHandle constructor;
+
+  @NotNull
+  private final Property[] properties;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private ParameterBinder(final Class<T> type) {
+    super();
+    if (type.isPrimitive() || type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+      throw new IllegalArgumentException("Cannot bind parameters to " + type.getName());
+    }
+    this.type = type;
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      final Constructor<T> constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      this.constructor = lookup.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+      final List<Property> properties = new ArrayList<>();
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+        for (final Field field : c.getDeclaredFields()) {
+          final int modifiers = field.getModifiers();
+          if (!field.isSynthetic() && (modifiers & (Modifier.STATIC | Modifier.FINAL | Modifier.TRANSIENT)) == 0) {
+            field.setAccessible(true);
+            properties.add(new Property(field, lookup.unreflectSetter(field).asType(SETTER_TYPE)));
+          }
+        }
+      }
+      this.properties = properties.toArray(new Property[properties.size()]);
+    } catch (final NoSuchMethodException | IllegalAccessException | SecurityException exception) {
+      throw new IllegalArgumentException("Cannot bind parameters to " + type.getName() + ": " + exception, exception);
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Class} this {@link ParameterBinder} binds.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link Class} this {@link
+   * ParameterBinder} binds
+   */
+  @NotNull
+  public final Class<T> getType() {
+    return this.type;
+  }
+
+  /**
+   * Returns a new instance of the {@linkplain #getType() type} this
+   * {@link ParameterBinder} binds whose fields have been set from the
+   * supplied {@link Map}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param parameters the {@link Map} to bind; may be {@code null}
+   * in which case it is treated as empty
+   *
+   * @return a new, non-{@code null} instance of this {@link
+   * ParameterBinder}'s {@linkplain #getType() type}
+   *
+   * @exception IllegalArgumentException if a required member is
+   * missing or {@code null}, or a value cannot be converted to the
+   * type of its field; its message names the offending member
+   */
+  @NotNull
+  public final T bind(final Map<? extends String, ?> parameters) {
+    final Object instance;
+    try {
+      instance = (Object)this.constructor.invokeExact();
+    } catch (final RuntimeException | Error throwable) {
+      throw throwable;
+    } catch (final Throwable throwable) {
+      throw new IllegalArgumentException("Cannot instantiate " + this.type.getName(), throwable);
+    }
+    for (final Property property : this.properties) {
+      final Object value = parameters == null ? null : parameters.get(property.name);
+      if (value == null) {
+        if (property.required) {
+          throw new IllegalArgumentException("Missing required parameter \"" + property.name + "\"");
+        }
+      } else {
+        final Object converted;
+        try {
+          converted = property.conversion.apply(value);
+        } catch (final ArithmeticException | ClassCastException | IllegalArgumentException exception) {
+          throw new IllegalArgumentException("Invalid parameter \"" + property.name + "\": expected " +
+                                             property.typeName + " but got " + value, exception);
+        }
+        try {
+          property.setter.invokeExact(instance, converted);
+        } catch (final RuntimeException | Error throwable) {
+          throw throwable;
+        } catch (final Throwable throwable) {
+          throw new IllegalArgumentException("Cannot set parameter \"" + property.name + "\"", throwable);
+        }
+      }
+    }
+    return this.type.cast(instance);
+  }
+
+
+  /**
+   * Binds the supplied {@link Map} on behalf of the supplied command,
+   * reporting failures as {@link
+   * InvalidServiceBrokerCommandException}s.
+   */
+  final T bind(final AbstractCommand command, final Map<? extends String, ?> parameters)
+    throws InvalidServiceBrokerCommandException {
+    try {
+      return this.bind(parameters);
+    } catch (final IllegalArgumentException illegalArgumentException) {
+      throw new InvalidServiceBrokerCommandException(illegalArgumentException.getMessage(), illegalArgumentException, command);
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@link ParameterBinder} for the supplied {@link
+   * Class}, creating it if this is the first time it has been
+   * requested.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type to bind
+   *
+   * @param type the {@link Class} to bind; must not be {@code null}
+   *
+   * @return the non-{@code null} {@link ParameterBinder} for {@code
+   * type}
+   *
+   * @exception NullPointerException if {@code type} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code type} cannot be
+   * bound, for example because it has no constructor that takes no
+   * arguments
+   */
+  @NotNull
+  @SuppressWarnings("unchecked")
+  public static final <T> ParameterBinder<T> of(@NotNull final Class<T> type) {
+    Objects.requireNonNull(type, () -> "type must not be null");
+    return (ParameterBinder<T>)binders.get(type);
+  }
+
+  private static final boolean isRequired(final Field field) {
+    for (final Annotation annotation : field.getDeclaredAnnotations()) {
+      if (annotation.annotationType().getName().equals(NOT_NULL)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private static final Function<Object, Object> conversion(final Class<?> type) {
+    if (type == int.class || type == Integer.class) {
+      return value -> value instanceof Integer ? value : Integer.valueOf(toBigDecimal(value).intValueExact());
+    } else if (type == long.class || type == Long.class) {
+      return value -> value instanceof Long ? value : Long.valueOf(toBigDecimal(value).longValueExact());
+    } else if (type == short.class || type == Short.class) {
+      return value -> value instanceof Short ? value : Short.valueOf(toBigDecimal(value).shortValueExact());
+    } else if (type == byte.class || type == Byte.class) {
+      return value -> value instanceof Byte ? value : Byte.valueOf(toBigDecimal(value).byteValueExact());
+    } else if (type == double.class || type == Double.class) {
+      return value -> Double.valueOf(((Number)value).doubleValue());
+    } else if (type == float.class || type == Float.class) {
+      return value -> Float.valueOf(((Number)value).floatValue());
+    } else if (type == BigDecimal.class) {
+      return value -> toBigDecimal(value);
+    } else if (type == BigInteger.class) {
+      return value -> value instanceof BigInteger ? value : toBigDecimal(value).toBigIntegerExact();
+    } else if (type == boolean.class) {
+      return value -> (Boolean)value;
+    } else if (type == char.class) {
+      return value -> (Character)value;
+    } else if (type.isEnum()) {
+      final Class<? extends Enum> enumType = (Class<? extends Enum>)type;
+      return value -> value instanceof String ? Enum.valueOf(enumType, (String)value) : enumType.cast(value);
+    } else if (type.isPrimitive() || type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers()) ||
+               type.getName().startsWith("java.")) {
+      return value -> type.cast(value);
+    }
+    return value -> {
+      if (type.isInstance(value)) {
+        return value;
+      } else if (value instanceof Map) {
+        return of(type).bind((Map<? extends String, ?>)value);
+      }
+      throw new ClassCastException(value.getClass().getName());
+    };
+  }
+
+  private static final BigDecimal toBigDecimal(final Object value) {
+    if (value instanceof BigDecimal) {
+      return (BigDecimal)value;
+    } else if (value instanceof BigInteger) {
+      return new BigDecimal((BigInteger)value);
+    } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+      return BigDecimal.valueOf(((Number)value).longValue());
+    } else if (value instanceof Double || value instanceof Float) {
+      final double d = ((Number)value).doubleValue();
+      if (Double.isNaN(d) || Double.isInfinite(d)) {
+        throw new ArithmeticException(value.toString());
+      }
+      return BigDecimal.valueOf(d);
+    }
+    throw new ClassCastException(value.getClass().getName());
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * Names the parameter to which a field is bound when it differs
+   * from the name of the field, as it commonly does when parameters
+   * are named in {@code snake_case}.
+   *
+   * @see ParameterBinder
+   */
+  @Documented
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.FIELD)
+  public static @interface Name {
+
+    /**
+     * The name of the parameter.
+     *
+     * @return the non-{@code null} name of the parameter
+     */
+    String value();
+
+  }
+
+  private static final class Property {
+
+    @NotNull
+    private final String name;
+
+    @NotNull
+    private final String typeName;
+
+    private final boolean required;
+
+    @NotNull
+    private final Function<Object, Object> conversion;
+
+    @NotNull
+    private final MethodHandle setter;
+
+    private Property(final Field field, final MethodHandle setter) {
+      super();
+      final Name name = field.getAnnotation(Name.class);
+      this.name = name == null ? field.getName() : name.value();
+      this.typeName = field.getType().getSimpleName();
+      this.required = isRequired(field);
+      this.conversion = conversion(field.getType());
+      this.setter = setter;
+    }
+
+  }
+
+}
@@ -18,11 +18,7 @@ package org.microbean.servicebroker.api.command;
 
 import java.net.URI;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 
 // import javax.validation.constraints.NotEmpty;
@@ -35,6 +31,12 @@ public class ProvisionBindingCommand extends AbstractBindingCommand {
   private final BindResource bindResource;
 
   private final Map<? extends String, ?> parameters;
+
+  /**
+   * The {@linkplain #getParameters() parameters} most recently
+   * {@linkplain #bindParameters(Class) bound}, or {@code null}.
+   */
+  private volatile Object boundParameters;
   
   public ProvisionBindingCommand(@NotNull /* @NotEmpty */ final String serviceId,
                                  @NotNull /* @NotEmpty */ final String planId,
@@ -50,22 +52,56 @@ public class ProvisionBindingCommand extends AbstractBindingCommand {
                                  final BindResource bindResource,
                                  final Map<? extends String, ?> parameters) {
     super(bindingId, serviceInstanceId, serviceId, planId);
-    if (!Boolean.getBoolean("org.microbean.servicebroker.api.lenient")) {
-      Objects.requireNonNull(serviceId, () -> "serviceId must not be null");
-      Objects.requireNonNull(planId, () -> "planId must not be null");
-    }
     this.bindResource = bindResource;
-    if (parameters == null || parameters.isEmpty()) {
-      this.parameters = Collections.emptyMap();
-    } else {
-      this.parameters = Collections.unmodifiableMap(new HashMap<>(parameters));
-    }
+    this.parameters = ImmutableInputs.own(parameters);
+    CommandValidationPolicy.getDefault().validate(this);
   }
 
   public final Map<? extends String, ?> getParameters() {
     return this.parameters;
   }
 
+  /**
+   * Returns the {@linkplain #getParameters() parameters} of this
+   * command {@linkplain ParameterBinder bound} to a new instance of
+   * the supplied {@link Class}.
+   *
+   * <p>The parameters are bound at most once per {@link Class}: if
+   * this method is called again with the same {@link Class} as the
+   * last time, the same instance is returned.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type to bind to
+   *
+   * @param type the {@link Class} to bind to, typically one a
+   * service broker declares for the plan {@linkplain #getPlanId()
+   * identified by} this command; must not be {@code null}
+   *
+   * @return a non-{@code null} instance of {@code type}
+   *
+   * @exception NullPointerException if {@code type} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code type} cannot be
+   * bound
+   *
+   * @exception InvalidServiceBrokerCommandException if the
+   * parameters are missing a required member or have a member of the
+   * wrong type
+   *
+   * @see ParameterBinder
+   */
+  @NotNull
+  public final <T> T bindParameters(@NotNull final Class<T> type) throws InvalidServiceBrokerCommandException {
+    final Object boundParameters = this.boundParameters;
+    if (boundParameters != null && boundParameters.getClass() == type) {
+      return type.cast(boundParameters);
+    }
+    final T returnValue = ParameterBinder.of(type).bind(this, this.getParameters());
+    this.boundParameters = returnValue;
+    return returnValue;
+  }
+
   public final BindResource getBindResource() {
     return this.bindResource;
   }
@@ -133,18 +169,10 @@ public class ProvisionBindingCommand extends AbstractBindingCommand {
                     final URI routeServiceUri,
                     final Set<? extends Map<? extends String, ?>> volumeMounts) {
       super();
-      if (credentials == null || credentials.isEmpty()) {
-        this.credentials = Collections.emptyMap();
-      } else {
-        this.credentials = Collections.unmodifiableMap(new HashMap<>(credentials));
-      }
+      this.credentials = ImmutableInputs.own(credentials);
       this.syslogDrainUri = syslogDrainUri;
       this.routeServiceUri = routeServiceUri;
-      if (volumeMounts == null || volumeMounts.isEmpty()) {
-        this.volumeMounts = Collections.emptySet();
-      } else {
-        this.volumeMounts = Collections.unmodifiableSet(new HashSet<>(volumeMounts));
-      }
+      this.volumeMounts = ImmutableInputs.own(volumeMounts);
     }
 
     public final Map<? extends String, ?> getCredentials() {
@@ -19,7 +19,6 @@ package org.microbean.servicebroker.api.command;
 import java.net.URI;
 
 import java.util.Map;
-import java.util.Objects;
 
 // import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
@@ -67,15 +66,10 @@ public class ProvisionServiceInstanceCommand extends AbstractServiceInstanceMuta
                                          @NotNull /* @NotEmpty */ final String organizationGuid,
                                          @NotNull /* @NotEmpty */ final String spaceGuid,
                                          final Map<? extends String, ?> parameters) {
-    super(instanceId, serviceId, planId, parameters, acceptsIncomplete);
-    if (!Boolean.getBoolean("org.microbean.servicebroker.api.lenient")) {
-      Objects.requireNonNull(serviceId, () -> "serviceId must not be null");
-      Objects.requireNonNull(planId, () -> "planId must not be null");
-      Objects.requireNonNull(organizationGuid, () -> "organizationGuid must not be null");
-      Objects.requireNonNull(spaceGuid, () -> "spaceGuid must not be null");
-    }
+    super(instanceId, serviceId, planId, context, parameters, acceptsIncomplete);
     this.organizationGuid = organizationGuid;
     this.spaceGuid = spaceGuid;
+    CommandValidationPolicy.getDefault().validate(this);
   }
 
   public final String getOrganizationGuid() {
@@ -19,7 +19,6 @@ package org.microbean.servicebroker.api.command;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 
 // import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
@@ -62,10 +61,8 @@ public class UpdateServiceInstanceCommand extends AbstractServiceInstanceMutatin
                                       final boolean acceptsIncomplete,
                                       final PreviousValues previousValues) {
     super(instanceId, serviceId, planId, context, parameters, acceptsIncomplete);
-    if (!Boolean.getBoolean("org.microbean.servicebroker.api.lenient")) {
-      Objects.requireNonNull(serviceId, () -> "serviceId must not be null");
-    }
     this.previousValues = previousValues;
+    CommandValidationPolicy.getDefault().validate(this);
   }
 
   public final PreviousValues getPreviousValues() {
@@ -0,0 +1,714 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import java.util.zip.CRC32;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A durable, append-only log of opaque records, kept in a directory
+ * as a sequence of fixed-size, memory-mapped segment files.
+ *
+ * <p>{@linkplain #append(ByteBuffer) Appending} a record copies it
+ * into the mapped segment and returns its <em>position</em>, but does
+ * not make it durable.  A caller that must not proceed until a record
+ * has reached the disk {@linkplain #sync(long) syncs} to its
+ * position.  Syncs are committed in groups: while one caller forces
+ * the segment to disk, others wait, and the next force covers every
+ * record appended in the meantime, so that many concurrent callers
+ * share the cost of each force.</p>
+ *
+ * <p>Each segment begins with a header consisting of the {@linkplain
+ * #MAGIC magic number}, a {@linkplain #VERSION version} byte and the
+ * index of the segment.  Each record that follows is its length in
+ * bytes and the CRC-32 of its bytes, both as big-endian {@code int}s,
+ * followed by the bytes themselves.  A length of zero marks the end
+ * of a segment's records.  A record whose length or checksum is
+ * invalid at the end of the last segment is the remains of an append
+ * that was interrupted by a crash; it is replaced with an end marker
+ * when the {@link Journal} is opened.  Appends after a {@link
+ * Journal} is opened always go to a new segment, so that such remains
+ * are never followed by new records.</p>
+ *
+ * <p>A {@link Journal} is kept from growing without bound by
+ * {@linkplain #compact(ByteBuffer) compacting} it: a record that
+ * summarizes everything before it is appended to a new segment, and
+ * once it is durable all earlier segments are deleted.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @see JournalingServiceBroker
+ */
+public final class Journal implements Closeable {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The default size, in bytes, of a segment.
+   */
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private static final int MAGIC = 0x4F53424A; // "OSBJ"
+
+  private static final byte VERSION = 1;
+
+  private static final int HEADER_SIZE = 16;
+
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  private static final String PREFIX = "segment-";
+
+  private static final String SUFFIX = ".journal";
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  @NotNull
+  private final Path directory;
+
+  private final int segmentSize;
+
+  @NotNull
+  private final Object lock;
+
+  /**
+   * The indices of the segments in this {@link Journal}, in
+   * ascending order, including that of the {@linkplain #current
+   * current segment}.
+   *
+   * <p>Guarded by {@link #lock}.</p>
+   */
+  @NotNull
+  private final List<Long> segmentIndices;
+
+  /**
+   * The segment being appended to.
+   *
+   * <p>Guarded by {@link #lock}.</p>
+   */
+  @NotNull
+  private Segment current;
+
+  /**
+   * The position up to which every record is known to be durable.
+   *
+   * <p>Guarded by {@link #lock}.</p>
+   */
+  private long durablePosition;
+
+  /**
+   * Whether some thread is forcing a segment to disk.
+   *
+   * <p>Guarded by {@link #lock}.</p>
+   */
+  private boolean syncing;
+
+  /**
+   * Guarded by {@link #lock}.
+   */
+  private boolean closed;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Opens the {@link Journal} in the supplied directory, creating the
+   * directory if necessary, with {@linkplain #DEFAULT_SEGMENT_SIZE
+   * segments of the default size}.
+   *
+   * @param directory the directory; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code directory} is {@code
+   * null}
+   *
+   * @exception IOException if the directory could not be created or
+   * read, or contains a corrupt segment
+   *
+   * @see #Journal(Path, int)
+   */
+  public Journal(@NotNull final Path directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Opens the {@link Journal} in the supplied directory, creating the
+   * directory if necessary.
+   *
+   * <p>Existing segments are validated, and a new segment is created
+   * to receive appends.  Existing records can be read with the {@link
+   * #replay(RecordHandler)} method.</p>
+   *
+   * @param directory the directory; must not be {@code null}
+   *
+   * @param segmentSize the size, in bytes, of each new segment, which
+   * bounds the size of a record; must be at least 4096
+   *
+   * @exception NullPointerException if {@code directory} is {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code segmentSize} is less
+   * than 4096
+   *
+   * @exception IOException if the directory could not be created or
+   * read, or contains a corrupt segment
+   */
+  public Journal(@NotNull final Path directory, final int segmentSize) throws IOException {
+    super();
+    Objects.requireNonNull(directory, () -> "directory must not be null");
+    if (segmentSize < 4096) {
+      throw new IllegalArgumentException("segmentSize < 4096: " + segmentSize);
+    }
+    this.directory = Files.createDirectories(directory);
+    this.segmentSize = segmentSize;
+    this.lock = new Object();
+    final List<Long> segmentIndices = new ArrayList<>();
+    try (final DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, PREFIX + "*" + SUFFIX)) {
+      for (final Path path : stream) {
+        final String name = path.getFileName().toString();
+        try {
+          segmentIndices.add(Long.valueOf(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()), 16)));
+        } catch (final NumberFormatException numberFormatException) {
+          throw new IOException("Unexpected file in journal: " + path, numberFormatException);
+        }
+      }
+    }
+    Collections.sort(segmentIndices);
+    if (!segmentIndices.isEmpty()) {
+      final int lastIndex = segmentIndices.size() - 1;
+      final long index = segmentIndices.get(lastIndex).longValue();
+      if (this.isHeaderless(index)) {
+        // A crash between creating the last segment and forcing its
+        // header left it without one, so it holds no records.  It is
+        // recreated below.
+        Files.delete(this.path(index));
+        segmentIndices.remove(lastIndex);
+      }
+    }
+    for (int i = 0; i < segmentIndices.size(); i++) {
+      // Only the last segment may end in the remains of an
+      // interrupted append; earlier ones were forced before the next
+      // was created.
+      final long index = segmentIndices.get(i).longValue();
+      final boolean last = i + 1 == segmentIndices.size();
+      final int end = this.scan(index, null, last);
+      if (last) {
+        // Mark the end of the valid records, so that any remains
+        // after them are not mistaken for corruption once this is no
+        // longer the last segment.
+        try (final FileChannel channel = FileChannel.open(this.path(index), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+          if (channel.size() - end >= RECORD_HEADER_SIZE) {
+            channel.write(ByteBuffer.allocate(RECORD_HEADER_SIZE), end);
+            channel.force(false);
+          }
+        }
+      }
+    }
+    this.segmentIndices = segmentIndices;
+    synchronized (this.lock) {
+      this.current = this.createSegment(segmentIndices.isEmpty() ? 0L : segmentIndices.get(segmentIndices.size() - 1).longValue() + 1L);
+      this.durablePosition = this.current.getPosition();
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the number of segments in this {@link Journal}, including
+   * the one being appended to.
+   *
+   * @return the number of segments; always at least {@code 1} until
+   * this {@link Journal} is {@linkplain #close() closed}
+   */
+  public final int getSegmentCount() {
+    synchronized (this.lock) {
+      return this.segmentIndices.size();
+    }
+  }
+
+  /**
+   * Returns the size, in bytes, of the largest record that can be
+   * {@linkplain #append(ByteBuffer) appended} to this {@link
+   * Journal}.
+   *
+   * @return the size of the largest record; always positive
+   */
+  public final int getMaxRecordSize() {
+    return this.segmentSize - HEADER_SIZE - RECORD_HEADER_SIZE;
+  }
+
+  /**
+   * Appends a record consisting of the remaining bytes of the
+   * supplied {@link ByteBuffer} to this {@link Journal}, moving to a
+   * new segment if the current one is full, and returns the position
+   * just past it.
+   *
+   * <p>The record is not necessarily durable when this method
+   * returns.</p>
+   *
+   * @param record the record to append; must not be {@code null};
+   * its position is not changed
+   *
+   * @return the position just past the record, suitable for passing
+   * to the {@link #sync(long)} method
+   *
+   * @exception NullPointerException if {@code record} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code record} is empty or
+   * would not fit in an empty segment
+   *
+   * @exception IllegalStateException if this {@link Journal} has been
+   * {@linkplain #close() closed}
+   *
+   * @exception IOException if a new segment was needed and could not
+   * be created
+   */
+  public final long append(@NotNull final ByteBuffer record) throws IOException {
+    Objects.requireNonNull(record, () -> "record must not be null");
+    final int length = record.remaining();
+    this.checkRecordLength(length);
+    // Checksum outside the lock so that concurrent callers contend
+    // only for the copy into the segment.
+    final CRC32 crc = new CRC32();
+    crc.update(record.duplicate());
+    final int checksum = (int)crc.getValue();
+    synchronized (this.lock) {
+      if (this.closed) {
+        throw new IllegalStateException("closed");
+      }
+      if (this.current.getRemaining() < RECORD_HEADER_SIZE + length) {
+        this.roll();
+      }
+      return this.current.append(record, checksum);
+    }
+  }
+
+  /**
+   * Blocks until every record up to the supplied position is
+   * durable.
+   *
+   * <p>If no other thread is forcing this {@link Journal} to disk,
+   * the calling thread does so, on behalf of every record appended so
+   * far; otherwise it waits for that thread, and then forces again
+   * if its record was not covered.</p>
+   *
+   * @param position a position returned by the {@link
+   * #append(ByteBuffer)} method
+   *
+   * @exception IllegalStateException if this {@link Journal} was
+   * {@linkplain #close() closed} before the record became durable
+   *
+   * @exception InterruptedIOException if the calling thread was
+   * interrupted while waiting
+   *
+   * @exception IOException if the segment could not be forced to
+   * disk
+   */
+  public final void sync(final long position) throws IOException {
+    final Segment segment;
+    final long target;
+    synchronized (this.lock) {
+      while (this.durablePosition < position) {
+        if (this.closed) {
+          throw new IllegalStateException("closed");
+        }
+        if (!this.syncing) {
+          break;
+        }
+        try {
+          this.lock.wait();
+        } catch (final InterruptedException interruptedException) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+      if (this.durablePosition >= position) {
+        return;
+      }
+      this.syncing = true;
+      segment = this.current;
+      target = segment.getPosition();
+    }
+    boolean success = false;
+    try {
+      segment.force();
+      success = true;
+    } finally {
+      synchronized (this.lock) {
+        this.syncing = false;
+        if (success && target > this.durablePosition) {
+          this.durablePosition = target;
+        }
+        this.lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Calls the supplied {@link RecordHandler} with each record in this
+   * {@link Journal}, oldest first.
+   *
+   * <p>Records appended concurrently with a call to this method may
+   * or may not be replayed.</p>
+   *
+   * @param handler the {@link RecordHandler} to call; must not be
+   * {@code null}; each {@link ByteBuffer} it is passed is read-only
+   * and valid only for the duration of the call
+   *
+   * @exception NullPointerException if {@code handler} is {@code null}
+   *
+   * @exception IOException if a segment could not be read or is
+   * corrupt, or if {@code handler} throws an {@link IOException}
+   */
+  public final void replay(@NotNull final RecordHandler handler) throws IOException {
+    Objects.requireNonNull(handler, () -> "handler must not be null");
+    final List<Long> segmentIndices;
+    synchronized (this.lock) {
+      segmentIndices = new ArrayList<>(this.segmentIndices);
+    }
+    for (final Long index : segmentIndices) {
+      this.scan(index.longValue(), handler, false);
+    }
+  }
+
+  /**
+   * Appends the supplied record, which must summarize every record
+   * before it, as the first record of a new segment, waits for it to
+   * become durable, and then deletes every earlier segment.
+   *
+   * <p>Callers must ensure that no record that the summary does not
+   * account for is appended between the time the summary is taken and
+   * the time this method returns.  A reader {@linkplain
+   * #replay(RecordHandler) replaying} this {@link Journal} after a
+   * crash that interrupted this method may see the summary after the
+   * records it summarizes, and must therefore recognize it and
+   * discard what it had read until then.</p>
+   *
+   * @param summary the summary record; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code summary} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code summary} is empty or
+   * would not fit in an empty segment
+   *
+   * @exception IllegalStateException if this {@link Journal} has been
+   * {@linkplain #close() closed}
+   *
+   * @exception IOException if the new segment could not be created or
+   * forced to disk, or an earlier segment could not be deleted
+   */
+  public final void compact(@NotNull final ByteBuffer summary) throws IOException {
+    Objects.requireNonNull(summary, () -> "summary must not be null");
+    // Check before rolling, so that a summary that cannot be appended
+    // does not leave an empty segment behind.
+    this.checkRecordLength(summary.remaining());
+    final long position;
+    final List<Long> obsoleteSegmentIndices;
+    synchronized (this.lock) {
+      if (this.closed) {
+        throw new IllegalStateException("closed");
+      }
+      this.roll();
+      position = this.append(summary);
+      final List<Long> segmentIndices = this.segmentIndices.subList(0, this.segmentIndices.size() - 1);
+      obsoleteSegmentIndices = new ArrayList<>(segmentIndices);
+      segmentIndices.clear();
+    }
+    this.sync(position);
+    for (final Long index : obsoleteSegmentIndices) {
+      Files.deleteIfExists(this.path(index.longValue()));
+    }
+  }
+
+  /**
+   * Forces the current segment to disk and closes this {@link
+   * Journal}.
+   *
+   * <p>Mapped segments are released when they are garbage
+   * collected.</p>
+   *
+   * @exception IOException if the current segment could not be forced
+   * to disk or closed
+   */
+  @Override
+  public final void close() throws IOException {
+    synchronized (this.lock) {
+      if (!this.closed) {
+        this.closed = true;
+        this.lock.notifyAll();
+        this.current.close();
+      }
+    }
+  }
+
+  /**
+   * Forces the current segment to disk, closes it, and creates the
+   * next one.
+   *
+   * <p>Must be called while holding {@link #lock}.</p>
+   */
+  private final void roll() throws IOException {
+    final Segment old = this.current;
+    old.close();
+    if (old.getPosition() > this.durablePosition) {
+      this.durablePosition = old.getPosition();
+    }
+    this.current = this.createSegment(old.index + 1L);
+  }
+
+  private final void checkRecordLength(final int length) {
+    if (length == 0 || length > this.getMaxRecordSize()) {
+      throw new IllegalArgumentException("Invalid record length: " + length);
+    }
+  }
+
+  private final Segment createSegment(final long index) throws IOException {
+    final Segment segment = new Segment(index, this.path(index), this.segmentSize);
+    this.segmentIndices.add(Long.valueOf(index));
+    return segment;
+  }
+
+  /**
+   * Returns {@code true} if the segment with the supplied index is too
+   * short to hold a header or has a header consisting entirely of
+   * zeros, as a segment does whose creation was interrupted.
+   */
+  private final boolean isHeaderless(final long index) throws IOException {
+    try (final FileChannel channel = FileChannel.open(this.path(index), StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        return true;
+      }
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      while (header.hasRemaining()) {
+        if (channel.read(header, header.position()) < 0) {
+          return true;
+        }
+      }
+      for (int i = 0; i < HEADER_SIZE; i++) {
+        if (header.get(i) != 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Validates the segment with the supplied index, passes each of its
+   * records to the supplied {@link RecordHandler}, if any, and
+   * returns the offset just past its last valid record.
+   */
+  private final int scan(final long index, final RecordHandler handler, final boolean last) throws IOException {
+    final Path path = this.path(index);
+    final MappedByteBuffer buffer;
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+    }
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a journal segment: " + path);
+    }
+    if (buffer.get(4) != VERSION) {
+      throw new IOException("Unsupported journal segment version: " + buffer.get(4) + ": " + path);
+    }
+    if (buffer.getLong(8) != index) {
+      throw new IOException("Journal segment " + path + " has index " + buffer.getLong(8));
+    }
+    final CRC32 crc = new CRC32();
+    int position = HEADER_SIZE;
+    while (buffer.limit() - position >= RECORD_HEADER_SIZE) {
+      final int length = buffer.getInt(position);
+      if (length == 0) {
+        break;
+      }
+      boolean valid = length > 0 && length <= buffer.limit() - position - RECORD_HEADER_SIZE;
+      final ByteBuffer record;
+      if (valid) {
+        record = buffer.duplicate();
+        record.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+        crc.reset();
+        crc.update(record.duplicate());
+        valid = (int)crc.getValue() == buffer.getInt(position + 4);
+      } else {
+        record = null;
+      }
+      if (!valid) {
+        if (last) {
+          break;
+        }
+        throw new IOException("Corrupt journal segment " + path + " at offset " + position);
+      }
+      if (handler != null) {
+        handler.handle(record.asReadOnlyBuffer());
+      }
+      position += RECORD_HEADER_SIZE + length;
+    }
+    return position;
+  }
+
+  private final Path path(final long index) {
+    return this.directory.resolve(String.format("%s%016x%s", PREFIX, Long.valueOf(index), SUFFIX));
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final long position(final long index, final int offset) {
+    return (index << 32) | offset;
+  }
+
+  /**
+   * Forces the entries of the supplied directory to disk, so that
+   * files just created in it survive a crash.
+   *
+   * <p>Some platforms, notably Windows, cannot open a directory for
+   * this purpose; there this method does nothing.</p>
+   */
+  private static final void forceDirectory(final Path directory) throws IOException {
+    final FileChannel channel;
+    try {
+      channel = FileChannel.open(directory, StandardOpenOption.READ);
+    } catch (final IOException ioException) {
+      return;
+    }
+    try {
+      channel.force(true);
+    } finally {
+      channel.close();
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A handler of the records {@linkplain Journal#replay(RecordHandler)
+   * replayed} from a {@link Journal}.
+   *
+   * @see Journal#replay(RecordHandler)
+   */
+  @FunctionalInterface
+  public static interface RecordHandler {
+
+    /**
+     * Handles the supplied record.
+     *
+     * @param record the record; will not be {@code null}; is
+     * read-only and valid only for the duration of the call
+     *
+     * @exception IOException if the record could not be handled
+     */
+    public void handle(final ByteBuffer record) throws IOException;
+
+  }
+
+  private static final class Segment {
+
+    private final long index;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private int offset;
+
+    private Segment(final long index, final Path path, final int size) throws IOException {
+      super();
+      this.index = index;
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+      this.buffer.putInt(0, MAGIC);
+      this.buffer.put(4, VERSION);
+      this.buffer.putLong(8, index);
+      this.offset = HEADER_SIZE;
+      // Make the header, the file's length and its directory entry
+      // durable before any record can be acknowledged in it.
+      this.buffer.force();
+      this.channel.force(true);
+      forceDirectory(path.getParent());
+    }
+
+    private final long getPosition() {
+      return position(this.index, this.offset);
+    }
+
+    private final int getRemaining() {
+      return this.buffer.capacity() - this.offset;
+    }
+
+    private final long append(final ByteBuffer record, final int checksum) {
+      final int length = record.remaining();
+      final ByteBuffer target = this.buffer.duplicate();
+      target.position(this.offset + RECORD_HEADER_SIZE);
+      target.put(record.duplicate());
+      this.buffer.putInt(this.offset + 4, checksum);
+      this.buffer.putInt(this.offset, length);
+      this.offset += RECORD_HEADER_SIZE + length;
+      return this.getPosition();
+    }
+
+    private final void force() throws IOException {
+      this.buffer.force();
+    }
+
+    private final void close() throws IOException {
+      this.buffer.force();
+      this.channel.close();
+    }
+
+  }
+
+}
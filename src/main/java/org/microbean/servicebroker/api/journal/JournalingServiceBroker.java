@@ -0,0 +1,792 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.journal;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.AbstractStatefulObject;
+import org.microbean.servicebroker.api.DelegatingServiceBroker;
+import org.microbean.servicebroker.api.ServiceBroker;
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.binary.BinaryCodec;
+import org.microbean.servicebroker.api.binary.BinaryReader;
+import org.microbean.servicebroker.api.binary.BinaryWriter;
+import org.microbean.servicebroker.api.binary.MalformedBinaryException;
+
+import org.microbean.servicebroker.api.command.AbstractBindingCommand;
+import org.microbean.servicebroker.api.command.AbstractCommand;
+import org.microbean.servicebroker.api.command.AbstractServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+/**
+ * A {@link DelegatingServiceBroker} that journals every command it
+ * executes, and its outcome, to a {@link Journal} before
+ * acknowledging it, and that rebuilds what it knows about
+ * asynchronous operations and service instances from that {@link
+ * Journal} when it is created.
+ *
+ * <p>Before a command is passed to the delegate, an <em>intent</em>
+ * record holding it is made durable; before its response is returned
+ * or its exception is rethrown, an <em>outcome</em> record is.  A
+ * command whose intent was journaled but whose outcome was not, which
+ * is what a crash between the two leaves behind, is <em>{@linkplain
+ * #getInDoubtCommands() in doubt}</em>: the delegate may or may not
+ * have acted on it.  Syncs are {@linkplain Journal#sync(long)
+ * committed in groups}, so concurrent commands share the cost of
+ * forcing the journal to disk.</p>
+ *
+ * <p>From the outcomes it journals, a {@link
+ * JournalingServiceBroker} tracks the {@linkplain
+ * #getPendingOperations() asynchronous operations} that are still in
+ * progress, and the {@linkplain #getServiceId(String) service} to
+ * which each service instance it knows of belongs.  An operation
+ * stops being pending when a {@linkplain
+ * #getLastOperation(LastOperationQuery) last operation query}
+ * reports that it has finished, which is journaled too.</p>
+ *
+ * <p>Whenever the {@link Journal} has moved on to a new segment, it
+ * is {@linkplain Journal#compact(ByteBuffer) compacted} with a
+ * checkpoint of this state, so that it does not grow without
+ * bound.</p>
+ *
+ * @see Journal
+ */
+public class JournalingServiceBroker extends DelegatingServiceBroker {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final byte INTENT = 1;
+
+  private static final byte RESPONSE = 2;
+
+  private static final byte FAILURE = 3;
+
+  private static final byte COMPLETION = 4;
+
+  private static final byte CHECKPOINT = 5;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  @NotNull
+  private final Journal journal;
+
+  /**
+   * Serializes appending a record to the {@link #journal} with
+   * applying it to the state below, so that the two happen in the
+   * same order, and so that a checkpoint reflects exactly the records
+   * before it.
+   */
+  @NotNull
+  private final Object lock;
+
+  @NotNull
+  private final Map<Long, AbstractCommand> inDoubtCommands;
+
+  @NotNull
+  private final Map<String, PendingOperation> pendingOperations;
+
+  @NotNull
+  private final Map<String, String> serviceIds;
+
+  /**
+   * The identifier of the next intent record.
+   *
+   * <p>Guarded by {@link #lock}.</p>
+   */
+  private long nextId;
+
+  /**
+   * The identifier of the first intent record journaled by this
+   * {@link JournalingServiceBroker}, as opposed to replayed.
+   */
+  private final long firstId;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link JournalingServiceBroker} and rebuilds its
+   * state by {@linkplain Journal#replay(Journal.RecordHandler)
+   * replaying} the supplied {@link Journal}.
+   *
+   * @param delegate the {@link ServiceBroker} to journal commands
+   * for; must not be {@code null}
+   *
+   * @param journal the {@link Journal} to replay and journal to; must
+   * not be {@code null}; must not be used by anything else
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if {@code journal} could not be replayed
+   */
+  public JournalingServiceBroker(@NotNull final ServiceBroker delegate, @NotNull final Journal journal) throws IOException {
+    super(delegate);
+    Objects.requireNonNull(journal, () -> "journal must not be null");
+    this.journal = journal;
+    this.lock = new Object();
+    this.inDoubtCommands = new ConcurrentHashMap<>();
+    this.pendingOperations = new ConcurrentHashMap<>();
+    this.serviceIds = new ConcurrentHashMap<>();
+    final BinaryReader reader = new BinaryReader();
+    synchronized (this.lock) {
+      journal.replay(record -> this.replay(reader, record));
+      this.firstId = this.nextId;
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Journal} this {@link JournalingServiceBroker}
+   * journals to.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link Journal}
+   */
+  @NotNull
+  public final Journal getJournal() {
+    return this.journal;
+  }
+
+  /**
+   * Returns an unmodifiable view of the asynchronous operations that
+   * have been accepted but not yet seen to finish, indexed by the
+   * identifier of the service instance they affect.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map}
+   */
+  @NotNull
+  public final Map<String, PendingOperation> getPendingOperations() {
+    return Collections.unmodifiableMap(this.pendingOperations);
+  }
+
+  /**
+   * Returns an unmodifiable view of the commands that are executing
+   * now, or that were executing when the process that journaled them
+   * stopped and so may or may not have taken effect, indexed by the
+   * identifiers of their intent records.
+   *
+   * <p>A command recovered from the {@link Journal} stops being in
+   * doubt once an outcome is journaled for a later command affecting
+   * the same service instance.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map}
+   */
+  @NotNull
+  public final Map<Long, AbstractCommand> getInDoubtCommands() {
+    return Collections.unmodifiableMap(this.inDoubtCommands);
+  }
+
+  /**
+   * Returns the identifier of the service to which the service
+   * instance identified by the supplied identifier belongs, if it has
+   * been provisioned, or is being provisioned, and has not been
+   * deprovisioned, through this {@link JournalingServiceBroker}.
+   *
+   * @param instanceId the identifier of the service instance; may be
+   * {@code null} in which case {@code null} will be returned
+   *
+   * @return the identifier of the service, or {@code null}
+   */
+  public final String getServiceId(final String instanceId) {
+    return instanceId == null ? null : this.serviceIds.get(instanceId);
+  }
+
+  /**
+   * Returns the last operation for the service instance identified by
+   * the supplied {@link LastOperationQuery} and, if it has finished
+   * and was {@linkplain #getPendingOperations() pending}, journals
+   * that it has.
+   *
+   * @param lastOperationQuery the query; must not be {@code null}
+   *
+   * @return the {@link LastOperation}
+   *
+   * @exception NullPointerException if {@code lastOperationQuery} is
+   * {@code null}
+   *
+   * @exception ServiceBrokerException if the delegate fails, or if the
+   * completion could not be journaled
+   */
+  @NotNull
+  @Override
+  public LastOperation getLastOperation(@NotNull final LastOperationQuery lastOperationQuery) throws ServiceBrokerException {
+    final LastOperation returnValue = super.getLastOperation(lastOperationQuery);
+    if (returnValue != null && returnValue.getState() != LastOperation.State.IN_PROGRESS) {
+      final String instanceId = lastOperationQuery.getInstanceId();
+      if (instanceId != null && this.pendingOperations.containsKey(instanceId)) {
+        final BinaryWriter writer = new BinaryWriter();
+        writer.writeByte(COMPLETION);
+        writer.writeString(instanceId);
+        writer.writeString(returnValue.getState().name());
+        final ByteBuffer record = writer.endMessage();
+        try {
+          final long position;
+          synchronized (this.lock) {
+            if (!this.pendingOperations.containsKey(instanceId)) {
+              return returnValue;
+            }
+            position = this.journal.append(record);
+            this.complete(instanceId, returnValue.getState());
+          }
+          this.journal.sync(position);
+        } catch (final IOException ioException) {
+          throw new ServiceBrokerException(ioException);
+        }
+        this.compactIfNecessary();
+      }
+    }
+    return returnValue;
+  }
+
+  @NotNull
+  @Override
+  public ProvisionBindingCommand.Response execute(@NotNull final ProvisionBindingCommand command) throws ServiceBrokerException {
+    final long id = this.intend(command);
+    final ProvisionBindingCommand.Response returnValue;
+    try {
+      returnValue = super.execute(command);
+    } catch (final ServiceBrokerException | RuntimeException exception) {
+      this.fail(id, exception);
+      throw exception;
+    }
+    this.respond(id, command, false, returnValue);
+    return returnValue;
+  }
+
+  @NotNull
+  @Override
+  public DeleteBindingCommand.Response execute(@NotNull final DeleteBindingCommand command) throws ServiceBrokerException {
+    final long id = this.intend(command);
+    final DeleteBindingCommand.Response returnValue;
+    try {
+      returnValue = super.execute(command);
+    } catch (final ServiceBrokerException | RuntimeException exception) {
+      this.fail(id, exception);
+      throw exception;
+    }
+    this.respond(id, command, false, returnValue);
+    return returnValue;
+  }
+
+  @NotNull
+  @Override
+  public ProvisionServiceInstanceCommand.Response execute(@NotNull final ProvisionServiceInstanceCommand command) throws ServiceBrokerException {
+    final long id = this.intend(command);
+    final ProvisionServiceInstanceCommand.Response returnValue;
+    try {
+      returnValue = super.execute(command);
+    } catch (final ServiceBrokerException | RuntimeException exception) {
+      this.fail(id, exception);
+      throw exception;
+    }
+    this.respond(id, command, this.isAsynchronous(command, returnValue == null ? null : returnValue.getOperation()), returnValue);
+    return returnValue;
+  }
+
+  @NotNull
+  @Override
+  public UpdateServiceInstanceCommand.Response execute(@NotNull final UpdateServiceInstanceCommand command) throws ServiceBrokerException {
+    final long id = this.intend(command);
+    final UpdateServiceInstanceCommand.Response returnValue;
+    try {
+      returnValue = super.execute(command);
+    } catch (final ServiceBrokerException | RuntimeException exception) {
+      this.fail(id, exception);
+      throw exception;
+    }
+    this.respond(id, command, this.isAsynchronous(command, returnValue == null ? null : returnValue.getOperation()), returnValue);
+    return returnValue;
+  }
+
+  @NotNull
+  @Override
+  public DeleteServiceInstanceCommand.Response execute(@NotNull final DeleteServiceInstanceCommand command) throws ServiceBrokerException {
+    final long id = this.intend(command);
+    final DeleteServiceInstanceCommand.Response returnValue;
+    try {
+      returnValue = super.execute(command);
+    } catch (final ServiceBrokerException | RuntimeException exception) {
+      this.fail(id, exception);
+      throw exception;
+    }
+    this.respond(id, command, this.isAsynchronous(command, returnValue == null ? null : returnValue.getOperation()), returnValue);
+    return returnValue;
+  }
+
+  private final long intend(final AbstractCommand command) throws ServiceBrokerException {
+    final BinaryWriter writer = new BinaryWriter();
+    final long id;
+    final long position;
+    try {
+      synchronized (this.lock) {
+        id = this.nextId++;
+        writer.writeByte(INTENT);
+        writer.writeVarLong(id);
+        BinaryCodec.write(writer, command);
+        position = this.journal.append(writer.endMessage());
+        this.inDoubtCommands.put(Long.valueOf(id), command);
+      }
+      this.journal.sync(position);
+    } catch (final IOException ioException) {
+      throw new ServiceBrokerException(ioException);
+    }
+    return id;
+  }
+
+  private final void respond(final long id,
+                             final AbstractCommand command,
+                             final boolean asynchronous,
+                             final AbstractStatefulObject response)
+    throws ServiceBrokerException {
+    final BinaryWriter writer = new BinaryWriter();
+    writer.writeByte(RESPONSE);
+    writer.writeVarLong(id);
+    writer.writeBoolean(asynchronous);
+    writer.writeBoolean(response != null);
+    if (response != null) {
+      BinaryCodec.write(writer, response);
+    }
+    this.commit(writer.endMessage(), id, command, asynchronous, response);
+  }
+
+  private final void fail(final long id, final Exception exception) throws ServiceBrokerException {
+    final BinaryWriter writer = new BinaryWriter();
+    writer.writeByte(FAILURE);
+    writer.writeVarLong(id);
+    writer.writeString(exception.getClass().getName());
+    writer.writeString(exception.getMessage());
+    this.commit(writer.endMessage(), id, null, false, null);
+  }
+
+  private final void commit(final ByteBuffer record,
+                            final long id,
+                            final AbstractCommand command,
+                            final boolean asynchronous,
+                            final AbstractStatefulObject response)
+    throws ServiceBrokerException {
+    try {
+      final long position;
+      synchronized (this.lock) {
+        position = this.journal.append(record);
+        this.inDoubtCommands.remove(Long.valueOf(id));
+        if (command != null) {
+          this.apply(command, asynchronous, response);
+        }
+      }
+      this.journal.sync(position);
+    } catch (final IOException ioException) {
+      throw new ServiceBrokerException(ioException);
+    }
+    this.compactIfNecessary();
+  }
+
+  /**
+   * Updates the state of this {@link JournalingServiceBroker} to
+   * reflect the successful execution of the supplied command.
+   *
+   * <p>Must be called while holding {@link #lock}.</p>
+   */
+  private final void apply(final AbstractCommand command, final boolean asynchronous, final AbstractStatefulObject response) {
+    final String instanceId;
+    if (command instanceof AbstractServiceInstanceCommand) {
+      final AbstractServiceInstanceCommand instanceCommand = (AbstractServiceInstanceCommand)command;
+      instanceId = instanceCommand.getInstanceId();
+      if (instanceId != null) {
+        final PendingOperation.Kind kind;
+        final String operation;
+        if (command instanceof ProvisionServiceInstanceCommand) {
+          kind = PendingOperation.Kind.PROVISION;
+          operation = response == null ? null : ((ProvisionServiceInstanceCommand.Response)response).getOperation();
+          this.serviceIds.put(instanceId, instanceCommand.getServiceId());
+        } else if (command instanceof UpdateServiceInstanceCommand) {
+          kind = PendingOperation.Kind.UPDATE;
+          operation = response == null ? null : ((UpdateServiceInstanceCommand.Response)response).getOperation();
+        } else {
+          kind = PendingOperation.Kind.DEPROVISION;
+          operation = response == null ? null : ((DeleteServiceInstanceCommand.Response)response).getOperation();
+          if (!asynchronous) {
+            this.serviceIds.remove(instanceId);
+          }
+        }
+        if (asynchronous) {
+          this.pendingOperations.put(instanceId,
+                                     new PendingOperation(kind, instanceId, instanceCommand.getServiceId(), instanceCommand.getPlanId(), operation));
+        } else {
+          this.pendingOperations.remove(instanceId);
+        }
+      }
+    } else if (command instanceof AbstractBindingCommand) {
+      instanceId = ((AbstractBindingCommand)command).getInstanceId();
+    } else {
+      instanceId = null;
+    }
+    if (instanceId != null) {
+      // An outcome for this service instance settles any recovered
+      // command affecting it that is still in doubt.
+      final Iterator<Map.Entry<Long, AbstractCommand>> iterator = this.inDoubtCommands.entrySet().iterator();
+      while (iterator.hasNext()) {
+        final Map.Entry<Long, AbstractCommand> entry = iterator.next();
+        if (entry.getKey().longValue() < this.firstId && instanceId.equals(getInstanceId(entry.getValue()))) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Updates the state of this {@link JournalingServiceBroker} to
+   * reflect the completion of the pending operation affecting the
+   * service instance identified by the supplied identifier.
+   *
+   * <p>Must be called while holding {@link #lock}.</p>
+   */
+  private final void complete(final String instanceId, final LastOperation.State state) {
+    final PendingOperation pendingOperation = this.pendingOperations.remove(instanceId);
+    if (pendingOperation != null) {
+      switch (pendingOperation.getKind()) {
+      case PROVISION:
+        if (state == LastOperation.State.FAILED) {
+          this.serviceIds.remove(instanceId);
+        }
+        break;
+      case DEPROVISION:
+        if (state == LastOperation.State.SUCCEEDED) {
+          this.serviceIds.remove(instanceId);
+        }
+        break;
+      default:
+        break;
+      }
+    }
+  }
+
+  private final void compactIfNecessary() throws ServiceBrokerException {
+    if (this.journal.getSegmentCount() > 1) {
+      synchronized (this.lock) {
+        if (this.journal.getSegmentCount() > 1) {
+          try {
+            this.journal.compact(this.checkpoint());
+          } catch (final IOException ioException) {
+            throw new ServiceBrokerException(ioException);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a record holding the state of this {@link
+   * JournalingServiceBroker}.
+   *
+   * <p>Must be called while holding {@link #lock}.</p>
+   */
+  private final ByteBuffer checkpoint() {
+    final BinaryWriter writer = new BinaryWriter();
+    writer.writeByte(CHECKPOINT);
+    writer.writeVarLong(this.nextId);
+    writer.writeVarLong(this.inDoubtCommands.size());
+    for (final Map.Entry<Long, AbstractCommand> entry : this.inDoubtCommands.entrySet()) {
+      writer.writeVarLong(entry.getKey().longValue());
+      BinaryCodec.write(writer, entry.getValue());
+    }
+    writer.writeVarLong(this.pendingOperations.size());
+    for (final PendingOperation pendingOperation : this.pendingOperations.values()) {
+      writer.writeByte(pendingOperation.getKind().ordinal());
+      writer.writeString(pendingOperation.getInstanceId());
+      writer.writeString(pendingOperation.getServiceId());
+      writer.writeString(pendingOperation.getPlanId());
+      writer.writeString(pendingOperation.getOperation());
+    }
+    writer.writeVarLong(this.serviceIds.size());
+    for (final Map.Entry<String, String> entry : this.serviceIds.entrySet()) {
+      writer.writeString(entry.getKey());
+      writer.writeString(entry.getValue());
+    }
+    return writer.endMessage();
+  }
+
+  /**
+   * Applies a record read from the {@link #journal} to the state of
+   * this {@link JournalingServiceBroker}.
+   *
+   * <p>Must be called while holding {@link #lock}.</p>
+   */
+  private final void replay(final BinaryReader reader, final ByteBuffer record) throws IOException {
+    if (!reader.beginMessage(record)) {
+      throw new MalformedBinaryException("Truncated journal record", record.position());
+    }
+    final byte type = reader.readByte();
+    switch (type) {
+    case INTENT:
+      final long intentId = reader.readVarLong();
+      this.inDoubtCommands.put(Long.valueOf(intentId), BinaryCodec.read(reader, AbstractCommand.class));
+      this.nextId = Math.max(this.nextId, intentId + 1L);
+      break;
+    case RESPONSE:
+      final AbstractCommand command = this.inDoubtCommands.remove(Long.valueOf(reader.readVarLong()));
+      final boolean asynchronous = reader.readBoolean();
+      final AbstractStatefulObject response = reader.readBoolean() ? BinaryCodec.read(reader) : null;
+      if (command != null) {
+        this.apply(command, asynchronous, response);
+      }
+      break;
+    case FAILURE:
+      this.inDoubtCommands.remove(Long.valueOf(reader.readVarLong()));
+      break;
+    case COMPLETION:
+      final String instanceId = reader.readString();
+      final String state = reader.readString();
+      try {
+        this.complete(instanceId, LastOperation.State.valueOf(state));
+      } catch (final IllegalArgumentException | NullPointerException exception) {
+        throw reader.formatError("Invalid operation state: " + state);
+      }
+      break;
+    case CHECKPOINT:
+      // A checkpoint summarizes everything before it, which may still
+      // be present if compaction was interrupted.
+      this.inDoubtCommands.clear();
+      this.pendingOperations.clear();
+      this.serviceIds.clear();
+      this.nextId = reader.readVarLong();
+      for (long i = reader.readVarLong(); i > 0L; i--) {
+        final long id = reader.readVarLong();
+        this.inDoubtCommands.put(Long.valueOf(id), BinaryCodec.read(reader, AbstractCommand.class));
+      }
+      final PendingOperation.Kind[] kinds = PendingOperation.Kind.values();
+      for (long i = reader.readVarLong(); i > 0L; i--) {
+        final int kind = reader.readByte();
+        if (kind < 0 || kind >= kinds.length) {
+          throw reader.formatError("Invalid pending operation kind: " + kind);
+        }
+        final PendingOperation pendingOperation =
+          new PendingOperation(kinds[kind], reader.readString(), reader.readString(), reader.readString(), reader.readString());
+        this.pendingOperations.put(pendingOperation.getInstanceId(), pendingOperation);
+      }
+      for (long i = reader.readVarLong(); i > 0L; i--) {
+        this.serviceIds.put(reader.readString(), reader.readString());
+      }
+      break;
+    default:
+      throw reader.formatError("Invalid journal record type: " + type);
+    }
+    reader.endMessage();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final String getInstanceId(final AbstractCommand command) {
+    if (command instanceof AbstractServiceInstanceCommand) {
+      return ((AbstractServiceInstanceCommand)command).getInstanceId();
+    } else if (command instanceof AbstractBindingCommand) {
+      return ((AbstractBindingCommand)command).getInstanceId();
+    } else {
+      return null;
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An asynchronous operation that a {@link JournalingServiceBroker}
+   * has accepted but not yet seen to finish.
+   *
+   * @see JournalingServiceBroker#getPendingOperations()
+   */
+  public static final class PendingOperation {
+
+    @NotNull
+    private final Kind kind;
+
+    @NotNull /* @NotEmpty */
+    private final String instanceId;
+
+    private final String serviceId;
+
+    private final String planId;
+
+    private final String operation;
+
+    private PendingOperation(@NotNull final Kind kind,
+                             @NotNull /* @NotEmpty */ final String instanceId,
+                             final String serviceId,
+                             final String planId,
+                             final String operation) {
+      super();
+      Objects.requireNonNull(kind, () -> "kind must not be null");
+      Objects.requireNonNull(instanceId, () -> "instanceId must not be null");
+      this.kind = kind;
+      this.instanceId = instanceId;
+      this.serviceId = serviceId;
+      this.planId = planId;
+      this.operation = operation;
+    }
+
+    /**
+     * Returns the {@link Kind} of this {@link PendingOperation}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} {@link Kind}
+     */
+    @NotNull
+    public final Kind getKind() {
+      return this.kind;
+    }
+
+    /**
+     * Returns the identifier of the service instance this {@link
+     * PendingOperation} affects.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} service instance identifier
+     */
+    @NotNull /* @NotEmpty */
+    public final String getInstanceId() {
+      return this.instanceId;
+    }
+
+    /**
+     * Returns the identifier of the service of the service instance
+     * this {@link PendingOperation} affects.
+     *
+     * @return the service identifier, or {@code null}
+     */
+    public final String getServiceId() {
+      return this.serviceId;
+    }
+
+    /**
+     * Returns the identifier of the plan of the service instance
+     * this {@link PendingOperation} affects.
+     *
+     * @return the plan identifier, or {@code null}
+     */
+    public final String getPlanId() {
+      return this.planId;
+    }
+
+    /**
+     * Returns the operation identifier the delegate returned when it
+     * accepted this {@link PendingOperation}, if any.
+     *
+     * @return the operation identifier, or {@code null}
+     */
+    public final String getOperation() {
+      return this.operation;
+    }
+
+    /**
+     * Returns a new {@link LastOperationQuery} that asks after this
+     * {@link PendingOperation}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a new, non-{@code null} {@link LastOperationQuery}
+     */
+    @NotNull
+    public final LastOperationQuery toLastOperationQuery() {
+      return new LastOperationQuery(this.serviceId, this.instanceId, this.planId, this.operation);
+    }
+
+    @Override
+    public final String toString() {
+      return this.kind + " " + this.instanceId + (this.operation == null ? "" : " (" + this.operation + ")");
+    }
+
+
+    /*
+     * Inner and nested classes.
+     */
+
+
+    /**
+     * The kinds of {@link PendingOperation}.
+     */
+    public static enum Kind {
+
+      /**
+       * The asynchronous provisioning of a service instance.
+       */
+      PROVISION,
+
+      /**
+       * The asynchronous update of a service instance.
+       */
+      UPDATE,
+
+      /**
+       * The asynchronous deprovisioning of a service instance.
+       */
+      DEPROVISION
+
+    }
+
+  }
+
+}
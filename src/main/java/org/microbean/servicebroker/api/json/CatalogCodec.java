@@ -0,0 +1,414 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.json;
+
+import java.io.IOException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.DashboardClient;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan.Schema;
+
+/**
+ * Reads and writes {@link Catalog}s in the JSON format described by the <a
+ * href="https://github.com/openservicebrokerapi/servicebroker/blob/v2.13/spec.md#catalog-management">Open
+ * Service Broker API specification, version 2.13</a>.
+ *
+ * <p>Optional members whose values are {@code null} or empty are
+ * omitted.</p>
+ *
+ * @see Catalog#getJson()
+ */
+public final class CatalogCodec {
+
+  private CatalogCodec() {
+    super();
+  }
+
+  /**
+   * Writes the supplied {@link Catalog} as a JSON object to the
+   * supplied {@link JsonWriter}.
+   *
+   * @param writer the {@link JsonWriter} to write to; must not be
+   * {@code null}
+   *
+   * @param catalog the {@link Catalog} to write; must not be {@code
+   * null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public static final void write(@NotNull final JsonWriter writer, @NotNull final Catalog catalog) throws IOException {
+    Objects.requireNonNull(writer, () -> "writer must not be null");
+    Objects.requireNonNull(catalog, () -> "catalog must not be null");
+    writer.beginObject();
+    writer.name("services").beginArray();
+    for (final Service service : catalog.getServices()) {
+      write(writer, service);
+    }
+    writer.endArray();
+    writer.endObject();
+  }
+
+  /**
+   * Reads a {@link Catalog} from a JSON object in the form written by
+   * the {@link #write(JsonWriter, Catalog)} method.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param reader the {@link JsonReader} to read from; must not be
+   * {@code null}
+   *
+   * @return a new, non-{@code null} {@link Catalog}
+   *
+   * @exception NullPointerException if {@code reader} is {@code null},
+   * or if a member required by the {@link Service} or {@link Plan}
+   * constructors is missing
+   *
+   * @exception MalformedJsonException if the JSON is not a
+   * well-formed catalog
+   */
+  @NotNull
+  public static final Catalog readCatalog(@NotNull final JsonReader reader) throws MalformedJsonException {
+    Objects.requireNonNull(reader, () -> "reader must not be null");
+    final Set<Service> services = new LinkedHashSet<>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "services":
+        reader.beginArray();
+        while (reader.hasNext()) {
+          services.add(readService(reader));
+        }
+        reader.endArray();
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    return new Catalog(services);
+  }
+
+  private static final Service readService(final JsonReader reader) throws MalformedJsonException {
+    String id = null;
+    String name = null;
+    String description = null;
+    Set<String> tags = null;
+    Set<String> requires = null;
+    boolean bindable = false;
+    Map<String, Object> metadata = null;
+    DashboardClient dashboardClient = null;
+    boolean planUpdatable = false;
+    final Set<Plan> plans = new LinkedHashSet<>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "id":
+        id = reader.nextStringOrNull();
+        break;
+      case "name":
+        name = reader.nextStringOrNull();
+        break;
+      case "description":
+        description = reader.nextStringOrNull();
+        break;
+      case "tags":
+        tags = readStrings(reader);
+        break;
+      case "requires":
+        requires = readStrings(reader);
+        break;
+      case "bindable":
+        bindable = reader.nextBoolean();
+        break;
+      case "metadata":
+        metadata = reader.readObject();
+        break;
+      case "dashboard_client":
+        dashboardClient = readDashboardClient(reader);
+        break;
+      case "plan_updateable":
+        planUpdatable = reader.nextBoolean();
+        break;
+      case "plans":
+        reader.beginArray();
+        while (reader.hasNext()) {
+          plans.add(readPlan(reader));
+        }
+        reader.endArray();
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    return new Service(id, name, description, tags, requires, bindable, metadata, dashboardClient, planUpdatable, plans);
+  }
+
+  private static final DashboardClient readDashboardClient(final JsonReader reader) throws MalformedJsonException {
+    String id = null;
+    String secret = null;
+    URI redirectUri = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "id":
+        id = reader.nextStringOrNull();
+        break;
+      case "secret":
+        secret = reader.nextStringOrNull();
+        break;
+      case "redirect_uri":
+        final String value = reader.nextStringOrNull();
+        if (value != null) {
+          try {
+            redirectUri = new URI(value);
+          } catch (final URISyntaxException uriSyntaxException) {
+            throw reader.syntaxError("Invalid redirect_uri: " + value);
+          }
+        }
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    return new DashboardClient(id, secret, redirectUri);
+  }
+
+  private static final Plan readPlan(final JsonReader reader) throws MalformedJsonException {
+    String id = null;
+    String name = null;
+    String description = null;
+    Map<String, Object> metadata = null;
+    boolean free = true;
+    Boolean bindable = null;
+    Schema schemas = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "id":
+        id = reader.nextStringOrNull();
+        break;
+      case "name":
+        name = reader.nextStringOrNull();
+        break;
+      case "description":
+        description = reader.nextStringOrNull();
+        break;
+      case "metadata":
+        metadata = reader.readObject();
+        break;
+      case "free":
+        free = reader.nextBoolean();
+        break;
+      case "bindable":
+        bindable = Boolean.valueOf(reader.nextBoolean());
+        break;
+      case "schemas":
+        schemas = readSchema(reader);
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    return new Plan(id, name, description, metadata, free, bindable, schemas);
+  }
+
+  private static final Schema readSchema(final JsonReader reader) throws MalformedJsonException {
+    Schema.ServiceInstance serviceInstance = null;
+    Schema.ServiceBinding serviceBinding = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "service_instance":
+        Schema.InputParameters create = null;
+        Schema.InputParameters update = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+          switch (reader.nextName()) {
+          case "create":
+            create = readInputParameters(reader);
+            break;
+          case "update":
+            update = readInputParameters(reader);
+            break;
+          default:
+            reader.skipValue();
+            break;
+          }
+        }
+        reader.endObject();
+        serviceInstance = new Schema.ServiceInstance(create, update);
+        break;
+      case "service_binding":
+        Schema.InputParameters bindingCreate = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+          if ("create".equals(reader.nextName())) {
+            bindingCreate = readInputParameters(reader);
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+        serviceBinding = new Schema.ServiceBinding(bindingCreate);
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    return new Schema(serviceInstance, serviceBinding);
+  }
+
+  private static final Schema.InputParameters readInputParameters(final JsonReader reader) throws MalformedJsonException {
+    Map<String, Object> parameters = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if ("parameters".equals(reader.nextName())) {
+        parameters = reader.readObject();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new Schema.InputParameters(parameters);
+  }
+
+  private static final Set<String> readStrings(final JsonReader reader) throws MalformedJsonException {
+    final Set<String> strings = new LinkedHashSet<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      strings.add(reader.nextString());
+    }
+    reader.endArray();
+    return strings;
+  }
+
+  private static final void write(final JsonWriter writer, final Service service) throws IOException {
+    writer.beginObject();
+    writer.name("name").value(service.getName());
+    writer.name("id").value(service.getId());
+    writer.name("description").value(service.getDescription());
+    writeIfNotEmpty(writer, "tags", service.getTags());
+    writeIfNotEmpty(writer, "requires", service.getRequires());
+    writer.name("bindable").value(service.isBindable());
+    writeIfNotEmpty(writer, "metadata", service.getMetadata());
+    final DashboardClient dashboardClient = service.getDashboardClient();
+    if (dashboardClient != null) {
+      writer.name("dashboard_client").beginObject();
+      writer.name("id").value(dashboardClient.getOAuthClientId());
+      writer.name("secret").value(dashboardClient.getSecret());
+      final URI redirectUri = dashboardClient.getRedirectUri();
+      if (redirectUri != null) {
+        writer.name("redirect_uri").value(redirectUri.toString());
+      }
+      writer.endObject();
+    }
+    // Note the specification's spelling.
+    writer.name("plan_updateable").value(service.isPlanUpdatable());
+    writer.name("plans").beginArray();
+    for (final Plan plan : service.getPlans()) {
+      write(writer, plan);
+    }
+    writer.endArray();
+    writer.endObject();
+  }
+
+  private static final void write(final JsonWriter writer, final Plan plan) throws IOException {
+    writer.beginObject();
+    writer.name("id").value(plan.getId());
+    writer.name("name").value(plan.getName());
+    writer.name("description").value(plan.getDescription());
+    writeIfNotEmpty(writer, "metadata", plan.getMetadata());
+    writer.name("free").value(plan.isFree());
+    final Boolean bindable = plan.getBindable();
+    if (bindable != null) {
+      writer.name("bindable").value(bindable.booleanValue());
+    }
+    final Schema schemas = plan.getSchemas();
+    if (schemas != null) {
+      writer.name("schemas").beginObject();
+      final Schema.ServiceInstance serviceInstance = schemas.getServiceInstance();
+      if (serviceInstance != null) {
+        writer.name("service_instance").beginObject();
+        writeIfNotNull(writer, "create", serviceInstance.getCreate());
+        writeIfNotNull(writer, "update", serviceInstance.getUpdate());
+        writer.endObject();
+      }
+      final Schema.ServiceBinding serviceBinding = schemas.getServiceBinding();
+      if (serviceBinding != null) {
+        writer.name("service_binding").beginObject();
+        writeIfNotNull(writer, "create", serviceBinding.getCreate());
+        writer.endObject();
+      }
+      writer.endObject();
+    }
+    writer.endObject();
+  }
+
+  private static final void writeIfNotNull(final JsonWriter writer,
+                                           final String name,
+                                           final Schema.InputParameters inputParameters)
+    throws IOException {
+    if (inputParameters != null) {
+      writer.name(name).beginObject();
+      final Map<?, ?> parameters = inputParameters.getParameters();
+      if (parameters != null) {
+        writer.name("parameters").value(parameters);
+      }
+      writer.endObject();
+    }
+  }
+
+  private static final void writeIfNotEmpty(final JsonWriter writer, final String name, final Collection<?> value)
+    throws IOException {
+    if (value != null && !value.isEmpty()) {
+      writer.name(name).value(value);
+    }
+  }
+
+  private static final void writeIfNotEmpty(final JsonWriter writer, final String name, final Map<?, ?> value)
+    throws IOException {
+    if (value != null && !value.isEmpty()) {
+      writer.name(name).value(value);
+    }
+  }
+
+}
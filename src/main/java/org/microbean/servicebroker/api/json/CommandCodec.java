@@ -0,0 +1,494 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.json;
+
+import java.io.IOException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+/**
+ * Reads commands from, and writes their responses to, the JSON
+ * request and response bodies described by the <a
+ * href="https://github.com/openservicebrokerapi/servicebroker/blob/v2.13/spec.md">Open
+ * Service Broker API specification, version 2.13</a>.
+ *
+ * <p>Commands are constructed directly from the members as they are
+ * read; nothing is bound reflectively and no intermediate tree is
+ * built.  Values that the specification leaves opaque, such as {@code
+ * parameters} and {@code context}, are read as {@link
+ * LazyJsonObject}s, so that a broker pays to decode only those
+ * parameters it actually reads.  Unrecognized members are
+ * skipped.</p>
+ *
+ * <p>Parts of a command that the specification carries in the
+ * request URL, such as instance and binding identifiers and the
+ * {@code accepts_incomplete} flag, are supplied by the caller.  {@link
+ * DeleteServiceInstanceCommand}s and {@link DeleteBindingCommand}s are
+ * carried entirely in the request URL and so have no reader
+ * here.</p>
+ *
+ * @see QueryCodec
+ */
+public final class CommandCodec {
+
+  private CommandCodec() {
+    super();
+  }
+
+
+  /*
+   * Commands.
+   */
+
+
+  /**
+   * Reads a {@link ProvisionServiceInstanceCommand} from the body of
+   * a provisioning request.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param reader the {@link JsonReader} to read from; must not be
+   * {@code null}
+   *
+   * @param instanceId the service instance identifier from the
+   * request URL; may be {@code null}
+   *
+   * @param acceptsIncomplete the value of the {@code
+   * accepts_incomplete} query parameter
+   *
+   * @return a new, non-{@code null} {@link
+   * ProvisionServiceInstanceCommand}
+   *
+   * @exception NullPointerException if {@code reader} is {@code null},
+   * or if a member required by the {@link
+   * ProvisionServiceInstanceCommand} constructor is missing
+   *
+   * @exception MalformedJsonException if the body is not a
+   * well-formed provisioning request
+   */
+  @NotNull
+  public static final ProvisionServiceInstanceCommand readProvisionServiceInstanceCommand(@NotNull final JsonReader reader,
+                                                                                          final String instanceId,
+                                                                                          final boolean acceptsIncomplete)
+    throws MalformedJsonException {
+    Objects.requireNonNull(reader, () -> "reader must not be null");
+    String serviceId = null;
+    String planId = null;
+    LazyJsonObject context = null;
+    String organizationGuid = null;
+    String spaceGuid = null;
+    LazyJsonObject parameters = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "service_id":
+        serviceId = reader.nextStringOrNull();
+        break;
+      case "plan_id":
+        planId = reader.nextStringOrNull();
+        break;
+      case "context":
+        context = reader.readLazyObject();
+        break;
+      case "organization_guid":
+        organizationGuid = reader.nextStringOrNull();
+        break;
+      case "space_guid":
+        spaceGuid = reader.nextStringOrNull();
+        break;
+      case "parameters":
+        parameters = reader.readLazyObject();
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    return new ProvisionServiceInstanceCommand(instanceId,
+                                               serviceId,
+                                               planId,
+                                               context,
+                                               acceptsIncomplete,
+                                               organizationGuid,
+                                               spaceGuid,
+                                               parameters);
+  }
+
+  /**
+   * Reads an {@link UpdateServiceInstanceCommand} from the body of an
+   * update request.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param reader the {@link JsonReader} to read from; must not be
+   * {@code null}
+   *
+   * @param instanceId the service instance identifier from the
+   * request URL; may be {@code null}
+   *
+   * @param acceptsIncomplete the value of the {@code
+   * accepts_incomplete} query parameter
+   *
+   * @return a new, non-{@code null} {@link
+   * UpdateServiceInstanceCommand}
+   *
+   * @exception NullPointerException if {@code reader} is {@code null},
+   * or if a member required by the {@link
+   * UpdateServiceInstanceCommand} constructor is missing
+   *
+   * @exception MalformedJsonException if the body is not a
+   * well-formed update request
+   */
+  @NotNull
+  public static final UpdateServiceInstanceCommand readUpdateServiceInstanceCommand(@NotNull final JsonReader reader,
+                                                                                    final String instanceId,
+                                                                                    final boolean acceptsIncomplete)
+    throws MalformedJsonException {
+    Objects.requireNonNull(reader, () -> "reader must not be null");
+    LazyJsonObject context = null;
+    String serviceId = null;
+    String planId = null;
+    LazyJsonObject parameters = null;
+    UpdateServiceInstanceCommand.PreviousValues previousValues = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "context":
+        context = reader.readLazyObject();
+        break;
+      case "service_id":
+        serviceId = reader.nextStringOrNull();
+        break;
+      case "plan_id":
+        planId = reader.nextStringOrNull();
+        break;
+      case "parameters":
+        parameters = reader.readLazyObject();
+        break;
+      case "previous_values":
+        previousValues = readPreviousValues(reader);
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    return new UpdateServiceInstanceCommand(instanceId, context, serviceId, planId, parameters, acceptsIncomplete, previousValues);
+  }
+
+  private static final UpdateServiceInstanceCommand.PreviousValues readPreviousValues(final JsonReader reader)
+    throws MalformedJsonException {
+    if (reader.peek() == JsonReader.Token.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    String serviceId = null;
+    String planId = null;
+    String organizationId = null;
+    String spaceId = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "service_id":
+        serviceId = reader.nextStringOrNull();
+        break;
+      case "plan_id":
+        planId = reader.nextStringOrNull();
+        break;
+      case "organization_id":
+        organizationId = reader.nextStringOrNull();
+        break;
+      case "space_id":
+        spaceId = reader.nextStringOrNull();
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    return new UpdateServiceInstanceCommand.PreviousValues(serviceId, planId, organizationId, spaceId);
+  }
+
+  /**
+   * Reads a {@link ProvisionBindingCommand} from the body of a
+   * binding request.
+   *
+   * <p>The deprecated top-level {@code app_guid} member is honored if
+   * there is no {@code bind_resource} member.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param reader the {@link JsonReader} to read from; must not be
+   * {@code null}
+   *
+   * @param instanceId the service instance identifier from the
+   * request URL; may be {@code null}
+   *
+   * @param bindingId the binding identifier from the request URL; may
+   * be {@code null}
+   *
+   * @return a new, non-{@code null} {@link ProvisionBindingCommand}
+   *
+   * @exception NullPointerException if {@code reader} is {@code null},
+   * or if a member required by the {@link ProvisionBindingCommand}
+   * constructor is missing
+   *
+   * @exception MalformedJsonException if the body is not a
+   * well-formed binding request
+   */
+  @NotNull
+  public static final ProvisionBindingCommand readProvisionBindingCommand(@NotNull final JsonReader reader,
+                                                                          final String instanceId,
+                                                                          final String bindingId)
+    throws MalformedJsonException {
+    Objects.requireNonNull(reader, () -> "reader must not be null");
+    String serviceId = null;
+    String planId = null;
+    String appGuid = null;
+    ProvisionBindingCommand.BindResource bindResource = null;
+    LazyJsonObject parameters = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "service_id":
+        serviceId = reader.nextStringOrNull();
+        break;
+      case "plan_id":
+        planId = reader.nextStringOrNull();
+        break;
+      case "app_guid":
+        appGuid = reader.nextStringOrNull();
+        break;
+      case "bind_resource":
+        bindResource = readBindResource(reader);
+        break;
+      case "parameters":
+        parameters = reader.readLazyObject();
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    if (bindResource == null && appGuid != null) {
+      bindResource = new ProvisionBindingCommand.BindResource(appGuid);
+    }
+    return new ProvisionBindingCommand(bindingId, instanceId, serviceId, planId, bindResource, parameters);
+  }
+
+  private static final ProvisionBindingCommand.BindResource readBindResource(final JsonReader reader)
+    throws MalformedJsonException {
+    if (reader.peek() == JsonReader.Token.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    String appGuid = null;
+    URI route = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "app_guid":
+        appGuid = reader.nextStringOrNull();
+        break;
+      case "route":
+        route = readUri(reader);
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    return new ProvisionBindingCommand.BindResource(appGuid, route);
+  }
+
+
+  /*
+   * Responses.
+   */
+
+
+  /**
+   * Writes the body of a response to a provisioning request.
+   *
+   * @param writer the {@link JsonWriter} to write to; must not be
+   * {@code null}
+   *
+   * @param response the response to write; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public static final void write(@NotNull final JsonWriter writer,
+                                 @NotNull final ProvisionServiceInstanceCommand.Response response)
+    throws IOException {
+    Objects.requireNonNull(writer, () -> "writer must not be null");
+    Objects.requireNonNull(response, () -> "response must not be null");
+    writer.beginObject();
+    final URI dashboardUri = response.getDashboardUri();
+    if (dashboardUri != null) {
+      writer.name("dashboard_url").value(dashboardUri.toString());
+    }
+    final String operation = response.getOperation();
+    if (operation != null) {
+      writer.name("operation").value(operation);
+    }
+    writer.endObject();
+  }
+
+  /**
+   * Writes the body of a response to an update request.
+   *
+   * @param writer the {@link JsonWriter} to write to; must not be
+   * {@code null}
+   *
+   * @param response the response to write; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public static final void write(@NotNull final JsonWriter writer,
+                                 @NotNull final UpdateServiceInstanceCommand.Response response)
+    throws IOException {
+    Objects.requireNonNull(writer, () -> "writer must not be null");
+    Objects.requireNonNull(response, () -> "response must not be null");
+    writeOperation(writer, response.getOperation());
+  }
+
+  /**
+   * Writes the body of a response to a deprovisioning request.
+   *
+   * @param writer the {@link JsonWriter} to write to; must not be
+   * {@code null}
+   *
+   * @param response the response to write; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public static final void write(@NotNull final JsonWriter writer,
+                                 @NotNull final DeleteServiceInstanceCommand.Response response)
+    throws IOException {
+    Objects.requireNonNull(writer, () -> "writer must not be null");
+    Objects.requireNonNull(response, () -> "response must not be null");
+    writeOperation(writer, response.getOperation());
+  }
+
+  /**
+   * Writes the body of a response to a binding request.
+   *
+   * @param writer the {@link JsonWriter} to write to; must not be
+   * {@code null}
+   *
+   * @param response the response to write; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public static final void write(@NotNull final JsonWriter writer,
+                                 @NotNull final ProvisionBindingCommand.Response response)
+    throws IOException {
+    Objects.requireNonNull(writer, () -> "writer must not be null");
+    Objects.requireNonNull(response, () -> "response must not be null");
+    writer.beginObject();
+    final Map<?, ?> credentials = response.getCredentials();
+    if (credentials != null && !credentials.isEmpty()) {
+      writer.name("credentials").value(credentials);
+    }
+    final URI syslogDrainUri = response.getSyslogDrainUri();
+    if (syslogDrainUri != null) {
+      writer.name("syslog_drain_url").value(syslogDrainUri.toString());
+    }
+    final URI routeServiceUri = response.getRouteServiceUri();
+    if (routeServiceUri != null) {
+      writer.name("route_service_url").value(routeServiceUri.toString());
+    }
+    final Set<?> volumeMounts = response.getVolumeMounts();
+    if (volumeMounts != null && !volumeMounts.isEmpty()) {
+      writer.name("volume_mounts").value(volumeMounts);
+    }
+    writer.endObject();
+  }
+
+  /**
+   * Writes the body of a response to an unbinding request, which is
+   * always an empty object.
+   *
+   * @param writer the {@link JsonWriter} to write to; must not be
+   * {@code null}
+   *
+   * @param response the response to write; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public static final void write(@NotNull final JsonWriter writer,
+                                 @NotNull final DeleteBindingCommand.Response response)
+    throws IOException {
+    Objects.requireNonNull(writer, () -> "writer must not be null");
+    Objects.requireNonNull(response, () -> "response must not be null");
+    writer.beginObject().endObject();
+  }
+
+  private static final void writeOperation(final JsonWriter writer, final String operation) throws IOException {
+    writer.beginObject();
+    if (operation != null) {
+      writer.name("operation").value(operation);
+    }
+    writer.endObject();
+  }
+
+  private static final URI readUri(final JsonReader reader) throws MalformedJsonException {
+    final String uri = reader.nextStringOrNull();
+    if (uri == null) {
+      return null;
+    }
+    try {
+      return new URI(uri);
+    } catch (final URISyntaxException uriSyntaxException) {
+      throw reader.syntaxError(uriSyntaxException.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,1170 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.math.BigInteger;
+
+import java.nio.ByteBuffer;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A minimal, allocation-conscious pull parser of UTF-8-encoded JSON
+ * held in memory.
+ *
+ * <p>Callers {@linkplain #peek() peek} at the next {@link Token} and
+ * consume it with the corresponding method, such as {@link
+ * #beginObject()} or {@link #nextString()}, so that values can be
+ * decoded directly into their final form without an intermediate
+ * tree.  Member names that recur are returned as the same {@link
+ * String} instance without being decoded again.</p>
+ *
+ * <p>Input that is not well-formed JSON, or a call that does not
+ * match the next {@link Token}, results in a {@link
+ * MalformedJsonException}.</p>
+ *
+ * <p>Instances of this class are not safe for concurrent use by
+ * multiple threads.</p>
+ *
+ * @see JsonWriter
+ */
+public final class JsonReader {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The maximum nesting depth of objects and arrays; deeper input is
+   * rejected rather than risking a {@link StackOverflowError} in
+   * {@link #readValue()}.
+   */
+  private static final int MAX_DEPTH = 512;
+
+  private static final byte EMPTY_DOCUMENT = 0;
+
+  private static final byte NONEMPTY_DOCUMENT = 1;
+
+  private static final byte EMPTY_OBJECT = 2;
+
+  private static final byte DANGLING_NAME = 3;
+
+  private static final byte NONEMPTY_OBJECT = 4;
+
+  private static final byte EMPTY_ARRAY = 5;
+
+  private static final byte NONEMPTY_ARRAY = 6;
+
+  private static final int NAME_CACHE_SIZE = 256;
+
+  /**
+   * Member names recently read by any {@link JsonReader}, indexed by
+   * a hash of their bytes.
+   *
+   * <p>Reads and writes of this array are deliberately unsynchronized:
+   * {@link String}s are immutable and safely published, so the worst
+   * a race can do is cause a name to be decoded again.</p>
+   */
+  private static final String[] NAMES = new String[NAME_CACHE_SIZE];
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final byte[] bytes;
+
+  private final int limit;
+
+  private int position;
+
+  private byte[] stack;
+
+  private int depth;
+
+  private Token peeked;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link JsonReader} over the supplied bytes.
+   *
+   * <p>The array is not copied and must not be modified while this
+   * {@link JsonReader} is in use.</p>
+   *
+   * @param bytes the UTF-8-encoded JSON; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code bytes} is {@code null}
+   */
+  public JsonReader(@NotNull final byte[] bytes) {
+    this(bytes, 0, Objects.requireNonNull(bytes, () -> "bytes must not be null").length);
+  }
+
+  /**
+   * Creates a new {@link JsonReader} over a range of the supplied
+   * bytes.
+   *
+   * <p>The array is not copied and must not be modified while this
+   * {@link JsonReader} is in use.</p>
+   *
+   * @param bytes an array containing UTF-8-encoded JSON; must not be
+   * {@code null}
+   *
+   * @param offset the index of the first byte of JSON
+   *
+   * @param length the number of bytes of JSON
+   *
+   * @exception NullPointerException if {@code bytes} is {@code null}
+   *
+   * @exception IndexOutOfBoundsException if {@code offset} and {@code
+   * length} do not describe a range within {@code bytes}
+   */
+  public JsonReader(@NotNull final byte[] bytes, final int offset, final int length) {
+    super();
+    Objects.requireNonNull(bytes, () -> "bytes must not be null");
+    if (offset < 0 || length < 0 || offset > bytes.length - length) {
+      throw new IndexOutOfBoundsException("offset: " + offset + "; length: " + length);
+    }
+    this.bytes = bytes;
+    this.position = offset;
+    this.limit = offset + length;
+    this.stack = new byte[16];
+    this.stack[this.depth++] = EMPTY_DOCUMENT;
+  }
+
+  /**
+   * Creates a new {@link JsonReader} over the {@linkplain
+   * ByteBuffer#remaining() remaining} bytes of the supplied {@link
+   * ByteBuffer}, whose position is not changed.
+   *
+   * <p>If the {@link ByteBuffer} is backed by an accessible array,
+   * that array is read in place; otherwise its contents are
+   * copied.</p>
+   *
+   * @param buffer the UTF-8-encoded JSON; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code buffer} is {@code null}
+   */
+  public JsonReader(@NotNull final ByteBuffer buffer) {
+    this(array(buffer), buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0, buffer.remaining());
+  }
+
+  /**
+   * Creates a new {@link JsonReader} over all of the bytes that can be
+   * read from the supplied {@link InputStream}, which is read
+   * immediately but not closed.
+   *
+   * @param inputStream the UTF-8-encoded JSON; must not be {@code
+   * null}
+   *
+   * @exception NullPointerException if {@code inputStream} is {@code
+   * null}
+   *
+   * @exception IOException if the {@link InputStream} could not be
+   * read
+   */
+  public JsonReader(@NotNull final InputStream inputStream) throws IOException {
+    this(readFully(inputStream));
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Token} that the next call will consume,
+   * without consuming it.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} next {@link Token}
+   *
+   * @exception MalformedJsonException if the input is not well-formed
+   */
+  @NotNull
+  public Token peek() throws MalformedJsonException {
+    Token peeked = this.peeked;
+    if (peeked == null) {
+      peeked = this.doPeek();
+      this.peeked = peeked;
+    }
+    return peeked;
+  }
+
+  private final Token doPeek() throws MalformedJsonException {
+    final int top = this.depth - 1;
+    final byte context = this.stack[top];
+    int c;
+    switch (context) {
+    case EMPTY_ARRAY:
+      this.stack[top] = NONEMPTY_ARRAY;
+      c = this.nextNonWhitespace();
+      if (c == ']') {
+        this.position++;
+        return Token.END_ARRAY;
+      }
+      break;
+    case NONEMPTY_ARRAY:
+      c = this.nextNonWhitespace();
+      if (c == ']') {
+        this.position++;
+        return Token.END_ARRAY;
+      } else if (c != ',') {
+        throw this.syntaxError("Expected ',' or ']'");
+      }
+      this.position++;
+      break;
+    case EMPTY_OBJECT:
+    case NONEMPTY_OBJECT:
+      this.stack[top] = DANGLING_NAME;
+      c = this.nextNonWhitespace();
+      if (c == '}') {
+        this.position++;
+        return Token.END_OBJECT;
+      }
+      if (context == NONEMPTY_OBJECT) {
+        if (c != ',') {
+          throw this.syntaxError("Expected ',' or '}'");
+        }
+        this.position++;
+        c = this.nextNonWhitespace();
+      }
+      if (c != '"') {
+        throw this.syntaxError("Expected a name");
+      }
+      this.position++;
+      return Token.NAME;
+    case DANGLING_NAME:
+      this.stack[top] = NONEMPTY_OBJECT;
+      if (this.nextNonWhitespace() != ':') {
+        throw this.syntaxError("Expected ':'");
+      }
+      this.position++;
+      break;
+    case EMPTY_DOCUMENT:
+      this.stack[top] = NONEMPTY_DOCUMENT;
+      break;
+    case NONEMPTY_DOCUMENT:
+      if (this.nextNonWhitespace() < 0) {
+        return Token.END_DOCUMENT;
+      }
+      throw this.syntaxError("Expected end of input");
+    default:
+      throw new IllegalStateException();
+    }
+    c = this.nextNonWhitespace();
+    switch (c) {
+    case '{':
+      this.position++;
+      return Token.BEGIN_OBJECT;
+    case '[':
+      this.position++;
+      return Token.BEGIN_ARRAY;
+    case '"':
+      this.position++;
+      return Token.STRING;
+    case 't':
+    case 'f':
+      return Token.BOOLEAN;
+    case 'n':
+      return Token.NULL;
+    case '-':
+    case '0':
+    case '1':
+    case '2':
+    case '3':
+    case '4':
+    case '5':
+    case '6':
+    case '7':
+    case '8':
+    case '9':
+      return Token.NUMBER;
+    case -1:
+      throw this.syntaxError("Unexpected end of input");
+    default:
+      throw this.syntaxError("Unexpected character '" + (char)c + "'");
+    }
+  }
+
+  /**
+   * Consumes the beginning of a JSON object.
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#BEGIN_OBJECT}
+   */
+  public void beginObject() throws MalformedJsonException {
+    this.expect(Token.BEGIN_OBJECT);
+    this.push(EMPTY_OBJECT);
+  }
+
+  /**
+   * Consumes the end of a JSON object.
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#END_OBJECT}
+   */
+  public void endObject() throws MalformedJsonException {
+    this.expect(Token.END_OBJECT);
+    this.depth--;
+  }
+
+  /**
+   * Consumes the beginning of a JSON array.
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#BEGIN_ARRAY}
+   */
+  public void beginArray() throws MalformedJsonException {
+    this.expect(Token.BEGIN_ARRAY);
+    this.push(EMPTY_ARRAY);
+  }
+
+  /**
+   * Consumes the end of a JSON array.
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#END_ARRAY}
+   */
+  public void endArray() throws MalformedJsonException {
+    this.expect(Token.END_ARRAY);
+    this.depth--;
+  }
+
+  /**
+   * Returns {@code true} if the current object or array has another
+   * member or element.
+   *
+   * @return {@code true} if the current object or array has another
+   * member or element
+   *
+   * @exception MalformedJsonException if the input is not well-formed
+   */
+  public boolean hasNext() throws MalformedJsonException {
+    final Token token = this.peek();
+    return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+  }
+
+  /**
+   * Consumes and returns the name of the next member of the current
+   * object.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} name
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#NAME}
+   */
+  @NotNull
+  public String nextName() throws MalformedJsonException {
+    this.expect(Token.NAME);
+    // Member names are nearly always short, unescaped ASCII drawn
+    // from a small vocabulary, so look them up by content rather
+    // than decoding them every time.  Because the same String is
+    // returned, switching on it usually succeeds at the identity
+    // check in String#equals(Object).
+    final byte[] bytes = this.bytes;
+    final int start = this.position;
+    int hash = 0;
+    for (int i = start; i < this.limit; i++) {
+      final byte b = bytes[i];
+      if (b == '"') {
+        final int slot = (hash ^ (hash >>> 8)) & (NAME_CACHE_SIZE - 1);
+        String name = NAMES[slot];
+        if (name == null || !matches(name, bytes, start, i)) {
+          name = new String(bytes, start, i - start, StandardCharsets.ISO_8859_1);
+          NAMES[slot] = name;
+        }
+        this.position = i + 1;
+        return name;
+      } else if (b < 0x20 || b == '\\') {
+        // Negative (non-ASCII), control or escape: take the slow path.
+        break;
+      }
+      hash = 31 * hash + b;
+    }
+    return this.readString();
+  }
+
+  /**
+   * Consumes and returns the next string value.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} string value
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#STRING}
+   */
+  @NotNull
+  public String nextString() throws MalformedJsonException {
+    this.expect(Token.STRING);
+    return this.readString();
+  }
+
+  /**
+   * Consumes the next string value if there is one, or the next
+   * {@code null} if there is one, and returns it.
+   *
+   * @return the string value, or {@code null}
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * neither {@link Token#STRING} nor {@link Token#NULL}
+   */
+  public String nextStringOrNull() throws MalformedJsonException {
+    if (this.peek() == Token.NULL) {
+      this.nextNull();
+      return null;
+    }
+    return this.nextString();
+  }
+
+  /**
+   * Consumes and returns the next boolean value.
+   *
+   * @return the boolean value
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#BOOLEAN}
+   */
+  public boolean nextBoolean() throws MalformedJsonException {
+    this.expect(Token.BOOLEAN);
+    if (this.bytes[this.position] == 't') {
+      this.literal("true");
+      return true;
+    }
+    this.literal("false");
+    return false;
+  }
+
+  /**
+   * Consumes the next {@code null} value.
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#NULL}
+   */
+  public void nextNull() throws MalformedJsonException {
+    this.expect(Token.NULL);
+    this.literal("null");
+  }
+
+  /**
+   * Consumes and returns the next number value as a {@code long}.
+   *
+   * @return the number value
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#NUMBER}, or is a number that cannot be
+   * represented exactly as a {@code long}
+   */
+  public long nextLong() throws MalformedJsonException {
+    final Number number = this.nextNumber();
+    if (number instanceof Integer || number instanceof Long) {
+      return number.longValue();
+    }
+    throw this.syntaxError("Expected a long but got " + number);
+  }
+
+  /**
+   * Consumes and returns the next number value as a {@code double}.
+   *
+   * @return the number value
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#NUMBER}
+   */
+  public double nextDouble() throws MalformedJsonException {
+    return this.nextNumber().doubleValue();
+  }
+
+  /**
+   * Consumes and returns the next number value.
+   *
+   * <p>Integral values are returned as {@link Integer}s, {@link
+   * Long}s or {@link BigInteger}s, whichever is the smallest that can
+   * represent them; all other values are returned as {@link
+   * Double}s.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} number value
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not {@link Token#NUMBER}, or is a non-integral number too large
+   * in magnitude to be represented as a finite {@code double}
+   */
+  @NotNull
+  public Number nextNumber() throws MalformedJsonException {
+    this.expect(Token.NUMBER);
+    final byte[] bytes = this.bytes;
+    final int start = this.position;
+    final boolean integral = this.scanNumber();
+    final int end = this.position;
+    final boolean negative = bytes[start] == '-';
+    final int digitsStart = negative ? start + 1 : start;
+    if (integral && end - digitsStart <= 18) {
+      // Cannot overflow.
+      long value = 0L;
+      for (int i = digitsStart; i < end; i++) {
+        value = value * 10L + (bytes[i] - '0');
+      }
+      if (negative) {
+        value = -value;
+      }
+      if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+        return Integer.valueOf((int)value);
+      }
+      return Long.valueOf(value);
+    }
+    if (integral) {
+      final BigInteger bigInteger = new BigInteger(new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+      if (bigInteger.bitLength() < 64) {
+        return Long.valueOf(bigInteger.longValue());
+      }
+      return bigInteger;
+    }
+    return Double.valueOf(this.parseDouble(start));
+  }
+
+  /**
+   * Parses the non-integral number that starts at the supplied offset
+   * and has just been {@linkplain #scanNumber() scanned}, rejecting
+   * it if it is too large in magnitude to be represented as a finite
+   * {@code double}.
+   */
+  private final double parseDouble(final int start) throws MalformedJsonException {
+    final String text = new String(this.bytes, start, this.position - start, StandardCharsets.ISO_8859_1);
+    final double value = Double.parseDouble(text);
+    if (Double.isInfinite(value)) {
+      throw this.syntaxError("Number out of range: " + text);
+    }
+    return value;
+  }
+
+  /**
+   * Advances past a number whose first byte is at the current
+   * position, validating its syntax, and returns {@code true} if it
+   * has neither a fraction nor an exponent.
+   */
+  private final boolean scanNumber() throws MalformedJsonException {
+    final byte[] bytes = this.bytes;
+    int i = this.position;
+    if (bytes[i] == '-') {
+      i++;
+    }
+    final int digitsStart = i;
+    while (i < this.limit && bytes[i] >= '0' && bytes[i] <= '9') {
+      i++;
+    }
+    final int digits = i - digitsStart;
+    if (digits == 0 || (digits > 1 && bytes[digitsStart] == '0')) {
+      this.position = i;
+      throw this.syntaxError("Malformed number");
+    }
+    boolean integral = true;
+    if (i < this.limit && bytes[i] == '.') {
+      integral = false;
+      i++;
+      final int fractionStart = i;
+      while (i < this.limit && bytes[i] >= '0' && bytes[i] <= '9') {
+        i++;
+      }
+      if (i == fractionStart) {
+        this.position = i;
+        throw this.syntaxError("Malformed number");
+      }
+    }
+    if (i < this.limit && (bytes[i] == 'e' || bytes[i] == 'E')) {
+      integral = false;
+      i++;
+      if (i < this.limit && (bytes[i] == '+' || bytes[i] == '-')) {
+        i++;
+      }
+      final int exponentStart = i;
+      while (i < this.limit && bytes[i] >= '0' && bytes[i] <= '9') {
+        i++;
+      }
+      if (i == exponentStart) {
+        this.position = i;
+        throw this.syntaxError("Malformed number");
+      }
+    }
+    this.position = i;
+    return integral;
+  }
+
+  /**
+   * Consumes the next value, including everything nested within it.
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not the start of a value, or the value is not well-formed
+   */
+  public void skipValue() throws MalformedJsonException {
+    int depth = 0;
+    do {
+      switch (this.peek()) {
+      case BEGIN_OBJECT:
+        this.beginObject();
+        depth++;
+        break;
+      case BEGIN_ARRAY:
+        this.beginArray();
+        depth++;
+        break;
+      case END_OBJECT:
+        this.endObject();
+        depth--;
+        break;
+      case END_ARRAY:
+        this.endArray();
+        depth--;
+        break;
+      case NAME:
+        this.expect(Token.NAME);
+        this.skipStringBody();
+        break;
+      case STRING:
+        this.expect(Token.STRING);
+        this.skipStringBody();
+        break;
+      case NUMBER:
+        this.expect(Token.NUMBER);
+        final int start = this.position;
+        if (!this.scanNumber()) {
+          this.parseDouble(start);
+        }
+        break;
+      case BOOLEAN:
+        this.nextBoolean();
+        break;
+      case NULL:
+        this.nextNull();
+        break;
+      case END_DOCUMENT:
+      default:
+        throw this.syntaxError("Expected a value");
+      }
+    } while (depth > 0);
+  }
+
+  /**
+   * Consumes the next value, including everything nested within it,
+   * and returns it as a plain Java object.
+   *
+   * <p>Objects are returned as mutable {@link LinkedHashMap}s, arrays
+   * as mutable {@link ArrayList}s, strings as {@link String}s,
+   * booleans as {@link Boolean}s, numbers as described by {@link
+   * #nextNumber()}, and {@code null} as {@code null}.</p>
+   *
+   * @return the value, which may be {@code null}
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * not the start of a value, or the value is not well-formed
+   */
+  public Object readValue() throws MalformedJsonException {
+    switch (this.peek()) {
+    case BEGIN_OBJECT:
+      return this.readObject();
+    case BEGIN_ARRAY:
+      this.beginArray();
+      final List<Object> list = new ArrayList<>();
+      while (this.hasNext()) {
+        list.add(this.readValue());
+      }
+      this.endArray();
+      return list;
+    case STRING:
+      return this.nextString();
+    case NUMBER:
+      return this.nextNumber();
+    case BOOLEAN:
+      return Boolean.valueOf(this.nextBoolean());
+    case NULL:
+      this.nextNull();
+      return null;
+    default:
+      throw this.syntaxError("Expected a value");
+    }
+  }
+
+  /**
+   * Consumes the next object, including everything nested within it,
+   * and returns it as a mutable {@link LinkedHashMap}, or consumes
+   * the next {@code null} and returns {@code null}.
+   *
+   * @return a {@link Map}, or {@code null}
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * neither {@link Token#BEGIN_OBJECT} nor {@link Token#NULL}, or the
+   * object is not well-formed
+   *
+   * @see #readValue()
+   */
+  public Map<String, Object> readObject() throws MalformedJsonException {
+    if (this.peek() == Token.NULL) {
+      this.nextNull();
+      return null;
+    }
+    this.beginObject();
+    final Map<String, Object> map = new LinkedHashMap<>();
+    while (this.hasNext()) {
+      final String name = this.nextName();
+      map.put(name, this.readValue());
+    }
+    this.endObject();
+    return map;
+  }
+
+  /**
+   * Consumes the next object, including everything nested within it,
+   * and returns it as an immutable {@link LazyJsonObject} whose
+   * member values are decoded only when they are first accessed, or
+   * consumes the next {@code null} and returns {@code null}.
+   *
+   * <p>The object is fully validated, and its bytes copied, before
+   * this method returns, so the input may be reused afterwards.</p>
+   *
+   * @return a {@link LazyJsonObject}, or {@code null}
+   *
+   * @exception MalformedJsonException if the next {@link Token} is
+   * neither {@link Token#BEGIN_OBJECT} nor {@link Token#NULL}, or the
+   * object is not well-formed
+   *
+   * @see #readObject()
+   */
+  public LazyJsonObject readLazyObject() throws MalformedJsonException {
+    if (this.peek() == Token.NULL) {
+      this.nextNull();
+      return null;
+    }
+    final int start = this.valueOffset();
+    this.beginObject();
+    String[] names = new String[8];
+    int[] ranges = new int[16];
+    int size = 0;
+    while (this.hasNext()) {
+      final String name = this.nextName();
+      this.peek();
+      final int valueStart = this.valueOffset();
+      this.skipValue();
+      if (size == names.length) {
+        names = Arrays.copyOf(names, size * 2);
+        ranges = Arrays.copyOf(ranges, size * 4);
+      }
+      names[size] = name;
+      ranges[size * 2] = valueStart - start;
+      ranges[size * 2 + 1] = this.position - start;
+      size++;
+    }
+    this.endObject();
+    return new LazyJsonObject(Arrays.copyOfRange(this.bytes, start, this.position), names, ranges, size);
+  }
+
+  /**
+   * Returns the zero-based offset of the next unconsumed byte of
+   * input.
+   *
+   * @return the offset of the next unconsumed byte
+   */
+  public int getOffset() {
+    return this.position;
+  }
+
+  /**
+   * Returns a {@link MalformedJsonException} describing a problem
+   * at the current {@linkplain #getOffset() offset}, for use by
+   * codecs that find well-formed JSON of the wrong shape.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param message a description of the problem; may be {@code null}
+   *
+   * @return a new, non-{@code null} {@link MalformedJsonException}
+   */
+  @NotNull
+  public MalformedJsonException syntaxError(final String message) {
+    return new MalformedJsonException(message, this.position);
+  }
+
+  /**
+   * Returns the offset of the first byte of the value whose {@link
+   * Token} has just been {@linkplain #peek() peeked}.
+   */
+  private final int valueOffset() {
+    final Token peeked = this.peeked;
+    return peeked == Token.BEGIN_OBJECT || peeked == Token.BEGIN_ARRAY || peeked == Token.STRING ? this.position - 1 : this.position;
+  }
+
+  private final void expect(final Token token) throws MalformedJsonException {
+    final Token peeked = this.peek();
+    if (peeked != token) {
+      throw this.syntaxError("Expected " + token + " but got " + peeked);
+    }
+    this.peeked = null;
+  }
+
+  private final void push(final byte context) throws MalformedJsonException {
+    if (this.depth > MAX_DEPTH) {
+      throw this.syntaxError("Nesting too deep");
+    }
+    if (this.depth == this.stack.length) {
+      this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+    }
+    this.stack[this.depth++] = context;
+  }
+
+  private final int nextNonWhitespace() {
+    final byte[] bytes = this.bytes;
+    int i = this.position;
+    while (i < this.limit) {
+      final byte b = bytes[i];
+      if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+        this.position = i;
+        return b & 0xFF;
+      }
+      i++;
+    }
+    this.position = i;
+    return -1;
+  }
+
+  private final void literal(final String literal) throws MalformedJsonException {
+    final int length = literal.length();
+    if (this.limit - this.position < length) {
+      throw this.syntaxError("Expected " + literal);
+    }
+    for (int i = 0; i < length; i++) {
+      if (this.bytes[this.position + i] != literal.charAt(i)) {
+        throw this.syntaxError("Expected " + literal);
+      }
+    }
+    this.position += length;
+  }
+
+  /**
+   * Reads the remainder of a string whose opening quotation mark has
+   * already been consumed, and the closing quotation mark.
+   */
+  private final String readString() throws MalformedJsonException {
+    final byte[] bytes = this.bytes;
+    final int start = this.position;
+    for (int i = start; i < this.limit; i++) {
+      final byte b = bytes[i];
+      if (b == '"') {
+        this.position = i + 1;
+        return new String(bytes, start, i - start, StandardCharsets.ISO_8859_1);
+      } else if (b < 0x20 || b == '\\') {
+        // Negative (non-ASCII), control or escape.
+        return this.readComplexString(i);
+      }
+    }
+    throw this.syntaxError("Unterminated string");
+  }
+
+  private final String readComplexString(final int firstComplexByte) throws MalformedJsonException {
+    final byte[] bytes = this.bytes;
+    final StringBuilder sb = new StringBuilder(firstComplexByte - this.position + 16);
+    for (int i = this.position; i < firstComplexByte; i++) {
+      sb.append((char)bytes[i]);
+    }
+    int i = firstComplexByte;
+    while (i < this.limit) {
+      final int b = bytes[i] & 0xFF;
+      if (b == '"') {
+        this.position = i + 1;
+        return sb.toString();
+      } else if (b == '\\') {
+        final char c = this.decodeEscape(i + 1);
+        sb.append(c);
+        i += bytes[i + 1] == 'u' ? 6 : 2;
+      } else if (b < 0x20) {
+        this.position = i;
+        throw this.syntaxError("Unescaped control character in string");
+      } else if (b < 0x80) {
+        sb.append((char)b);
+        i++;
+      } else {
+        final int codePoint = this.decodeUtf8(i);
+        sb.appendCodePoint(codePoint);
+        i += utf8Length(codePoint);
+      }
+    }
+    this.position = i;
+    throw this.syntaxError("Unterminated string");
+  }
+
+  /**
+   * Decodes the escape sequence whose backslash immediately precedes
+   * the supplied offset, validating it.
+   */
+  private final char decodeEscape(int i) throws MalformedJsonException {
+    final byte[] bytes = this.bytes;
+    if (i >= this.limit) {
+      this.position = i;
+      throw this.syntaxError("Unterminated string");
+    }
+    final byte escaped = bytes[i++];
+    switch (escaped) {
+    case '"':
+    case '\\':
+    case '/':
+      return (char)escaped;
+    case 'b':
+      return '\b';
+    case 'f':
+      return '\f';
+    case 'n':
+      return '\n';
+    case 'r':
+      return '\r';
+    case 't':
+      return '\t';
+    case 'u':
+      if (this.limit - i < 4) {
+        this.position = i;
+        throw this.syntaxError("Malformed unicode escape");
+      }
+      int c = 0;
+      for (int j = 0; j < 4; j++) {
+        final int digit = Character.digit(bytes[i++], 16);
+        if (digit < 0) {
+          this.position = i;
+          throw this.syntaxError("Malformed unicode escape");
+        }
+        c = (c << 4) | digit;
+      }
+      return (char)c;
+    default:
+      this.position = i;
+      throw this.syntaxError("Invalid escape");
+    }
+  }
+
+  /**
+   * Decodes the multi-byte UTF-8 sequence starting at the supplied
+   * offset, rejecting overlong encodings, encoded surrogates and code
+   * points beyond {@code U+10FFFF}.
+   */
+  private final int decodeUtf8(final int i) throws MalformedJsonException {
+    final byte[] bytes = this.bytes;
+    final int b = bytes[i] & 0xFF;
+    final int length;
+    final int minimum;
+    int codePoint;
+    if (b >= 0xC2 && b <= 0xDF) {
+      length = 2;
+      minimum = 0x80;
+      codePoint = b & 0x1F;
+    } else if ((b & 0xF0) == 0xE0) {
+      length = 3;
+      minimum = 0x800;
+      codePoint = b & 0x0F;
+    } else if (b >= 0xF0 && b <= 0xF4) {
+      length = 4;
+      minimum = 0x10000;
+      codePoint = b & 0x07;
+    } else {
+      this.position = i;
+      throw this.syntaxError("Malformed UTF-8");
+    }
+    if (this.limit - i < length) {
+      this.position = this.limit;
+      throw this.syntaxError("Unterminated string");
+    }
+    for (int j = 1; j < length; j++) {
+      final int continuation = bytes[i + j] & 0xFF;
+      if ((continuation & 0xC0) != 0x80) {
+        this.position = i;
+        throw this.syntaxError("Malformed UTF-8");
+      }
+      codePoint = (codePoint << 6) | (continuation & 0x3F);
+    }
+    if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+      this.position = i;
+      throw this.syntaxError("Malformed UTF-8");
+    }
+    return codePoint;
+  }
+
+  /**
+   * Advances past the remainder of a string whose opening quotation
+   * mark has already been consumed, and the closing quotation mark,
+   * without building it, but validating it as {@link
+   * #readComplexString(int)} would so that a {@link LazyJsonObject}
+   * never holds a string that cannot be decoded.
+   */
+  private final void skipStringBody() throws MalformedJsonException {
+    final byte[] bytes = this.bytes;
+    int i = this.position;
+    while (i < this.limit) {
+      final byte b = bytes[i];
+      if (b == '"') {
+        this.position = i + 1;
+        return;
+      } else if (b == '\\') {
+        this.decodeEscape(i + 1);
+        i += bytes[i + 1] == 'u' ? 6 : 2;
+      } else if (b < 0) {
+        i += utf8Length(this.decodeUtf8(i));
+      } else if (b < 0x20) {
+        this.position = i;
+        throw this.syntaxError("Unescaped control character in string");
+      } else {
+        i++;
+      }
+    }
+    this.position = i;
+    throw this.syntaxError("Unterminated string");
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the number of bytes in the UTF-8 encoding of the supplied
+   * non-ASCII code point.
+   */
+  private static final int utf8Length(final int codePoint) {
+    return codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+  }
+
+  private static final boolean matches(final String name, final byte[] bytes, final int start, final int end) {
+    final int length = end - start;
+    if (name.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (name.charAt(i) != bytes[start + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static final byte[] array(final ByteBuffer buffer) {
+    Objects.requireNonNull(buffer, () -> "buffer must not be null");
+    if (buffer.hasArray()) {
+      return buffer.array();
+    }
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private static final byte[] readFully(final InputStream inputStream) throws IOException {
+    Objects.requireNonNull(inputStream, () -> "inputStream must not be null");
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(512, inputStream.available()));
+    final byte[] buffer = new byte[8192];
+    int read;
+    while ((read = inputStream.read(buffer)) >= 0) {
+      bytes.write(buffer, 0, read);
+    }
+    return bytes.toByteArray();
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A kind of lexical element of JSON.
+   *
+   * @see JsonReader#peek()
+   */
+  public static enum Token {
+
+    /**
+     * The start of an object.
+     */
+    BEGIN_OBJECT,
+
+    /**
+     * The end of an object.
+     */
+    END_OBJECT,
+
+    /**
+     * The start of an array.
+     */
+    BEGIN_ARRAY,
+
+    /**
+     * The end of an array.
+     */
+    END_ARRAY,
+
+    /**
+     * The name of an object member.
+     */
+    NAME,
+
+    /**
+     * A string value.
+     */
+    STRING,
+
+    /**
+     * A number value.
+     */
+    NUMBER,
+
+    /**
+     * A boolean value.
+     */
+    BOOLEAN,
+
+    /**
+     * A {@code null} value.
+     */
+    NULL,
+
+    /**
+     * The end of the input.
+     */
+    END_DOCUMENT
+
+  }
+
+}
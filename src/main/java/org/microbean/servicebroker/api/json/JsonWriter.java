@@ -0,0 +1,542 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.lang.reflect.Array;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A minimal, allocation-conscious streaming writer of UTF-8-encoded
+ * JSON.
+ *
+ * <p>Output is accumulated in an internal buffer and written to the
+ * underlying {@link OutputStream} only when that buffer fills, or
+ * when this {@link JsonWriter} is {@linkplain #flush() flushed} or
+ * {@linkplain #close() closed}.  No intermediate tree is ever
+ * built.</p>
+ *
+ * <p>Structural mistakes, such as writing a value where a {@linkplain
+ * #name(String) name} is required, are reported with {@link
+ * IllegalStateException}s.</p>
+ *
+ * <p>Instances of this class are not safe for concurrent use by
+ * multiple threads.</p>
+ *
+ * @see JsonReader
+ */
+public final class JsonWriter implements Closeable, Flushable {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+
+  private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+  private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+  private static final byte EMPTY_OBJECT = 1;
+
+  private static final byte NONEMPTY_OBJECT = 2;
+
+  private static final byte EMPTY_ARRAY = 3;
+
+  private static final byte NONEMPTY_ARRAY = 4;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  @NotNull
+  private final OutputStream out;
+
+  private final byte[] buffer;
+
+  private int position;
+
+  /**
+   * The kinds of the structures currently open, innermost last.
+   */
+  private byte[] stack;
+
+  private int depth;
+
+  /**
+   * Whether a {@linkplain #name(String) name} has been written whose
+   * value has not.
+   */
+  private boolean afterName;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link JsonWriter} with a buffer suitable for
+   * typical request and response bodies.
+   *
+   * @param out the {@link OutputStream} to write to; must not be
+   * {@code null}
+   *
+   * @exception NullPointerException if {@code out} is {@code null}
+   *
+   * @see #JsonWriter(OutputStream, int)
+   */
+  public JsonWriter(@NotNull final OutputStream out) {
+    this(out, 512);
+  }
+
+  /**
+   * Creates a new {@link JsonWriter}.
+   *
+   * <p>Large documents written to slow {@link OutputStream}s benefit
+   * from a larger buffer; small documents benefit from a smaller
+   * one, since the buffer must be allocated and zeroed.</p>
+   *
+   * @param out the {@link OutputStream} to write to; must not be
+   * {@code null}
+   *
+   * @param bufferSize the size of the internal buffer in bytes; must
+   * be greater than zero
+   *
+   * @exception NullPointerException if {@code out} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code bufferSize} is not
+   * positive
+   */
+  public JsonWriter(@NotNull final OutputStream out, final int bufferSize) {
+    super();
+    Objects.requireNonNull(out, () -> "out must not be null");
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("bufferSize <= 0: " + bufferSize);
+    }
+    this.out = out;
+    this.buffer = new byte[bufferSize];
+    this.stack = new byte[16];
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Begins a JSON object.
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public JsonWriter beginObject() throws IOException {
+    this.beforeValue();
+    this.push(EMPTY_OBJECT);
+    this.write((byte)'{');
+    return this;
+  }
+
+  /**
+   * Ends the JSON object {@linkplain #beginObject() begun} most
+   * recently.
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception IOException if an error occurs writing
+   *
+   * @exception IllegalStateException if the innermost open structure
+   * is not an object, or a name was written without a value
+   */
+  public JsonWriter endObject() throws IOException {
+    if (this.afterName || this.depth == 0 || this.stack[this.depth - 1] > NONEMPTY_OBJECT) {
+      throw new IllegalStateException("not in an object");
+    }
+    this.depth--;
+    this.write((byte)'}');
+    return this;
+  }
+
+  /**
+   * Begins a JSON array.
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public JsonWriter beginArray() throws IOException {
+    this.beforeValue();
+    this.push(EMPTY_ARRAY);
+    this.write((byte)'[');
+    return this;
+  }
+
+  /**
+   * Ends the JSON array {@linkplain #beginArray() begun} most
+   * recently.
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception IOException if an error occurs writing
+   *
+   * @exception IllegalStateException if the innermost open structure
+   * is not an array
+   */
+  public JsonWriter endArray() throws IOException {
+    if (this.depth == 0 || this.stack[this.depth - 1] < EMPTY_ARRAY) {
+      throw new IllegalStateException("not in an array");
+    }
+    this.depth--;
+    this.write((byte)']');
+    return this;
+  }
+
+  /**
+   * Writes the name of the next member of the current JSON object.
+   *
+   * @param name the name; must not be {@code null}
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception NullPointerException if {@code name} is {@code null}
+   *
+   * @exception IOException if an error occurs writing
+   *
+   * @exception IllegalStateException if the innermost open structure
+   * is not an object, or a name was written without a value
+   */
+  public JsonWriter name(@NotNull final String name) throws IOException {
+    Objects.requireNonNull(name, () -> "name must not be null");
+    if (this.afterName || this.depth == 0) {
+      throw new IllegalStateException("not expecting a name");
+    }
+    final byte kind = this.stack[this.depth - 1];
+    if (kind == NONEMPTY_OBJECT) {
+      this.write((byte)',');
+    } else if (kind == EMPTY_OBJECT) {
+      this.stack[this.depth - 1] = NONEMPTY_OBJECT;
+    } else {
+      throw new IllegalStateException("not in an object");
+    }
+    this.writeString(name);
+    this.write((byte)':');
+    this.afterName = true;
+    return this;
+  }
+
+  /**
+   * Writes a JSON string, or {@code null}.
+   *
+   * @param value the value; may be {@code null}
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public JsonWriter value(final String value) throws IOException {
+    if (value == null) {
+      return this.nullValue();
+    }
+    this.beforeValue();
+    this.writeString(value);
+    return this;
+  }
+
+  /**
+   * Writes a JSON boolean.
+   *
+   * @param value the value
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public JsonWriter value(final boolean value) throws IOException {
+    this.beforeValue();
+    this.write(value ? TRUE : FALSE);
+    return this;
+  }
+
+  /**
+   * Writes a JSON number.
+   *
+   * @param value the value
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public JsonWriter value(final long value) throws IOException {
+    this.beforeValue();
+    this.writeAscii(Long.toString(value));
+    return this;
+  }
+
+  /**
+   * Writes a JSON number.
+   *
+   * @param value the value; must be finite
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception IllegalArgumentException if {@code value} is infinite
+   * or {@linkplain Double#isNaN(double) not a number}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public JsonWriter value(final double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException("value: " + value);
+    }
+    this.beforeValue();
+    this.writeAscii(Double.toString(value));
+    return this;
+  }
+
+  /**
+   * Writes a JSON {@code null}.
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public JsonWriter nullValue() throws IOException {
+    this.beforeValue();
+    this.write(NULL);
+    return this;
+  }
+
+  /**
+   * Writes an arbitrary value as JSON.
+   *
+   * <p>{@link Map}s become objects whose member names are the
+   * {@linkplain String#valueOf(Object) string forms} of their keys;
+   * {@link Iterable}s and arrays become arrays; {@link Boolean}s
+   * become booleans; {@link Number}s become numbers; {@code null}
+   * becomes {@code null}; and everything else becomes the string
+   * returned by its {@link Object#toString()} method.</p>
+   *
+   * @param value the value; may be {@code null}
+   *
+   * @return this {@link JsonWriter}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public JsonWriter value(final Object value) throws IOException {
+    if (value == null) {
+      this.nullValue();
+    } else if (value instanceof String) {
+      this.value((String)value);
+    } else if (value instanceof Boolean) {
+      this.value(((Boolean)value).booleanValue());
+    } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+      this.value(((Number)value).longValue());
+    } else if (value instanceof Double || value instanceof Float) {
+      this.value(((Number)value).doubleValue());
+    } else if (value instanceof BigInteger || value instanceof BigDecimal) {
+      this.beforeValue();
+      this.writeAscii(value.toString());
+    } else if (value instanceof Number) {
+      this.value(((Number)value).doubleValue());
+    } else if (value instanceof Map) {
+      this.beginObject();
+      for (final Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+        this.name(String.valueOf(entry.getKey()));
+        this.value(entry.getValue());
+      }
+      this.endObject();
+    } else if (value instanceof Iterable) {
+      this.beginArray();
+      for (final Object element : (Iterable<?>)value) {
+        this.value(element);
+      }
+      this.endArray();
+    } else if (value.getClass().isArray()) {
+      this.beginArray();
+      final int length = Array.getLength(value);
+      for (int i = 0; i < length; i++) {
+        this.value(Array.get(value, i));
+      }
+      this.endArray();
+    } else {
+      this.value(value.toString());
+    }
+    return this;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.drain();
+    this.out.flush();
+  }
+
+  /**
+   * Writes any buffered output to, and then closes, the underlying
+   * {@link OutputStream}.
+   *
+   * @exception IOException if an error occurs
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.drain();
+    } finally {
+      this.out.close();
+    }
+  }
+
+  private final void beforeValue() throws IOException {
+    if (this.afterName) {
+      this.afterName = false;
+    } else if (this.depth > 0) {
+      final byte kind = this.stack[this.depth - 1];
+      if (kind == NONEMPTY_ARRAY) {
+        this.write((byte)',');
+      } else if (kind == EMPTY_ARRAY) {
+        this.stack[this.depth - 1] = NONEMPTY_ARRAY;
+      } else {
+        throw new IllegalStateException("expecting a name");
+      }
+    }
+  }
+
+  private final void push(final byte kind) {
+    if (this.depth == this.stack.length) {
+      this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+    }
+    this.stack[this.depth++] = kind;
+  }
+
+  private final void writeString(final String s) throws IOException {
+    this.write((byte)'"');
+    final int length = s.length();
+    for (int i = 0; i < length; i++) {
+      final char c = s.charAt(i);
+      if (c < 0x80) {
+        if (c < 0x20 || c == '"' || c == '\\') {
+          this.writeEscaped(c);
+        } else {
+          if (this.position == this.buffer.length) {
+            this.drain();
+          }
+          this.buffer[this.position++] = (byte)c;
+        }
+      } else if (c < 0x800) {
+        this.write((byte)(0xC0 | (c >> 6)));
+        this.write((byte)(0x80 | (c & 0x3F)));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+        final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+        this.write((byte)(0xF0 | (codePoint >> 18)));
+        this.write((byte)(0x80 | ((codePoint >> 12) & 0x3F)));
+        this.write((byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+        this.write((byte)(0x80 | (codePoint & 0x3F)));
+      } else if (Character.isSurrogate(c)) {
+        // An unpaired surrogate cannot be encoded in UTF-8.
+        this.writeEscaped(c);
+      } else {
+        this.write((byte)(0xE0 | (c >> 12)));
+        this.write((byte)(0x80 | ((c >> 6) & 0x3F)));
+        this.write((byte)(0x80 | (c & 0x3F)));
+      }
+    }
+    this.write((byte)'"');
+  }
+
+  private final void writeEscaped(final char c) throws IOException {
+    this.write((byte)'\\');
+    switch (c) {
+    case '"':
+      this.write((byte)'"');
+      break;
+    case '\\':
+      this.write((byte)'\\');
+      break;
+    case '\n':
+      this.write((byte)'n');
+      break;
+    case '\r':
+      this.write((byte)'r');
+      break;
+    case '\t':
+      this.write((byte)'t');
+      break;
+    case '\b':
+      this.write((byte)'b');
+      break;
+    case '\f':
+      this.write((byte)'f');
+      break;
+    default:
+      this.write((byte)'u');
+      this.write(HEX[(c >> 12) & 0xF]);
+      this.write(HEX[(c >> 8) & 0xF]);
+      this.write(HEX[(c >> 4) & 0xF]);
+      this.write(HEX[c & 0xF]);
+      break;
+    }
+  }
+
+  private final void writeAscii(final String s) throws IOException {
+    final int length = s.length();
+    for (int i = 0; i < length; i++) {
+      this.write((byte)s.charAt(i));
+    }
+  }
+
+  private final void write(final byte[] bytes) throws IOException {
+    for (final byte b : bytes) {
+      this.write(b);
+    }
+  }
+
+  private final void write(final byte b) throws IOException {
+    if (this.position == this.buffer.length) {
+      this.drain();
+    }
+    this.buffer[this.position++] = b;
+  }
+
+  private final void drain() throws IOException {
+    if (this.position > 0) {
+      this.out.write(this.buffer, 0, this.position);
+      this.position = 0;
+    }
+  }
+
+}
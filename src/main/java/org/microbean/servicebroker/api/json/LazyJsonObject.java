@@ -0,0 +1,296 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.json;
+
+import java.nio.ByteBuffer;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable {@link Map} view of a JSON object that keeps the
+ * object's raw bytes and decodes each member's value only when it is
+ * first {@linkplain #get(Object) accessed}, and then only once.
+ *
+ * <p>Member names and the extent of each value are found, and the
+ * whole object validated, when an instance is {@linkplain
+ * JsonReader#readLazyObject() read}, so accessing a value never fails.
+ * Values are decoded as described by {@link JsonReader#readValue()};
+ * nested objects and arrays so decoded are mutable and shared by all
+ * callers, and should not be modified.</p>
+ *
+ * <p>If a name occurs more than once, the last value wins, as with
+ * {@link JsonReader#readObject()}.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @see JsonReader#readLazyObject()
+ */
+public final class LazyJsonObject extends AbstractMap<String, Object> {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * Stands in for a decoded JSON {@code null} in {@link #values},
+   * where {@code null} means "not yet decoded".
+   */
+  private static final Object NULL = new Object();
+
+  /**
+   * The number of members above which lookups use a {@link HashMap}
+   * rather than a scan.
+   */
+  private static final int SCAN_THRESHOLD = 16;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final byte[] bytes;
+
+  private final String[] names;
+
+  /**
+   * Pairs of start (inclusive) and end (exclusive) offsets into
+   * {@link #bytes}, one pair per name.
+   */
+  private final int[] ranges;
+
+  private final AtomicReferenceArray<Object> values;
+
+  private final Map<String, Integer> index;
+
+  private transient Set<Map.Entry<String, Object>> entrySet;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  LazyJsonObject(final byte[] bytes, final String[] names, final int[] ranges, final int size) {
+    super();
+    this.bytes = bytes;
+    final Map<String, Integer> index = size > SCAN_THRESHOLD ? new HashMap<>() : null;
+    final String[] distinctNames = new String[size];
+    final int[] distinctRanges = new int[size * 2];
+    int distinct = 0;
+    for (int i = 0; i < size; i++) {
+      final String name = names[i];
+      int position = -1;
+      if (index == null) {
+        for (int j = 0; j < distinct; j++) {
+          if (distinctNames[j].equals(name)) {
+            position = j;
+            break;
+          }
+        }
+      } else {
+        final Integer existing = index.get(name);
+        if (existing != null) {
+          position = existing.intValue();
+        }
+      }
+      if (position < 0) {
+        position = distinct++;
+        distinctNames[position] = name;
+        if (index != null) {
+          index.put(name, Integer.valueOf(position));
+        }
+      }
+      distinctRanges[position * 2] = ranges[i * 2];
+      distinctRanges[position * 2 + 1] = ranges[i * 2 + 1];
+    }
+    if (distinct == size) {
+      this.names = distinctNames;
+      this.ranges = distinctRanges;
+    } else {
+      this.names = new String[distinct];
+      System.arraycopy(distinctNames, 0, this.names, 0, distinct);
+      this.ranges = new int[distinct * 2];
+      System.arraycopy(distinctRanges, 0, this.ranges, 0, distinct * 2);
+    }
+    this.values = new AtomicReferenceArray<>(distinct);
+    this.index = index;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Override
+  public final int size() {
+    return this.names.length;
+  }
+
+  @Override
+  public final boolean isEmpty() {
+    return this.names.length == 0;
+  }
+
+  @Override
+  public final boolean containsKey(final Object key) {
+    return this.indexOf(key) >= 0;
+  }
+
+  @Override
+  public final Object get(final Object key) {
+    final int position = this.indexOf(key);
+    return position < 0 ? null : this.valueAt(position);
+  }
+
+  /**
+   * Returns a new read-only {@link ByteBuffer} over the undecoded JSON
+   * text of the value of the member with the supplied name, or {@code
+   * null} if there is no such member.
+   *
+   * <p>This lets callers pass large values through without decoding
+   * them at all.</p>
+   *
+   * @param name the member name; may be {@code null} in which case
+   * {@code null} will be returned
+   *
+   * @return a new read-only {@link ByteBuffer}, or {@code null}
+   */
+  public final ByteBuffer getRaw(final String name) {
+    final int position = this.indexOf(name);
+    if (position < 0) {
+      return null;
+    }
+    final int start = this.ranges[position * 2];
+    return ByteBuffer.wrap(this.bytes, start, this.ranges[position * 2 + 1] - start).slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns a new read-only {@link ByteBuffer} over the undecoded JSON
+   * text of this entire object.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null} read-only {@link ByteBuffer}
+   */
+  public final ByteBuffer getRaw() {
+    return ByteBuffer.wrap(this.bytes).asReadOnlyBuffer();
+  }
+
+  @Override
+  public final Set<Map.Entry<String, Object>> entrySet() {
+    Set<Map.Entry<String, Object>> entrySet = this.entrySet;
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+      this.entrySet = entrySet;
+    }
+    return entrySet;
+  }
+
+  private final int indexOf(final Object key) {
+    if (key == null) {
+      return -1;
+    }
+    if (this.index != null) {
+      final Integer position = this.index.get(key);
+      return position == null ? -1 : position.intValue();
+    }
+    final String[] names = this.names;
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private final Object valueAt(final int position) {
+    Object value = this.values.get(position);
+    if (value == null) {
+      final int start = this.ranges[position * 2];
+      final JsonReader reader = new JsonReader(this.bytes, start, this.ranges[position * 2 + 1] - start);
+      try {
+        value = reader.readValue();
+      } catch (final MalformedJsonException malformedJsonException) {
+        // The value was validated when this object was read.
+        throw new IllegalStateException(malformedJsonException.getMessage(), malformedJsonException);
+      }
+      if (value == null) {
+        value = NULL;
+      }
+      if (!this.values.compareAndSet(position, null, value)) {
+        // Another thread got there first; use its value so that every
+        // caller sees the same instance.
+        value = this.values.get(position);
+      }
+    }
+    return value == NULL ? null : value;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+    private EntrySet() {
+      super();
+    }
+
+    @Override
+    public final int size() {
+      return names.length;
+    }
+
+    @Override
+    public final Iterator<Map.Entry<String, Object>> iterator() {
+      return new Iterator<Map.Entry<String, Object>>() {
+          private int next;
+
+          @Override
+          public final boolean hasNext() {
+            return this.next < names.length;
+          }
+
+          @Override
+          public final Map.Entry<String, Object> next() {
+            if (this.next >= names.length) {
+              throw new NoSuchElementException();
+            }
+            final int position = this.next++;
+            return new AbstractMap.SimpleImmutableEntry<>(names[position], valueAt(position));
+          }
+        };
+    }
+
+  }
+
+}
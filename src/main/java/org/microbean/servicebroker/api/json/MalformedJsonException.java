@@ -0,0 +1,57 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.json;
+
+import java.io.IOException;
+
+/**
+ * An {@link IOException} indicating that input being read by a
+ * {@link JsonReader} is not well-formed JSON, or is not of the shape
+ * the caller expected.
+ *
+ * @see JsonReader
+ */
+public class MalformedJsonException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int offset;
+
+  /**
+   * Creates a new {@link MalformedJsonException}.
+   *
+   * @param message a description of the problem; may be {@code null}
+   *
+   * @param offset the zero-based byte offset in the input at which
+   * the problem was detected
+   */
+  public MalformedJsonException(final String message, final int offset) {
+    super(message + " at offset " + offset);
+    this.offset = offset;
+  }
+
+  /**
+   * Returns the zero-based byte offset in the input at which the
+   * problem was detected.
+   *
+   * @return the offset at which the problem was detected
+   */
+  public final int getOffset() {
+    return this.offset;
+  }
+
+}
@@ -0,0 +1,125 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.json;
+
+import java.io.IOException;
+
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+/**
+ * Writes the results of queries as the JSON response bodies
+ * described by the <a
+ * href="https://github.com/openservicebrokerapi/servicebroker/blob/v2.13/spec.md">Open
+ * Service Broker API specification, version 2.13</a>, and reads them
+ * back.
+ *
+ * <p>{@link LastOperationQuery} instances are carried entirely in the
+ * request URL and so have no reader here.</p>
+ *
+ * @see CommandCodec
+ */
+public final class QueryCodec {
+
+  private QueryCodec() {
+    super();
+  }
+
+  /**
+   * Writes the body of a response to a last operation request.
+   *
+   * @param writer the {@link JsonWriter} to write to; must not be
+   * {@code null}
+   *
+   * @param lastOperation the {@link LastOperation} to write; must not
+   * be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if an error occurs writing
+   */
+  public static final void write(@NotNull final JsonWriter writer, @NotNull final LastOperation lastOperation)
+    throws IOException {
+    Objects.requireNonNull(writer, () -> "writer must not be null");
+    Objects.requireNonNull(lastOperation, () -> "lastOperation must not be null");
+    writer.beginObject();
+    writer.name("state").value(lastOperation.getState().toString());
+    final String description = lastOperation.getDescription();
+    if (description != null) {
+      writer.name("description").value(description);
+    }
+    writer.endObject();
+  }
+
+  /**
+   * Reads a {@link LastOperation} from the body of a response to a
+   * last operation request.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param reader the {@link JsonReader} to read from; must not be
+   * {@code null}
+   *
+   * @return a new, non-{@code null} {@link LastOperation}
+   *
+   * @exception NullPointerException if {@code reader} is {@code null}
+   *
+   * @exception MalformedJsonException if the body is not a
+   * well-formed last operation response
+   */
+  @NotNull
+  public static final LastOperation readLastOperation(@NotNull final JsonReader reader) throws MalformedJsonException {
+    Objects.requireNonNull(reader, () -> "reader must not be null");
+    LastOperation.State state = null;
+    String description = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+      case "state":
+        final String value = reader.nextString();
+        for (final LastOperation.State candidate : LastOperation.State.values()) {
+          if (candidate.toString().equals(value)) {
+            state = candidate;
+            break;
+          }
+        }
+        if (state == null) {
+          throw reader.syntaxError("Invalid state: " + value);
+        }
+        break;
+      case "description":
+        description = reader.nextStringOrNull();
+        break;
+      default:
+        reader.skipValue();
+        break;
+      }
+    }
+    reader.endObject();
+    if (state == null) {
+      throw reader.syntaxError("Missing state");
+    }
+    return new LastOperation(state, description);
+  }
+
+}
@@ -39,5 +39,16 @@ public class InvalidServiceBrokerQueryException extends AbstractQueryException {
   public InvalidServiceBrokerQueryException(final Throwable cause, final AbstractQuery query) {
     super(cause, query);
   }
-  
+
+  /**
+   * Returns {@code true}, because rejecting an invalid query is part
+   * of normal request handling.
+   *
+   * @return {@code true}
+   */
+  @Override
+  protected boolean isExpectedOutcome() {
+    return true;
+  }
+
 }
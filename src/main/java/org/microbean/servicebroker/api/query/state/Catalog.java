@@ -16,36 +16,91 @@
  */
 package org.microbean.servicebroker.api.query.state;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 import java.net.URI;
 
+import java.nio.ByteBuffer;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import java.util.zip.GZIPOutputStream;
+
 // import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 
 import org.microbean.servicebroker.api.AbstractStatefulObject;
 
+import org.microbean.servicebroker.api.json.CatalogCodec;
+import org.microbean.servicebroker.api.json.JsonWriter;
+
+import org.microbean.servicebroker.api.schema.ParameterSchema;
+
+import org.microbean.servicebroker.api.util.Fingerprint;
+import org.microbean.servicebroker.api.util.ImmutableArrayMap;
+import org.microbean.servicebroker.api.util.ImmutableArraySet;
+import org.microbean.servicebroker.api.util.PersistentHashMap;
+
 public class Catalog extends AbstractStatefulObject {
 
   @NotNull
   private final Set</* @NotNull */ ? extends Service> services;
 
+  /**
+   * Lookup tables over {@link #services}, built on first use.
+   *
+   * <p>{@link Index} instances are immutable and safely published by
+   * virtue of their {@code final} fields, so a race between two
+   * threads building one merely wastes a little work.</p>
+   *
+   * @see #index()
+   */
+  private volatile Index index;
+
+  /**
+   * The UTF-8-encoded JSON representation of this {@link Catalog},
+   * built on first use.
+   *
+   * @see #getJson()
+   */
+  private volatile ByteBuffer json;
+
+  /**
+   * The gzip-compressed form of {@link #json}, built on first use.
+   *
+   * @see #getGzippedJson()
+   */
+  private volatile ByteBuffer gzippedJson;
+
+  /**
+   * The {@link Fingerprint} of this {@link Catalog}, computed on
+   * first use.
+   *
+   * @see #getFingerprint()
+   */
+  private volatile Fingerprint fingerprint;
+
   public Catalog() {
     this(Collections.emptySet());
   }
   
   public Catalog(final Set</* @NotNull */ ? extends Service> services) {
     super();
-    if (services == null || services.isEmpty()) {
-      this.services = Collections.emptySet();
-    } else {
-      this.services = Collections.unmodifiableSet(new LinkedHashSet<>(services));
-    }
+    this.services = services instanceof KeyedSet ? services : ImmutableArraySet.copyOf(services);
   }
   
   @NotNull
@@ -53,6 +108,464 @@ public class Catalog extends AbstractStatefulObject {
     return this.services;
   }
 
+  /**
+   * Returns the {@link Service} in this {@link Catalog} with the
+   * supplied {@linkplain Service#getId() identifier}, or {@code null}
+   * if there is no such {@link Service}.
+   *
+   * @param id the identifier; may be {@code null} in which case
+   * {@code null} will be returned
+   *
+   * @return the {@link Service} with the supplied identifier, or
+   * {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  public final Service getService(final String id) {
+    if (id == null) {
+      return null;
+    } else if (this.services instanceof KeyedSet) {
+      return ((KeyedSet<Service>)this.services).map.get(id);
+    }
+    return this.index().servicesById.get(id);
+  }
+
+  /**
+   * Returns a new {@link Builder} initially holding the {@link
+   * Service}s of this {@link Catalog}.
+   *
+   * <p>If this {@link Catalog} was itself {@linkplain Builder#build()
+   * built} by a {@link Builder}, this method and the {@link
+   * Catalog} the returned {@link Builder} builds share all their
+   * structure save that affected by the changes made to the {@link
+   * Builder}.  Otherwise this method takes time proportional to the
+   * number of {@link Service}s in this {@link Catalog}, once.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null} {@link Builder}
+   */
+  @NotNull
+  @SuppressWarnings("unchecked")
+  public final Builder toBuilder() {
+    if (this.services instanceof KeyedSet) {
+      return new Builder(((KeyedSet<Service>)this.services).map);
+    }
+    final Builder builder = new Builder();
+    for (final Service service : this.services) {
+      builder.addService(service);
+    }
+    return builder;
+  }
+
+  /**
+   * Returns the {@link Service.Plan} with the supplied identifier
+   * belonging to the {@link Service} in this {@link Catalog} with the
+   * supplied identifier, or {@code null} if there is no such {@link
+   * Service.Plan}.
+   *
+   * @param serviceId the {@linkplain Service#getId() identifier of
+   * the <code>Service</code>}; may be {@code null} in which case
+   * {@code null} will be returned
+   *
+   * @param planId the {@linkplain Service.Plan#getId() identifier of
+   * the <code>Plan</code>}; may be {@code null} in which case {@code
+   * null} will be returned
+   *
+   * @return the {@link Service.Plan}, or {@code null}
+   *
+   * @see Service#getPlan(String)
+   */
+  public final Service.Plan getPlan(final String serviceId, final String planId) {
+    final Service service = this.getService(serviceId);
+    return service == null ? null : service.getPlan(planId);
+  }
+
+  /**
+   * Returns the {@link Service} in this {@link Catalog} with the
+   * supplied {@linkplain Service#getName() name}, or {@code null} if
+   * there is no such {@link Service}.
+   *
+   * <p>If, contrary to the specification, more than one {@link
+   * Service} has the supplied name, the first one in {@linkplain
+   * #getServices() iteration order} is returned.</p>
+   *
+   * @param name the name; may be {@code null} in which case {@code
+   * null} will be returned
+   *
+   * @return the {@link Service} with the supplied name, or {@code
+   * null}
+   */
+  public final Service getServiceByName(final String name) {
+    return name == null ? null : this.index().servicesByName.get(name);
+  }
+
+  /**
+   * Returns an immutable {@link Set} of the {@link Service}s in this
+   * {@link Catalog} that have the supplied {@linkplain
+   * Service#getTags() tag}, in {@linkplain #getServices() iteration
+   * order}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param tag the tag; may be {@code null} in which case an empty
+   * {@link Set} will be returned
+   *
+   * @return a non-{@code null}, immutable {@link Set} of {@link
+   * Service}s
+   */
+  @NotNull
+  public final Set</* @NotNull */ ? extends Service> getServicesByTag(final String tag) {
+    if (tag == null) {
+      return Collections.emptySet();
+    }
+    final Set<? extends Service> returnValue = this.index().servicesByTag.get(tag);
+    return returnValue == null ? Collections.emptySet() : returnValue;
+  }
+
+  /**
+   * Returns a new read-only {@link ByteBuffer} positioned at the
+   * start of the UTF-8-encoded JSON representation of this {@link
+   * Catalog}, as described by the Open Service Broker API
+   * specification.
+   *
+   * <p>The representation is produced the first time this method is
+   * called and shared by every {@link ByteBuffer} subsequently
+   * returned, each of which has its own position and limit, so that
+   * it may be written to a channel as is, any number of times and by
+   * any number of threads.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null}, read-only {@link ByteBuffer}
+   *
+   * @see CatalogCodec#write(JsonWriter, Catalog)
+   *
+   * @see #getGzippedJson()
+   */
+  @NotNull
+  public final ByteBuffer getJson() {
+    ByteBuffer json = this.json;
+    if (json == null) {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+      try (final JsonWriter writer = new JsonWriter(bytes, 8192)) {
+        CatalogCodec.write(writer, this);
+      } catch (final IOException ioException) {
+        throw new UncheckedIOException(ioException);
+      }
+      json = ByteBuffer.wrap(bytes.toByteArray()).asReadOnlyBuffer();
+      this.json = json;
+    }
+    return json.duplicate();
+  }
+
+  /**
+   * Returns a new read-only {@link ByteBuffer} positioned at the
+   * start of the gzip-compressed form of the {@linkplain #getJson()
+   * JSON representation of this <code>Catalog</code>}, suitable for
+   * sending as is with a {@code Content-Encoding: gzip} header.
+   *
+   * <p>The compressed form is produced the first time this method is
+   * called and shared in the same way as that returned by {@link
+   * #getJson()}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null}, read-only {@link ByteBuffer}
+   *
+   * @see #getJson()
+   */
+  @NotNull
+  public final ByteBuffer getGzippedJson() {
+    ByteBuffer gzippedJson = this.gzippedJson;
+    if (gzippedJson == null) {
+      final ByteBuffer json = this.getJson();
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, json.remaining() / 4));
+      try (final GZIPOutputStream gzip = new GZIPOutputStream(bytes, 8192)) {
+        // Buffers returned by getJson() are read-only, and so have no
+        // accessible array; copy through a scratch array instead.
+        final byte[] chunk = new byte[8192];
+        while (json.hasRemaining()) {
+          final int length = Math.min(chunk.length, json.remaining());
+          json.get(chunk, 0, length);
+          gzip.write(chunk, 0, length);
+        }
+      } catch (final IOException ioException) {
+        throw new UncheckedIOException(ioException);
+      }
+      gzippedJson = ByteBuffer.wrap(bytes.toByteArray()).asReadOnlyBuffer();
+      this.gzippedJson = gzippedJson;
+    }
+    return gzippedJson.duplicate();
+  }
+
+  /**
+   * Returns a {@link Fingerprint} of the content of this {@link
+   * Catalog}, computed from the {@linkplain Service#getFingerprint()
+   * fingerprints of its <code>Service</code>s} without regard to
+   * their order, and cached.
+   *
+   * <p>Two {@link Catalog}s with equal {@link Fingerprint}s describe
+   * the same services and plans, so, for example, {@code
+   * getFingerprint().toEntityTag()} can serve as an {@code ETag} for
+   * the {@linkplain #getJson() JSON representation} of this {@link
+   * Catalog}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link Fingerprint}
+   *
+   * @see #contentEquals(Catalog)
+   */
+  @NotNull
+  public final Fingerprint getFingerprint() {
+    Fingerprint fingerprint = this.fingerprint;
+    if (fingerprint == null) {
+      final Set<Fingerprint> serviceFingerprints = new HashSet<>();
+      for (final Service service : this.services) {
+        serviceFingerprints.add(service.getFingerprint());
+      }
+      fingerprint = new Fingerprint.Hasher().put(serviceFingerprints).fingerprint();
+      this.fingerprint = fingerprint;
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Catalog} has the same
+   * content as this one.
+   *
+   * @param other the {@link Catalog} to compare; may be {@code null}
+   * in which case {@code false} will be returned
+   *
+   * @return {@code true} if the supplied {@link Catalog} has the same
+   * content as this one; {@code false} otherwise
+   *
+   * @see #getFingerprint()
+   */
+  public final boolean contentEquals(final Catalog other) {
+    return other == this || other != null && this.getFingerprint().equals(other.getFingerprint());
+  }
+
+  private final Index index() {
+    Index index = this.index;
+    if (index == null) {
+      index = new Index(this.services);
+      this.index = index;
+    }
+    return index;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * Builds {@link Catalog}s incrementally.
+   *
+   * <p>A {@link Builder} holds its {@link Service}s in a {@link
+   * PersistentHashMap} indexed by {@linkplain Service#getId()
+   * identifier}, which the {@link Catalog}s it {@linkplain #build()
+   * builds} use as is, so that adding, replacing or removing a {@link
+   * Service} costs time and memory proportional to the change rather
+   * than to the size of the {@link Catalog}, and so that {@link
+   * Catalog#getService(String)} needs no separate index.  The {@link
+   * Service}s of a {@link Catalog} built this way are iterated in an
+   * unspecified order.</p>
+   *
+   * <p>Instances of this class are not safe for concurrent use by
+   * multiple threads, but the {@link Catalog}s they build are.</p>
+   *
+   * @see Catalog#toBuilder()
+   *
+   * @see Service#toBuilder()
+   */
+  public static final class Builder {
+
+    @NotNull
+    private PersistentHashMap<String, Service> services;
+
+    /**
+     * Creates a new, empty {@link Builder}.
+     */
+    public Builder() {
+      this(PersistentHashMap.empty());
+    }
+
+    private Builder(@NotNull final PersistentHashMap<String, Service> services) {
+      super();
+      this.services = services;
+    }
+
+    /**
+     * Returns the {@link Service} this {@link Builder} holds with the
+     * supplied {@linkplain Service#getId() identifier}, or {@code
+     * null} if there is no such {@link Service}.
+     *
+     * @param id the identifier; may be {@code null} in which case
+     * {@code null} will be returned
+     *
+     * @return the {@link Service} with the supplied identifier, or
+     * {@code null}
+     */
+    public final Service getService(final String id) {
+      return this.services.get(id);
+    }
+
+    /**
+     * Adds the supplied {@link Service}, replacing any {@link Service}
+     * with the same {@linkplain Service#getId() identifier}.
+     *
+     * @param service the {@link Service} to add; must not be {@code
+     * null}
+     *
+     * @return this {@link Builder}
+     *
+     * @exception NullPointerException if {@code service} is {@code
+     * null}
+     */
+    @NotNull
+    public final Builder addService(@NotNull final Service service) {
+      Objects.requireNonNull(service, () -> "service must not be null");
+      this.services = this.services.with(service.getId(), service);
+      return this;
+    }
+
+    /**
+     * Removes the {@link Service} with the supplied {@linkplain
+     * Service#getId() identifier}, if there is one.
+     *
+     * @param id the identifier; may be {@code null}
+     *
+     * @return this {@link Builder}
+     */
+    @NotNull
+    public final Builder removeService(final String id) {
+      this.services = this.services.without(id);
+      return this;
+    }
+
+    /**
+     * Removes every {@link Service} that satisfies the supplied
+     * {@link Predicate}.
+     *
+     * @param predicate the {@link Predicate}; must not be {@code
+     * null}
+     *
+     * @return this {@link Builder}
+     *
+     * @exception NullPointerException if {@code predicate} is {@code
+     * null}
+     */
+    @NotNull
+    public final Builder removeServicesIf(@NotNull final Predicate<? super Service> predicate) {
+      Objects.requireNonNull(predicate, () -> "predicate must not be null");
+      PersistentHashMap<String, Service> services = this.services;
+      for (final Service service : this.services.values()) {
+        if (predicate.test(service)) {
+          services = services.without(service.getId());
+        }
+      }
+      this.services = services;
+      return this;
+    }
+
+    /**
+     * Returns a new {@link Catalog} holding the {@link Service}s this
+     * {@link Builder} holds.
+     *
+     * <p>This {@link Builder} may continue to be used afterwards
+     * without affecting the returned {@link Catalog}.</p>
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a new, non-{@code null} {@link Catalog}
+     */
+    @NotNull
+    public final Catalog build() {
+      return new Catalog(new KeyedSet<>(Service.class, Service::getId, this.services));
+    }
+
+  }
+
+  /**
+   * An immutable {@link Set} backed by a {@link PersistentHashMap}
+   * from each element's key to the element, used by {@link Catalog}s
+   * and {@link Service}s built by {@link Builder}s.
+   */
+  private static final class KeyedSet<E> extends AbstractSet<E> {
+
+    @NotNull
+    private final Class<E> type;
+
+    @NotNull
+    private final Function<? super E, String> keyFunction;
+
+    @NotNull
+    private final PersistentHashMap<String, E> map;
+
+    private KeyedSet(@NotNull final Class<E> type,
+                     @NotNull final Function<? super E, String> keyFunction,
+                     @NotNull final PersistentHashMap<String, E> map) {
+      super();
+      this.type = type;
+      this.keyFunction = keyFunction;
+      this.map = map;
+    }
+
+    @Override
+    public final int size() {
+      return this.map.size();
+    }
+
+    @Override
+    public final boolean contains(final Object other) {
+      return this.type.isInstance(other) && other.equals(this.map.get(this.keyFunction.apply(this.type.cast(other))));
+    }
+
+    @Override
+    public final Iterator<E> iterator() {
+      return Collections.unmodifiableCollection(this.map.values()).iterator();
+    }
+
+  }
+
+  private static final class Index {
+
+    private final Map<String, Service> servicesById;
+
+    private final Map<String, Service> servicesByName;
+
+    private final Map<String, Set<Service>> servicesByTag;
+
+    private Index(final Set<? extends Service> services) {
+      super();
+      final Map<String, Service> servicesById = new HashMap<>();
+      final Map<String, Service> servicesByName = new HashMap<>();
+      final Map<String, List<Service>> servicesByTag = new HashMap<>();
+      for (final Service service : services) {
+        servicesById.putIfAbsent(service.getId(), service);
+        servicesByName.putIfAbsent(service.getName(), service);
+        for (final String tag : service.getTags()) {
+          if (tag != null) {
+            servicesByTag.computeIfAbsent(tag, t -> new ArrayList<>()).add(service);
+          }
+        }
+      }
+      this.servicesById = ImmutableArrayMap.copyOf(servicesById);
+      this.servicesByName = ImmutableArrayMap.copyOf(servicesByName);
+      final Map<String, Set<Service>> tagged = new HashMap<>();
+      for (final Map.Entry<String, List<Service>> entry : servicesByTag.entrySet()) {
+        // Each service is listed at most once per tag, since both the
+        // services and each service's tags are sets.
+        tagged.put(entry.getKey(), ImmutableArraySet.copyOfDistinct(entry.getValue()));
+      }
+      this.servicesByTag = ImmutableArrayMap.copyOf(tagged);
+    }
+
+  }
+
   public static class Service {
 
     @NotNull
@@ -88,6 +601,22 @@ public class Catalog extends AbstractStatefulObject {
     @NotNull /* @NotEmpty */
     private final Set</* @NotNull */ ? extends Plan> plans;
 
+    /**
+     * {@link #plans} indexed by {@linkplain Plan#getId() identifier},
+     * built on first use.
+     *
+     * @see #getPlan(String)
+     */
+    private volatile Map<String, Plan> plansById;
+
+    /**
+     * The {@link Fingerprint} of this {@link Service}, computed on
+     * first use.
+     *
+     * @see #getFingerprint()
+     */
+    private volatile Fingerprint fingerprint;
+
     public Service(@NotNull final String id, // GUID
                    @NotNull final String name,
                    @NotNull final String description,
@@ -106,25 +635,13 @@ public class Catalog extends AbstractStatefulObject {
       this.id = id;
       this.name = name;
       this.description = description;
-      if (tags == null || tags.isEmpty()) {
-        this.tags = Collections.emptySet();
-      } else {
-        this.tags = new LinkedHashSet<>(tags);
-      }
-      if (requires == null || requires.isEmpty()) {
-        this.requires = Collections.emptySet();
-      } else {
-        this.requires = new LinkedHashSet<>(requires);
-      }
+      this.tags = ImmutableArraySet.copyOf(tags);
+      this.requires = ImmutableArraySet.copyOf(requires);
       this.bindable = bindable;
-      if (metadata == null || metadata.isEmpty()) {
-        this.metadata = Collections.emptyMap();
-      } else {
-        this.metadata = new LinkedHashMap<>(metadata);
-      }
+      this.metadata = ImmutableArrayMap.copyOf(metadata);
       this.dashboardClient = dashboardClient;
       this.planUpdatable = planUpdatable;
-      this.plans = Collections.unmodifiableSet(new LinkedHashSet<>(plans));
+      this.plans = plans instanceof KeyedSet ? plans : ImmutableArraySet.copyOf(plans);
     }
 
     @NotNull
@@ -171,6 +688,138 @@ public class Catalog extends AbstractStatefulObject {
       return this.plans;
     }
 
+    /**
+     * Returns the {@link Plan} of this {@link Service} with the
+     * supplied {@linkplain Plan#getId() identifier}, or {@code null}
+     * if there is no such {@link Plan}.
+     *
+     * @param id the identifier; may be {@code null} in which case
+     * {@code null} will be returned
+     *
+     * @return the {@link Plan} with the supplied identifier, or {@code
+     * null}
+     */
+    @SuppressWarnings("unchecked")
+    public final Plan getPlan(final String id) {
+      if (id == null) {
+        return null;
+      } else if (this.plans instanceof KeyedSet) {
+        return ((KeyedSet<Plan>)this.plans).map.get(id);
+      }
+      Map<String, Plan> plansById = this.plansById;
+      if (plansById == null) {
+        final Map<String, Plan> map = new HashMap<>();
+        for (final Plan plan : this.plans) {
+          map.putIfAbsent(plan.getId(), plan);
+        }
+        plansById = ImmutableArrayMap.copyOf(map);
+        this.plansById = plansById;
+      }
+      return plansById.get(id);
+    }
+
+    /**
+     * Returns a new {@link Builder} initially holding the fields and
+     * {@link Plan}s of this {@link Service}.
+     *
+     * <p>As with {@link Catalog#toBuilder()}, the {@link Service} the
+     * returned {@link Builder} builds shares its {@link Plan}
+     * structure with this one if this one was itself built by a
+     * {@link Builder}.</p>
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a new, non-{@code null} {@link Builder}
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public final Builder toBuilder() {
+      final Builder builder;
+      if (this.plans instanceof KeyedSet) {
+        builder = new Builder(this.getId(), ((KeyedSet<Plan>)this.plans).map);
+      } else {
+        builder = new Builder(this.getId());
+        for (final Plan plan : this.plans) {
+          builder.addPlan(plan);
+        }
+      }
+      return builder
+        .name(this.getName())
+        .description(this.getDescription())
+        .tags(this.getTags())
+        .requires(this.getRequires())
+        .bindable(this.isBindable())
+        .metadata(this.getMetadata())
+        .dashboardClient(this.getDashboardClient())
+        .planUpdatable(this.isPlanUpdatable());
+    }
+
+    /**
+     * Returns a {@link Fingerprint} of the content of this {@link
+     * Service}, computed from its fields and the {@linkplain
+     * Plan#getFingerprint() fingerprints of its <code>Plan</code>s},
+     * and cached.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link Fingerprint}
+     *
+     * @see #contentEquals(Service)
+     */
+    @NotNull
+    public final Fingerprint getFingerprint() {
+      Fingerprint fingerprint = this.fingerprint;
+      if (fingerprint == null) {
+        final Set<Fingerprint> planFingerprints = new HashSet<>();
+        for (final Plan plan : this.plans) {
+          planFingerprints.add(plan.getFingerprint());
+        }
+        final Fingerprint.Hasher hasher = new Fingerprint.Hasher()
+          .put(this.getId())
+          .put(this.getName())
+          .put(this.getDescription())
+          .put(this.getTags())
+          .put(this.getRequires())
+          .put(this.isBindable())
+          .put(this.getMetadata());
+        final DashboardClient dashboardClient = this.getDashboardClient();
+        if (dashboardClient == null) {
+          hasher.put((Object)null);
+        } else {
+          final URI redirectUri = dashboardClient.getRedirectUri();
+          hasher.put(dashboardClient.getOAuthClientId())
+            .put(dashboardClient.getSecret())
+            .put(redirectUri == null ? null : redirectUri.toString());
+        }
+        fingerprint = hasher
+          .put(this.isPlanUpdatable())
+          .put(planFingerprints)
+          .fingerprint();
+        this.fingerprint = fingerprint;
+      }
+      return fingerprint;
+    }
+
+    /**
+     * Returns {@code true} if the supplied {@link Service} has the
+     * same content as this one.
+     *
+     * <p>Unlike {@link #equals(Object)}, which compares only
+     * {@linkplain #getId() identifiers}, this method compares every
+     * field and every {@link Plan}.</p>
+     *
+     * @param other the {@link Service} to compare; may be {@code null}
+     * in which case {@code false} will be returned
+     *
+     * @return {@code true} if the supplied {@link Service} has the
+     * same content as this one; {@code false} otherwise
+     *
+     * @see #getFingerprint()
+     */
+    public final boolean contentEquals(final Service other) {
+      return other == this || other != null && this.getFingerprint().equals(other.getFingerprint());
+    }
+
     @Override
     public int hashCode() {
       int hashCode = 37;
@@ -206,6 +855,184 @@ public class Catalog extends AbstractStatefulObject {
      */
     
 
+    /**
+     * Builds {@link Service}s incrementally, holding their {@link
+     * Plan}s in a {@link PersistentHashMap} in the same way that a
+     * {@link Catalog.Builder} holds {@link Service}s.
+     *
+     * <p>Instances of this class are not safe for concurrent use by
+     * multiple threads.</p>
+     *
+     * @see Service#toBuilder()
+     */
+    public static final class Builder {
+
+      @NotNull
+      private final String id;
+
+      private String name;
+
+      private String description;
+
+      private Set</* @NotNull */ ? extends String> tags;
+
+      private Set</* @NotNull */ ? extends String> requires;
+
+      private boolean bindable;
+
+      private Map</* @NotNull */ ? extends String, ?> metadata;
+
+      private DashboardClient dashboardClient;
+
+      private boolean planUpdatable;
+
+      @NotNull
+      private PersistentHashMap<String, Plan> plans;
+
+      /**
+       * Creates a new {@link Builder} for a {@link Service} with the
+       * supplied identifier and no {@link Plan}s.
+       *
+       * @param id the identifier; must not be {@code null}
+       *
+       * @exception NullPointerException if {@code id} is {@code null}
+       */
+      public Builder(@NotNull final String id) {
+        this(id, PersistentHashMap.empty());
+      }
+
+      private Builder(@NotNull final String id, @NotNull final PersistentHashMap<String, Plan> plans) {
+        super();
+        Objects.requireNonNull(id, () -> "id must not be null");
+        this.id = id;
+        this.plans = plans;
+      }
+
+      @NotNull
+      public final Builder name(@NotNull final String name) {
+        this.name = name;
+        return this;
+      }
+
+      @NotNull
+      public final Builder description(@NotNull final String description) {
+        this.description = description;
+        return this;
+      }
+
+      @NotNull
+      public final Builder tags(final Set</* @NotNull */ ? extends String> tags) {
+        this.tags = tags;
+        return this;
+      }
+
+      @NotNull
+      public final Builder requires(final Set</* @NotNull */ ? extends String> requires) {
+        this.requires = requires;
+        return this;
+      }
+
+      @NotNull
+      public final Builder bindable(final boolean bindable) {
+        this.bindable = bindable;
+        return this;
+      }
+
+      @NotNull
+      public final Builder metadata(final Map</* @NotNull */ ? extends String, ?> metadata) {
+        this.metadata = metadata;
+        return this;
+      }
+
+      @NotNull
+      public final Builder dashboardClient(final DashboardClient dashboardClient) {
+        this.dashboardClient = dashboardClient;
+        return this;
+      }
+
+      @NotNull
+      public final Builder planUpdatable(final boolean planUpdatable) {
+        this.planUpdatable = planUpdatable;
+        return this;
+      }
+
+      /**
+       * Returns the {@link Plan} this {@link Builder} holds with the
+       * supplied {@linkplain Plan#getId() identifier}, or {@code
+       * null} if there is no such {@link Plan}.
+       *
+       * @param id the identifier; may be {@code null} in which case
+       * {@code null} will be returned
+       *
+       * @return the {@link Plan} with the supplied identifier, or
+       * {@code null}
+       */
+      public final Plan getPlan(final String id) {
+        return this.plans.get(id);
+      }
+
+      /**
+       * Adds the supplied {@link Plan}, replacing any {@link Plan}
+       * with the same {@linkplain Plan#getId() identifier}.
+       *
+       * @param plan the {@link Plan} to add; must not be {@code null}
+       *
+       * @return this {@link Builder}
+       *
+       * @exception NullPointerException if {@code plan} is {@code
+       * null}
+       */
+      @NotNull
+      public final Builder addPlan(@NotNull final Plan plan) {
+        Objects.requireNonNull(plan, () -> "plan must not be null");
+        this.plans = this.plans.with(plan.getId(), plan);
+        return this;
+      }
+
+      /**
+       * Removes the {@link Plan} with the supplied {@linkplain
+       * Plan#getId() identifier}, if there is one.
+       *
+       * @param id the identifier; may be {@code null}
+       *
+       * @return this {@link Builder}
+       */
+      @NotNull
+      public final Builder removePlan(final String id) {
+        this.plans = this.plans.without(id);
+        return this;
+      }
+
+      /**
+       * Returns a new {@link Service} built from the state of this
+       * {@link Builder}.
+       *
+       * <p>This {@link Builder} may continue to be used afterwards
+       * without affecting the returned {@link Service}.</p>
+       *
+       * <p>This method never returns {@code null}.</p>
+       *
+       * @return a new, non-{@code null} {@link Service}
+       *
+       * @exception NullPointerException if no name or description
+       * has been supplied
+       */
+      @NotNull
+      public final Service build() {
+        return new Service(this.id,
+                           this.name,
+                           this.description,
+                           this.tags,
+                           this.requires,
+                           this.bindable,
+                           this.metadata,
+                           this.dashboardClient,
+                           this.planUpdatable,
+                           new KeyedSet<>(Plan.class, Plan::getId, this.plans));
+      }
+
+    }
+
     public static class DashboardClient {
 
       private final String oAuthClientId;
@@ -271,6 +1098,14 @@ public class Catalog extends AbstractStatefulObject {
        * object documentation</a>
        */
       private final Schema schemas;
+
+      /**
+       * The {@link Fingerprint} of this {@link Plan}, computed on
+       * first use.
+       *
+       * @see #getFingerprint()
+       */
+      private volatile Fingerprint fingerprint;
   
       public Plan(@NotNull final String id,
                   @NotNull /* @NotEmpty */ final String name,
@@ -295,11 +1130,7 @@ public class Catalog extends AbstractStatefulObject {
         this.id = id;
         this.name = name;
         this.description = description;
-        if (metadata == null || metadata.isEmpty()) {
-          this.metadata = Collections.emptyMap();
-        } else {
-          this.metadata = Collections.unmodifiableMap(new LinkedHashMap<>(metadata));
-        }
+        this.metadata = ImmutableArrayMap.copyOf(metadata);
         this.free = free;
         this.bindable = bindable;
         this.schemas = schemas;
@@ -338,6 +1169,108 @@ public class Catalog extends AbstractStatefulObject {
         return this.schemas;
       }
 
+      /**
+       * Returns a {@link Fingerprint} of the content of this {@link
+       * Plan}, including its {@linkplain #getSchemas() schemas}, and
+       * caches it.
+       *
+       * <p>This method never returns {@code null}.</p>
+       *
+       * @return a non-{@code null} {@link Fingerprint}
+       *
+       * @see #contentEquals(Plan)
+       */
+      @NotNull
+      public final Fingerprint getFingerprint() {
+        Fingerprint fingerprint = this.fingerprint;
+        if (fingerprint == null) {
+          final Fingerprint.Hasher hasher = new Fingerprint.Hasher()
+            .put(this.getId())
+            .put(this.getName())
+            .put(this.getDescription())
+            .put(this.getMetadata())
+            .put(this.isFree())
+            .put(this.getBindable());
+          final Schema schemas = this.getSchemas();
+          if (schemas == null) {
+            hasher.put((Object)null);
+          } else {
+            final Schema.ServiceInstance serviceInstance = schemas.getServiceInstance();
+            final Schema.ServiceBinding serviceBinding = schemas.getServiceBinding();
+            hasher
+              .put(serviceInstance == null ? null : parameters(serviceInstance.getCreate()))
+              .put(serviceInstance == null ? null : parameters(serviceInstance.getUpdate()))
+              .put(serviceBinding == null ? null : parameters(serviceBinding.getCreate()));
+          }
+          fingerprint = hasher.fingerprint();
+          this.fingerprint = fingerprint;
+        }
+        return fingerprint;
+      }
+
+      /**
+       * Returns {@code true} if the supplied {@link Plan} has the same
+       * content as this one.
+       *
+       * <p>Unlike {@link #equals(Object)}, which compares only
+       * {@linkplain #getId() identifiers}, as {@link
+       * Service#equals(Object)} does, this method compares every field
+       * and every schema.</p>
+       *
+       * @param other the {@link Plan} to compare; may be {@code null}
+       * in which case {@code false} will be returned
+       *
+       * @return {@code true} if the supplied {@link Plan} has the same
+       * content as this one; {@code false} otherwise
+       *
+       * @see #getFingerprint()
+       */
+      public final boolean contentEquals(final Plan other) {
+        return other == this || other != null && this.getFingerprint().equals(other.getFingerprint());
+      }
+
+      /**
+       * Returns a hashcode for this {@link Plan} derived from its
+       * {@linkplain #getId() identifier}.
+       *
+       * @return a hashcode for this {@link Plan}
+       */
+      @Override
+      public int hashCode() {
+        return this.getId().hashCode();
+      }
+
+      /**
+       * Returns {@code true} if the supplied {@link Object} is a {@link
+       * Plan} with the same {@linkplain #getId() identifier} as this
+       * one.
+       *
+       * <p>Plans, like {@link Service}s, are identified by their
+       * identifiers; use {@link #contentEquals(Plan)} to compare their
+       * content.</p>
+       *
+       * @param other the {@link Object} to test; may be {@code null}
+       * in which case {@code false} will be returned
+       *
+       * @return {@code true} if the supplied {@link Object} is equal
+       * to this {@link Plan}; {@code false} otherwise
+       */
+      @Override
+      public boolean equals(final Object other) {
+        if (other == this) {
+          return true;
+        } else if (other instanceof Plan) {
+          final Plan her = (Plan)other;
+          return this.getId().equals(her.getId());
+        } else {
+          return false;
+        }
+      }
+
+      private static final Map<? extends String, ?> parameters(final Schema.InputParameters inputParameters) {
+        return inputParameters == null ? null : inputParameters.getParameters();
+      }
+
 
       /*
        * Inner and nested classes.
@@ -425,6 +1358,8 @@ public class Catalog extends AbstractStatefulObject {
 
           private final Map</* @NotNull */ ? extends String, ?> parameters;
 
+          private volatile ParameterSchema parameterSchema;
+
           public InputParameters(final Map</* @NotNull */ ? extends String, ?> parameters) {
             super();
             this.parameters = parameters;
@@ -433,6 +1368,27 @@ public class Catalog extends AbstractStatefulObject {
           public final Map</* @NotNull */ ? extends String, ?> getParameters() {
             return this.parameters;
           }
+
+          /**
+           * Returns the JSON schema {@linkplain #getParameters()
+           * described by this <code>InputParameters</code>}, compiled
+           * on first use.
+           *
+           * <p>This method never returns {@code null}.</p>
+           *
+           * @return a non-{@code null} {@link ParameterSchema}
+           *
+           * @see ParameterSchema#compile(Map)
+           */
+          @NotNull
+          public final ParameterSchema getParameterSchema() {
+            ParameterSchema parameterSchema = this.parameterSchema;
+            if (parameterSchema == null) {
+              parameterSchema = ParameterSchema.compile(this.parameters);
+              this.parameterSchema = parameterSchema;
+            }
+            return parameterSchema;
+          }
       
         }
     
@@ -0,0 +1,262 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.query.state;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+
+import org.microbean.servicebroker.api.util.ImmutableArrayMap;
+import org.microbean.servicebroker.api.util.ImmutableArraySet;
+
+/**
+ * Replaces freshly built {@link Service}s and {@link Plan}s with
+ * equal ones built earlier, and repeated strings with single
+ * instances, so that refreshing a {@link Catalog} whose content has
+ * not changed retains no new objects.
+ *
+ * <p>Each call to {@link #canonicalize(Collection)} is a
+ * <em>generation</em>: it canonicalizes against what the previous
+ * generation retained, and then retains only what it itself
+ * returned, so that {@link Service}s, {@link Plan}s and strings that
+ * disappear from the catalog are released after one refresh.</p>
+ *
+ * <p>{@link Service}s and {@link Plan}s are compared by {@linkplain
+ * Service#getFingerprint() fingerprint}.  A changed {@link Service}
+ * is rebuilt around the unchanged {@link Plan}s of its previous
+ * version and interned strings; instances of subclasses of {@link
+ * Service} and {@link Plan} are never rebuilt, since their extra
+ * state cannot be known.</p>
+ *
+ * <p>Instances of this class are not safe for concurrent use by
+ * multiple threads.</p>
+ *
+ * @see Catalog
+ */
+public final class CatalogCanonicalizer {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  @NotNull
+  private Map<String, Service> previousServices;
+
+  @NotNull
+  private Map<String, String> previousStrings;
+
+  @NotNull
+  private Map<String, String> strings;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link CatalogCanonicalizer}.
+   */
+  public CatalogCanonicalizer() {
+    super();
+    this.previousServices = new HashMap<>();
+    this.previousStrings = new HashMap<>();
+    this.strings = new HashMap<>();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns an immutable {@link Set} containing, for each supplied
+   * {@link Service}, either the {@link Service} with the same
+   * content returned by the previous invocation of this method, or a
+   * canonicalized version of it.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param services the {@link Service}s to canonicalize; may be
+   * {@code null}
+   *
+   * @return a non-{@code null}, immutable {@link Set} of {@link
+   * Service}s
+   */
+  @NotNull
+  public final Set<Service> canonicalize(final Collection<? extends Service> services) {
+    final Map<String, Service> canonicalServices = new LinkedHashMap<>();
+    if (services != null) {
+      for (final Service service : services) {
+        if (service != null) {
+          canonicalServices.putIfAbsent(service.getId(), this.canonicalize(service));
+        }
+      }
+    }
+    this.previousServices = canonicalServices;
+    this.previousStrings = this.strings;
+    this.strings = new HashMap<>(Math.max(16, this.previousStrings.size() * 4 / 3 + 1));
+    return ImmutableArraySet.copyOf(canonicalServices.values());
+  }
+
+  private final Service canonicalize(@NotNull final Service service) {
+    final Service previous = this.previousServices.get(service.getId());
+    if (previous != null && previous.contentEquals(service)) {
+      this.retainStrings(previous);
+      return previous;
+    }
+    if (service.getClass() != Service.class) {
+      return service;
+    }
+    final Set<? extends Plan> plans = service.getPlans();
+    final List<Plan> canonicalPlans = new ArrayList<>(plans.size());
+    for (final Plan plan : plans) {
+      canonicalPlans.add(plan == null ? null : this.canonicalize(previous, plan));
+    }
+    return new Service(this.intern(service.getId()),
+                       this.intern(service.getName()),
+                       service.getDescription(),
+                       this.internAll(service.getTags()),
+                       this.internAll(service.getRequires()),
+                       service.isBindable(),
+                       this.internKeys(service.getMetadata()),
+                       service.getDashboardClient(),
+                       service.isPlanUpdatable(),
+                       ImmutableArraySet.copyOf(canonicalPlans));
+  }
+
+  private final Plan canonicalize(final Service previousService, @NotNull final Plan plan) {
+    final Plan previous = previousService == null ? null : previousService.getPlan(plan.getId());
+    if (previous != null && previous.contentEquals(plan)) {
+      this.retainStrings(previous);
+      return previous;
+    }
+    if (plan.getClass() != Plan.class) {
+      return plan;
+    }
+    return new Plan(this.intern(plan.getId()),
+                    this.intern(plan.getName()),
+                    plan.getDescription(),
+                    this.internKeys(plan.getMetadata()),
+                    plan.isFree(),
+                    plan.getBindable(),
+                    plan.getSchemas());
+  }
+
+  /**
+   * Carries the interned strings of the supplied, retained {@link
+   * Service} over into the current generation.
+   */
+  private final void retainStrings(@NotNull final Service service) {
+    this.intern(service.getId());
+    this.intern(service.getName());
+    this.internAll(service.getTags());
+    this.internAll(service.getRequires());
+    this.internKeys(service.getMetadata());
+    for (final Plan plan : service.getPlans()) {
+      if (plan != null) {
+        this.retainStrings(plan);
+      }
+    }
+  }
+
+  private final void retainStrings(@NotNull final Plan plan) {
+    this.intern(plan.getId());
+    this.intern(plan.getName());
+    this.internKeys(plan.getMetadata());
+  }
+
+  private final String intern(final String string) {
+    if (string == null) {
+      return null;
+    }
+    String returnValue = this.strings.get(string);
+    if (returnValue == null) {
+      returnValue = this.previousStrings.get(string);
+      if (returnValue == null) {
+        returnValue = string;
+      }
+      this.strings.put(returnValue, returnValue);
+    }
+    return returnValue;
+  }
+
+  private final Set<? extends String> internAll(final Set<? extends String> strings) {
+    if (strings == null || strings.isEmpty()) {
+      return strings;
+    }
+    final List<String> interned = new ArrayList<>(strings.size());
+    for (final String string : strings) {
+      interned.add(this.intern(string));
+    }
+    return ImmutableArraySet.copyOf(interned);
+  }
+
+  /**
+   * Returns a {@link Map} equal to the supplied one whose keys, and
+   * the keys of any {@link Map}s nested within its values, are
+   * interned.
+   */
+  private final Map<? extends String, ?> internKeys(final Map<? extends String, ?> map) {
+    if (map == null || map.isEmpty()) {
+      return map;
+    }
+    final Map<String, Object> interned = new LinkedHashMap<>();
+    for (final Map.Entry<? extends String, ?> entry : map.entrySet()) {
+      interned.put(this.intern(entry.getKey()), this.internNestedKeys(entry.getValue()));
+    }
+    return ImmutableArrayMap.copyOf(interned);
+  }
+
+  private final Object internNestedKeys(final Object value) {
+    if (value instanceof Map) {
+      final Map<?, ?> map = (Map<?, ?>)value;
+      if (map.isEmpty()) {
+        return value;
+      }
+      final Map<Object, Object> interned = new LinkedHashMap<>();
+      for (final Map.Entry<?, ?> entry : map.entrySet()) {
+        final Object key = entry.getKey();
+        interned.put(key instanceof String ? this.intern((String)key) : key, this.internNestedKeys(entry.getValue()));
+      }
+      return ImmutableArrayMap.copyOf(interned);
+    } else if (value instanceof List) {
+      final List<?> list = (List<?>)value;
+      final List<Object> interned = new ArrayList<>(list.size());
+      for (final Object element : list) {
+        interned.add(this.internNestedKeys(element));
+      }
+      return Collections.unmodifiableList(interned);
+    } else {
+      return value;
+    }
+  }
+
+}
@@ -0,0 +1,557 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.query.state;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.DashboardClient;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan.Schema;
+
+import org.microbean.servicebroker.api.util.Fingerprint;
+import org.microbean.servicebroker.api.util.ImmutableArraySet;
+
+/**
+ * The differences between two versions of a {@link Catalog}: which
+ * {@link Service}s and {@link Plan}s were added, removed or modified,
+ * and, for those modified, which fields changed.
+ *
+ * <p>Fields are named as they are in the JSON representation
+ * described by the Open Service Broker API specification, such as
+ * {@code plan_updateable} and {@code schemas}.</p>
+ *
+ * <p>A {@link CatalogDelta} is computed in time linear in the number
+ * of {@link Service}s and {@link Plan}s, using the {@linkplain
+ * Catalog#getService(String) identifier indices} of both {@link
+ * Catalog}s, and descends only into {@link Service}s and {@link
+ * Plan}s whose {@linkplain Service#getFingerprint() fingerprints}
+ * differ.</p>
+ *
+ * <p>Instances of this class are immutable and safe for concurrent
+ * use by multiple threads.</p>
+ *
+ * @see #between(Catalog, Catalog)
+ */
+public final class CatalogDelta {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Catalog previous;
+
+  @NotNull
+  private final Catalog current;
+
+  @NotNull
+  private final List<Service> addedServices;
+
+  @NotNull
+  private final List<Service> removedServices;
+
+  @NotNull
+  private final List<ServiceDelta> modifiedServices;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private CatalogDelta(final Catalog previous, @NotNull final Catalog current) {
+    super();
+    this.previous = previous;
+    this.current = current;
+    if (previous == current || previous != null && previous.contentEquals(current)) {
+      this.addedServices = Collections.emptyList();
+      this.removedServices = Collections.emptyList();
+      this.modifiedServices = Collections.emptyList();
+    } else {
+      final List<Service> addedServices = new ArrayList<>();
+      final List<ServiceDelta> modifiedServices = new ArrayList<>();
+      for (final Service service : current.getServices()) {
+        final Service previousService = previous == null ? null : previous.getService(service.getId());
+        if (previousService == null) {
+          addedServices.add(service);
+        } else if (!previousService.contentEquals(service)) {
+          modifiedServices.add(new ServiceDelta(previousService, service));
+        }
+      }
+      final List<Service> removedServices = new ArrayList<>();
+      if (previous != null) {
+        for (final Service service : previous.getServices()) {
+          if (current.getService(service.getId()) == null) {
+            removedServices.add(service);
+          }
+        }
+      }
+      this.addedServices = unmodifiableList(addedServices);
+      this.removedServices = unmodifiableList(removedServices);
+      this.modifiedServices = unmodifiableList(modifiedServices);
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the earlier {@link Catalog}, or {@code null} if this
+   * {@link CatalogDelta} describes the initial version of a {@link
+   * Catalog}.
+   *
+   * @return the earlier {@link Catalog}, or {@code null}
+   */
+  public final Catalog getPrevious() {
+    return this.previous;
+  }
+
+  /**
+   * Returns the later {@link Catalog}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} later {@link Catalog}
+   */
+  @NotNull
+  public final Catalog getCurrent() {
+    return this.current;
+  }
+
+  /**
+   * Returns an immutable {@link List} of the {@link Service}s in the
+   * {@linkplain #getCurrent() current <code>Catalog</code>} whose
+   * identifiers do not appear in the {@linkplain #getPrevious()
+   * previous one}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link List}
+   */
+  @NotNull
+  public final List<Service> getAddedServices() {
+    return this.addedServices;
+  }
+
+  /**
+   * Returns an immutable {@link List} of the {@link Service}s in the
+   * {@linkplain #getPrevious() previous <code>Catalog</code>} whose
+   * identifiers do not appear in the {@linkplain #getCurrent()
+   * current one}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link List}
+   */
+  @NotNull
+  public final List<Service> getRemovedServices() {
+    return this.removedServices;
+  }
+
+  /**
+   * Returns an immutable {@link List} of {@link ServiceDelta}s
+   * describing the {@link Service}s that appear in both {@link
+   * Catalog}s but whose content differs.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, immutable {@link List}
+   */
+  @NotNull
+  public final List<ServiceDelta> getModifiedServices() {
+    return this.modifiedServices;
+  }
+
+  /**
+   * Returns {@code true} if the two {@link Catalog}s have the same
+   * content.
+   *
+   * @return {@code true} if nothing changed; {@code false} otherwise
+   */
+  public final boolean isEmpty() {
+    return this.addedServices.isEmpty() && this.removedServices.isEmpty() && this.modifiedServices.isEmpty();
+  }
+
+  @Override
+  public final String toString() {
+    return "added: " + ids(this.addedServices) + "; removed: " + ids(this.removedServices) + "; modified: " + this.modifiedServices;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a {@link CatalogDelta} describing how the supplied {@code
+   * current} {@link Catalog} differs from the supplied {@code
+   * previous} one.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param previous the earlier {@link Catalog}; may be {@code null},
+   * in which case every {@link Service} in {@code current} is
+   * reported as added
+   *
+   * @param current the later {@link Catalog}; must not be {@code
+   * null}
+   *
+   * @return a non-{@code null} {@link CatalogDelta}
+   *
+   * @exception NullPointerException if {@code current} is {@code
+   * null}
+   */
+  @NotNull
+  public static final CatalogDelta between(final Catalog previous, @NotNull final Catalog current) {
+    Objects.requireNonNull(current, () -> "current must not be null");
+    return new CatalogDelta(previous, current);
+  }
+
+  private static final <T> List<T> unmodifiableList(final List<T> list) {
+    return list.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(list);
+  }
+
+  private static final Set<String> fields(final List<String> fields) {
+    return ImmutableArraySet.copyOf(fields);
+  }
+
+  private static final List<String> ids(final List<Service> services) {
+    final List<String> ids = new ArrayList<>(services.size());
+    for (final Service service : services) {
+      ids.add(service.getId());
+    }
+    return ids;
+  }
+
+  /**
+   * Returns {@code true} if the supplied values have the same
+   * content, comparing {@link Map}s as {@link Fingerprint}s do.
+   */
+  private static final boolean sameContent(final Object a, final Object b) {
+    if (a == b) {
+      return true;
+    } else if (a == null || b == null) {
+      return false;
+    } else if (a.equals(b)) {
+      return true;
+    }
+    return new Fingerprint.Hasher().put(a).fingerprint().equals(new Fingerprint.Hasher().put(b).fingerprint());
+  }
+
+  private static final boolean sameDashboardClient(final DashboardClient a, final DashboardClient b) {
+    if (a == b) {
+      return true;
+    } else if (a == null || b == null) {
+      return false;
+    }
+    return
+      Objects.equals(a.getOAuthClientId(), b.getOAuthClientId()) &&
+      Objects.equals(a.getSecret(), b.getSecret()) &&
+      Objects.equals(a.getRedirectUri(), b.getRedirectUri());
+  }
+
+  private static final boolean sameSchemas(final Schema a, final Schema b) {
+    if (a == b) {
+      return true;
+    } else if (a == null || b == null) {
+      return false;
+    }
+    final Schema.ServiceInstance aInstance = a.getServiceInstance();
+    final Schema.ServiceInstance bInstance = b.getServiceInstance();
+    final Schema.ServiceBinding aBinding = a.getServiceBinding();
+    final Schema.ServiceBinding bBinding = b.getServiceBinding();
+    return
+      sameContent(aInstance == null ? null : parameters(aInstance.getCreate()), bInstance == null ? null : parameters(bInstance.getCreate())) &&
+      sameContent(aInstance == null ? null : parameters(aInstance.getUpdate()), bInstance == null ? null : parameters(bInstance.getUpdate())) &&
+      sameContent(aBinding == null ? null : parameters(aBinding.getCreate()), bBinding == null ? null : parameters(bBinding.getCreate()));
+  }
+
+  private static final Map<? extends String, ?> parameters(final Schema.InputParameters inputParameters) {
+    return inputParameters == null ? null : inputParameters.getParameters();
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The differences between two versions of a {@link Service} with
+   * the same {@linkplain Service#getId() identifier}.
+   */
+  public static final class ServiceDelta {
+
+    @NotNull
+    private final Service previous;
+
+    @NotNull
+    private final Service current;
+
+    @NotNull
+    private final Set<String> changedFields;
+
+    @NotNull
+    private final List<Plan> addedPlans;
+
+    @NotNull
+    private final List<Plan> removedPlans;
+
+    @NotNull
+    private final List<PlanDelta> modifiedPlans;
+
+    private ServiceDelta(@NotNull final Service previous, @NotNull final Service current) {
+      super();
+      this.previous = previous;
+      this.current = current;
+
+      final List<Plan> addedPlans = new ArrayList<>();
+      final List<PlanDelta> modifiedPlans = new ArrayList<>();
+      for (final Plan plan : current.getPlans()) {
+        final Plan previousPlan = previous.getPlan(plan.getId());
+        if (previousPlan == null) {
+          addedPlans.add(plan);
+        } else if (!previousPlan.getFingerprint().equals(plan.getFingerprint())) {
+          modifiedPlans.add(new PlanDelta(previousPlan, plan));
+        }
+      }
+      final List<Plan> removedPlans = new ArrayList<>();
+      for (final Plan plan : previous.getPlans()) {
+        if (current.getPlan(plan.getId()) == null) {
+          removedPlans.add(plan);
+        }
+      }
+      this.addedPlans = unmodifiableList(addedPlans);
+      this.removedPlans = unmodifiableList(removedPlans);
+      this.modifiedPlans = unmodifiableList(modifiedPlans);
+
+      final List<String> changedFields = new ArrayList<>();
+      if (!Objects.equals(previous.getName(), current.getName())) {
+        changedFields.add("name");
+      }
+      if (!Objects.equals(previous.getDescription(), current.getDescription())) {
+        changedFields.add("description");
+      }
+      if (!Objects.equals(previous.getTags(), current.getTags())) {
+        changedFields.add("tags");
+      }
+      if (!Objects.equals(previous.getRequires(), current.getRequires())) {
+        changedFields.add("requires");
+      }
+      if (previous.isBindable() != current.isBindable()) {
+        changedFields.add("bindable");
+      }
+      if (!sameContent(previous.getMetadata(), current.getMetadata())) {
+        changedFields.add("metadata");
+      }
+      if (!sameDashboardClient(previous.getDashboardClient(), current.getDashboardClient())) {
+        changedFields.add("dashboard_client");
+      }
+      if (previous.isPlanUpdatable() != current.isPlanUpdatable()) {
+        changedFields.add("plan_updateable");
+      }
+      if (!this.addedPlans.isEmpty() || !this.removedPlans.isEmpty() || !this.modifiedPlans.isEmpty()) {
+        changedFields.add("plans");
+      }
+      this.changedFields = fields(changedFields);
+    }
+
+    /**
+     * Returns the earlier version of the {@link Service}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} earlier {@link Service}
+     */
+    @NotNull
+    public final Service getPrevious() {
+      return this.previous;
+    }
+
+    /**
+     * Returns the later version of the {@link Service}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} later {@link Service}
+     */
+    @NotNull
+    public final Service getCurrent() {
+      return this.current;
+    }
+
+    /**
+     * Returns an immutable {@link Set} of the names of the fields
+     * that changed, in the order in which they appear in the JSON
+     * representation of a {@link Service}; {@code plans} is among
+     * them if any {@link Plan} was added, removed or modified.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null}, immutable {@link Set}
+     */
+    @NotNull
+    public final Set<String> getChangedFields() {
+      return this.changedFields;
+    }
+
+    /**
+     * Returns an immutable {@link List} of the {@link Plan}s that
+     * were added.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null}, immutable {@link List}
+     */
+    @NotNull
+    public final List<Plan> getAddedPlans() {
+      return this.addedPlans;
+    }
+
+    /**
+     * Returns an immutable {@link List} of the {@link Plan}s that
+     * were removed.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null}, immutable {@link List}
+     */
+    @NotNull
+    public final List<Plan> getRemovedPlans() {
+      return this.removedPlans;
+    }
+
+    /**
+     * Returns an immutable {@link List} of {@link PlanDelta}s
+     * describing the {@link Plan}s that were modified.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null}, immutable {@link List}
+     */
+    @NotNull
+    public final List<PlanDelta> getModifiedPlans() {
+      return this.modifiedPlans;
+    }
+
+    @Override
+    public final String toString() {
+      return this.current.getId() + " " + this.changedFields;
+    }
+
+  }
+
+  /**
+   * The differences between two versions of a {@link Plan} with the
+   * same {@linkplain Plan#getId() identifier}.
+   */
+  public static final class PlanDelta {
+
+    @NotNull
+    private final Plan previous;
+
+    @NotNull
+    private final Plan current;
+
+    @NotNull
+    private final Set<String> changedFields;
+
+    private PlanDelta(@NotNull final Plan previous, @NotNull final Plan current) {
+      super();
+      this.previous = previous;
+      this.current = current;
+      final List<String> changedFields = new ArrayList<>();
+      if (!Objects.equals(previous.getName(), current.getName())) {
+        changedFields.add("name");
+      }
+      if (!Objects.equals(previous.getDescription(), current.getDescription())) {
+        changedFields.add("description");
+      }
+      if (!sameContent(previous.getMetadata(), current.getMetadata())) {
+        changedFields.add("metadata");
+      }
+      if (previous.isFree() != current.isFree()) {
+        changedFields.add("free");
+      }
+      if (!Objects.equals(previous.getBindable(), current.getBindable())) {
+        changedFields.add("bindable");
+      }
+      if (!sameSchemas(previous.getSchemas(), current.getSchemas())) {
+        changedFields.add("schemas");
+      }
+      this.changedFields = fields(changedFields);
+    }
+
+    /**
+     * Returns the earlier version of the {@link Plan}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} earlier {@link Plan}
+     */
+    @NotNull
+    public final Plan getPrevious() {
+      return this.previous;
+    }
+
+    /**
+     * Returns the later version of the {@link Plan}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} later {@link Plan}
+     */
+    @NotNull
+    public final Plan getCurrent() {
+      return this.current;
+    }
+
+    /**
+     * Returns an immutable {@link Set} of the names of the fields
+     * that changed, in the order in which they appear in the JSON
+     * representation of a {@link Plan}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null}, immutable {@link Set}
+     */
+    @NotNull
+    public final Set<String> getChangedFields() {
+      return this.changedFields;
+    }
+
+    @Override
+    public final String toString() {
+      return this.current.getId() + " " + this.changedFields;
+    }
+
+  }
+
+}
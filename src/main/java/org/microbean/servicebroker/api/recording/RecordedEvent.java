@@ -0,0 +1,221 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.recording;
+
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.AbstractStatefulObject;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+/**
+ * A single command or query seen by a {@link RecordingServiceBroker},
+ * together with when it arrived, how long it took and how it turned
+ * out.
+ *
+ * <p>Instances of this class are produced by a {@link
+ * RecordingReader}.</p>
+ *
+ * @see RecordingReader#next()
+ *
+ * @see Replayer
+ */
+public final class RecordedEvent {
+
+  @NotNull
+  private final Type type;
+
+  private final long offsetNanos;
+
+  private final long durationNanos;
+
+  @NotNull
+  private final AbstractStatefulObject request;
+
+  private final AbstractStatefulObject response;
+
+  private final String failureClassName;
+
+  private final String failureMessage;
+
+  RecordedEvent(@NotNull final Type type,
+                final long offsetNanos,
+                final long durationNanos,
+                @NotNull final AbstractStatefulObject request,
+                final AbstractStatefulObject response,
+                final String failureClassName,
+                final String failureMessage) {
+    super();
+    Objects.requireNonNull(type, () -> "type must not be null");
+    Objects.requireNonNull(request, () -> "request must not be null");
+    this.type = type;
+    this.offsetNanos = offsetNanos;
+    this.durationNanos = durationNanos;
+    this.request = request;
+    this.response = response;
+    this.failureClassName = failureClassName;
+    this.failureMessage = failureMessage;
+  }
+
+  /**
+   * Returns the {@link Type} of this {@link RecordedEvent}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link Type} of this {@link
+   * RecordedEvent}
+   */
+  @NotNull
+  public final Type getType() {
+    return this.type;
+  }
+
+  /**
+   * Returns the number of nanoseconds that elapsed between the start
+   * of the recording and the arrival of the request this {@link
+   * RecordedEvent} describes.
+   *
+   * @return a non-negative number of nanoseconds
+   */
+  public final long getOffsetNanos() {
+    return this.offsetNanos;
+  }
+
+  /**
+   * Returns the number of nanoseconds the request this {@link
+   * RecordedEvent} describes took to complete.
+   *
+   * @return a non-negative number of nanoseconds
+   */
+  public final long getDurationNanos() {
+    return this.durationNanos;
+  }
+
+  /**
+   * Returns the recorded command or {@link LastOperationQuery}.
+   *
+   * <p>This method never returns {@code null}.  The class of the
+   * returned object is determined by this {@link RecordedEvent}'s
+   * {@linkplain #getType() type}.</p>
+   *
+   * @return the non-{@code null} recorded command or query
+   */
+  @NotNull
+  public final AbstractStatefulObject getRequest() {
+    return this.request;
+  }
+
+  /**
+   * Returns the recorded response, or {@code null} if the request
+   * {@linkplain #isFailure() failed}.
+   *
+   * @return the recorded response, or {@code null}
+   */
+  public final AbstractStatefulObject getResponse() {
+    return this.response;
+  }
+
+  /**
+   * Returns {@code true} if the request this {@link RecordedEvent}
+   * describes completed by throwing an exception.
+   *
+   * @return {@code true} if the recorded request failed
+   */
+  public final boolean isFailure() {
+    return this.failureClassName != null;
+  }
+
+  /**
+   * Returns the name of the class of the exception thrown by the
+   * recorded request, or {@code null} if it did not fail.
+   *
+   * @return the name of the class of the exception thrown, or {@code
+   * null}
+   */
+  public final String getFailureClassName() {
+    return this.failureClassName;
+  }
+
+  /**
+   * Returns the message of the exception thrown by the recorded
+   * request, or {@code null} if it did not fail or if the exception
+   * had no message.
+   *
+   * @return the message of the exception thrown, or {@code null}
+   */
+  public final String getFailureMessage() {
+    return this.failureMessage;
+  }
+
+  @Override
+  public final String toString() {
+    return this.type + "@" + this.offsetNanos + "ns (" + this.durationNanos + "ns)" + (this.isFailure() ? " failed: " + this.failureClassName : "");
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The kinds of request a {@link RecordedEvent} can describe.
+   */
+  public static enum Type {
+
+    PROVISION_SERVICE_INSTANCE(ProvisionServiceInstanceCommand.class),
+
+    UPDATE_SERVICE_INSTANCE(UpdateServiceInstanceCommand.class),
+
+    DELETE_SERVICE_INSTANCE(DeleteServiceInstanceCommand.class),
+
+    PROVISION_BINDING(ProvisionBindingCommand.class),
+
+    DELETE_BINDING(DeleteBindingCommand.class),
+
+    GET_LAST_OPERATION(LastOperationQuery.class);
+
+    private final Class<? extends AbstractStatefulObject> requestClass;
+
+    Type(final Class<? extends AbstractStatefulObject> requestClass) {
+      this.requestClass = requestClass;
+    }
+
+    /**
+     * Returns the class of the {@linkplain
+     * RecordedEvent#getRequest() request} of a {@link RecordedEvent}
+     * of this {@link Type}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link Class}
+     */
+    public final Class<? extends AbstractStatefulObject> getRequestClass() {
+      return this.requestClass;
+    }
+
+  }
+
+}
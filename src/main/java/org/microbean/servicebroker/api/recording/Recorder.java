@@ -0,0 +1,189 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.recording;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.AbstractStatefulObject;
+
+/**
+ * Writes {@linkplain RecordedEvent events} to an {@link OutputStream}
+ * in a compact binary format that a {@link RecordingReader} can read
+ * back.
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.  Events are written in the order in which calls to the
+ * {@link #record(RecordedEvent.Type, long, long,
+ * AbstractStatefulObject, AbstractStatefulObject, Throwable)} method
+ * complete, which is not necessarily the order of their
+ * offsets.</p>
+ *
+ * @see RecordingServiceBroker
+ *
+ * @see RecordingReader
+ */
+public class Recorder implements Closeable, Flushable {
+
+  @NotNull
+  private final DataOutputStream out;
+
+  private final long startNanos;
+
+  private boolean closed;
+
+  /**
+   * Creates a new {@link Recorder} that writes to a new file at the
+   * supplied {@link Path}, replacing any file already there.
+   *
+   * @param path the {@link Path} to write to; must not be {@code
+   * null}
+   *
+   * @exception NullPointerException if {@code path} is {@code null}
+   *
+   * @exception IOException if the file could not be created or the
+   * header could not be written
+   */
+  public Recorder(@NotNull final Path path) throws IOException {
+    this(Files.newOutputStream(Objects.requireNonNull(path, () -> "path must not be null")));
+  }
+
+  /**
+   * Creates a new {@link Recorder} that writes to the supplied {@link
+   * OutputStream}, which it will buffer and, when this {@link
+   * Recorder} is {@linkplain #close() closed}, close.
+   *
+   * <p>Event offsets are measured from the moment this constructor
+   * is called.</p>
+   *
+   * @param outputStream the {@link OutputStream} to write to; must not
+   * be {@code null}
+   *
+   * @exception NullPointerException if {@code outputStream} is {@code
+   * null}
+   *
+   * @exception IOException if the header could not be written
+   */
+  public Recorder(@NotNull final OutputStream outputStream) throws IOException {
+    super();
+    Objects.requireNonNull(outputStream, () -> "outputStream must not be null");
+    this.out = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+    this.startNanos = System.nanoTime();
+    this.out.writeInt(RecordingFormat.MAGIC);
+    this.out.writeByte(RecordingFormat.VERSION);
+    this.out.writeLong(System.currentTimeMillis());
+  }
+
+  /**
+   * Returns the {@link System#nanoTime()} value against which event
+   * offsets are measured.
+   *
+   * @return the {@link System#nanoTime()} value against which event
+   * offsets are measured
+   */
+  public final long getStartNanos() {
+    return this.startNanos;
+  }
+
+  /**
+   * Records an event.
+   *
+   * <p>Exactly one of {@code response} and {@code failure} should be
+   * non-{@code null}.</p>
+   *
+   * @param type the {@link RecordedEvent.Type} of the event; must not
+   * be {@code null}
+   *
+   * @param startNanos the {@link System#nanoTime()} value at which the
+   * request arrived
+   *
+   * @param durationNanos how long the request took, in nanoseconds
+   *
+   * @param request the command or query; must not be {@code null} and
+   * must be an instance of the {@linkplain
+   * RecordedEvent.Type#getRequestClass() request class} of {@code
+   * type}
+   *
+   * @param response the response, or {@code null} if the request
+   * failed
+   *
+   * @param failure the exception the request failed with, or {@code
+   * null} if it succeeded
+   *
+   * @exception NullPointerException if {@code type} or {@code request}
+   * is {@code null}
+   *
+   * @exception IllegalStateException if this {@link Recorder} has been
+   * {@linkplain #close() closed}
+   *
+   * @exception IOException if the event could not be written
+   */
+  public void record(@NotNull final RecordedEvent.Type type,
+                     final long startNanos,
+                     final long durationNanos,
+                     @NotNull final AbstractStatefulObject request,
+                     final AbstractStatefulObject response,
+                     final Throwable failure)
+    throws IOException {
+    Objects.requireNonNull(type, () -> "type must not be null");
+    Objects.requireNonNull(request, () -> "request must not be null");
+    // Encode outside the lock so that concurrent callers contend only
+    // for the copy into the underlying stream.
+    final ByteBuffer event =
+      RecordingFormat.writeEvent(type, Math.max(0L, startNanos - this.startNanos), Math.max(0L, durationNanos), request, response, failure);
+    synchronized (this.out) {
+      if (this.closed) {
+        throw new IllegalStateException("closed");
+      }
+      RecordingFormat.writeVarLong(this.out, event.remaining());
+      this.out.write(event.array(), event.arrayOffset() + event.position(), event.remaining());
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    synchronized (this.out) {
+      if (!this.closed) {
+        this.out.flush();
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (this.out) {
+      if (!this.closed) {
+        this.closed = true;
+        this.out.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.recording;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import org.microbean.servicebroker.api.AbstractStatefulObject;
+
+import org.microbean.servicebroker.api.binary.BinaryCodec;
+import org.microbean.servicebroker.api.binary.BinaryReader;
+import org.microbean.servicebroker.api.binary.BinaryWriter;
+
+/**
+ * The binary format of a recording.
+ *
+ * <p>A recording consists of a header followed by any number of
+ * events.  The header is the {@linkplain #MAGIC magic number}, a
+ * {@linkplain #VERSION version} byte, and the wall-clock time in
+ * milliseconds at which recording started.  Each event is its length
+ * in bytes as a variable-length integer followed by a message in the
+ * format written by a {@link BinaryWriter}, so that each event can be
+ * read on its own.  The message consists of a {@linkplain
+ * RecordedEvent.Type type} byte, the offset and duration in
+ * nanoseconds, the request as written by {@link BinaryCodec}, and then
+ * either {@link #RESPONSE} followed by the response, or {@link
+ * #FAILURE} followed by the exception class name and message.</p>
+ */
+final class RecordingFormat {
+
+  static final int MAGIC = 0x4F534252; // "OSBR"
+
+  static final byte VERSION = 2;
+
+  static final byte RESPONSE = 0;
+
+  static final byte FAILURE = 1;
+
+  private RecordingFormat() {
+    super();
+  }
+
+
+  /*
+   * Events.
+   */
+
+
+  static final ByteBuffer writeEvent(final RecordedEvent.Type type,
+                                     final long offsetNanos,
+                                     final long durationNanos,
+                                     final AbstractStatefulObject request,
+                                     final AbstractStatefulObject response,
+                                     final Throwable failure) {
+    final BinaryWriter writer = new BinaryWriter();
+    writer.writeByte(type.ordinal()).writeVarLong(offsetNanos).writeVarLong(durationNanos);
+    BinaryCodec.write(writer, request);
+    if (failure == null && response != null) {
+      writer.writeByte(RESPONSE);
+      BinaryCodec.write(writer, response);
+    } else {
+      writer.writeByte(FAILURE)
+        .writeString(failure == null ? NullPointerException.class.getName() : failure.getClass().getName())
+        .writeString(failure == null ? "null response" : failure.getMessage());
+    }
+    return writer.endMessage();
+  }
+
+  static final RecordedEvent readEvent(final ByteBuffer message) throws IOException {
+    final BinaryReader reader = new BinaryReader();
+    if (!reader.beginMessage(message)) {
+      throw new IOException("Truncated recording");
+    }
+    final int typeOrdinal = reader.readByte() & 0xFF;
+    final RecordedEvent.Type[] types = RecordedEvent.Type.values();
+    if (typeOrdinal >= types.length) {
+      throw new IOException("Invalid event type: " + typeOrdinal);
+    }
+    final RecordedEvent.Type type = types[typeOrdinal];
+    final long offsetNanos = reader.readVarLong();
+    final long durationNanos = reader.readVarLong();
+    final AbstractStatefulObject request = BinaryCodec.read(reader, type.getRequestClass());
+    final RecordedEvent returnValue;
+    final byte outcome = reader.readByte();
+    switch (outcome) {
+    case RESPONSE:
+      returnValue = new RecordedEvent(type, offsetNanos, durationNanos, request, BinaryCodec.read(reader), null, null);
+      break;
+    case FAILURE:
+      final String failureClassName = reader.readString();
+      final String failureMessage = reader.readString();
+      returnValue = new RecordedEvent(type, offsetNanos, durationNanos, request, null, failureClassName, failureMessage);
+      break;
+    default:
+      throw new IOException("Invalid outcome: " + outcome);
+    }
+    reader.endMessage();
+    return returnValue;
+  }
+
+
+  /*
+   * Primitives.
+   */
+
+
+  static final void writeVarLong(final DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0L) {
+      out.writeByte((int)((value & 0x7FL) | 0x80L));
+      value >>>= 7;
+    }
+    out.writeByte((int)value);
+  }
+
+  static final long readVarLong(final DataInput in) throws IOException {
+    return readVarLong(in, in.readByte());
+  }
+
+  static final long readVarLong(final DataInput in, final byte first) throws IOException {
+    long value = 0L;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final byte b = shift == 0 ? first : in.readByte();
+      value |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable-length integer");
+  }
+
+}
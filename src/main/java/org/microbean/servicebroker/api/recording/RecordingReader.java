@@ -0,0 +1,143 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.recording;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.ByteBuffer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Reads {@linkplain RecordedEvent events} written by a {@link
+ * Recorder}.
+ *
+ * <p>Instances of this class are not safe for concurrent use by
+ * multiple threads.</p>
+ *
+ * @see Recorder
+ *
+ * @see Replayer
+ */
+public class RecordingReader implements Closeable {
+
+  @NotNull
+  private final DataInputStream in;
+
+  private final long startMillis;
+
+  private byte[] buffer;
+
+  /**
+   * Creates a new {@link RecordingReader} that reads the file at the
+   * supplied {@link Path}.
+   *
+   * @param path the {@link Path} to read; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code path} is {@code null}
+   *
+   * @exception IOException if the file could not be opened or does
+   * not start with a valid header
+   */
+  public RecordingReader(@NotNull final Path path) throws IOException {
+    this(Files.newInputStream(Objects.requireNonNull(path, () -> "path must not be null")));
+  }
+
+  /**
+   * Creates a new {@link RecordingReader} that reads from the
+   * supplied {@link InputStream}, which it will buffer and, when this
+   * {@link RecordingReader} is {@linkplain #close() closed}, close.
+   *
+   * @param inputStream the {@link InputStream} to read from; must not
+   * be {@code null}
+   *
+   * @exception NullPointerException if {@code inputStream} is {@code
+   * null}
+   *
+   * @exception IOException if a valid header could not be read
+   */
+  public RecordingReader(@NotNull final InputStream inputStream) throws IOException {
+    super();
+    Objects.requireNonNull(inputStream, () -> "inputStream must not be null");
+    this.in = new DataInputStream(new BufferedInputStream(inputStream, 64 * 1024));
+    final int magic = this.in.readInt();
+    if (magic != RecordingFormat.MAGIC) {
+      throw new IOException("Not a recording: " + Integer.toHexString(magic));
+    }
+    final byte version = this.in.readByte();
+    if (version != RecordingFormat.VERSION) {
+      throw new IOException("Unsupported recording version: " + version);
+    }
+    this.startMillis = this.in.readLong();
+    this.buffer = new byte[4096];
+  }
+
+  /**
+   * Returns the wall-clock time, in milliseconds since the epoch, at
+   * which the recording started.
+   *
+   * @return the wall-clock time at which the recording started
+   */
+  public final long getStartMillis() {
+    return this.startMillis;
+  }
+
+  /**
+   * Returns the next {@link RecordedEvent}, or {@code null} if there
+   * are no more.
+   *
+   * @return the next {@link RecordedEvent}, or {@code null}
+   *
+   * @exception IOException if the recording is truncated or corrupt
+   */
+  public RecordedEvent next() throws IOException {
+    final int first = this.in.read();
+    if (first < 0) {
+      return null;
+    }
+    final long length;
+    try {
+      length = RecordingFormat.readVarLong(this.in, (byte)first);
+      if (length < 0L || length > Integer.MAX_VALUE) {
+        throw new IOException("Invalid event length: " + length);
+      }
+      if (this.buffer.length < length) {
+        this.buffer = new byte[(int)Math.max(length, this.buffer.length * 2L)];
+      }
+      this.in.readFully(this.buffer, 0, (int)length);
+    } catch (final EOFException eofException) {
+      throw new IOException("Truncated recording", eofException);
+    }
+    return RecordingFormat.readEvent(ByteBuffer.wrap(this.buffer, 0, (int)length));
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.in.close();
+  }
+
+}
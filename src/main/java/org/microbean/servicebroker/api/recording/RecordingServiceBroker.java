@@ -0,0 +1,220 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.recording;
+
+import java.io.IOException;
+
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.AbstractStatefulObject;
+import org.microbean.servicebroker.api.DelegatingServiceBroker;
+import org.microbean.servicebroker.api.ServiceBroker;
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+/**
+ * A {@link DelegatingServiceBroker} that {@linkplain
+ * Recorder#record(RecordedEvent.Type, long, long,
+ * AbstractStatefulObject, AbstractStatefulObject, Throwable) records}
+ * every command it executes and every {@link LastOperationQuery} it
+ * answers, together with its timing and outcome.
+ *
+ * <p>Failures to record are reported to the {@link
+ * #recordingFailed(IOException)} method and never affect the outcome
+ * of the request being recorded.</p>
+ *
+ * @see Recorder
+ *
+ * @see Replayer
+ */
+public class RecordingServiceBroker extends DelegatingServiceBroker {
+
+  @NotNull
+  private final Recorder recorder;
+
+  /**
+   * Creates a new {@link RecordingServiceBroker}.
+   *
+   * @param delegate the {@link ServiceBroker} whose traffic will be
+   * recorded; must not be {@code null}
+   *
+   * @param recorder the {@link Recorder} to record to; must not be
+   * {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  public RecordingServiceBroker(@NotNull final ServiceBroker delegate, @NotNull final Recorder recorder) {
+    super(delegate);
+    Objects.requireNonNull(recorder, () -> "recorder must not be null");
+    this.recorder = recorder;
+  }
+
+  /**
+   * Returns the {@link Recorder} this {@link RecordingServiceBroker}
+   * records to.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link Recorder}
+   */
+  @NotNull
+  public final Recorder getRecorder() {
+    return this.recorder;
+  }
+
+  @NotNull
+  @Override
+  public LastOperation getLastOperation(@NotNull final LastOperationQuery lastOperationQuery) throws ServiceBrokerException {
+    final long start = System.nanoTime();
+    LastOperation returnValue = null;
+    Throwable failure = null;
+    try {
+      returnValue = super.getLastOperation(lastOperationQuery);
+      return returnValue;
+    } catch (final ServiceBrokerException | RuntimeException | Error throwable) {
+      failure = throwable;
+      throw throwable;
+    } finally {
+      this.record(RecordedEvent.Type.GET_LAST_OPERATION, start, lastOperationQuery, returnValue, failure);
+    }
+  }
+
+  @NotNull
+  @Override
+  public ProvisionBindingCommand.Response execute(@NotNull final ProvisionBindingCommand command) throws ServiceBrokerException {
+    final long start = System.nanoTime();
+    ProvisionBindingCommand.Response returnValue = null;
+    Throwable failure = null;
+    try {
+      returnValue = super.execute(command);
+      return returnValue;
+    } catch (final ServiceBrokerException | RuntimeException | Error throwable) {
+      failure = throwable;
+      throw throwable;
+    } finally {
+      this.record(RecordedEvent.Type.PROVISION_BINDING, start, command, returnValue, failure);
+    }
+  }
+
+  @NotNull
+  @Override
+  public DeleteBindingCommand.Response execute(@NotNull final DeleteBindingCommand command) throws ServiceBrokerException {
+    final long start = System.nanoTime();
+    DeleteBindingCommand.Response returnValue = null;
+    Throwable failure = null;
+    try {
+      returnValue = super.execute(command);
+      return returnValue;
+    } catch (final ServiceBrokerException | RuntimeException | Error throwable) {
+      failure = throwable;
+      throw throwable;
+    } finally {
+      this.record(RecordedEvent.Type.DELETE_BINDING, start, command, returnValue, failure);
+    }
+  }
+
+  @NotNull
+  @Override
+  public ProvisionServiceInstanceCommand.Response execute(@NotNull final ProvisionServiceInstanceCommand command) throws ServiceBrokerException {
+    final long start = System.nanoTime();
+    ProvisionServiceInstanceCommand.Response returnValue = null;
+    Throwable failure = null;
+    try {
+      returnValue = super.execute(command);
+      return returnValue;
+    } catch (final ServiceBrokerException | RuntimeException | Error throwable) {
+      failure = throwable;
+      throw throwable;
+    } finally {
+      this.record(RecordedEvent.Type.PROVISION_SERVICE_INSTANCE, start, command, returnValue, failure);
+    }
+  }
+
+  @NotNull
+  @Override
+  public UpdateServiceInstanceCommand.Response execute(@NotNull final UpdateServiceInstanceCommand command) throws ServiceBrokerException {
+    final long start = System.nanoTime();
+    UpdateServiceInstanceCommand.Response returnValue = null;
+    Throwable failure = null;
+    try {
+      returnValue = super.execute(command);
+      return returnValue;
+    } catch (final ServiceBrokerException | RuntimeException | Error throwable) {
+      failure = throwable;
+      throw throwable;
+    } finally {
+      this.record(RecordedEvent.Type.UPDATE_SERVICE_INSTANCE, start, command, returnValue, failure);
+    }
+  }
+
+  @NotNull
+  @Override
+  public DeleteServiceInstanceCommand.Response execute(@NotNull final DeleteServiceInstanceCommand command) throws ServiceBrokerException {
+    final long start = System.nanoTime();
+    DeleteServiceInstanceCommand.Response returnValue = null;
+    Throwable failure = null;
+    try {
+      returnValue = super.execute(command);
+      return returnValue;
+    } catch (final ServiceBrokerException | RuntimeException | Error throwable) {
+      failure = throwable;
+      throw throwable;
+    } finally {
+      this.record(RecordedEvent.Type.DELETE_SERVICE_INSTANCE, start, command, returnValue, failure);
+    }
+  }
+
+  private final void record(final RecordedEvent.Type type,
+                            final long start,
+                            final AbstractStatefulObject request,
+                            final AbstractStatefulObject response,
+                            final Throwable failure) {
+    if (request != null) {
+      try {
+        this.recorder.record(type, start, System.nanoTime() - start, request, response, failure);
+      } catch (final IOException | RuntimeException exception) {
+        this.recordingFailed(exception instanceof IOException ? (IOException)exception : new IOException(exception));
+      }
+    }
+  }
+
+  /**
+   * Called when an event could not be recorded.
+   *
+   * <p>The default implementation does nothing.  Overrides must not
+   * throw any exception.</p>
+   *
+   * @param exception the {@link IOException} that prevented
+   * recording; will not be {@code null}
+   */
+  protected void recordingFailed(final IOException exception) {
+
+  }
+
+}
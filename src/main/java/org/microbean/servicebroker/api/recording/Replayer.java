@@ -0,0 +1,262 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.recording;
+
+import java.io.IOException;
+
+import java.util.Objects;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import java.util.concurrent.locks.LockSupport;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.ServiceBroker;
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+/**
+ * Feeds {@linkplain RecordedEvent recorded events} back into an
+ * arbitrary {@link ServiceBroker}, either at their original pace or
+ * as fast as possible, and tallies how the outcomes compare with the
+ * recorded ones.
+ *
+ * <p>Requests are issued from a pool of threads so that the
+ * concurrency of the original traffic can be reproduced.  When
+ * replaying at the original pace, each request is issued at its
+ * recorded {@linkplain RecordedEvent#getOffsetNanos() offset} from
+ * the start of the replay, regardless of how long earlier requests
+ * take.</p>
+ *
+ * @see RecordingServiceBroker
+ *
+ * @see RecordingReader
+ */
+public class Replayer {
+
+  @NotNull
+  private final ServiceBroker serviceBroker;
+
+  private final int threads;
+
+  /**
+   * Creates a new {@link Replayer}.
+   *
+   * @param serviceBroker the {@link ServiceBroker} to replay against;
+   * must not be {@code null}
+   *
+   * @param threads the number of threads to issue requests from; must
+   * be greater than zero
+   *
+   * @exception NullPointerException if {@code serviceBroker} is {@code
+   * null}
+   *
+   * @exception IllegalArgumentException if {@code threads} is not
+   * positive
+   */
+  public Replayer(@NotNull final ServiceBroker serviceBroker, final int threads) {
+    super();
+    Objects.requireNonNull(serviceBroker, () -> "serviceBroker must not be null");
+    if (threads <= 0) {
+      throw new IllegalArgumentException("threads <= 0: " + threads);
+    }
+    this.serviceBroker = serviceBroker;
+    this.threads = threads;
+  }
+
+  /**
+   * Replays every event that the supplied {@link RecordingReader} can
+   * read, waits for all replayed requests to complete, and returns a
+   * {@link Result}.
+   *
+   * <p>This method does not {@linkplain RecordingReader#close() close}
+   * the supplied {@link RecordingReader}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param reader the {@link RecordingReader} to read events from;
+   * must not be {@code null}
+   *
+   * @param originalPace if {@code true}, then requests will be issued
+   * at their recorded offsets; otherwise they will be issued as fast
+   * as the threads of this {@link Replayer} can issue them
+   *
+   * @return a non-{@code null} {@link Result}
+   *
+   * @exception NullPointerException if {@code reader} is {@code null}
+   *
+   * @exception IOException if the recording could not be read
+   *
+   * @exception InterruptedException if the calling thread is
+   * interrupted
+   */
+  public Result replay(@NotNull final RecordingReader reader, final boolean originalPace) throws IOException, InterruptedException {
+    Objects.requireNonNull(reader, () -> "reader must not be null");
+    final Result result = new Result();
+    final ExecutorService executorService = Executors.newFixedThreadPool(this.threads);
+    final long start = System.nanoTime();
+    try {
+      RecordedEvent event;
+      while ((event = reader.next()) != null) {
+        if (originalPace) {
+          final long due = start + event.getOffsetNanos();
+          long wait;
+          while ((wait = due - System.nanoTime()) > 0L) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+              throw new InterruptedException();
+            }
+          }
+        }
+        final RecordedEvent e = event;
+        executorService.execute(() -> result.record(e, this.replay(e)));
+      }
+    } finally {
+      executorService.shutdown();
+      executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      result.elapsedNanos = System.nanoTime() - start;
+    }
+    return result;
+  }
+
+  private final Throwable replay(final RecordedEvent event) {
+    try {
+      switch (event.getType()) {
+      case PROVISION_SERVICE_INSTANCE:
+        this.serviceBroker.execute((ProvisionServiceInstanceCommand)event.getRequest());
+        break;
+      case UPDATE_SERVICE_INSTANCE:
+        this.serviceBroker.execute((UpdateServiceInstanceCommand)event.getRequest());
+        break;
+      case DELETE_SERVICE_INSTANCE:
+        this.serviceBroker.execute((DeleteServiceInstanceCommand)event.getRequest());
+        break;
+      case PROVISION_BINDING:
+        this.serviceBroker.execute((ProvisionBindingCommand)event.getRequest());
+        break;
+      case DELETE_BINDING:
+        this.serviceBroker.execute((DeleteBindingCommand)event.getRequest());
+        break;
+      case GET_LAST_OPERATION:
+        this.serviceBroker.getLastOperation((LastOperationQuery)event.getRequest());
+        break;
+      default:
+        throw new IllegalArgumentException("event: " + event);
+      }
+      return null;
+    } catch (final ServiceBrokerException | RuntimeException exception) {
+      return exception;
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A summary of a {@linkplain Replayer#replay(RecordingReader,
+   * boolean) replay}.
+   */
+  public static final class Result {
+
+    private final LongAdder count;
+
+    private final LongAdder failures;
+
+    private final LongAdder mismatches;
+
+    private volatile long elapsedNanos;
+
+    private Result() {
+      super();
+      this.count = new LongAdder();
+      this.failures = new LongAdder();
+      this.mismatches = new LongAdder();
+    }
+
+    private final void record(final RecordedEvent event, final Throwable failure) {
+      this.count.increment();
+      if (failure != null) {
+        this.failures.increment();
+      }
+      final String recordedFailureClassName = event.getFailureClassName();
+      if (failure == null ? recordedFailureClassName != null : !failure.getClass().getName().equals(recordedFailureClassName)) {
+        this.mismatches.increment();
+      }
+    }
+
+    /**
+     * Returns the number of events replayed.
+     *
+     * @return the number of events replayed
+     */
+    public final long getCount() {
+      return this.count.sum();
+    }
+
+    /**
+     * Returns the number of replayed requests that threw an exception.
+     *
+     * @return the number of replayed requests that threw an exception
+     */
+    public final long getFailureCount() {
+      return this.failures.sum();
+    }
+
+    /**
+     * Returns the number of replayed requests whose outcome differed
+     * from the recorded outcome: either one succeeded and the other
+     * failed, or both failed with exceptions of different classes.
+     *
+     * @return the number of mismatched outcomes
+     */
+    public final long getMismatchCount() {
+      return this.mismatches.sum();
+    }
+
+    /**
+     * Returns the number of nanoseconds the replay took.
+     *
+     * @return the number of nanoseconds the replay took
+     */
+    public final long getElapsedNanos() {
+      return this.elapsedNanos;
+    }
+
+    @Override
+    public final String toString() {
+      return this.getCount() + " events replayed in " + TimeUnit.NANOSECONDS.toMillis(this.getElapsedNanos()) + " ms; " +
+        this.getFailureCount() + " failures; " + this.getMismatchCount() + " mismatched outcomes";
+    }
+
+  }
+
+}
@@ -0,0 +1,1055 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.registry;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Objects;
+
+import java.util.concurrent.locks.StampedLock;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+/**
+ * A fixed-capacity, open-addressing hash index, kept outside the
+ * Java heap, from GUIDs to compact {@linkplain Entry entries}
+ * describing service instances or bindings.
+ *
+ * <p>Each key is a GUID, held as its two {@code long} halves; each
+ * entry holds the index of the service broker responsible for it,
+ * the index of its plan, the {@linkplain SymbolTable symbols} of its
+ * organization and space, and the state of its last operation.  An
+ * entry occupies 40 bytes and no Java objects, so millions of them
+ * cost the garbage collector nothing.  Service instances and bindings
+ * would normally be kept in two separate {@link OffHeapIndex}es; a
+ * binding's entry describes the service instance it belongs to.</p>
+ *
+ * <p>The index is divided into a fixed number of segments, each an
+ * independent table with linear probing in its own direct or
+ * memory-mapped {@link ByteBuffer}, guarded by its own {@link
+ * StampedLock}.  Writes to different segments proceed in parallel.
+ * Reads take no lock: they are {@linkplain
+ * StampedLock#tryOptimisticRead() optimistic}, and are retried, under
+ * a read lock, only if a write to the same segment overlapped
+ * them.</p>
+ *
+ * <p>The broker and plan indices and the symbols are assigned by
+ * callers, and are meaningful only for as long as callers keep
+ * assigning them in the same way; an index kept in a file is only as
+ * useful after a restart as the mapping from those numbers back to
+ * brokers, plans and strings that callers keep alongside it.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @see SymbolTable
+ *
+ * @see ServiceInstanceRegistry
+ */
+public final class OffHeapIndex implements Closeable {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final int MAGIC = 0x4F534249; // "OSBI"
+
+  private static final byte VERSION = 1;
+
+  private static final int HEADER_SIZE = 32;
+
+  /**
+   * The offset in the header of the number, plus one, of the segment
+   * being copied from the {@linkplain Spare spare region}, or zero.
+   */
+  private static final int REBUILDING = 16;
+
+  /**
+   * The number of segments; the top {@link #SEGMENT_BITS} bits of a
+   * key's hash select its segment.
+   */
+  private static final int SEGMENT_BITS = 6;
+
+  private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+
+  private static final int SLOT_SIZE = 40;
+
+  /**
+   * The largest number of slots in a segment; the low bits of a key's
+   * hash that select its slot must not overlap those that select its
+   * segment, and a segment's buffer must not exceed 2GB.
+   */
+  private static final int MAX_SLOTS_PER_SEGMENT = 1 << 25;
+
+  /*
+   * Slot layout.
+   */
+
+  private static final int MOST_SIGNIFICANT_BITS = 0;
+
+  private static final int LEAST_SIGNIFICANT_BITS = 8;
+
+  private static final int BROKER_INDEX = 16;
+
+  private static final int PLAN_INDEX = 20;
+
+  private static final int ORGANIZATION_SYMBOL = 24;
+
+  private static final int SPACE_SYMBOL = 28;
+
+  private static final int STATUS = 32;
+
+  private static final int OPERATION_STATE = 33;
+
+  /*
+   * Slot statuses.
+   */
+
+  private static final byte EMPTY = 0;
+
+  private static final byte LIVE = 1;
+
+  private static final byte REMOVED = 2;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  @NotNull
+  private final Segment[] segments;
+
+  private final FileChannel channel;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new, empty {@link OffHeapIndex} in direct memory that
+   * can hold at least the supplied number of entries.
+   *
+   * @param capacity the number of entries; must not be negative
+   *
+   * @exception IllegalArgumentException if {@code capacity} is
+   * negative or too large
+   */
+  public OffHeapIndex(final int capacity) {
+    super();
+    final int slotsPerSegment = slotsPerSegment(capacity);
+    this.channel = null;
+    this.segments = new Segment[SEGMENT_COUNT];
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      this.segments[i] = new Segment(ByteBuffer.allocateDirect(slotsPerSegment * SLOT_SIZE), slotsPerSegment, i, null);
+    }
+  }
+
+  /**
+   * Creates a new {@link OffHeapIndex} that can hold at least the
+   * supplied number of entries, kept in the file at the supplied
+   * {@link Path}, which is created if it does not exist.
+   *
+   * <p>If the file exists, the entries in it are reused, and it must
+   * have been created with the same {@code capacity}; a rebuild of
+   * part of it that a crash interrupted is completed first.  Changes are
+   * written back to the file by the operating system, or when this
+   * {@link OffHeapIndex} is {@linkplain #force() forced} or
+   * {@linkplain #close() closed}.</p>
+   *
+   * @param path the {@link Path} of the file; must not be {@code null}
+   *
+   * @param capacity the number of entries; must not be negative
+   *
+   * @exception NullPointerException if {@code path} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code capacity} is
+   * negative or too large
+   *
+   * @exception IOException if the file could not be created or mapped,
+   * or exists but is not an index of the same capacity
+   */
+  public OffHeapIndex(@NotNull final Path path, final int capacity) throws IOException {
+    super();
+    Objects.requireNonNull(path, () -> "path must not be null");
+    final int slotsPerSegment = slotsPerSegment(capacity);
+    final long segmentSize = (long)slotsPerSegment * SLOT_SIZE;
+    final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    boolean success = false;
+    try {
+      final boolean existing = channel.size() > 0L;
+      final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE);
+      if (existing) {
+        if (header.getInt(0) != MAGIC || header.get(4) != VERSION) {
+          throw new IOException("Not an index: " + path);
+        }
+        if (header.getInt(8) != SEGMENT_COUNT || header.getInt(12) != slotsPerSegment) {
+          throw new IOException("Index " + path + " has a different capacity");
+        }
+      }
+      final Spare spare = new Spare(header, channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + SEGMENT_COUNT * segmentSize, segmentSize));
+      this.segments = new Segment[SEGMENT_COUNT];
+      for (int i = 0; i < SEGMENT_COUNT; i++) {
+        this.segments[i] =
+          new Segment(channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * segmentSize, segmentSize), slotsPerSegment, i, spare);
+      }
+      if (existing) {
+        spare.recover(this.segments, path);
+        for (final Segment segment : this.segments) {
+          segment.recount();
+        }
+      }
+      if (!existing) {
+        header.putInt(8, SEGMENT_COUNT);
+        header.putInt(12, slotsPerSegment);
+        header.put(4, VERSION);
+        header.putInt(0, MAGIC);
+        header.force();
+      }
+      success = true;
+    } finally {
+      if (!success) {
+        channel.close();
+      }
+    }
+    this.channel = channel;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the number of entries in this {@link OffHeapIndex}.
+   *
+   * @return the number of entries
+   */
+  public final long size() {
+    long returnValue = 0L;
+    for (final Segment segment : this.segments) {
+      returnValue += segment.live;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns {@code true} if this {@link OffHeapIndex} contains an
+   * entry for the supplied GUID.
+   *
+   * @param guid the GUID; must not be {@code null}
+   *
+   * @return {@code true} if there is an entry for {@code guid}
+   *
+   * @exception NullPointerException if {@code guid} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code guid} is not a GUID
+   *
+   * @see #isGuid(String)
+   */
+  public final boolean containsKey(@NotNull final String guid) {
+    return this.get(mostSignificantBits(guid), leastSignificantBits(guid), null);
+  }
+
+  /**
+   * Returns a new {@link Entry} holding the values of the entry for
+   * the supplied GUID, or {@code null} if there is none.
+   *
+   * @param guid the GUID; must not be {@code null}
+   *
+   * @return a new {@link Entry}, or {@code null}
+   *
+   * @exception NullPointerException if {@code guid} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code guid} is not a GUID
+   *
+   * @see #get(long, long, Entry)
+   */
+  public final Entry get(@NotNull final String guid) {
+    final Entry entry = new Entry();
+    return this.get(mostSignificantBits(guid), leastSignificantBits(guid), entry) ? entry : null;
+  }
+
+  /**
+   * Copies the values of the entry for the GUID with the supplied
+   * halves into the supplied {@link Entry}, if there is one, and
+   * returns {@code true} if there was.
+   *
+   * <p>This method does not allocate, and takes no lock unless a
+   * write overlaps it.</p>
+   *
+   * @param mostSignificantBits the most significant 64 bits of the
+   * GUID
+   *
+   * @param leastSignificantBits the least significant 64 bits of the
+   * GUID
+   *
+   * @param target the {@link Entry} to copy into; may be {@code null}
+   * in which case only the presence of the entry is reported
+   *
+   * @return {@code true} if there was an entry
+   */
+  public final boolean get(final long mostSignificantBits, final long leastSignificantBits, final Entry target) {
+    final int hash = hash(mostSignificantBits, leastSignificantBits);
+    return this.segments[hash >>> (32 - SEGMENT_BITS)].get(mostSignificantBits, leastSignificantBits, hash, target);
+  }
+
+  /**
+   * Adds or replaces the entry for the supplied GUID.
+   *
+   * @param guid the GUID; must not be {@code null}
+   *
+   * @param brokerIndex the index of the service broker responsible
+   * for the entry
+   *
+   * @param planIndex the index of the plan of the entry
+   *
+   * @param organizationSymbol the {@linkplain SymbolTable symbol} of
+   * the organization of the entry
+   *
+   * @param spaceSymbol the {@linkplain SymbolTable symbol} of the
+   * space of the entry
+   *
+   * @param operationState the state of the last operation of the
+   * entry; may be {@code null}
+   *
+   * @return {@code true} if an entry was added rather than replaced
+   *
+   * @exception NullPointerException if {@code guid} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code guid} is not a GUID
+   *
+   * @exception IllegalStateException if an entry would have to be
+   * added and its segment of this {@link OffHeapIndex} is full
+   */
+  public final boolean put(@NotNull final String guid,
+                           final int brokerIndex,
+                           final int planIndex,
+                           final int organizationSymbol,
+                           final int spaceSymbol,
+                           final LastOperation.State operationState) {
+    return this.put(mostSignificantBits(guid), leastSignificantBits(guid),
+                    brokerIndex, planIndex, organizationSymbol, spaceSymbol, operationState);
+  }
+
+  /**
+   * Adds or replaces the entry for the GUID with the supplied halves.
+   *
+   * @param mostSignificantBits the most significant 64 bits of the
+   * GUID
+   *
+   * @param leastSignificantBits the least significant 64 bits of the
+   * GUID
+   *
+   * @param brokerIndex the index of the service broker responsible
+   * for the entry
+   *
+   * @param planIndex the index of the plan of the entry
+   *
+   * @param organizationSymbol the {@linkplain SymbolTable symbol} of
+   * the organization of the entry
+   *
+   * @param spaceSymbol the {@linkplain SymbolTable symbol} of the
+   * space of the entry
+   *
+   * @param operationState the state of the last operation of the
+   * entry; may be {@code null}
+   *
+   * @return {@code true} if an entry was added rather than replaced
+   *
+   * @exception IllegalStateException if an entry would have to be
+   * added and its segment of this {@link OffHeapIndex} is full
+   */
+  public final boolean put(final long mostSignificantBits,
+                           final long leastSignificantBits,
+                           final int brokerIndex,
+                           final int planIndex,
+                           final int organizationSymbol,
+                           final int spaceSymbol,
+                           final LastOperation.State operationState) {
+    final int hash = hash(mostSignificantBits, leastSignificantBits);
+    return this.segments[hash >>> (32 - SEGMENT_BITS)].put(mostSignificantBits, leastSignificantBits, hash,
+                                                            brokerIndex, planIndex, organizationSymbol, spaceSymbol,
+                                                            encode(operationState));
+  }
+
+  /**
+   * Sets the state of the last operation of the entry for the
+   * supplied GUID, if there is one.
+   *
+   * @param guid the GUID; must not be {@code null}
+   *
+   * @param operationState the state; may be {@code null}
+   *
+   * @return {@code true} if there was an entry
+   *
+   * @exception NullPointerException if {@code guid} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code guid} is not a GUID
+   */
+  public final boolean setOperationState(@NotNull final String guid, final LastOperation.State operationState) {
+    final long mostSignificantBits = mostSignificantBits(guid);
+    final long leastSignificantBits = leastSignificantBits(guid);
+    final int hash = hash(mostSignificantBits, leastSignificantBits);
+    return this.segments[hash >>> (32 - SEGMENT_BITS)].setOperationState(mostSignificantBits, leastSignificantBits, hash,
+                                                                          encode(operationState));
+  }
+
+  /**
+   * Removes the entry for the supplied GUID, if there is one.
+   *
+   * @param guid the GUID; must not be {@code null}
+   *
+   * @return {@code true} if there was an entry
+   *
+   * @exception NullPointerException if {@code guid} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code guid} is not a GUID
+   */
+  public final boolean remove(@NotNull final String guid) {
+    return this.remove(mostSignificantBits(guid), leastSignificantBits(guid));
+  }
+
+  /**
+   * Removes the entry for the GUID with the supplied halves, if there
+   * is one.
+   *
+   * @param mostSignificantBits the most significant 64 bits of the
+   * GUID
+   *
+   * @param leastSignificantBits the least significant 64 bits of the
+   * GUID
+   *
+   * @return {@code true} if there was an entry
+   */
+  public final boolean remove(final long mostSignificantBits, final long leastSignificantBits) {
+    final int hash = hash(mostSignificantBits, leastSignificantBits);
+    return this.segments[hash >>> (32 - SEGMENT_BITS)].remove(mostSignificantBits, leastSignificantBits, hash);
+  }
+
+  /**
+   * If this {@link OffHeapIndex} is kept in a file, writes any
+   * changes to it to the storage device containing it.
+   */
+  public final void force() {
+    if (this.channel != null) {
+      for (final Segment segment : this.segments) {
+        segment.force();
+      }
+    }
+  }
+
+  /**
+   * If this {@link OffHeapIndex} is kept in a file, {@linkplain
+   * #force() forces} it and closes it.
+   *
+   * <p>This {@link OffHeapIndex} remains usable, but further changes
+   * are written back to the file only by the operating system.
+   * Memory is released when this {@link OffHeapIndex} is garbage
+   * collected.</p>
+   *
+   * @exception IOException if the file could not be closed
+   */
+  @Override
+  public final void close() throws IOException {
+    if (this.channel != null) {
+      this.force();
+      this.channel.close();
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the supplied {@link String} is a GUID in
+   * its canonical, 36-character textual form, and can therefore be a
+   * key in an {@link OffHeapIndex}.
+   *
+   * <p>Callers with identifiers that are not GUIDs must keep them
+   * elsewhere.</p>
+   *
+   * @param string the {@link String} to test; may be {@code null} in
+   * which case {@code false} will be returned
+   *
+   * @return {@code true} if {@code string} is a GUID
+   */
+  public static final boolean isGuid(final String string) {
+    if (string == null || string.length() != 36) {
+      return false;
+    }
+    for (int i = 0; i < 36; i++) {
+      final char c = string.charAt(i);
+      if (i == 8 || i == 13 || i == 18 || i == 23) {
+        if (c != '-') {
+          return false;
+        }
+      } else if (Character.digit(c, 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the most significant 64 bits of the supplied GUID, as
+   * {@link java.util.UUID#getMostSignificantBits()} would.
+   *
+   * @param guid the GUID; must not be {@code null}
+   *
+   * @return the most significant 64 bits
+   *
+   * @exception NullPointerException if {@code guid} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code guid} is not a GUID
+   *
+   * @see #isGuid(String)
+   */
+  public static final long mostSignificantBits(@NotNull final String guid) {
+    checkGuid(guid);
+    return (parseHex(guid, 0, 8) << 32) | (parseHex(guid, 9, 13) << 16) | parseHex(guid, 14, 18);
+  }
+
+  /**
+   * Returns the least significant 64 bits of the supplied GUID, as
+   * {@link java.util.UUID#getLeastSignificantBits()} would.
+   *
+   * @param guid the GUID; must not be {@code null}
+   *
+   * @return the least significant 64 bits
+   *
+   * @exception NullPointerException if {@code guid} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code guid} is not a GUID
+   *
+   * @see #isGuid(String)
+   */
+  public static final long leastSignificantBits(@NotNull final String guid) {
+    checkGuid(guid);
+    return (parseHex(guid, 19, 23) << 48) | parseHex(guid, 24, 36);
+  }
+
+  private static final void checkGuid(final String guid) {
+    Objects.requireNonNull(guid, () -> "guid must not be null");
+    if (guid.length() != 36 || guid.charAt(8) != '-' || guid.charAt(13) != '-' || guid.charAt(18) != '-' || guid.charAt(23) != '-') {
+      throw new IllegalArgumentException("Not a GUID: " + guid);
+    }
+  }
+
+  private static final long parseHex(final String guid, final int start, final int end) {
+    long returnValue = 0L;
+    for (int i = start; i < end; i++) {
+      final int digit = Character.digit(guid.charAt(i), 16);
+      if (digit < 0) {
+        throw new IllegalArgumentException("Not a GUID: " + guid);
+      }
+      returnValue = (returnValue << 4) | digit;
+    }
+    return returnValue;
+  }
+
+  private static final int slotsPerSegment(final int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity < 0: " + capacity);
+    }
+    // Keys are spread across segments by their hashes, so a segment
+    // may receive more than its share of them.  Allow each one eight
+    // standard deviations more keys than its share, which random or
+    // sequential GUIDs are vanishingly unlikely to exceed, and keep it
+    // at most three quarters full.
+    final double mean = (double)capacity / SEGMENT_COUNT;
+    final long entries = (long)Math.ceil(mean + 8.0 * Math.sqrt(mean)) + 16L;
+    final long slots = Math.max(16L, (entries * 4L + 2L) / 3L);
+    if (slots > MAX_SLOTS_PER_SEGMENT) {
+      throw new IllegalArgumentException("capacity too large: " + capacity);
+    }
+    return Integer.highestOneBit((int)slots - 1) << 1;
+  }
+
+  private static final int hash(final long mostSignificantBits, final long leastSignificantBits) {
+    // The finalizer of MurmurHash3, so that sequential or otherwise
+    // non-random GUIDs still spread across segments and slots.
+    long h = mostSignificantBits * 31L + leastSignificantBits;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return (int)h;
+  }
+
+  private static final byte encode(final LastOperation.State operationState) {
+    return operationState == null ? (byte)0 : (byte)(operationState.ordinal() + 1);
+  }
+
+  /**
+   * Copies the whole of the supplied source {@link ByteBuffer} over
+   * the supplied target {@link ByteBuffer}, regardless of their
+   * positions and limits.
+   */
+  private static final void copy(final ByteBuffer source, final ByteBuffer target) {
+    final ByteBuffer from = source.duplicate();
+    from.clear();
+    final ByteBuffer to = target.duplicate();
+    to.clear();
+    to.put(from);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A mutable holder for the values of an entry in an {@link
+   * OffHeapIndex}, so that they can be read without allocating.
+   *
+   * <p>Instances of this class are not safe for concurrent use by
+   * multiple threads.</p>
+   *
+   * @see OffHeapIndex#get(long, long, Entry)
+   */
+  public static final class Entry {
+
+    private int brokerIndex;
+
+    private int planIndex;
+
+    private int organizationSymbol;
+
+    private int spaceSymbol;
+
+    private byte operationState;
+
+    /**
+     * Creates a new {@link Entry}.
+     */
+    public Entry() {
+      super();
+    }
+
+    /**
+     * Returns the index of the service broker responsible for this
+     * {@link Entry}.
+     *
+     * @return the broker index
+     */
+    public final int getBrokerIndex() {
+      return this.brokerIndex;
+    }
+
+    /**
+     * Returns the index of the plan of this {@link Entry}.
+     *
+     * @return the plan index
+     */
+    public final int getPlanIndex() {
+      return this.planIndex;
+    }
+
+    /**
+     * Returns the {@linkplain SymbolTable symbol} of the organization
+     * of this {@link Entry}.
+     *
+     * @return the organization symbol
+     */
+    public final int getOrganizationSymbol() {
+      return this.organizationSymbol;
+    }
+
+    /**
+     * Returns the {@linkplain SymbolTable symbol} of the space of this
+     * {@link Entry}.
+     *
+     * @return the space symbol
+     */
+    public final int getSpaceSymbol() {
+      return this.spaceSymbol;
+    }
+
+    /**
+     * Returns the state of the last operation of this {@link Entry},
+     * if any.
+     *
+     * @return the state of the last operation, or {@code null}
+     */
+    public final LastOperation.State getOperationState() {
+      return this.operationState == 0 ? null : LastOperation.State.values()[this.operationState - 1];
+    }
+
+    @Override
+    public final String toString() {
+      return "broker " + this.brokerIndex + ", plan " + this.planIndex +
+        ", organization " + this.organizationSymbol + ", space " + this.spaceSymbol + ", " + this.getOperationState();
+    }
+
+  }
+
+  /**
+   * One independent table of an {@link OffHeapIndex}.
+   */
+  private static final class Segment {
+
+    private static final int OPERATION_STATE_COUNT = LastOperation.State.values().length;
+
+    @NotNull
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of this {@link Segment} within its {@link
+     * OffHeapIndex}.
+     */
+    private final int index;
+
+    /**
+     * The {@link Spare} through which rebuilds are copied, or {@code
+     * null} if {@link #buffer} is not kept in a file.
+     */
+    private final Spare spare;
+
+    private final int mask;
+
+    /**
+     * The number of slots that may be {@link #LIVE} or {@link
+     * #REMOVED} before the table must be rebuilt.
+     */
+    private final int threshold;
+
+    @NotNull
+    private final StampedLock lock;
+
+    /**
+     * The number of {@link #LIVE} slots.
+     *
+     * <p>Written while holding {@link #lock}'s write lock.</p>
+     */
+    private volatile int live;
+
+    /**
+     * The number of slots that are not {@link #EMPTY}.
+     *
+     * <p>Guarded by {@link #lock}'s write lock.</p>
+     */
+    private int used;
+
+    private Segment(@NotNull final ByteBuffer buffer, final int slots, final int index, final Spare spare) {
+      super();
+      this.buffer = buffer;
+      this.index = index;
+      this.spare = spare;
+      this.mask = slots - 1;
+      this.threshold = slots / 4 * 3;
+      this.lock = new StampedLock();
+    }
+
+    private final void recount() {
+      int live = 0;
+      int used = 0;
+      for (int offset = 0; offset < this.buffer.capacity(); offset += SLOT_SIZE) {
+        final byte status = this.buffer.get(offset + STATUS);
+        if (status != EMPTY) {
+          used++;
+          if (status == LIVE) {
+            live++;
+          }
+        }
+      }
+      this.live = live;
+      this.used = used;
+    }
+
+    private final boolean get(final long mostSignificantBits, final long leastSignificantBits, final int hash, final Entry target) {
+      long stamp = this.lock.tryOptimisticRead();
+      if (stamp != 0L) {
+        final boolean returnValue = this.read(mostSignificantBits, leastSignificantBits, hash, target);
+        if (this.lock.validate(stamp)) {
+          return returnValue;
+        }
+      }
+      stamp = this.lock.readLock();
+      try {
+        return this.read(mostSignificantBits, leastSignificantBits, hash, target);
+      } finally {
+        this.lock.unlockRead(stamp);
+      }
+    }
+
+    private final boolean read(final long mostSignificantBits, final long leastSignificantBits, final int hash, final Entry target) {
+      final int offset = this.find(mostSignificantBits, leastSignificantBits, hash);
+      if (offset < 0) {
+        return false;
+      }
+      if (target != null) {
+        final ByteBuffer buffer = this.buffer;
+        target.brokerIndex = buffer.getInt(offset + BROKER_INDEX);
+        target.planIndex = buffer.getInt(offset + PLAN_INDEX);
+        target.organizationSymbol = buffer.getInt(offset + ORGANIZATION_SYMBOL);
+        target.spaceSymbol = buffer.getInt(offset + SPACE_SYMBOL);
+        // An optimistic read that overlaps a write is discarded, but
+        // must not leave an out-of-range value behind meanwhile.
+        final byte operationState = buffer.get(offset + OPERATION_STATE);
+        target.operationState = operationState < 0 || operationState > OPERATION_STATE_COUNT ? 0 : operationState;
+      }
+      return true;
+    }
+
+    /**
+     * Returns the offset of the {@link #LIVE} slot holding the supplied
+     * key, or {@code -1}.
+     *
+     * <p>Terminates even if an overlapping write leaves the table
+     * inconsistent.</p>
+     */
+    private final int find(final long mostSignificantBits, final long leastSignificantBits, final int hash) {
+      final ByteBuffer buffer = this.buffer;
+      int slot = hash & this.mask;
+      for (int probes = 0; probes <= this.mask; probes++) {
+        final int offset = slot * SLOT_SIZE;
+        final byte status = buffer.get(offset + STATUS);
+        if (status == EMPTY) {
+          return -1;
+        }
+        if (status == LIVE &&
+            buffer.getLong(offset + MOST_SIGNIFICANT_BITS) == mostSignificantBits &&
+            buffer.getLong(offset + LEAST_SIGNIFICANT_BITS) == leastSignificantBits) {
+          return offset;
+        }
+        slot = (slot + 1) & this.mask;
+      }
+      return -1;
+    }
+
+    private final boolean put(final long mostSignificantBits,
+                              final long leastSignificantBits,
+                              final int hash,
+                              final int brokerIndex,
+                              final int planIndex,
+                              final int organizationSymbol,
+                              final int spaceSymbol,
+                              final byte operationState) {
+      final long stamp = this.lock.writeLock();
+      try {
+        int offset = this.find(mostSignificantBits, leastSignificantBits, hash);
+        final boolean added = offset < 0;
+        if (added) {
+          offset = this.findFree(hash);
+          if (offset < 0) {
+            this.rebuild();
+            offset = this.findFree(hash);
+            if (offset < 0) {
+              throw new IllegalStateException("Index segment full");
+            }
+          }
+          if (this.buffer.get(offset + STATUS) == EMPTY) {
+            this.used++;
+          }
+          this.live++;
+        }
+        final ByteBuffer buffer = this.buffer;
+        buffer.putLong(offset + MOST_SIGNIFICANT_BITS, mostSignificantBits);
+        buffer.putLong(offset + LEAST_SIGNIFICANT_BITS, leastSignificantBits);
+        buffer.putInt(offset + BROKER_INDEX, brokerIndex);
+        buffer.putInt(offset + PLAN_INDEX, planIndex);
+        buffer.putInt(offset + ORGANIZATION_SYMBOL, organizationSymbol);
+        buffer.putInt(offset + SPACE_SYMBOL, spaceSymbol);
+        buffer.put(offset + OPERATION_STATE, operationState);
+        buffer.put(offset + STATUS, LIVE);
+        return added;
+      } finally {
+        this.lock.unlockWrite(stamp);
+      }
+    }
+
+    /**
+     * Returns the offset of the first {@link #REMOVED} or {@link
+     * #EMPTY} slot at or after the supplied hash, or {@code -1} if
+     * taking an {@link #EMPTY} one would exceed the {@link
+     * #threshold}.
+     */
+    private final int findFree(final int hash) {
+      int slot = hash & this.mask;
+      for (int probes = 0; probes <= this.mask; probes++) {
+        final int offset = slot * SLOT_SIZE;
+        final byte status = this.buffer.get(offset + STATUS);
+        if (status == REMOVED) {
+          return offset;
+        } else if (status == EMPTY) {
+          return this.used < this.threshold ? offset : -1;
+        }
+        slot = (slot + 1) & this.mask;
+      }
+      return -1;
+    }
+
+    /**
+     * Reinserts every {@link #LIVE} slot so that {@link #REMOVED} ones
+     * become {@link #EMPTY}.
+     *
+     * <p>The new table is built in a copy and then written over {@link
+     * #buffer}, by way of the {@link #spare} if there is one, so that
+     * a crash part way through loses nothing.</p>
+     *
+     * <p>Must be called while holding {@link #lock}'s write lock.</p>
+     */
+    private final void rebuild() {
+      final ByteBuffer buffer = this.buffer;
+      final ByteBuffer rebuilt = ByteBuffer.allocate(buffer.capacity());
+      final ByteBuffer source = buffer.duplicate();
+      int used = 0;
+      for (int offset = 0; offset < buffer.capacity(); offset += SLOT_SIZE) {
+        if (buffer.get(offset + STATUS) == LIVE) {
+          int slot = hash(buffer.getLong(offset + MOST_SIGNIFICANT_BITS), buffer.getLong(offset + LEAST_SIGNIFICANT_BITS)) & this.mask;
+          while (rebuilt.get(slot * SLOT_SIZE + STATUS) != EMPTY) {
+            slot = (slot + 1) & this.mask;
+          }
+          source.limit(offset + SLOT_SIZE).position(offset);
+          rebuilt.position(slot * SLOT_SIZE);
+          rebuilt.put(source);
+          source.clear();
+          used++;
+        }
+      }
+      if (this.spare == null) {
+        copy(rebuilt, buffer);
+      } else {
+        this.spare.copy(rebuilt, this.index, (MappedByteBuffer)buffer);
+      }
+      this.used = used;
+    }
+
+    private final boolean setOperationState(final long mostSignificantBits,
+                                            final long leastSignificantBits,
+                                            final int hash,
+                                            final byte operationState) {
+      final long stamp = this.lock.writeLock();
+      try {
+        final int offset = this.find(mostSignificantBits, leastSignificantBits, hash);
+        if (offset < 0) {
+          return false;
+        }
+        this.buffer.put(offset + OPERATION_STATE, operationState);
+        return true;
+      } finally {
+        this.lock.unlockWrite(stamp);
+      }
+    }
+
+    private final boolean remove(final long mostSignificantBits, final long leastSignificantBits, final int hash) {
+      final long stamp = this.lock.writeLock();
+      try {
+        final int offset = this.find(mostSignificantBits, leastSignificantBits, hash);
+        if (offset < 0) {
+          return false;
+        }
+        this.buffer.put(offset + STATUS, REMOVED);
+        this.live--;
+        return true;
+      } finally {
+        this.lock.unlockWrite(stamp);
+      }
+    }
+
+    private final void force() {
+      if (this.buffer instanceof MappedByteBuffer) {
+        ((MappedByteBuffer)this.buffer).force();
+      }
+    }
+
+  }
+
+  /**
+   * The spare, segment-sized region at the end of the file of an
+   * {@link OffHeapIndex} in which a rebuilt {@link Segment} is staged
+   * before it is copied over the original, so that a rebuild
+   * interrupted by a crash can be completed when the file is next
+   * opened.
+   */
+  private static final class Spare {
+
+    @NotNull
+    private final MappedByteBuffer header;
+
+    @NotNull
+    private final MappedByteBuffer buffer;
+
+    private Spare(@NotNull final MappedByteBuffer header, @NotNull final MappedByteBuffer buffer) {
+      super();
+      this.header = header;
+      this.buffer = buffer;
+    }
+
+    /**
+     * Copies the supplied rebuilt table over the {@link Segment} with
+     * the supplied number, whose buffer is the supplied target, by way
+     * of this {@link Spare}, forcing each step to disk before the next
+     * begins.
+     *
+     * <p>Segments are rebuilt under their own locks, so this method
+     * serializes their use of this {@link Spare}.</p>
+     */
+    private final synchronized void copy(@NotNull final ByteBuffer rebuilt, final int index, @NotNull final MappedByteBuffer target) {
+      OffHeapIndex.copy(rebuilt, this.buffer);
+      this.buffer.force();
+      this.header.putInt(REBUILDING, index + 1);
+      this.header.force();
+      OffHeapIndex.copy(this.buffer, target);
+      target.force();
+      this.header.putInt(REBUILDING, 0);
+      this.header.force();
+    }
+
+    /**
+     * Completes a {@linkplain #copy(ByteBuffer, int, MappedByteBuffer)
+     * copy} that a crash interrupted, if there was one.
+     */
+    private final void recover(@NotNull final Segment[] segments, @NotNull final Path path) throws IOException {
+      final int rebuilding = this.header.getInt(REBUILDING);
+      if (rebuilding != 0) {
+        if (rebuilding < 0 || rebuilding > segments.length) {
+          throw new IOException("Index " + path + " has a corrupt header");
+        }
+        final MappedByteBuffer target = (MappedByteBuffer)segments[rebuilding - 1].buffer;
+        OffHeapIndex.copy(this.buffer, target);
+        target.force();
+        this.header.putInt(REBUILDING, 0);
+        this.header.force();
+      }
+    }
+
+  }
+
+}
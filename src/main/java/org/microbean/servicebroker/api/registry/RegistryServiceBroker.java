@@ -0,0 +1,228 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.registry;
+
+import java.io.IOException;
+
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.DelegatingServiceBroker;
+import org.microbean.servicebroker.api.ServiceBroker;
+import org.microbean.servicebroker.api.ServiceBrokerException;
+
+import org.microbean.servicebroker.api.command.BindingAlreadyExistsException;
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.NoSuchBindingException;
+import org.microbean.servicebroker.api.command.NoSuchServiceInstanceException;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ServiceInstanceAlreadyExistsException;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+/**
+ * A {@link DelegatingServiceBroker} that keeps a {@link
+ * ServiceInstanceRegistry} up to date with the outcomes of the
+ * commands it executes, and uses it to reject, without consulting
+ * the delegate, commands that refer to service instances or bindings
+ * that do not exist, or that would create ones that already exist
+ * with different attributes.
+ *
+ * <p>Specifically:</p>
+ *
+ * <ul>
+ *
+ * <li>Updating, deprovisioning or binding to an unknown service
+ * instance fails with a {@link NoSuchServiceInstanceException}.</li>
+ *
+ * <li>Deleting an unknown binding fails with a {@link
+ * NoSuchBindingException}.</li>
+ *
+ * <li>Provisioning a service instance that exists with a different
+ * service, plan, organization or space fails with a {@link
+ * ServiceInstanceAlreadyExistsException}, and creating a binding
+ * that exists for a different service instance, service or plan
+ * with a {@link BindingAlreadyExistsException}.  Whether an existing
+ * service instance or binding with the same attributes is identical,
+ * which depends on parameters the registry does not keep, is left to
+ * the delegate.</li>
+ *
+ * </ul>
+ *
+ * <p>These decisions are correct only if every command that creates
+ * or destroys a service instance or binding of the delegate passes
+ * through this {@link RegistryServiceBroker}, and the {@link
+ * ServiceInstanceRegistry} is kept in a {@link
+ * org.microbean.servicebroker.api.journal.Journal} or otherwise
+ * rebuilt after a restart.</p>
+ *
+ * @see ServiceInstanceRegistry
+ */
+public class RegistryServiceBroker extends DelegatingServiceBroker {
+
+  @NotNull
+  private final ServiceInstanceRegistry registry;
+
+  /**
+   * Creates a new {@link RegistryServiceBroker}.
+   *
+   * @param delegate the {@link ServiceBroker} to delegate to; must not
+   * be {@code null}
+   *
+   * @param registry the {@link ServiceInstanceRegistry} to keep up to
+   * date and consult; must not be {@code null}
+   *
+   * @exception NullPointerException if either parameter is {@code
+   * null}
+   */
+  public RegistryServiceBroker(@NotNull final ServiceBroker delegate, @NotNull final ServiceInstanceRegistry registry) {
+    super(delegate);
+    Objects.requireNonNull(registry, () -> "registry must not be null");
+    this.registry = registry;
+  }
+
+  /**
+   * Returns the {@link ServiceInstanceRegistry} this {@link
+   * RegistryServiceBroker} keeps up to date.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link ServiceInstanceRegistry}
+   */
+  @NotNull
+  public final ServiceInstanceRegistry getRegistry() {
+    return this.registry;
+  }
+
+  @NotNull
+  @Override
+  public LastOperation getLastOperation(@NotNull final LastOperationQuery lastOperationQuery) throws ServiceBrokerException {
+    final LastOperation returnValue = super.getLastOperation(lastOperationQuery);
+    if (returnValue != null && returnValue.getState() != LastOperation.State.IN_PROGRESS) {
+      final String instanceId = lastOperationQuery.getInstanceId();
+      if (instanceId != null) {
+        try {
+          this.registry.operationCompleted(instanceId, returnValue.getState() == LastOperation.State.SUCCEEDED);
+        } catch (final IOException ioException) {
+          throw new ServiceBrokerException(ioException);
+        }
+      }
+    }
+    return returnValue;
+  }
+
+  @NotNull
+  @Override
+  public ProvisionBindingCommand.Response execute(@NotNull final ProvisionBindingCommand command) throws ServiceBrokerException {
+    final String instanceId = command.getInstanceId();
+    if (!this.registry.containsServiceInstance(instanceId)) {
+      throw new NoSuchServiceInstanceException("No such service instance: " + instanceId, command);
+    }
+    final ServiceInstanceRegistry.Binding binding = this.registry.getBinding(command.getBindingId());
+    if (binding != null &&
+        !(Objects.equals(binding.getInstanceId(), instanceId) &&
+          Objects.equals(binding.getServiceId(), command.getServiceId()) &&
+          Objects.equals(binding.getPlanId(), command.getPlanId()))) {
+      throw new BindingAlreadyExistsException("Binding already exists: " + binding, null, null);
+    }
+    final ProvisionBindingCommand.Response returnValue = super.execute(command);
+    try {
+      this.registry.bindingProvisioned(command);
+    } catch (final IOException ioException) {
+      throw new ServiceBrokerException(ioException);
+    }
+    return returnValue;
+  }
+
+  @NotNull
+  @Override
+  public DeleteBindingCommand.Response execute(@NotNull final DeleteBindingCommand command) throws ServiceBrokerException {
+    final String bindingId = command.getBindingId();
+    if (!this.registry.containsBinding(bindingId)) {
+      throw new NoSuchBindingException("No such binding: " + bindingId, null);
+    }
+    final DeleteBindingCommand.Response returnValue = super.execute(command);
+    try {
+      this.registry.bindingDeprovisioned(command);
+    } catch (final IOException ioException) {
+      throw new ServiceBrokerException(ioException);
+    }
+    return returnValue;
+  }
+
+  @NotNull
+  @Override
+  public ProvisionServiceInstanceCommand.Response execute(@NotNull final ProvisionServiceInstanceCommand command) throws ServiceBrokerException {
+    final ServiceInstanceRegistry.ServiceInstance serviceInstance = this.registry.getServiceInstance(command.getInstanceId());
+    if (serviceInstance != null &&
+        !(Objects.equals(serviceInstance.getServiceId(), command.getServiceId()) &&
+          Objects.equals(serviceInstance.getPlanId(), command.getPlanId()) &&
+          Objects.equals(serviceInstance.getOrganizationGuid(), command.getOrganizationGuid()) &&
+          Objects.equals(serviceInstance.getSpaceGuid(), command.getSpaceGuid()))) {
+      throw new ServiceInstanceAlreadyExistsException("Service instance already exists: " + serviceInstance, null, null);
+    }
+    final ProvisionServiceInstanceCommand.Response returnValue = super.execute(command);
+    try {
+      this.registry.serviceInstanceProvisioned(command,
+                                               this.isAsynchronous(command, returnValue == null ? null : returnValue.getOperation()));
+    } catch (final IOException ioException) {
+      throw new ServiceBrokerException(ioException);
+    }
+    return returnValue;
+  }
+
+  @NotNull
+  @Override
+  public UpdateServiceInstanceCommand.Response execute(@NotNull final UpdateServiceInstanceCommand command) throws ServiceBrokerException {
+    final String instanceId = command.getInstanceId();
+    if (!this.registry.containsServiceInstance(instanceId)) {
+      throw new NoSuchServiceInstanceException("No such service instance: " + instanceId, command);
+    }
+    final UpdateServiceInstanceCommand.Response returnValue = super.execute(command);
+    try {
+      this.registry.serviceInstanceUpdated(command,
+                                           this.isAsynchronous(command, returnValue == null ? null : returnValue.getOperation()));
+    } catch (final IOException ioException) {
+      throw new ServiceBrokerException(ioException);
+    }
+    return returnValue;
+  }
+
+  @NotNull
+  @Override
+  public DeleteServiceInstanceCommand.Response execute(@NotNull final DeleteServiceInstanceCommand command) throws ServiceBrokerException {
+    final String instanceId = command.getInstanceId();
+    if (!this.registry.containsServiceInstance(instanceId)) {
+      throw new NoSuchServiceInstanceException("No such service instance: " + instanceId, command);
+    }
+    final DeleteServiceInstanceCommand.Response returnValue = super.execute(command);
+    try {
+      this.registry.serviceInstanceDeprovisioned(command,
+                                                 this.isAsynchronous(command, returnValue == null ? null : returnValue.getOperation()));
+    } catch (final IOException ioException) {
+      throw new ServiceBrokerException(ioException);
+    }
+    return returnValue;
+  }
+
+}
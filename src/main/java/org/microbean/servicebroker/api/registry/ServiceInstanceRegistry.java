@@ -0,0 +1,1091 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.registry;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.validation.constraints.NotNull;
+
+import org.microbean.servicebroker.api.binary.BinaryReader;
+import org.microbean.servicebroker.api.binary.BinaryWriter;
+import org.microbean.servicebroker.api.binary.MalformedBinaryException;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.journal.Journal;
+
+/**
+ * An in-memory registry of the {@linkplain ServiceInstance service
+ * instances} and {@linkplain Binding bindings} that exist, built
+ * from the outcomes of the commands that create and destroy them.
+ *
+ * <p>Service instances are indexed by identifier, by organization
+ * and space, and by service and plan; bindings by identifier and by
+ * service instance.  Every index is safe to read concurrently with
+ * updates, which are serialized.  A read concurrent with an update
+ * sees the registry either before or after the update as far as any
+ * one index is concerned, but may see different indexes at different
+ * points.</p>
+ *
+ * <p>A {@link ServiceInstanceRegistry} may be kept in a {@link
+ * Journal}, in which case every update is appended to it as an event
+ * and made durable before the update is applied, and the registry is
+ * rebuilt from it when the {@link ServiceInstanceRegistry} is
+ * created.  Whenever the {@link Journal} moves on to a new segment,
+ * and whenever the {@link #snapshot()} method is called, which
+ * callers may do periodically, a snapshot of the whole registry
+ * replaces the events before it, so that rebuilding reads at most
+ * one snapshot and one segment's worth of events.  A registry whose
+ * snapshot would not fit in a segment keeps its events instead, and
+ * is rebuilt from all of them.</p>
+ *
+ * @see RegistryServiceBroker
+ */
+public class ServiceInstanceRegistry {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final byte INSTANCE_PROVISIONED = 1;
+
+  private static final byte INSTANCE_UPDATED = 2;
+
+  private static final byte INSTANCE_DEPROVISIONED = 3;
+
+  private static final byte OPERATION_COMPLETED = 4;
+
+  private static final byte BINDING_PROVISIONED = 5;
+
+  private static final byte BINDING_DEPROVISIONED = 6;
+
+  private static final byte SNAPSHOT = 7;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Journal journal;
+
+  /**
+   * Serializes updates, and the appending of their events to the
+   * {@link #journal}, so that both happen in the same order.
+   */
+  @NotNull
+  private final Object lock;
+
+  @NotNull
+  private final Map<String, ServiceInstance> serviceInstances;
+
+  @NotNull
+  private final Map<String, Binding> bindings;
+
+  @NotNull
+  private final Map<Key, Set<String>> serviceInstanceIdsBySpace;
+
+  @NotNull
+  private final Map<Key, Set<String>> serviceInstanceIdsByPlan;
+
+  @NotNull
+  private final Map<String, Set<String>> bindingIdsByServiceInstance;
+
+  /**
+   * The number of segments the {@link #journal} must exceed before a
+   * snapshot is taken automatically: {@code 1}, or, after a snapshot
+   * was found too large to fit in a segment, the number of segments
+   * at that time, so that another is not attempted until the {@link
+   * #journal} rolls over again.
+   *
+   * <p>Written while holding {@link #lock}.</p>
+   */
+  private volatile int snapshotSegmentCount;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new, empty {@link ServiceInstanceRegistry} that is not
+   * kept in a {@link Journal}.
+   */
+  public ServiceInstanceRegistry() {
+    super();
+    this.journal = null;
+    this.lock = new Object();
+    this.serviceInstances = new ConcurrentHashMap<>();
+    this.bindings = new ConcurrentHashMap<>();
+    this.serviceInstanceIdsBySpace = new ConcurrentHashMap<>();
+    this.serviceInstanceIdsByPlan = new ConcurrentHashMap<>();
+    this.bindingIdsByServiceInstance = new ConcurrentHashMap<>();
+    this.snapshotSegmentCount = 1;
+  }
+
+  /**
+   * Creates a new {@link ServiceInstanceRegistry} that is kept in the
+   * supplied {@link Journal}, and rebuilds it by {@linkplain
+   * Journal#replay(Journal.RecordHandler) replaying} that {@link
+   * Journal}.
+   *
+   * @param journal the {@link Journal}; must not be {@code null}; must
+   * not be used by anything else
+   *
+   * @exception NullPointerException if {@code journal} is {@code null}
+   *
+   * @exception IOException if {@code journal} could not be replayed
+   */
+  public ServiceInstanceRegistry(@NotNull final Journal journal) throws IOException {
+    super();
+    Objects.requireNonNull(journal, () -> "journal must not be null");
+    this.journal = journal;
+    this.lock = new Object();
+    this.serviceInstances = new ConcurrentHashMap<>();
+    this.bindings = new ConcurrentHashMap<>();
+    this.serviceInstanceIdsBySpace = new ConcurrentHashMap<>();
+    this.serviceInstanceIdsByPlan = new ConcurrentHashMap<>();
+    this.bindingIdsByServiceInstance = new ConcurrentHashMap<>();
+    this.snapshotSegmentCount = 1;
+    final BinaryReader reader = new BinaryReader();
+    synchronized (this.lock) {
+      journal.replay(record -> this.replay(reader, record));
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Journal} this {@link ServiceInstanceRegistry}
+   * is kept in, or {@code null} if there is none.
+   *
+   * @return the {@link Journal}, or {@code null}
+   */
+  public final Journal getJournal() {
+    return this.journal;
+  }
+
+  /**
+   * Returns the number of service instances in this {@link
+   * ServiceInstanceRegistry}.
+   *
+   * @return the number of service instances
+   */
+  public final int getServiceInstanceCount() {
+    return this.serviceInstances.size();
+  }
+
+  /**
+   * Returns the number of bindings in this {@link
+   * ServiceInstanceRegistry}.
+   *
+   * @return the number of bindings
+   */
+  public final int getBindingCount() {
+    return this.bindings.size();
+  }
+
+  /**
+   * Returns {@code true} if this {@link ServiceInstanceRegistry}
+   * contains a service instance with the supplied identifier.
+   *
+   * @param instanceId the identifier; may be {@code null} in which
+   * case {@code false} will be returned
+   *
+   * @return {@code true} if the service instance exists
+   */
+  public final boolean containsServiceInstance(final String instanceId) {
+    return instanceId != null && this.serviceInstances.containsKey(instanceId);
+  }
+
+  /**
+   * Returns the {@link ServiceInstance} with the supplied identifier,
+   * or {@code null} if there is none.
+   *
+   * @param instanceId the identifier; may be {@code null} in which
+   * case {@code null} will be returned
+   *
+   * @return the {@link ServiceInstance}, or {@code null}
+   */
+  public final ServiceInstance getServiceInstance(final String instanceId) {
+    return instanceId == null ? null : this.serviceInstances.get(instanceId);
+  }
+
+  /**
+   * Returns the {@link ServiceInstance}s in the supplied organization
+   * and space.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param organizationGuid the organization; may be {@code null}
+   *
+   * @param spaceGuid the space; may be {@code null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link Collection} of
+   * {@link ServiceInstance}s
+   */
+  @NotNull
+  public final Collection<ServiceInstance> getServiceInstancesInSpace(final String organizationGuid, final String spaceGuid) {
+    return this.resolve(this.serviceInstanceIdsBySpace.get(new Key(organizationGuid, spaceGuid)), this.serviceInstances);
+  }
+
+  /**
+   * Returns the {@link ServiceInstance}s of the supplied service and
+   * plan.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param serviceId the service identifier; may be {@code null}
+   *
+   * @param planId the plan identifier; may be {@code null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link Collection} of
+   * {@link ServiceInstance}s
+   */
+  @NotNull
+  public final Collection<ServiceInstance> getServiceInstancesOfPlan(final String serviceId, final String planId) {
+    return this.resolve(this.serviceInstanceIdsByPlan.get(new Key(serviceId, planId)), this.serviceInstances);
+  }
+
+  /**
+   * Returns {@code true} if this {@link ServiceInstanceRegistry}
+   * contains a binding with the supplied identifier.
+   *
+   * @param bindingId the identifier; may be {@code null} in which case
+   * {@code false} will be returned
+   *
+   * @return {@code true} if the binding exists
+   */
+  public final boolean containsBinding(final String bindingId) {
+    return bindingId != null && this.bindings.containsKey(bindingId);
+  }
+
+  /**
+   * Returns the {@link Binding} with the supplied identifier, or
+   * {@code null} if there is none.
+   *
+   * @param bindingId the identifier; may be {@code null} in which case
+   * {@code null} will be returned
+   *
+   * @return the {@link Binding}, or {@code null}
+   */
+  public final Binding getBinding(final String bindingId) {
+    return bindingId == null ? null : this.bindings.get(bindingId);
+  }
+
+  /**
+   * Returns the {@link Binding}s of the service instance with the
+   * supplied identifier.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param instanceId the identifier of the service instance; may be
+   * {@code null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link Collection} of
+   * {@link Binding}s
+   */
+  @NotNull
+  public final Collection<Binding> getBindings(final String instanceId) {
+    return this.resolve(instanceId == null ? null : this.bindingIdsByServiceInstance.get(instanceId), this.bindings);
+  }
+
+  /**
+   * Records that the supplied {@link ProvisionServiceInstanceCommand}
+   * was executed successfully.
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @param asynchronous whether provisioning continues
+   * asynchronously, in which case the new {@link ServiceInstance}
+   * will be {@linkplain ServiceInstance.Status#PROVISIONING
+   * provisioning} until {@linkplain #operationCompleted(String,
+   * boolean) the operation completes}
+   *
+   * @exception NullPointerException if {@code command} is {@code null}
+   *
+   * @exception IOException if the event could not be journaled
+   */
+  public final void serviceInstanceProvisioned(@NotNull final ProvisionServiceInstanceCommand command, final boolean asynchronous)
+    throws IOException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final ServiceInstance serviceInstance =
+      new ServiceInstance(command.getInstanceId(),
+                          command.getServiceId(),
+                          command.getPlanId(),
+                          command.getOrganizationGuid(),
+                          command.getSpaceGuid(),
+                          asynchronous ? ServiceInstance.Status.PROVISIONING : ServiceInstance.Status.PROVISIONED,
+                          null);
+    final BinaryWriter writer = this.newEvent(INSTANCE_PROVISIONED);
+    if (writer != null) {
+      write(writer, serviceInstance);
+    }
+    this.commit(writer, () -> this.put(serviceInstance));
+  }
+
+  /**
+   * Records that the supplied {@link UpdateServiceInstanceCommand} was
+   * executed successfully.
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @param asynchronous whether the update continues asynchronously,
+   * in which case the {@link ServiceInstance} will be {@linkplain
+   * ServiceInstance.Status#UPDATING updating}, and keep its current
+   * plan, until {@linkplain #operationCompleted(String, boolean) the
+   * operation completes}
+   *
+   * @exception NullPointerException if {@code command} is {@code null}
+   *
+   * @exception IOException if the event could not be journaled
+   */
+  public final void serviceInstanceUpdated(@NotNull final UpdateServiceInstanceCommand command, final boolean asynchronous)
+    throws IOException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final String instanceId = command.getInstanceId();
+    final String planId = command.getPlanId();
+    final BinaryWriter writer = this.newEvent(INSTANCE_UPDATED);
+    if (writer != null) {
+      writer.writeString(instanceId);
+      writer.writeString(planId);
+      writer.writeBoolean(asynchronous);
+    }
+    this.commit(writer, () -> this.update(instanceId, planId, asynchronous));
+  }
+
+  /**
+   * Records that the supplied {@link DeleteServiceInstanceCommand} was
+   * executed successfully.
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @param asynchronous whether deprovisioning continues
+   * asynchronously, in which case the {@link ServiceInstance} will be
+   * {@linkplain ServiceInstance.Status#DEPROVISIONING deprovisioning}
+   * until {@linkplain #operationCompleted(String, boolean) the
+   * operation completes}; otherwise it is removed, together with its
+   * {@link Binding}s
+   *
+   * @exception NullPointerException if {@code command} is {@code null}
+   *
+   * @exception IOException if the event could not be journaled
+   */
+  public final void serviceInstanceDeprovisioned(@NotNull final DeleteServiceInstanceCommand command, final boolean asynchronous)
+    throws IOException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final String instanceId = command.getInstanceId();
+    final BinaryWriter writer = this.newEvent(INSTANCE_DEPROVISIONED);
+    if (writer != null) {
+      writer.writeString(instanceId);
+      writer.writeBoolean(asynchronous);
+    }
+    this.commit(writer, () -> this.deprovision(instanceId, asynchronous));
+  }
+
+  /**
+   * Records that the asynchronous operation in progress for the
+   * service instance with the supplied identifier, if any, has
+   * completed.
+   *
+   * @param instanceId the identifier of the service instance; must not
+   * be {@code null}
+   *
+   * @param succeeded whether the operation succeeded
+   *
+   * @exception NullPointerException if {@code instanceId} is {@code
+   * null}
+   *
+   * @exception IOException if the event could not be journaled
+   */
+  public final void operationCompleted(@NotNull final String instanceId, final boolean succeeded) throws IOException {
+    Objects.requireNonNull(instanceId, () -> "instanceId must not be null");
+    final ServiceInstance serviceInstance = this.serviceInstances.get(instanceId);
+    if (serviceInstance != null && serviceInstance.getStatus() != ServiceInstance.Status.PROVISIONED) {
+      final BinaryWriter writer = this.newEvent(OPERATION_COMPLETED);
+      if (writer != null) {
+        writer.writeString(instanceId);
+        writer.writeBoolean(succeeded);
+      }
+      this.commit(writer, () -> this.complete(instanceId, succeeded));
+    }
+  }
+
+  /**
+   * Records that the supplied {@link ProvisionBindingCommand} was
+   * executed successfully.
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code command} is {@code null}
+   *
+   * @exception IOException if the event could not be journaled
+   */
+  public final void bindingProvisioned(@NotNull final ProvisionBindingCommand command) throws IOException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final Binding binding = new Binding(command.getBindingId(), command.getInstanceId(), command.getServiceId(), command.getPlanId());
+    final BinaryWriter writer = this.newEvent(BINDING_PROVISIONED);
+    if (writer != null) {
+      write(writer, binding);
+    }
+    this.commit(writer, () -> this.put(binding));
+  }
+
+  /**
+   * Records that the supplied {@link DeleteBindingCommand} was
+   * executed successfully.
+   *
+   * @param command the command; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code command} is {@code null}
+   *
+   * @exception IOException if the event could not be journaled
+   */
+  public final void bindingDeprovisioned(@NotNull final DeleteBindingCommand command) throws IOException {
+    Objects.requireNonNull(command, () -> "command must not be null");
+    final String bindingId = command.getBindingId();
+    final BinaryWriter writer = this.newEvent(BINDING_DEPROVISIONED);
+    if (writer != null) {
+      writer.writeString(bindingId);
+    }
+    this.commit(writer, () -> this.removeBinding(bindingId));
+  }
+
+  /**
+   * Replaces every event in the {@link Journal} this {@link
+   * ServiceInstanceRegistry} is kept in with a snapshot of the whole
+   * registry.
+   *
+   * <p>This method may be called periodically to bound the time it
+   * takes to rebuild this {@link ServiceInstanceRegistry}.  It does
+   * nothing if there is no {@link Journal}, or if the snapshot would
+   * not fit in one of its segments, in which case the events are
+   * kept.</p>
+   *
+   * @return {@code true} if a snapshot was taken
+   *
+   * @exception IOException if the snapshot could not be journaled
+   */
+  public final boolean snapshot() throws IOException {
+    if (this.journal == null) {
+      return false;
+    }
+    synchronized (this.lock) {
+      return this.compact();
+    }
+  }
+
+  /**
+   * Takes a snapshot if the {@link #journal} has rolled over to a new
+   * segment since the last one.
+   *
+   * <p>Several threads may see the rollover at once; only the first
+   * to acquire {@link #lock} takes the snapshot.</p>
+   */
+  private final void snapshotIfNecessary() throws IOException {
+    if (this.journal.getSegmentCount() > this.snapshotSegmentCount) {
+      synchronized (this.lock) {
+        final int segmentCount = this.journal.getSegmentCount();
+        if (segmentCount > this.snapshotSegmentCount && !this.compact()) {
+          this.snapshotSegmentCount = segmentCount;
+        }
+      }
+    }
+  }
+
+  /**
+   * Replaces every event in the {@link #journal} with a snapshot of
+   * the whole registry, and returns {@code true}, unless the snapshot
+   * would not fit in a segment, in which case it returns {@code
+   * false}.
+   *
+   * <p>Must be called while holding {@link #lock}.</p>
+   */
+  private final boolean compact() throws IOException {
+    final BinaryWriter writer = new BinaryWriter();
+    writer.writeByte(SNAPSHOT);
+    writer.writeVarLong(this.serviceInstances.size());
+    for (final ServiceInstance serviceInstance : this.serviceInstances.values()) {
+      write(writer, serviceInstance);
+    }
+    writer.writeVarLong(this.bindings.size());
+    for (final Binding binding : this.bindings.values()) {
+      write(writer, binding);
+    }
+    final ByteBuffer snapshot = writer.endMessage();
+    if (snapshot.remaining() > this.journal.getMaxRecordSize()) {
+      return false;
+    }
+    this.journal.compact(snapshot);
+    this.snapshotSegmentCount = 1;
+    return true;
+  }
+
+  private final BinaryWriter newEvent(final byte type) {
+    if (this.journal == null) {
+      return null;
+    }
+    final BinaryWriter writer = new BinaryWriter();
+    writer.writeByte(type);
+    return writer;
+  }
+
+  private final void commit(final BinaryWriter writer, final Runnable update) throws IOException {
+    if (writer == null) {
+      synchronized (this.lock) {
+        update.run();
+      }
+    } else {
+      final ByteBuffer event = writer.endMessage();
+      final long position;
+      synchronized (this.lock) {
+        position = this.journal.append(event);
+        update.run();
+      }
+      this.journal.sync(position);
+      this.snapshotIfNecessary();
+    }
+  }
+
+  /**
+   * Applies an event read from the {@link #journal}.
+   *
+   * <p>Must be called while holding {@link #lock}.</p>
+   */
+  private final void replay(final BinaryReader reader, final ByteBuffer record) throws IOException {
+    if (!reader.beginMessage(record)) {
+      throw new MalformedBinaryException("Truncated registry event", record.position());
+    }
+    final byte type = reader.readByte();
+    switch (type) {
+    case INSTANCE_PROVISIONED:
+      this.put(readServiceInstance(reader));
+      break;
+    case INSTANCE_UPDATED:
+      this.update(reader.readString(), reader.readString(), reader.readBoolean());
+      break;
+    case INSTANCE_DEPROVISIONED:
+      this.deprovision(reader.readString(), reader.readBoolean());
+      break;
+    case OPERATION_COMPLETED:
+      this.complete(reader.readString(), reader.readBoolean());
+      break;
+    case BINDING_PROVISIONED:
+      this.put(readBinding(reader));
+      break;
+    case BINDING_DEPROVISIONED:
+      this.removeBinding(reader.readString());
+      break;
+    case SNAPSHOT:
+      // A snapshot replaces everything before it, which may still be
+      // present if compaction was interrupted.
+      this.serviceInstances.clear();
+      this.bindings.clear();
+      this.serviceInstanceIdsBySpace.clear();
+      this.serviceInstanceIdsByPlan.clear();
+      this.bindingIdsByServiceInstance.clear();
+      for (long i = reader.readVarLong(); i > 0L; i--) {
+        this.put(readServiceInstance(reader));
+      }
+      for (long i = reader.readVarLong(); i > 0L; i--) {
+        this.put(readBinding(reader));
+      }
+      break;
+    default:
+      throw reader.formatError("Invalid registry event type: " + type);
+    }
+    reader.endMessage();
+  }
+
+  /*
+   * The methods below update the indexes, and must be called while
+   * holding the lock.
+   */
+
+  private final void put(final ServiceInstance serviceInstance) {
+    final String instanceId = serviceInstance.getInstanceId();
+    if (instanceId != null) {
+      final ServiceInstance old = this.serviceInstances.put(instanceId, serviceInstance);
+      if (old != null) {
+        unindex(this.serviceInstanceIdsBySpace, old.getSpaceKey(), instanceId);
+        unindex(this.serviceInstanceIdsByPlan, old.getPlanKey(), instanceId);
+      }
+      index(this.serviceInstanceIdsBySpace, serviceInstance.getSpaceKey(), instanceId);
+      index(this.serviceInstanceIdsByPlan, serviceInstance.getPlanKey(), instanceId);
+    }
+  }
+
+  private final void update(final String instanceId, final String planId, final boolean asynchronous) {
+    final ServiceInstance serviceInstance = instanceId == null ? null : this.serviceInstances.get(instanceId);
+    if (serviceInstance != null) {
+      if (asynchronous) {
+        this.put(serviceInstance.with(serviceInstance.getPlanId(), ServiceInstance.Status.UPDATING, planId));
+      } else {
+        this.put(serviceInstance.with(planId == null ? serviceInstance.getPlanId() : planId, ServiceInstance.Status.PROVISIONED, null));
+      }
+    }
+  }
+
+  private final void deprovision(final String instanceId, final boolean asynchronous) {
+    final ServiceInstance serviceInstance = instanceId == null ? null : this.serviceInstances.get(instanceId);
+    if (serviceInstance != null) {
+      if (asynchronous) {
+        this.put(serviceInstance.with(serviceInstance.getPlanId(), ServiceInstance.Status.DEPROVISIONING, null));
+      } else {
+        this.removeServiceInstance(serviceInstance);
+      }
+    }
+  }
+
+  private final void complete(final String instanceId, final boolean succeeded) {
+    final ServiceInstance serviceInstance = instanceId == null ? null : this.serviceInstances.get(instanceId);
+    if (serviceInstance != null) {
+      switch (serviceInstance.getStatus()) {
+      case PROVISIONING:
+        if (succeeded) {
+          this.put(serviceInstance.with(serviceInstance.getPlanId(), ServiceInstance.Status.PROVISIONED, null));
+        } else {
+          this.removeServiceInstance(serviceInstance);
+        }
+        break;
+      case UPDATING:
+        final String targetPlanId = serviceInstance.getTargetPlanId();
+        this.put(serviceInstance.with(succeeded && targetPlanId != null ? targetPlanId : serviceInstance.getPlanId(),
+                                      ServiceInstance.Status.PROVISIONED,
+                                      null));
+        break;
+      case DEPROVISIONING:
+        if (succeeded) {
+          this.removeServiceInstance(serviceInstance);
+        } else {
+          this.put(serviceInstance.with(serviceInstance.getPlanId(), ServiceInstance.Status.PROVISIONED, null));
+        }
+        break;
+      default:
+        break;
+      }
+    }
+  }
+
+  private final void removeServiceInstance(final ServiceInstance serviceInstance) {
+    final String instanceId = serviceInstance.getInstanceId();
+    this.serviceInstances.remove(instanceId);
+    unindex(this.serviceInstanceIdsBySpace, serviceInstance.getSpaceKey(), instanceId);
+    unindex(this.serviceInstanceIdsByPlan, serviceInstance.getPlanKey(), instanceId);
+    final Set<String> bindingIds = this.bindingIdsByServiceInstance.remove(instanceId);
+    if (bindingIds != null) {
+      for (final String bindingId : bindingIds) {
+        this.bindings.remove(bindingId);
+      }
+    }
+  }
+
+  private final void put(final Binding binding) {
+    final String bindingId = binding.getBindingId();
+    if (bindingId != null) {
+      final Binding old = this.bindings.put(bindingId, binding);
+      if (old != null && old.getInstanceId() != null) {
+        unindex(this.bindingIdsByServiceInstance, old.getInstanceId(), bindingId);
+      }
+      if (binding.getInstanceId() != null) {
+        index(this.bindingIdsByServiceInstance, binding.getInstanceId(), bindingId);
+      }
+    }
+  }
+
+  private final void removeBinding(final String bindingId) {
+    final Binding binding = bindingId == null ? null : this.bindings.remove(bindingId);
+    if (binding != null && binding.getInstanceId() != null) {
+      unindex(this.bindingIdsByServiceInstance, binding.getInstanceId(), bindingId);
+    }
+  }
+
+  private final <T> Collection<T> resolve(final Set<String> ids, final Map<String, T> map) {
+    if (ids == null || ids.isEmpty()) {
+      return Collections.emptySet();
+    }
+    final List<T> returnValue = new ArrayList<>(ids.size());
+    for (final String id : ids) {
+      // The id may have been unindexed concurrently.
+      final T value = map.get(id);
+      if (value != null) {
+        returnValue.add(value);
+      }
+    }
+    return Collections.unmodifiableList(returnValue);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final <K> void index(final Map<K, Set<String>> index, final K key, final String id) {
+    index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+  }
+
+  private static final <K> void unindex(final Map<K, Set<String>> index, final K key, final String id) {
+    index.computeIfPresent(key, (k, ids) -> ids.remove(id) && ids.isEmpty() ? null : ids);
+  }
+
+  private static final void write(final BinaryWriter writer, final ServiceInstance serviceInstance) {
+    writer.writeString(serviceInstance.getInstanceId());
+    writer.writeString(serviceInstance.getServiceId());
+    writer.writeString(serviceInstance.getPlanId());
+    writer.writeString(serviceInstance.getOrganizationGuid());
+    writer.writeString(serviceInstance.getSpaceGuid());
+    writer.writeByte(serviceInstance.getStatus().ordinal());
+    writer.writeString(serviceInstance.getTargetPlanId());
+  }
+
+  private static final ServiceInstance readServiceInstance(final BinaryReader reader) throws MalformedBinaryException {
+    final String instanceId = reader.readString();
+    final String serviceId = reader.readString();
+    final String planId = reader.readString();
+    final String organizationGuid = reader.readString();
+    final String spaceGuid = reader.readString();
+    final int status = reader.readByte();
+    final ServiceInstance.Status[] statuses = ServiceInstance.Status.values();
+    if (instanceId == null || status < 0 || status >= statuses.length) {
+      throw reader.formatError("Invalid service instance");
+    }
+    return new ServiceInstance(instanceId, serviceId, planId, organizationGuid, spaceGuid, statuses[status], reader.readString());
+  }
+
+  private static final void write(final BinaryWriter writer, final Binding binding) {
+    writer.writeString(binding.getBindingId());
+    writer.writeString(binding.getInstanceId());
+    writer.writeString(binding.getServiceId());
+    writer.writeString(binding.getPlanId());
+  }
+
+  private static final Binding readBinding(final BinaryReader reader) throws MalformedBinaryException {
+    final String bindingId = reader.readString();
+    if (bindingId == null) {
+      throw reader.formatError("Invalid binding");
+    }
+    return new Binding(bindingId, reader.readString(), reader.readString(), reader.readString());
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An immutable record of a service instance in a {@link
+   * ServiceInstanceRegistry}.
+   *
+   * @see ServiceInstanceRegistry#getServiceInstance(String)
+   */
+  public static final class ServiceInstance {
+
+    @NotNull /* @NotEmpty */
+    private final String instanceId;
+
+    private final String serviceId;
+
+    private final String planId;
+
+    private final String organizationGuid;
+
+    private final String spaceGuid;
+
+    @NotNull
+    private final Status status;
+
+    private final String targetPlanId;
+
+    private ServiceInstance(@NotNull /* @NotEmpty */ final String instanceId,
+                            final String serviceId,
+                            final String planId,
+                            final String organizationGuid,
+                            final String spaceGuid,
+                            @NotNull final Status status,
+                            final String targetPlanId) {
+      super();
+      Objects.requireNonNull(instanceId, () -> "instanceId must not be null");
+      Objects.requireNonNull(status, () -> "status must not be null");
+      this.instanceId = instanceId;
+      this.serviceId = serviceId;
+      this.planId = planId;
+      this.organizationGuid = organizationGuid;
+      this.spaceGuid = spaceGuid;
+      this.status = status;
+      this.targetPlanId = targetPlanId;
+    }
+
+    /**
+     * Returns the identifier of this {@link ServiceInstance}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} identifier
+     */
+    @NotNull /* @NotEmpty */
+    public final String getInstanceId() {
+      return this.instanceId;
+    }
+
+    /**
+     * Returns the identifier of the service of this {@link
+     * ServiceInstance}.
+     *
+     * @return the service identifier, or {@code null}
+     */
+    public final String getServiceId() {
+      return this.serviceId;
+    }
+
+    /**
+     * Returns the identifier of the plan of this {@link
+     * ServiceInstance}.
+     *
+     * @return the plan identifier, or {@code null}
+     */
+    public final String getPlanId() {
+      return this.planId;
+    }
+
+    /**
+     * Returns the organization this {@link ServiceInstance} was
+     * provisioned in.
+     *
+     * @return the organization, or {@code null}
+     */
+    public final String getOrganizationGuid() {
+      return this.organizationGuid;
+    }
+
+    /**
+     * Returns the space this {@link ServiceInstance} was provisioned
+     * in.
+     *
+     * @return the space, or {@code null}
+     */
+    public final String getSpaceGuid() {
+      return this.spaceGuid;
+    }
+
+    /**
+     * Returns the {@link Status} of this {@link ServiceInstance}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} {@link Status}
+     */
+    @NotNull
+    public final Status getStatus() {
+      return this.status;
+    }
+
+    /**
+     * Returns the identifier of the plan this {@link ServiceInstance}
+     * is being {@linkplain Status#UPDATING updated} to, if any.
+     *
+     * @return the target plan identifier, or {@code null}
+     */
+    public final String getTargetPlanId() {
+      return this.targetPlanId;
+    }
+
+    private final ServiceInstance with(final String planId, final Status status, final String targetPlanId) {
+      return new ServiceInstance(this.instanceId, this.serviceId, planId, this.organizationGuid, this.spaceGuid, status, targetPlanId);
+    }
+
+    private final Key getSpaceKey() {
+      return new Key(this.organizationGuid, this.spaceGuid);
+    }
+
+    private final Key getPlanKey() {
+      return new Key(this.serviceId, this.planId);
+    }
+
+    @Override
+    public final String toString() {
+      return this.instanceId + " (" + this.serviceId + "/" + this.planId + ", " + this.status + ")";
+    }
+
+
+    /*
+     * Inner and nested classes.
+     */
+
+
+    /**
+     * The states a {@link ServiceInstance} may be in.
+     */
+    public static enum Status {
+
+      /**
+       * The service instance is being provisioned asynchronously.
+       */
+      PROVISIONING,
+
+      /**
+       * The service instance has been provisioned, and no operation
+       * is in progress.
+       */
+      PROVISIONED,
+
+      /**
+       * The service instance is being updated asynchronously.
+       */
+      UPDATING,
+
+      /**
+       * The service instance is being deprovisioned asynchronously.
+       */
+      DEPROVISIONING
+
+    }
+
+  }
+
+  /**
+   * An immutable record of a binding in a {@link
+   * ServiceInstanceRegistry}.
+   *
+   * @see ServiceInstanceRegistry#getBinding(String)
+   */
+  public static final class Binding {
+
+    @NotNull /* @NotEmpty */
+    private final String bindingId;
+
+    private final String instanceId;
+
+    private final String serviceId;
+
+    private final String planId;
+
+    private Binding(@NotNull /* @NotEmpty */ final String bindingId,
+                    final String instanceId,
+                    final String serviceId,
+                    final String planId) {
+      super();
+      Objects.requireNonNull(bindingId, () -> "bindingId must not be null");
+      this.bindingId = bindingId;
+      this.instanceId = instanceId;
+      this.serviceId = serviceId;
+      this.planId = planId;
+    }
+
+    /**
+     * Returns the identifier of this {@link Binding}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} identifier
+     */
+    @NotNull /* @NotEmpty */
+    public final String getBindingId() {
+      return this.bindingId;
+    }
+
+    /**
+     * Returns the identifier of the service instance this {@link
+     * Binding} belongs to.
+     *
+     * @return the service instance identifier, or {@code null}
+     */
+    public final String getInstanceId() {
+      return this.instanceId;
+    }
+
+    /**
+     * Returns the identifier of the service of this {@link Binding}.
+     *
+     * @return the service identifier, or {@code null}
+     */
+    public final String getServiceId() {
+      return this.serviceId;
+    }
+
+    /**
+     * Returns the identifier of the plan of this {@link Binding}.
+     *
+     * @return the plan identifier, or {@code null}
+     */
+    public final String getPlanId() {
+      return this.planId;
+    }
+
+    @Override
+    public final String toString() {
+      return this.bindingId + " (" + this.instanceId + ")";
+    }
+
+  }
+
+  private static final class Key {
+
+    private final String first;
+
+    private final String second;
+
+    private Key(final String first, final String second) {
+      super();
+      this.first = first;
+      this.second = second;
+    }
+
+    @Override
+    public final int hashCode() {
+      return 31 * Objects.hashCode(this.first) + Objects.hashCode(this.second);
+    }
+
+    @Override
+    public final boolean equals(final Object other) {
+      if (other == this) {
+        return true;
+      } else if (other instanceof Key) {
+        final Key her = (Key)other;
+        return Objects.equals(this.first, her.first) && Objects.equals(this.second, her.second);
+      } else {
+        return false;
+      }
+    }
+
+  }
+
+}
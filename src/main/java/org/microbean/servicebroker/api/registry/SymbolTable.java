@@ -0,0 +1,143 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.registry;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table that assigns small, dense {@code int} symbols to the
+ * strings, such as organization and space identifiers, that many
+ * entries in an {@link OffHeapIndex} share.
+ *
+ * <p>The symbol {@code 0} always stands for {@code null}; other
+ * strings are assigned symbols from {@code 1} upwards, in the order
+ * in which they are first {@linkplain #intern(String) interned}.
+ * Symbols are never reclaimed.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.  Looking up a symbol or a string takes no lock.</p>
+ *
+ * @see OffHeapIndex
+ */
+public final class SymbolTable {
+
+  private final Map<String, Integer> symbols;
+
+  /**
+   * The strings, indexed by symbol.
+   *
+   * <p>Replaced, never modified in place beyond {@link #size}, while
+   * holding this {@link SymbolTable}'s monitor.</p>
+   */
+  private volatile String[] strings;
+
+  private int size;
+
+  /**
+   * Creates a new, empty {@link SymbolTable}.
+   */
+  public SymbolTable() {
+    super();
+    this.symbols = new ConcurrentHashMap<>();
+    this.strings = new String[16];
+    this.size = 1;
+  }
+
+  /**
+   * Returns the symbol for the supplied string, assigning a new one if
+   * it has none.
+   *
+   * @param string the string; may be {@code null} in which case
+   * {@code 0} will be returned
+   *
+   * @return the symbol
+   */
+  public final int intern(final String string) {
+    if (string == null) {
+      return 0;
+    }
+    final Integer symbol = this.symbols.get(string);
+    if (symbol != null) {
+      return symbol.intValue();
+    }
+    synchronized (this) {
+      final Integer existing = this.symbols.get(string);
+      if (existing != null) {
+        return existing.intValue();
+      }
+      final int returnValue = this.size++;
+      String[] strings = this.strings;
+      if (returnValue == strings.length) {
+        strings = Arrays.copyOf(strings, strings.length * 2);
+      }
+      strings[returnValue] = string;
+      // Publish the string before the symbol can be seen.
+      this.strings = strings;
+      this.symbols.put(string, Integer.valueOf(returnValue));
+      return returnValue;
+    }
+  }
+
+  /**
+   * Returns the symbol for the supplied string, or {@code -1} if it
+   * has none.
+   *
+   * @param string the string; may be {@code null} in which case
+   * {@code 0} will be returned
+   *
+   * @return the symbol, or {@code -1}
+   */
+  public final int getSymbol(final String string) {
+    if (string == null) {
+      return 0;
+    }
+    final Integer symbol = this.symbols.get(string);
+    return symbol == null ? -1 : symbol.intValue();
+  }
+
+  /**
+   * Returns the string for the supplied symbol.
+   *
+   * @param symbol the symbol
+   *
+   * @return the string, or {@code null} if {@code symbol} is {@code
+   * 0}
+   *
+   * @exception IndexOutOfBoundsException if {@code symbol} has not
+   * been assigned
+   */
+  public final String getString(final int symbol) {
+    final String[] strings = this.strings;
+    if (symbol < 0 || symbol >= strings.length || (symbol > 0 && strings[symbol] == null)) {
+      throw new IndexOutOfBoundsException("symbol: " + symbol);
+    }
+    return strings[symbol];
+  }
+
+  /**
+   * Returns the number of symbols assigned, including {@code 0}.
+   *
+   * @return the number of symbols assigned; always at least {@code 1}
+   */
+  public final synchronized int size() {
+    return this.size;
+  }
+
+}
@@ -0,0 +1,1443 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.schema;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A JSON schema compiled into a tree of checks, each of which
+ * enforces a single keyword and none of which consults the schema's
+ * {@link Map} again, so that {@linkplain #validate(Object)
+ * validating} a value costs no more than the checks that apply to it.
+ *
+ * <p>The keywords of JSON Schema draft 4, the draft named by the Open
+ * Service Broker API specification, are supported, together with the
+ * boolean schemas, {@code const} and numeric {@code exclusiveMinimum}
+ * and {@code exclusiveMaximum} of later drafts.  A {@code $ref} is
+ * honored when it is a JSON pointer into the schema being compiled,
+ * such as {@code #/definitions/size}; a cycle of references that
+ * returns to the same value without descending into it, such as
+ * {@code {"$ref": "#"}}, accepts every value.  Other references, {@code
+ * format} and unknown keywords are ignored, as are keywords whose
+ * values are malformed, so that a faulty schema published by one
+ * broker never makes that broker's plans unusable.</p>
+ *
+ * <p>Values are expected to be in the form produced by {@link
+ * org.microbean.servicebroker.api.json.JsonReader}: objects are
+ * {@link Map}s, arrays are {@link List}s, strings are {@link
+ * CharSequence}s, numbers are {@link Number}s and booleans are
+ * {@link Boolean}s.</p>
+ *
+ * <p>Instances of this class are immutable and safe for concurrent
+ * use by multiple threads.</p>
+ *
+ * @see #compile(Map)
+ */
+public final class ParameterSchema {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final int NULL = 1;
+
+  private static final int BOOLEAN = 2;
+
+  private static final int OBJECT = 4;
+
+  private static final int ARRAY = 8;
+
+  private static final int NUMBER = 16;
+
+  private static final int INTEGER = 32;
+
+  private static final int STRING = 64;
+
+  private static final double EXACT_DOUBLE_LIMIT = 9007199254740992.0; // 2^53
+
+  private static final ParameterSchema ANY = new ParameterSchema(Node.ANY);
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Node root;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private ParameterSchema(final Node root) {
+    super();
+    this.root = root;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns {@code null} if the supplied value conforms to this
+   * {@link ParameterSchema}, or a description of the first violation
+   * found, prefixed with the JSON pointer of the offending value if
+   * it is not the supplied value itself.
+   *
+   * <p>This method does not allocate when the supplied value
+   * conforms, except where {@code uniqueItems} or {@code enum}
+   * requires it.</p>
+   *
+   * @param value the value to validate; may be {@code null}
+   *
+   * @return {@code null} if {@code value} conforms; a non-{@code
+   * null} description of a violation otherwise
+   */
+  public final String validate(final Object value) {
+    final Violation violation = this.root.check(value);
+    return violation == null ? null : violation.toString();
+  }
+
+  /**
+   * Returns {@code true} if this {@link ParameterSchema} accepts
+   * every value.
+   *
+   * @return {@code true} if this {@link ParameterSchema} accepts
+   * every value; {@code false} otherwise
+   */
+  public final boolean acceptsAll() {
+    return this.root == Node.ANY;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Compiles the supplied JSON schema and returns the resulting
+   * {@link ParameterSchema}.
+   *
+   * <p>Later changes to the supplied {@link Map} are not reflected in
+   * the returned {@link ParameterSchema}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param schema the schema to compile; may be {@code null} or
+   * empty, in which case a {@link ParameterSchema} that {@linkplain
+   * #acceptsAll() accepts all values} is returned
+   *
+   * @return a non-{@code null} {@link ParameterSchema}
+   */
+  public static final ParameterSchema compile(final Map<? extends String, ?> schema) {
+    if (schema == null || schema.isEmpty()) {
+      return ANY;
+    }
+    final Node root = new Compiler(schema).compile(schema);
+    return root == Node.ANY ? ANY : new ParameterSchema(root);
+  }
+
+  private static final int typeOf(final Object value) {
+    if (value == null) {
+      return NULL;
+    } else if (value instanceof Boolean) {
+      return BOOLEAN;
+    } else if (value instanceof CharSequence) {
+      return STRING;
+    } else if (value instanceof Map) {
+      return OBJECT;
+    } else if (value instanceof List) {
+      return ARRAY;
+    } else if (value instanceof Number) {
+      return isIntegral((Number)value) ? NUMBER | INTEGER : NUMBER;
+    } else {
+      return 0;
+    }
+  }
+
+  private static final String typeName(final int type) {
+    if ((type & INTEGER) != 0) {
+      return "integer";
+    }
+    switch (type) {
+    case NULL:
+      return "null";
+    case BOOLEAN:
+      return "boolean";
+    case OBJECT:
+      return "object";
+    case ARRAY:
+      return "array";
+    case NUMBER:
+      return "number";
+    case STRING:
+      return "string";
+    default:
+      return "unsupported value";
+    }
+  }
+
+  private static final boolean isLong(final Number number) {
+    return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+  }
+
+  private static final boolean isIntegral(final Number number) {
+    if (isLong(number) || number instanceof BigInteger) {
+      return true;
+    } else if (number instanceof Double || number instanceof Float) {
+      final double d = number.doubleValue();
+      return !Double.isInfinite(d) && d == Math.rint(d);
+    } else {
+      final BigDecimal decimal = decimal(number);
+      return decimal != null && (decimal.signum() == 0 || decimal.stripTrailingZeros().scale() <= 0);
+    }
+  }
+
+  /**
+   * Returns the supplied {@link Object} as a {@link BigDecimal}, or
+   * {@code null} if it is not a finite {@link Number}.
+   */
+  private static final BigDecimal decimal(final Object value) {
+    if (value instanceof BigDecimal) {
+      return (BigDecimal)value;
+    } else if (value instanceof BigInteger) {
+      return new BigDecimal((BigInteger)value);
+    } else if (value instanceof Number) {
+      final Number number = (Number)value;
+      if (isLong(number)) {
+        return BigDecimal.valueOf(number.longValue());
+      } else if (number instanceof Double || number instanceof Float) {
+        final double d = number.doubleValue();
+        return Double.isNaN(d) || Double.isInfinite(d) ? null : BigDecimal.valueOf(d);
+      }
+      try {
+        return new BigDecimal(number.toString());
+      } catch (final NumberFormatException numberFormatException) {
+        return null;
+      }
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the supplied {@link Object} as a non-negative {@code
+   * int}, saturating at {@link Integer#MAX_VALUE}, or {@code -1} if
+   * it is not a non-negative integer.
+   */
+  private static final int count(final Object value) {
+    if (!(value instanceof Number) || !isIntegral((Number)value)) {
+      return -1;
+    }
+    final BigDecimal decimal = decimal(value);
+    if (decimal == null || decimal.signum() < 0) {
+      return -1;
+    }
+    return decimal.compareTo(BigDecimal.valueOf(Integer.MAX_VALUE)) >= 0 ? Integer.MAX_VALUE : decimal.intValue();
+  }
+
+  /**
+   * Returns {@code true} if the supplied values are equal as JSON
+   * values, where, for example, {@code 1} and {@code 1.0} are equal.
+   */
+  private static final boolean jsonEquals(final Object a, final Object b) {
+    if (a == b) {
+      return true;
+    } else if (a == null || b == null) {
+      return false;
+    } else if (a instanceof Number && b instanceof Number) {
+      if (isLong((Number)a) && isLong((Number)b)) {
+        return ((Number)a).longValue() == ((Number)b).longValue();
+      }
+      final BigDecimal x = decimal(a);
+      final BigDecimal y = decimal(b);
+      return x == null || y == null ? a.equals(b) : x.compareTo(y) == 0;
+    } else if (a instanceof CharSequence && b instanceof CharSequence) {
+      return a.toString().equals(b.toString());
+    } else if (a instanceof Map && b instanceof Map) {
+      final Map<?, ?> x = (Map<?, ?>)a;
+      final Map<?, ?> y = (Map<?, ?>)b;
+      if (x.size() != y.size()) {
+        return false;
+      }
+      for (final Entry<?, ?> entry : x.entrySet()) {
+        final Object key = entry.getKey();
+        if (!y.containsKey(key) || !jsonEquals(entry.getValue(), y.get(key))) {
+          return false;
+        }
+      }
+      return true;
+    } else if (a instanceof List && b instanceof List) {
+      final List<?> x = (List<?>)a;
+      final List<?> y = (List<?>)b;
+      final int size = x.size();
+      if (size != y.size()) {
+        return false;
+      }
+      for (int i = 0; i < size; i++) {
+        if (!jsonEquals(x.get(i), y.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    } else {
+      return a.equals(b);
+    }
+  }
+
+  /**
+   * Returns a hash code for the supplied value that is consistent
+   * with {@link #jsonEquals(Object, Object)}.
+   */
+  private static final int jsonHashCode(final Object value) {
+    if (value == null) {
+      return 0;
+    } else if (value instanceof Number) {
+      final Number number = (Number)value;
+      if (isLong(number)) {
+        return Long.hashCode(number.longValue());
+      }
+      final BigDecimal decimal = decimal(number);
+      if (decimal == null) {
+        return number.hashCode();
+      } else if (decimal.signum() == 0) {
+        return 0;
+      }
+      final BigDecimal stripped = decimal.stripTrailingZeros();
+      if (stripped.scale() <= 0 && stripped.precision() - stripped.scale() <= 19) {
+        // Hash every integer that fits in a long as a long, as the
+        // fast path above does, whatever its type.
+        final BigInteger integer = stripped.toBigInteger();
+        if (integer.bitLength() < 64) {
+          return Long.hashCode(integer.longValue());
+        }
+      }
+      return stripped.hashCode();
+    } else if (value instanceof CharSequence) {
+      return value.toString().hashCode();
+    } else if (value instanceof Map) {
+      int hashCode = 0;
+      for (final Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+        hashCode += String.valueOf(entry.getKey()).hashCode() ^ jsonHashCode(entry.getValue());
+      }
+      return hashCode;
+    } else if (value instanceof List) {
+      int hashCode = 1;
+      for (final Object element : (List<?>)value) {
+        hashCode = 31 * hashCode + jsonHashCode(element);
+      }
+      return hashCode;
+    } else {
+      return value.hashCode();
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A description of the first way in which a value failed to
+   * conform, together with the path to the offending value, which is
+   * accumulated in reverse as the {@link Violation} propagates out of
+   * nested {@link Node}s.
+   */
+  private static final class Violation {
+
+    private final String message;
+
+    private List<Object> reversePath;
+
+    private Violation(final String message) {
+      super();
+      this.message = message;
+    }
+
+    private final Violation at(final Object segment) {
+      if (this.reversePath == null) {
+        this.reversePath = new ArrayList<>(4);
+      }
+      this.reversePath.add(segment);
+      return this;
+    }
+
+    @Override
+    public final String toString() {
+      if (this.reversePath == null) {
+        return this.message;
+      }
+      final StringBuilder sb = new StringBuilder();
+      for (int i = this.reversePath.size() - 1; i >= 0; i--) {
+        sb.append('/').append(String.valueOf(this.reversePath.get(i)).replace("~", "~0").replace("/", "~1"));
+      }
+      return sb.append(": ").append(this.message).toString();
+    }
+
+  }
+
+  /**
+   * Wraps a value so that it can be stored in hash-based collections
+   * according to {@link #jsonEquals(Object, Object)}.
+   */
+  private static final class JsonKey {
+
+    private final Object value;
+
+    private final int hashCode;
+
+    private JsonKey(final Object value) {
+      super();
+      this.value = value;
+      this.hashCode = jsonHashCode(value);
+    }
+
+    @Override
+    public final int hashCode() {
+      return this.hashCode;
+    }
+
+    @Override
+    public final boolean equals(final Object other) {
+      return other instanceof JsonKey && jsonEquals(this.value, ((JsonKey)other).value);
+    }
+
+  }
+
+  /**
+   * A compiled check.
+   *
+   * <p>Per JSON Schema, a check for a keyword that constrains values
+   * of a particular type accepts values of every other type.</p>
+   */
+  private abstract static class Node {
+
+    private static final Node ANY = new Node() {
+        @Override
+        final Violation check(final Object value) {
+          return null;
+        }
+      };
+
+    private static final Node NONE = new Node() {
+        @Override
+        final Violation check(final Object value) {
+          return new Violation("no value is permitted");
+        }
+      };
+
+    private Node() {
+      super();
+    }
+
+    /**
+     * Returns {@code null} if the supplied value passes this check,
+     * or a new {@link Violation} otherwise.
+     */
+    abstract Violation check(final Object value);
+
+  }
+
+  private static final class AllOf extends Node {
+
+    private final Node[] nodes;
+
+    private AllOf(final Node[] nodes) {
+      super();
+      this.nodes = nodes;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      for (final Node node : this.nodes) {
+        final Violation violation = node.check(value);
+        if (violation != null) {
+          return violation;
+        }
+      }
+      return null;
+    }
+
+  }
+
+  private static final class AnyOf extends Node {
+
+    private final Node[] nodes;
+
+    private AnyOf(final Node[] nodes) {
+      super();
+      this.nodes = nodes;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      for (final Node node : this.nodes) {
+        if (node.check(value) == null) {
+          return null;
+        }
+      }
+      return new Violation("does not match any of the permitted schemas");
+    }
+
+  }
+
+  private static final class OneOf extends Node {
+
+    private final Node[] nodes;
+
+    private OneOf(final Node[] nodes) {
+      super();
+      this.nodes = nodes;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      boolean matched = false;
+      for (final Node node : this.nodes) {
+        if (node.check(value) == null) {
+          if (matched) {
+            return new Violation("matches more than one of the permitted schemas");
+          }
+          matched = true;
+        }
+      }
+      return matched ? null : new Violation("does not match any of the permitted schemas");
+    }
+
+  }
+
+  private static final class Not extends Node {
+
+    private final Node node;
+
+    private Not(final Node node) {
+      super();
+      this.node = node;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      return this.node.check(value) == null ? new Violation("matches a forbidden schema") : null;
+    }
+
+  }
+
+  /**
+   * A {@link Node} standing in for a schema that is still being
+   * compiled, so that recursive {@code $ref}s can be compiled.
+   */
+  private static final class Reference extends Node {
+
+    private Node target;
+
+    private Reference() {
+      super();
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      return this.target.check(value);
+    }
+
+  }
+
+  private static final class Type extends Node {
+
+    private final int types;
+
+    private Type(final int types) {
+      super();
+      this.types = types;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      final int type = typeOf(value);
+      if ((type & this.types) != 0) {
+        return null;
+      }
+      final StringBuilder sb = new StringBuilder("expected");
+      String separator = " ";
+      for (int bit = NULL; bit <= STRING; bit <<= 1) {
+        if ((this.types & bit) != 0) {
+          sb.append(separator).append(typeName(bit));
+          separator = " or ";
+        }
+      }
+      return new Violation(sb.append(" but found ").append(typeName(type & ~INTEGER)).toString());
+    }
+
+  }
+
+  private static final class Enum extends Node {
+
+    private final Set<JsonKey> values;
+
+    private final String description;
+
+    private Enum(final Collection<?> values) {
+      super();
+      this.values = new HashSet<>();
+      for (final Object value : values) {
+        this.values.add(new JsonKey(value));
+      }
+      this.description = values.size() == 1 ? "expected " + values.iterator().next() : "expected one of " + values;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      return this.values.contains(new JsonKey(value)) ? null : new Violation(this.description);
+    }
+
+  }
+
+  private static final class Bound extends Node {
+
+    private final BigDecimal bound;
+
+    private final double doubleBound;
+
+    private final boolean exact;
+
+    private final boolean minimum;
+
+    private final boolean exclusive;
+
+    private Bound(final BigDecimal bound, final boolean minimum, final boolean exclusive) {
+      super();
+      this.bound = bound;
+      this.doubleBound = bound.doubleValue();
+      this.exact = Math.abs(this.doubleBound) < EXACT_DOUBLE_LIMIT;
+      this.minimum = minimum;
+      this.exclusive = exclusive;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      if (!(value instanceof Number)) {
+        return null;
+      }
+      final int comparison = this.compareTo((Number)value);
+      if (this.minimum ? (this.exclusive ? comparison > 0 : comparison >= 0) : (this.exclusive ? comparison < 0 : comparison <= 0)) {
+        return null;
+      }
+      return new Violation("expected a number " + (this.minimum ? "greater than " : "less than ") + (this.exclusive ? "" : "or equal to ") + this.bound.toPlainString() + " but found " + value);
+    }
+
+    private final int compareTo(final Number value) {
+      if (value instanceof Double || value instanceof Float) {
+        final double d = value.doubleValue();
+        if (!Double.isNaN(d)) {
+          return d < this.doubleBound ? -1 : d > this.doubleBound ? 1 : 0;
+        }
+      } else if (this.exact && isLong(value)) {
+        final long l = value.longValue();
+        if (l > -EXACT_DOUBLE_LIMIT && l < EXACT_DOUBLE_LIMIT) {
+          final double d = (double)l;
+          return d < this.doubleBound ? -1 : d > this.doubleBound ? 1 : 0;
+        }
+      }
+      final BigDecimal decimal = decimal(value);
+      return decimal == null ? 0 : decimal.compareTo(this.bound);
+    }
+
+  }
+
+  private static final class MultipleOf extends Node {
+
+    private final BigDecimal divisor;
+
+    private final long longDivisor;
+
+    private MultipleOf(final BigDecimal divisor) {
+      super();
+      this.divisor = divisor;
+      long longDivisor = 0L;
+      if (isIntegral(divisor)) {
+        try {
+          longDivisor = divisor.longValueExact();
+        } catch (final ArithmeticException overflow) {
+
+        }
+      }
+      this.longDivisor = longDivisor;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      if (!(value instanceof Number)) {
+        return null;
+      }
+      final boolean multiple;
+      if (this.longDivisor != 0L && isLong((Number)value)) {
+        multiple = ((Number)value).longValue() % this.longDivisor == 0L;
+      } else {
+        final BigDecimal decimal = decimal(value);
+        multiple = decimal == null || decimal.remainder(this.divisor).signum() == 0;
+      }
+      return multiple ? null : new Violation("expected a multiple of " + this.divisor.toPlainString() + " but found " + value);
+    }
+
+  }
+
+  /**
+   * Constrains the number of characters in a string, items in an
+   * array or properties in an object.
+   */
+  private static final class Count extends Node {
+
+    private final int type;
+
+    private final int min;
+
+    private final int max;
+
+    private Count(final int type, final int min, final int max) {
+      super();
+      this.type = type;
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      final int count;
+      switch (this.type) {
+      case STRING:
+        if (!(value instanceof CharSequence)) {
+          return null;
+        }
+        final CharSequence s = (CharSequence)value;
+        final int length = s.length();
+        // A string has at most as many code points as chars, and at
+        // least half as many.
+        if (length < this.min) {
+          count = Character.codePointCount(s, 0, length);
+        } else if (length <= this.max && length / 2 >= this.min) {
+          return null;
+        } else {
+          count = Character.codePointCount(s, 0, length);
+        }
+        break;
+      case ARRAY:
+        if (!(value instanceof List)) {
+          return null;
+        }
+        count = ((List<?>)value).size();
+        break;
+      default:
+        if (!(value instanceof Map)) {
+          return null;
+        }
+        count = ((Map<?, ?>)value).size();
+        break;
+      }
+      if (count < this.min) {
+        return new Violation("expected at least " + this.min + " " + this.noun() + " but found " + count);
+      } else if (count > this.max) {
+        return new Violation("expected at most " + this.max + " " + this.noun() + " but found " + count);
+      }
+      return null;
+    }
+
+    private final String noun() {
+      switch (this.type) {
+      case STRING:
+        return "characters";
+      case ARRAY:
+        return "items";
+      default:
+        return "properties";
+      }
+    }
+
+  }
+
+  private static final class Matches extends Node {
+
+    private final Pattern pattern;
+
+    private Matches(final Pattern pattern) {
+      super();
+      this.pattern = pattern;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      if (!(value instanceof CharSequence) || this.pattern.matcher((CharSequence)value).find()) {
+        return null;
+      }
+      return new Violation("expected a string matching " + this.pattern.pattern());
+    }
+
+  }
+
+  private static final class Items extends Node {
+
+    private final Node[] items;
+
+    private final Node additionalItems;
+
+    /**
+     * Creates a new {@link Items} that applies {@code items[i]} to
+     * the item at {@code i}, and {@code additionalItems} to items
+     * beyond the end of {@code items}.
+     */
+    private Items(final Node[] items, final Node additionalItems) {
+      super();
+      this.items = items;
+      this.additionalItems = additionalItems;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      if (!(value instanceof List)) {
+        return null;
+      }
+      final List<?> list = (List<?>)value;
+      final int size = list.size();
+      for (int i = 0; i < size; i++) {
+        final Node node = i < this.items.length ? this.items[i] : this.additionalItems;
+        if (node == Node.ANY) {
+          if (i >= this.items.length) {
+            break;
+          }
+        } else {
+          final Violation violation = node.check(list.get(i));
+          if (violation != null) {
+            return violation.at(Integer.valueOf(i));
+          }
+        }
+      }
+      return null;
+    }
+
+  }
+
+  private static final class UniqueItems extends Node {
+
+    private static final Node INSTANCE = new UniqueItems();
+
+    private UniqueItems() {
+      super();
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      if (!(value instanceof List)) {
+        return null;
+      }
+      final List<?> list = (List<?>)value;
+      final int size = list.size();
+      if (size > 1) {
+        final Map<JsonKey, Integer> seen = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+          final Integer previous = seen.put(new JsonKey(list.get(i)), Integer.valueOf(i));
+          if (previous != null) {
+            return new Violation("expected unique items but items " + previous + " and " + i + " are equal");
+          }
+        }
+      }
+      return null;
+    }
+
+  }
+
+  private static final class Properties extends Node {
+
+    private final String[] names;
+
+    private final Node[] nodes;
+
+    private final Map<String, Node> nodesByName;
+
+    private final Pattern[] patterns;
+
+    private final Node[] patternNodes;
+
+    private final Node additionalProperties;
+
+    private Properties(final Map<String, Node> nodesByName,
+                       final Pattern[] patterns,
+                       final Node[] patternNodes,
+                       final Node additionalProperties) {
+      super();
+      this.names = nodesByName.keySet().toArray(new String[nodesByName.size()]);
+      this.nodes = new Node[this.names.length];
+      for (int i = 0; i < this.names.length; i++) {
+        this.nodes[i] = nodesByName.get(this.names[i]);
+      }
+      this.nodesByName = nodesByName;
+      this.patterns = patterns;
+      this.patternNodes = patternNodes;
+      this.additionalProperties = additionalProperties;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      if (!(value instanceof Map)) {
+        return null;
+      }
+      final Map<?, ?> map = (Map<?, ?>)value;
+      if (this.patterns.length == 0 && this.additionalProperties == Node.ANY) {
+        // Only named properties are constrained, so look them up
+        // rather than visiting (and, for lazily decoded objects,
+        // decoding) every property.
+        for (int i = 0; i < this.names.length; i++) {
+          if (this.nodes[i] == Node.ANY) {
+            continue;
+          }
+          final String name = this.names[i];
+          final Object propertyValue = map.get(name);
+          if (propertyValue != null || map.containsKey(name)) {
+            final Violation violation = this.nodes[i].check(propertyValue);
+            if (violation != null) {
+              return violation.at(name);
+            }
+          }
+        }
+        return null;
+      }
+      for (final Entry<?, ?> entry : map.entrySet()) {
+        final String name = String.valueOf(entry.getKey());
+        final Object propertyValue = entry.getValue();
+        boolean matched = false;
+        final Node node = this.nodesByName.get(name);
+        if (node != null) {
+          matched = true;
+          final Violation violation = node.check(propertyValue);
+          if (violation != null) {
+            return violation.at(name);
+          }
+        }
+        for (int i = 0; i < this.patterns.length; i++) {
+          if (this.patterns[i].matcher(name).find()) {
+            matched = true;
+            final Violation violation = this.patternNodes[i].check(propertyValue);
+            if (violation != null) {
+              return violation.at(name);
+            }
+          }
+        }
+        if (!matched) {
+          if (this.additionalProperties == Node.NONE) {
+            return new Violation("unexpected property \"" + name + "\"");
+          }
+          final Violation violation = this.additionalProperties.check(propertyValue);
+          if (violation != null) {
+            return violation.at(name);
+          }
+        }
+      }
+      return null;
+    }
+
+  }
+
+  private static final class Required extends Node {
+
+    private final String[] names;
+
+    private Required(final String[] names) {
+      super();
+      this.names = names;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      if (value instanceof Map) {
+        final Map<?, ?> map = (Map<?, ?>)value;
+        for (final String name : this.names) {
+          if (!map.containsKey(name)) {
+            return new Violation("missing required property \"" + name + "\"");
+          }
+        }
+      }
+      return null;
+    }
+
+  }
+
+  private static final class Dependencies extends Node {
+
+    private final String[] names;
+
+    private final Object[] dependencies;
+
+    /**
+     * Creates a new {@link Dependencies}; each element of {@code
+     * dependencies} is either a {@code String[]} of property names
+     * or a {@link Node}.
+     */
+    private Dependencies(final String[] names, final Object[] dependencies) {
+      super();
+      this.names = names;
+      this.dependencies = dependencies;
+    }
+
+    @Override
+    final Violation check(final Object value) {
+      if (value instanceof Map) {
+        final Map<?, ?> map = (Map<?, ?>)value;
+        for (int i = 0; i < this.names.length; i++) {
+          if (map.containsKey(this.names[i])) {
+            final Object dependency = this.dependencies[i];
+            if (dependency instanceof Node) {
+              final Violation violation = ((Node)dependency).check(value);
+              if (violation != null) {
+                return violation;
+              }
+            } else {
+              for (final String name : (String[])dependency) {
+                if (!map.containsKey(name)) {
+                  return new Violation("property \"" + this.names[i] + "\" requires property \"" + name + "\"");
+                }
+              }
+            }
+          }
+        }
+      }
+      return null;
+    }
+
+  }
+
+  /**
+   * Turns schema {@link Map}s into {@link Node}s.
+   *
+   * <p>Each distinct schema {@link Map} is compiled once, so that
+   * schemas reached through several {@code $ref}s share a {@link
+   * Node}, and recursive ones terminate.</p>
+   *
+   * <p>A recursive schema is only meaningful if each trip around the
+   * cycle descends into an element or property value.  A cycle that
+   * returns to a schema for the same value, such as {@code
+   * {"$ref": "#"}} or {@code {"allOf": [{"$ref": "#"}]}}, would
+   * recurse forever during validation, so the reference that closes
+   * it is compiled as if it accepted every value.</p>
+   */
+  private static final class Compiler {
+
+    private final Object root;
+
+    private final Map<Object, Node> nodes;
+
+    /**
+     * The schemas being compiled, indexed by their depth in the
+     * compilation.
+     */
+    private final Map<Object, Integer> pending;
+
+    /**
+     * The value of {@link #descents} when compilation of the pending
+     * schema at each depth began.
+     */
+    private final List<Integer> pendingDescents;
+
+    /**
+     * How many of the schemas being compiled apply to an element or
+     * property value of the value their parent schema applies to.
+     */
+    private int descents;
+
+    /**
+     * The shallowest depth of a pending schema whose cycle has been
+     * cut by the schemas being compiled, or {@link Integer#MAX_VALUE}.
+     */
+    private int cut;
+
+    private Compiler(final Object root) {
+      super();
+      this.root = root;
+      this.nodes = new IdentityHashMap<>();
+      this.pending = new IdentityHashMap<>();
+      this.pendingDescents = new ArrayList<>();
+      this.cut = Integer.MAX_VALUE;
+    }
+
+    private final Node compile(final Object schema) {
+      if (schema instanceof Boolean) {
+        return ((Boolean)schema).booleanValue() ? Node.ANY : Node.NONE;
+      } else if (!(schema instanceof Map)) {
+        return Node.ANY;
+      }
+      final Node compiled = this.nodes.get(schema);
+      if (compiled != null) {
+        final Integer pendingDepth = this.pending.get(schema);
+        if (pendingDepth != null && this.pendingDescents.get(pendingDepth.intValue()).intValue() == this.descents) {
+          // A cycle that consumes no input.
+          this.cut = Math.min(this.cut, pendingDepth.intValue());
+          return Node.ANY;
+        }
+        return compiled;
+      }
+      final int depth = this.pendingDescents.size();
+      final Reference reference = new Reference();
+      this.nodes.put(schema, reference);
+      this.pending.put(schema, Integer.valueOf(depth));
+      this.pendingDescents.add(Integer.valueOf(this.descents));
+      final Node node = this.compileKeywords((Map<?, ?>)schema);
+      this.pendingDescents.remove(depth);
+      this.pending.remove(schema);
+      reference.target = node;
+      if (this.cut < depth) {
+        // The node was compiled with a cycle through an enclosing
+        // schema cut short, so it is not what this schema compiles to
+        // when reached any other way.
+        this.nodes.remove(schema);
+      } else {
+        this.cut = Integer.MAX_VALUE;
+        this.nodes.put(schema, node);
+      }
+      return node;
+    }
+
+    private final Node compileKeywords(final Map<?, ?> schema) {
+      final Object ref = schema.get("$ref");
+      if (ref instanceof String) {
+        // In draft 4, a $ref replaces its sibling keywords.
+        return this.compile(this.resolve((String)ref));
+      }
+
+      final List<Node> nodes = new ArrayList<>();
+
+      final int types = types(schema.get("type"));
+      if (types != 0) {
+        nodes.add(new Type(types));
+      }
+
+      final Object enumValues = schema.get("enum");
+      if (enumValues instanceof List && !((List<?>)enumValues).isEmpty()) {
+        nodes.add(new Enum((List<?>)enumValues));
+      }
+      if (schema.containsKey("const")) {
+        nodes.add(new Enum(Collections.singletonList(schema.get("const"))));
+      }
+
+      this.addBounds(schema, nodes);
+      final BigDecimal multipleOf = decimal(schema.get("multipleOf"));
+      if (multipleOf != null && multipleOf.signum() > 0) {
+        nodes.add(new MultipleOf(multipleOf));
+      }
+
+      addCount(schema, "minLength", "maxLength", STRING, nodes);
+      final Pattern pattern = pattern(schema.get("pattern"));
+      if (pattern != null) {
+        nodes.add(new Matches(pattern));
+      }
+
+      this.addItems(schema, nodes);
+      addCount(schema, "minItems", "maxItems", ARRAY, nodes);
+      if (Boolean.TRUE.equals(schema.get("uniqueItems"))) {
+        nodes.add(UniqueItems.INSTANCE);
+      }
+
+      final String[] required = names(schema.get("required"));
+      if (required != null && required.length > 0) {
+        nodes.add(new Required(required));
+      }
+      addCount(schema, "minProperties", "maxProperties", OBJECT, nodes);
+      this.addProperties(schema, nodes);
+      this.addDependencies(schema, nodes);
+
+      final Object allOf = schema.get("allOf");
+      if (allOf instanceof List) {
+        for (final Object subschema : (List<?>)allOf) {
+          final Node node = this.compile(subschema);
+          if (node != Node.ANY) {
+            nodes.add(node);
+          }
+        }
+      }
+      final Node[] anyOf = this.compileAll(schema.get("anyOf"));
+      if (anyOf != null) {
+        nodes.add(new AnyOf(anyOf));
+      }
+      final Node[] oneOf = this.compileAll(schema.get("oneOf"));
+      if (oneOf != null) {
+        nodes.add(new OneOf(oneOf));
+      }
+      if (schema.containsKey("not")) {
+        nodes.add(new Not(this.compile(schema.get("not"))));
+      }
+
+      switch (nodes.size()) {
+      case 0:
+        return Node.ANY;
+      case 1:
+        return nodes.get(0);
+      default:
+        return new AllOf(nodes.toArray(new Node[nodes.size()]));
+      }
+    }
+
+    private final Object resolve(final String ref) {
+      if (!ref.startsWith("#")) {
+        return null;
+      }
+      Object target = this.root;
+      final String pointer = ref.substring(1);
+      if (!pointer.isEmpty()) {
+        if (!pointer.startsWith("/")) {
+          return null;
+        }
+        for (final String token : pointer.substring(1).split("/", -1)) {
+          final String name = token.replace("~1", "/").replace("~0", "~");
+          if (target instanceof Map) {
+            target = ((Map<?, ?>)target).get(name);
+          } else if (target instanceof List) {
+            final List<?> list = (List<?>)target;
+            try {
+              final int index = Integer.parseInt(name);
+              target = index >= 0 && index < list.size() ? list.get(index) : null;
+            } catch (final NumberFormatException numberFormatException) {
+              return null;
+            }
+          } else {
+            return null;
+          }
+        }
+      }
+      return target;
+    }
+
+    private final Node[] compileAll(final Object schemas) {
+      if (!(schemas instanceof List) || ((List<?>)schemas).isEmpty()) {
+        return null;
+      }
+      final List<?> list = (List<?>)schemas;
+      final Node[] nodes = new Node[list.size()];
+      for (int i = 0; i < nodes.length; i++) {
+        nodes[i] = this.compile(list.get(i));
+      }
+      return nodes;
+    }
+
+    private final void addBounds(final Map<?, ?> schema, final List<Node> nodes) {
+      final BigDecimal minimum = decimal(schema.get("minimum"));
+      final Object exclusiveMinimum = schema.get("exclusiveMinimum");
+      if (minimum != null) {
+        nodes.add(new Bound(minimum, true, Boolean.TRUE.equals(exclusiveMinimum)));
+      }
+      final BigDecimal exclusiveMinimumValue = decimal(exclusiveMinimum);
+      if (exclusiveMinimumValue != null) {
+        nodes.add(new Bound(exclusiveMinimumValue, true, true));
+      }
+      final BigDecimal maximum = decimal(schema.get("maximum"));
+      final Object exclusiveMaximum = schema.get("exclusiveMaximum");
+      if (maximum != null) {
+        nodes.add(new Bound(maximum, false, Boolean.TRUE.equals(exclusiveMaximum)));
+      }
+      final BigDecimal exclusiveMaximumValue = decimal(exclusiveMaximum);
+      if (exclusiveMaximumValue != null) {
+        nodes.add(new Bound(exclusiveMaximumValue, false, true));
+      }
+    }
+
+    private final void addItems(final Map<?, ?> schema, final List<Node> nodes) {
+      // Schemas compiled here apply to elements of the value this one
+      // applies to.
+      this.descents++;
+      final Object items = schema.get("items");
+      if (items instanceof List) {
+        final Node[] tuple = this.compileAll(items);
+        final Node additionalItems = schema.containsKey("additionalItems") ? this.compile(schema.get("additionalItems")) : Node.ANY;
+        if (tuple != null) {
+          nodes.add(new Items(tuple, additionalItems));
+        } else if (additionalItems != Node.ANY) {
+          nodes.add(new Items(new Node[0], additionalItems));
+        }
+      } else if (items != null) {
+        final Node node = this.compile(items);
+        if (node != Node.ANY) {
+          nodes.add(new Items(new Node[0], node));
+        }
+      }
+      this.descents--;
+    }
+
+    private final void addProperties(final Map<?, ?> schema, final List<Node> nodes) {
+      // Schemas compiled here apply to property values of the value
+      // this one applies to.
+      this.descents++;
+      boolean constrained = false;
+      final Map<String, Node> nodesByName = new HashMap<>();
+      final Object properties = schema.get("properties");
+      if (properties instanceof Map) {
+        for (final Entry<?, ?> entry : ((Map<?, ?>)properties).entrySet()) {
+          final Node node = this.compile(entry.getValue());
+          constrained = constrained || node != Node.ANY;
+          nodesByName.put(String.valueOf(entry.getKey()), node);
+        }
+      }
+      final List<Pattern> patterns = new ArrayList<>();
+      final List<Node> patternNodes = new ArrayList<>();
+      final Object patternProperties = schema.get("patternProperties");
+      if (patternProperties instanceof Map) {
+        for (final Entry<?, ?> entry : ((Map<?, ?>)patternProperties).entrySet()) {
+          final Pattern pattern = pattern(entry.getKey());
+          if (pattern != null) {
+            final Node node = this.compile(entry.getValue());
+            constrained = constrained || node != Node.ANY;
+            patterns.add(pattern);
+            patternNodes.add(node);
+          }
+        }
+      }
+      final Object additional = schema.get("additionalProperties");
+      final Node additionalProperties = additional instanceof Map || additional instanceof Boolean ? this.compile(additional) : Node.ANY;
+      // Even properties whose schemas accept everything matter when
+      // additionalProperties is constrained, since they are exempt
+      // from it.
+      if (constrained || additionalProperties != Node.ANY) {
+        nodes.add(new Properties(nodesByName,
+                                 patterns.toArray(new Pattern[patterns.size()]),
+                                 patternNodes.toArray(new Node[patternNodes.size()]),
+                                 additionalProperties));
+      }
+      this.descents--;
+    }
+
+    private final void addDependencies(final Map<?, ?> schema, final List<Node> nodes) {
+      final Object dependencies = schema.get("dependencies");
+      if (dependencies instanceof Map && !((Map<?, ?>)dependencies).isEmpty()) {
+        final List<String> names = new ArrayList<>();
+        final List<Object> compiled = new ArrayList<>();
+        for (final Entry<?, ?> entry : ((Map<?, ?>)dependencies).entrySet()) {
+          final Object dependency = entry.getValue();
+          final Object compiledDependency;
+          if (dependency instanceof List) {
+            compiledDependency = names(dependency);
+          } else if (dependency instanceof Map || dependency instanceof Boolean) {
+            final Node node = this.compile(dependency);
+            compiledDependency = node == Node.ANY ? null : node;
+          } else {
+            compiledDependency = null;
+          }
+          if (compiledDependency != null) {
+            names.add(String.valueOf(entry.getKey()));
+            compiled.add(compiledDependency);
+          }
+        }
+        if (!names.isEmpty()) {
+          nodes.add(new Dependencies(names.toArray(new String[names.size()]), compiled.toArray()));
+        }
+      }
+    }
+
+    private static final void addCount(final Map<?, ?> schema, final String minKeyword, final String maxKeyword, final int type, final List<Node> nodes) {
+      final int min = count(schema.get(minKeyword));
+      final int max = count(schema.get(maxKeyword));
+      if (min > 0 || max >= 0) {
+        nodes.add(new Count(type, Math.max(min, 0), max < 0 ? Integer.MAX_VALUE : max));
+      }
+    }
+
+    private static final int types(final Object type) {
+      if (type instanceof String) {
+        return type((String)type);
+      } else if (type instanceof List) {
+        int types = 0;
+        for (final Object element : (List<?>)type) {
+          final int t = element instanceof String ? type((String)element) : 0;
+          if (t == 0) {
+            return 0;
+          }
+          types |= t;
+        }
+        return types;
+      } else {
+        return 0;
+      }
+    }
+
+    private static final int type(final String type) {
+      switch (type) {
+      case "null":
+        return NULL;
+      case "boolean":
+        return BOOLEAN;
+      case "object":
+        return OBJECT;
+      case "array":
+        return ARRAY;
+      case "number":
+        return NUMBER;
+      case "integer":
+        return INTEGER;
+      case "string":
+        return STRING;
+      default:
+        return 0;
+      }
+    }
+
+    private static final Pattern pattern(final Object pattern) {
+      if (pattern instanceof String) {
+        try {
+          return Pattern.compile((String)pattern);
+        } catch (final PatternSyntaxException patternSyntaxException) {
+
+        }
+      }
+      return null;
+    }
+
+    private static final String[] names(final Object names) {
+      if (!(names instanceof List)) {
+        return null;
+      }
+      final List<?> list = (List<?>)names;
+      final String[] returnValue = new String[list.size()];
+      final Iterator<?> iterator = list.iterator();
+      for (int i = 0; i < returnValue.length; i++) {
+        final Object name = iterator.next();
+        if (!(name instanceof String)) {
+          return null;
+        }
+        returnValue[i] = (String)name;
+      }
+      return returnValue;
+    }
+
+  }
+
+}
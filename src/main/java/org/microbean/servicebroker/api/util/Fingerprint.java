@@ -0,0 +1,404 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.nio.charset.StandardCharsets;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * An immutable SHA-256 digest of the content of some value, computed
+ * by a {@link Hasher} over a canonical encoding of that content.
+ *
+ * <p>Values that are equal as JSON values have equal {@link
+ * Fingerprint}s: {@link Map}s are encoded in key order, {@link Set}s
+ * without regard to iteration order, and numbers by their numeric
+ * value, so that, for example, {@code 1} and {@code 1.0} are
+ * encoded alike.  A {@link Fingerprint} can itself be {@linkplain
+ * Hasher#put(Fingerprint) hashed}, so that the {@link Fingerprint}
+ * of a composite value can be computed from those of its parts, as
+ * in a Merkle tree.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * threads.</p>
+ *
+ * @see Hasher
+ */
+public final class Fingerprint implements Comparable<Fingerprint> {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private static final byte NULL = 0;
+
+  private static final byte FALSE = 1;
+
+  private static final byte TRUE = 2;
+
+  private static final byte NUMBER = 3;
+
+  private static final byte STRING = 4;
+
+  private static final byte LIST = 5;
+
+  private static final byte SET = 6;
+
+  private static final byte MAP = 7;
+
+  private static final byte FINGERPRINT = 8;
+
+  private static final byte OTHER = 9;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final byte[] bytes;
+
+  private final int hashCode;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private Fingerprint(final byte[] bytes) {
+    super();
+    this.bytes = bytes;
+    this.hashCode = (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns a new array containing the 32 bytes of this {@link
+   * Fingerprint}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null} array
+   */
+  @NotNull
+  public final byte[] toByteArray() {
+    return this.bytes.clone();
+  }
+
+  /**
+   * Returns a weak HTTP entity tag derived from this {@link
+   * Fingerprint}, including its enclosing quotation marks, suitable
+   * for use as the value of an {@code ETag} header.
+   *
+   * <p>The tag is weak because equal {@link Fingerprint}s denote
+   * equal content, not identical bytes.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} entity tag
+   */
+  @NotNull
+  public final String toEntityTag() {
+    return "W/\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(this.bytes) + "\"";
+  }
+
+  @Override
+  public final int compareTo(final Fingerprint other) {
+    for (int i = 0; i < this.bytes.length; i++) {
+      final int comparison = (this.bytes[i] & 0xFF) - (other.bytes[i] & 0xFF);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public final int hashCode() {
+    return this.hashCode;
+  }
+
+  @Override
+  public final boolean equals(final Object other) {
+    return other == this || other instanceof Fingerprint && Arrays.equals(this.bytes, ((Fingerprint)other).bytes);
+  }
+
+  /**
+   * Returns the lowercase hexadecimal representation of this {@link
+   * Fingerprint}.
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    final char[] chars = new char[this.bytes.length * 2];
+    for (int i = 0; i < this.bytes.length; i++) {
+      chars[2 * i] = HEX_DIGITS[(this.bytes[i] >> 4) & 0xF];
+      chars[2 * i + 1] = HEX_DIGITS[this.bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * Accumulates a canonical encoding of a sequence of values and
+   * produces a {@link Fingerprint} of it.
+   *
+   * <p>Each value is encoded with a leading type tag and, where
+   * needed, its length, so that distinct sequences of values never
+   * share an encoding.</p>
+   *
+   * <p>Instances of this class are not safe for concurrent use by
+   * multiple threads.</p>
+   */
+  public static final class Hasher {
+
+    private final MessageDigest digest;
+
+    private final byte[] scratch;
+
+    /**
+     * Creates a new {@link Hasher}.
+     */
+    public Hasher() {
+      super();
+      try {
+        this.digest = MessageDigest.getInstance("SHA-256");
+      } catch (final NoSuchAlgorithmException noSuchAlgorithmException) {
+        // Every Java platform is required to support SHA-256.
+        throw new IllegalStateException(noSuchAlgorithmException.getMessage(), noSuchAlgorithmException);
+      }
+      this.scratch = new byte[5];
+    }
+
+    /**
+     * Adds the supplied {@link Fingerprint} to the sequence of values
+     * this {@link Hasher} has accumulated.
+     *
+     * @param fingerprint the {@link Fingerprint}; may be {@code null}
+     *
+     * @return this {@link Hasher}
+     */
+    @NotNull
+    public final Hasher put(final Fingerprint fingerprint) {
+      if (fingerprint == null) {
+        this.digest.update(NULL);
+      } else {
+        this.digest.update(FINGERPRINT);
+        this.digest.update(fingerprint.bytes);
+      }
+      return this;
+    }
+
+    /**
+     * Adds the supplied {@code boolean} to the sequence of values
+     * this {@link Hasher} has accumulated.
+     *
+     * @param value the {@code boolean}
+     *
+     * @return this {@link Hasher}
+     */
+    @NotNull
+    public final Hasher put(final boolean value) {
+      this.digest.update(value ? TRUE : FALSE);
+      return this;
+    }
+
+    /**
+     * Adds the supplied {@link String} to the sequence of values this
+     * {@link Hasher} has accumulated.
+     *
+     * @param value the {@link String}; may be {@code null}
+     *
+     * @return this {@link Hasher}
+     */
+    @NotNull
+    public final Hasher put(final String value) {
+      if (value == null) {
+        this.digest.update(NULL);
+      } else {
+        this.putTagged(STRING, value.getBytes(StandardCharsets.UTF_8));
+      }
+      return this;
+    }
+
+    /**
+     * Adds the supplied value, which may be a {@link Fingerprint},
+     * {@link Boolean}, {@link CharSequence}, {@link Number}, {@link
+     * Map}, {@link Set}, {@link Collection} or array of such values,
+     * to the sequence of values this {@link Hasher} has accumulated.
+     *
+     * <p>Values of any other type are encoded by their class name
+     * and {@linkplain Object#toString() string form}.</p>
+     *
+     * @param value the value; may be {@code null}
+     *
+     * @return this {@link Hasher}
+     */
+    @NotNull
+    public final Hasher put(final Object value) {
+      if (value == null) {
+        this.digest.update(NULL);
+      } else if (value instanceof Fingerprint) {
+        this.put((Fingerprint)value);
+      } else if (value instanceof Boolean) {
+        this.put(((Boolean)value).booleanValue());
+      } else if (value instanceof CharSequence) {
+        this.put(value.toString());
+      } else if (value instanceof Number) {
+        this.putTagged(NUMBER, canonicalize((Number)value).getBytes(StandardCharsets.US_ASCII));
+      } else if (value instanceof Map) {
+        final Map<?, ?> map = (Map<?, ?>)value;
+        final Map<String, Object> sorted = new TreeMap<>();
+        for (final Map.Entry<?, ?> entry : map.entrySet()) {
+          sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        this.putHeader(MAP, sorted.size());
+        for (final Map.Entry<String, Object> entry : sorted.entrySet()) {
+          this.put(entry.getKey());
+          this.put(entry.getValue());
+        }
+      } else if (value instanceof Set) {
+        final Set<?> set = (Set<?>)value;
+        final List<Fingerprint> fingerprints = new ArrayList<>(set.size());
+        for (final Object element : set) {
+          fingerprints.add(element instanceof Fingerprint ? (Fingerprint)element : new Hasher().put(element).fingerprint());
+        }
+        fingerprints.sort(null);
+        this.putHeader(SET, fingerprints.size());
+        for (final Fingerprint fingerprint : fingerprints) {
+          this.digest.update(fingerprint.bytes);
+        }
+      } else if (value instanceof Collection) {
+        final Collection<?> collection = (Collection<?>)value;
+        this.putHeader(LIST, collection.size());
+        for (final Object element : collection) {
+          this.put(element);
+        }
+      } else if (value instanceof Object[]) {
+        final Object[] array = (Object[])value;
+        this.putHeader(LIST, array.length);
+        for (final Object element : array) {
+          this.put(element);
+        }
+      } else {
+        this.putTagged(OTHER, (value.getClass().getName() + ':' + value).getBytes(StandardCharsets.UTF_8));
+      }
+      return this;
+    }
+
+    /**
+     * Returns a {@link Fingerprint} of the sequence of values this
+     * {@link Hasher} has accumulated, and resets it.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link Fingerprint}
+     */
+    @NotNull
+    public final Fingerprint fingerprint() {
+      return new Fingerprint(this.digest.digest());
+    }
+
+    private final void putTagged(final byte tag, final byte[] bytes) {
+      this.putHeader(tag, bytes.length);
+      this.digest.update(bytes);
+    }
+
+    private final void putHeader(final byte tag, final int length) {
+      this.scratch[0] = tag;
+      this.scratch[1] = (byte)(length >>> 24);
+      this.scratch[2] = (byte)(length >>> 16);
+      this.scratch[3] = (byte)(length >>> 8);
+      this.scratch[4] = (byte)length;
+      this.digest.update(this.scratch, 0, 5);
+    }
+
+    /**
+     * Returns a string form of the supplied {@link Number} that is
+     * the same for all {@link Number}s with the same numeric value.
+     */
+    private static final String canonicalize(final Number number) {
+      Objects.requireNonNull(number);
+      if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+        return Long.toString(number.longValue());
+      }
+      final BigDecimal decimal;
+      if (number instanceof BigDecimal) {
+        decimal = (BigDecimal)number;
+      } else if (number instanceof BigInteger) {
+        decimal = new BigDecimal((BigInteger)number);
+      } else if (number instanceof Double || number instanceof Float) {
+        final double d = number.doubleValue();
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+          return Double.toString(d);
+        }
+        decimal = BigDecimal.valueOf(d);
+      } else {
+        try {
+          decimal = new BigDecimal(number.toString());
+        } catch (final NumberFormatException numberFormatException) {
+          return number.toString();
+        }
+      }
+      if (decimal.signum() == 0) {
+        return "0";
+      }
+      final BigDecimal stripped = decimal.stripTrailingZeros();
+      if (stripped.scale() <= 0 && stripped.precision() - stripped.scale() <= 19) {
+        final BigInteger integer = stripped.toBigInteger();
+        if (integer.bitLength() < 64) {
+          return Long.toString(integer.longValue());
+        }
+      }
+      return stripped.toString();
+    }
+
+  }
+
+}
@@ -0,0 +1,274 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable {@link Map} that stores its keys and values,
+ * interleaved, in a single array in iteration order.
+ *
+ * <p>Like {@link ImmutableArraySet}, small instances answer lookups
+ * by scanning and larger ones build a compact index of {@code int}
+ * positions.  {@link Map.Entry} objects are created only when the
+ * {@linkplain #entrySet() entry set} is iterated.</p>
+ *
+ * <p>{@code null} keys and values are permitted.</p>
+ *
+ * @param <K> the type of key
+ *
+ * @param <V> the type of value
+ *
+ * @see #copyOf(Map)
+ *
+ * @see ImmutableArraySet
+ */
+public final class ImmutableArrayMap<K, V> extends AbstractMap<K, V> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Object[] keysAndValues;
+
+  private final int[] index;
+
+  private transient Set<Map.Entry<K, V>> entrySet;
+
+  private int hashCode;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private ImmutableArrayMap(final Object[] keysAndValues) {
+    super();
+    this.keysAndValues = keysAndValues;
+    this.index = keysAndValues.length / 2 < ImmutableArraySet.INDEX_THRESHOLD ? null : ImmutableArraySet.buildIndex(keysAndValues, 2);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Override
+  public final int size() {
+    return this.keysAndValues.length / 2;
+  }
+
+  @Override
+  public final boolean isEmpty() {
+    return this.keysAndValues.length == 0;
+  }
+
+  @Override
+  public final boolean containsKey(final Object key) {
+    return ImmutableArraySet.indexOf(this.keysAndValues, 2, this.index, key) >= 0;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public final V get(final Object key) {
+    final int position = ImmutableArraySet.indexOf(this.keysAndValues, 2, this.index, key);
+    return position < 0 ? null : (V)this.keysAndValues[position * 2 + 1];
+  }
+
+  /**
+   * Returns a new {@link ImmutableArrayMap} with the mappings of this
+   * one, except that the supplied {@code key} is mapped to the
+   * supplied {@code value}.
+   *
+   * <p>If {@code key} is already present it keeps its position in
+   * iteration order; otherwise it is added at the end.  This {@link
+   * ImmutableArrayMap} is not affected.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the key; may be {@code null}
+   *
+   * @param value the value; may be {@code null}
+   *
+   * @return a new, non-{@code null} {@link ImmutableArrayMap}
+   */
+  public final ImmutableArrayMap<K, V> with(final K key, final V value) {
+    final int position = ImmutableArraySet.indexOf(this.keysAndValues, 2, this.index, key);
+    final Object[] keysAndValues;
+    if (position < 0) {
+      keysAndValues = new Object[this.keysAndValues.length + 2];
+      System.arraycopy(this.keysAndValues, 0, keysAndValues, 0, this.keysAndValues.length);
+      keysAndValues[this.keysAndValues.length] = key;
+      keysAndValues[this.keysAndValues.length + 1] = value;
+    } else {
+      keysAndValues = this.keysAndValues.clone();
+      keysAndValues[position * 2 + 1] = value;
+    }
+    return new ImmutableArrayMap<>(keysAndValues);
+  }
+
+  @Override
+  public final Set<Map.Entry<K, V>> entrySet() {
+    Set<Map.Entry<K, V>> entrySet = this.entrySet;
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+      this.entrySet = entrySet;
+    }
+    return entrySet;
+  }
+
+  @Override
+  public final int hashCode() {
+    int hashCode = this.hashCode;
+    if (hashCode == 0) {
+      for (int i = 0; i < this.keysAndValues.length; i += 2) {
+        final Object key = this.keysAndValues[i];
+        final Object value = this.keysAndValues[i + 1];
+        hashCode += (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+      }
+      this.hashCode = hashCode;
+    }
+    return hashCode;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns an {@link ImmutableArrayMap} containing the single
+   * supplied mapping.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <K> the type of key
+   *
+   * @param <V> the type of value
+   *
+   * @param key the key; may be {@code null}
+   *
+   * @param value the value; may be {@code null}
+   *
+   * @return a new, non-{@code null} {@link ImmutableArrayMap}
+   *
+   * @see #with(Object, Object)
+   */
+  public static final <K, V> ImmutableArrayMap<K, V> of(final K key, final V value) {
+    return new ImmutableArrayMap<>(new Object[] { key, value });
+  }
+
+  /**
+   * Returns an immutable {@link Map} containing the mappings of the
+   * supplied {@link Map} in its iteration order.
+   *
+   * <p>If {@code map} is {@code null} or empty, {@link
+   * Collections#emptyMap()} is returned.  If it is already an {@link
+   * ImmutableArrayMap}, it is returned as is.</p>
+   *
+   * <p>The values themselves are not copied.</p>
+   *
+   * <p>{@code map} may be modified concurrently only if it is safe
+   * for concurrent use, such as a {@link
+   * java.util.concurrent.ConcurrentHashMap}, in which case the
+   * copy is only as consistent as that {@link Map}'s
+   * iterators.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <K> the type of key
+   *
+   * @param <V> the type of value
+   *
+   * @param map the {@link Map} to copy; may be {@code null}
+   *
+   * @return a non-{@code null}, immutable {@link Map}
+   */
+  @SuppressWarnings("unchecked")
+  public static final <K, V> Map<K, V> copyOf(final Map<? extends K, ? extends V> map) {
+    if (map == null || map.isEmpty()) {
+      return Collections.emptyMap();
+    } else if (map instanceof ImmutableArrayMap) {
+      return (Map<K, V>)map;
+    }
+    // Copy the entries in one step, so that a Map that grows or
+    // shrinks meanwhile cannot overrun or underfill the array.
+    final Object[] entries = map.entrySet().toArray();
+    final Object[] keysAndValues = new Object[entries.length * 2];
+    int i = 0;
+    for (final Object entry : entries) {
+      keysAndValues[i++] = ((Map.Entry<?, ?>)entry).getKey();
+      keysAndValues[i++] = ((Map.Entry<?, ?>)entry).getValue();
+    }
+    return new ImmutableArrayMap<>(keysAndValues);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+    private EntrySet() {
+      super();
+    }
+
+    @Override
+    public final int size() {
+      return ImmutableArrayMap.this.size();
+    }
+
+    @Override
+    public final Iterator<Map.Entry<K, V>> iterator() {
+      return new Iterator<Map.Entry<K, V>>() {
+          private int next;
+
+          @Override
+          public final boolean hasNext() {
+            return this.next < keysAndValues.length;
+          }
+
+          @Override
+          @SuppressWarnings("unchecked")
+          public final Map.Entry<K, V> next() {
+            if (this.next >= keysAndValues.length) {
+              throw new NoSuchElementException();
+            }
+            final Map.Entry<K, V> entry =
+              new AbstractMap.SimpleImmutableEntry<>((K)keysAndValues[this.next], (V)keysAndValues[this.next + 1]);
+            this.next += 2;
+            return entry;
+          }
+        };
+    }
+
+  }
+
+}
@@ -0,0 +1,331 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable {@link Set} that stores its elements in a single array
+ * in iteration order.
+ *
+ * <p>Small instances answer {@link #contains(Object)} by scanning the
+ * array; larger ones build a compact open-addressing index of {@code
+ * int} positions alongside it.  Either way an instance costs a
+ * fraction of what a {@link java.util.LinkedHashSet} holding the same
+ * elements costs, since there is no per-element entry object.</p>
+ *
+ * <p>{@code null} elements are permitted.</p>
+ *
+ * @param <E> the type of element
+ *
+ * @see #copyOf(Collection)
+ *
+ * @see ImmutableArrayMap
+ */
+public final class ImmutableArraySet<E> extends AbstractSet<E> {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The size at or above which instances index their elements rather
+   * than scanning them.
+   */
+  static final int INDEX_THRESHOLD = 9;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Object[] elements;
+
+  private final int[] index;
+
+  private int hashCode;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private ImmutableArraySet(final Object[] elements) {
+    super();
+    this.elements = elements;
+    this.index = elements.length < INDEX_THRESHOLD ? null : buildIndex(elements, 1);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Override
+  public final int size() {
+    return this.elements.length;
+  }
+
+  @Override
+  public final boolean isEmpty() {
+    return this.elements.length == 0;
+  }
+
+  @Override
+  public final boolean contains(final Object object) {
+    return indexOf(this.elements, 1, this.index, object) >= 0;
+  }
+
+  @Override
+  public final Iterator<E> iterator() {
+    return new ArrayIterator<>(this.elements);
+  }
+
+  @Override
+  public final Object[] toArray() {
+    return this.elements.clone();
+  }
+
+  @Override
+  public final int hashCode() {
+    int hashCode = this.hashCode;
+    if (hashCode == 0) {
+      for (final Object element : this.elements) {
+        hashCode += element == null ? 0 : element.hashCode();
+      }
+      this.hashCode = hashCode;
+    }
+    return hashCode;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns an immutable {@link Set} containing the elements of the
+   * supplied {@link Collection} in its iteration order, discarding
+   * duplicates.
+   *
+   * <p>If {@code collection} is {@code null} or empty, {@link
+   * Collections#emptySet()} is returned.  If it is already an {@link
+   * ImmutableArraySet}, it is returned as is.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <E> the type of element
+   *
+   * @param collection the {@link Collection} to copy; may be {@code
+   * null}
+   *
+   * @return a non-{@code null}, immutable {@link Set}
+   */
+  @SuppressWarnings("unchecked")
+  public static final <E> Set<E> copyOf(final Collection<? extends E> collection) {
+    if (collection == null || collection.isEmpty()) {
+      return Collections.emptySet();
+    } else if (collection instanceof ImmutableArraySet) {
+      return (Set<E>)collection;
+    }
+    Object[] elements = collection.toArray();
+    if (!(collection instanceof Set)) {
+      elements = distinct(elements);
+    }
+    return new ImmutableArraySet<>(elements);
+  }
+
+  /**
+   * Returns an immutable {@link Set} containing the elements of the
+   * supplied {@link Collection}, which the caller guarantees contains
+   * no duplicates, in its iteration order.
+   *
+   * <p>Unlike {@link #copyOf(Collection)}, this method does not look
+   * for duplicates, which costs time quadratic in the size of a
+   * {@link Collection} that is not a {@link Set}.  If {@code
+   * collection} does contain duplicates, the returned {@link Set}
+   * will too, and will violate the {@link Set} contract.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <E> the type of element
+   *
+   * @param collection the {@link Collection} of distinct elements to
+   * copy; may be {@code null}
+   *
+   * @return a non-{@code null}, immutable {@link Set}
+   *
+   * @see #copyOf(Collection)
+   */
+  @SuppressWarnings("unchecked")
+  public static final <E> Set<E> copyOfDistinct(final Collection<? extends E> collection) {
+    if (collection == null || collection.isEmpty()) {
+      return Collections.emptySet();
+    } else if (collection instanceof ImmutableArraySet) {
+      return (Set<E>)collection;
+    }
+    return new ImmutableArraySet<>(collection.toArray());
+  }
+
+  private static final Object[] distinct(final Object[] elements) {
+    final int length = elements.length;
+    if (length < 2) {
+      return elements;
+    }
+    final Object[] distinct = new Object[length];
+    int size = 0;
+    for (final Object element : elements) {
+      boolean seen = false;
+      for (int i = 0; i < size; i++) {
+        if (Objects.equals(distinct[i], element)) {
+          seen = true;
+          break;
+        }
+      }
+      if (!seen) {
+        distinct[size++] = element;
+      }
+    }
+    if (size == length) {
+      return distinct;
+    }
+    final Object[] trimmed = new Object[size];
+    System.arraycopy(distinct, 0, trimmed, 0, size);
+    return trimmed;
+  }
+
+  /**
+   * Builds an open-addressing index over every {@code stride}th
+   * element of {@code array}.
+   *
+   * <p>Each slot of the returned array holds {@code 0} if it is empty
+   * or one more than the position, in units of {@code stride}, of an
+   * element of {@code array}.  The table is a power of two in size and
+   * at most half full.</p>
+   *
+   * @param array the array to index; must not be {@code null}
+   *
+   * @param stride the distance between indexed elements
+   *
+   * @return the index
+   */
+  static final int[] buildIndex(final Object[] array, final int stride) {
+    final int size = array.length / stride;
+    final int[] index = new int[Integer.highestOneBit(size) << 2];
+    final int mask = index.length - 1;
+    for (int i = 0; i < size; i++) {
+      int slot = spread(array[i * stride]) & mask;
+      while (index[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      index[slot] = i + 1;
+    }
+    return index;
+  }
+
+  /**
+   * Returns the position, in units of {@code stride}, of the element
+   * of {@code array} that is equal to {@code object}, or {@code -1}.
+   *
+   * @param array the array to search; must not be {@code null}
+   *
+   * @param stride the distance between searched elements
+   *
+   * @param index the index {@linkplain #buildIndex(Object[], int)
+   * built} over {@code array}, or {@code null} if the array is to be
+   * scanned
+   *
+   * @param object the object to search for; may be {@code null}
+   *
+   * @return the position of the element equal to {@code object}, or
+   * {@code -1}
+   */
+  static final int indexOf(final Object[] array, final int stride, final int[] index, final Object object) {
+    if (index == null) {
+      for (int i = 0; i < array.length; i += stride) {
+        if (Objects.equals(array[i], object)) {
+          return i / stride;
+        }
+      }
+    } else {
+      final int mask = index.length - 1;
+      int slot = spread(object) & mask;
+      int position;
+      while ((position = index[slot]) != 0) {
+        if (Objects.equals(array[(position - 1) * stride], object)) {
+          return position - 1;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+    return -1;
+  }
+
+  private static final int spread(final Object object) {
+    if (object == null) {
+      return 0;
+    }
+    final int h = object.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  private static final class ArrayIterator<E> implements Iterator<E> {
+
+    private final Object[] elements;
+
+    private int next;
+
+    private ArrayIterator(final Object[] elements) {
+      super();
+      this.elements = elements;
+    }
+
+    @Override
+    public final boolean hasNext() {
+      return this.next < this.elements.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final E next() {
+      if (this.next >= this.elements.length) {
+        throw new NoSuchElementException();
+      }
+      return (E)this.elements[this.next++];
+    }
+
+  }
+
+}
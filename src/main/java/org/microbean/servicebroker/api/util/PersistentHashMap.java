@@ -0,0 +1,498 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable {@link java.util.Map} implemented as a hash array
+ * mapped trie, whose {@link #with(Object, Object)} and {@link
+ * #without(Object)} methods return new {@link PersistentHashMap}s
+ * that share all but the O(log<sub>32</sub> n) nodes on the path to
+ * the affected key with the original.
+ *
+ * <p>{@code null} keys are not permitted; {@code null} values
+ * are.</p>
+ *
+ * <p>Iteration order is unspecified but stable for a given
+ * instance.</p>
+ *
+ * <p>Instances of this class are immutable and safe for concurrent
+ * use by multiple threads.</p>
+ *
+ * @param <K> the type of key
+ *
+ * @param <V> the type of value
+ *
+ * @see #empty()
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+  private static final Object NOT_FOUND = new Object();
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Node root;
+
+  private final int size;
+
+  private Set<Entry<K, V>> entrySet;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private PersistentHashMap(final Node root, final int size) {
+    super();
+    this.root = root;
+    this.size = size;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Override
+  public final int size() {
+    return this.size;
+  }
+
+  @Override
+  public final boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  @Override
+  public final boolean containsKey(final Object key) {
+    return key != null && this.root != null && this.root.find(0, hash(key), key) != NOT_FOUND;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public final V get(final Object key) {
+    if (key == null || this.root == null) {
+      return null;
+    }
+    final Object value = this.root.find(0, hash(key), key);
+    return value == NOT_FOUND ? null : (V)value;
+  }
+
+  /**
+   * Returns a {@link PersistentHashMap} that maps the supplied key to
+   * the supplied value and is otherwise identical to this one.
+   *
+   * <p>If this {@link PersistentHashMap} already maps the supplied
+   * key to the very same value, it is returned as is.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @param value the value; may be {@code null}
+   *
+   * @return a non-{@code null} {@link PersistentHashMap}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   */
+  public final PersistentHashMap<K, V> with(final K key, final V value) {
+    Objects.requireNonNull(key, () -> "key must not be null");
+    final boolean[] added = new boolean[1];
+    final Node root = (this.root == null ? BitmapNode.EMPTY : this.root).with(0, hash(key), key, value, added);
+    if (root == this.root) {
+      return this;
+    }
+    return new PersistentHashMap<>(root, added[0] ? this.size + 1 : this.size);
+  }
+
+  /**
+   * Returns a {@link PersistentHashMap} that does not map the
+   * supplied key and is otherwise identical to this one.
+   *
+   * <p>If this {@link PersistentHashMap} does not map the supplied
+   * key, it is returned as is.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the key; may be {@code null}
+   *
+   * @return a non-{@code null} {@link PersistentHashMap}
+   */
+  @SuppressWarnings("unchecked")
+  public final PersistentHashMap<K, V> without(final Object key) {
+    if (!this.containsKey(key)) {
+      return this;
+    }
+    final Node root = this.root.without(0, hash(key), key);
+    return root == null ? (PersistentHashMap<K, V>)EMPTY : new PersistentHashMap<>(root, this.size - 1);
+  }
+
+  @Override
+  public final Set<Entry<K, V>> entrySet() {
+    Set<Entry<K, V>> entrySet = this.entrySet;
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+      this.entrySet = entrySet;
+    }
+    return entrySet;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns an empty {@link PersistentHashMap}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <K> the type of key
+   *
+   * @param <V> the type of value
+   *
+   * @return a non-{@code null}, empty {@link PersistentHashMap}
+   */
+  @SuppressWarnings("unchecked")
+  public static final <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>)EMPTY;
+  }
+
+  private static final int hash(final Object key) {
+    final int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static final int bit(final int hash, final int shift) {
+    return 1 << ((hash >>> shift) & 31);
+  }
+
+  /**
+   * Returns a {@link Node} holding the two supplied mappings, whose
+   * keys must differ.
+   */
+  private static final Node pair(final int shift,
+                                 final Object key1, final Object value1,
+                                 final int hash2, final Object key2, final Object value2) {
+    final int hash1 = hash(key1);
+    if (hash1 == hash2) {
+      return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+    }
+    final boolean[] added = new boolean[1];
+    return BitmapNode.EMPTY.with(shift, hash1, key1, value1, added).with(shift, hash2, key2, value2, added);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A node of the trie, whose {@link #array} holds keys at even
+   * indices and their values at odd ones.
+   *
+   * <p>In a {@link BitmapNode}, a {@code null} key means that the
+   * value that follows it is a child {@link Node}.</p>
+   */
+  private abstract static class Node {
+
+    final Object[] array;
+
+    private Node(final Object[] array) {
+      super();
+      this.array = array;
+    }
+
+    /**
+     * Returns the value the supplied key maps to, or {@link
+     * #NOT_FOUND}.
+     */
+    abstract Object find(final int shift, final int hash, final Object key);
+
+    /**
+     * Returns a {@link Node} that maps the supplied key to the
+     * supplied value and is otherwise identical to this one, setting
+     * {@code added[0]} if the key was not already mapped; returns
+     * this very {@link Node} if nothing would change.
+     */
+    abstract Node with(final int shift, final int hash, final Object key, final Object value, final boolean[] added);
+
+    /**
+     * Returns a {@link Node} that does not map the supplied key, which
+     * must be mapped, and is otherwise identical to this one, or
+     * {@code null} if it would be empty.
+     */
+    abstract Node without(final int shift, final int hash, final Object key);
+
+  }
+
+  private static final class BitmapNode extends Node {
+
+    private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    private final int bitmap;
+
+    private BitmapNode(final int bitmap, final Object[] array) {
+      super(array);
+      this.bitmap = bitmap;
+    }
+
+    @Override
+    final Object find(final int shift, final int hash, final Object key) {
+      final int bit = bit(hash, shift);
+      if ((this.bitmap & bit) == 0) {
+        return NOT_FOUND;
+      }
+      final int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+      final Object k = this.array[index];
+      final Object v = this.array[index + 1];
+      if (k == null) {
+        return ((Node)v).find(shift + 5, hash, key);
+      }
+      return key.equals(k) ? v : NOT_FOUND;
+    }
+
+    @Override
+    final Node with(final int shift, final int hash, final Object key, final Object value, final boolean[] added) {
+      final int bit = bit(hash, shift);
+      final int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+      if ((this.bitmap & bit) == 0) {
+        final Object[] array = new Object[this.array.length + 2];
+        System.arraycopy(this.array, 0, array, 0, index);
+        array[index] = key;
+        array[index + 1] = value;
+        System.arraycopy(this.array, index, array, index + 2, this.array.length - index);
+        added[0] = true;
+        return new BitmapNode(this.bitmap | bit, array);
+      }
+      final Object k = this.array[index];
+      final Object v = this.array[index + 1];
+      if (k == null) {
+        final Node child = ((Node)v).with(shift + 5, hash, key, value, added);
+        return child == v ? this : new BitmapNode(this.bitmap, set(this.array, index + 1, child));
+      } else if (key.equals(k)) {
+        return value == v ? this : new BitmapNode(this.bitmap, set(this.array, index + 1, value));
+      }
+      added[0] = true;
+      final Object[] array = set(this.array, index + 1, pair(shift + 5, k, v, hash, key, value));
+      array[index] = null;
+      return new BitmapNode(this.bitmap, array);
+    }
+
+    @Override
+    final Node without(final int shift, final int hash, final Object key) {
+      final int bit = bit(hash, shift);
+      final int index = 2 * Integer.bitCount(this.bitmap & (bit - 1));
+      final Object k = this.array[index];
+      if (k == null) {
+        final Node child = ((Node)this.array[index + 1]).without(shift + 5, hash, key);
+        if (child != null) {
+          return new BitmapNode(this.bitmap, set(this.array, index + 1, child));
+        }
+      }
+      if (this.bitmap == bit) {
+        return null;
+      }
+      final Object[] array = new Object[this.array.length - 2];
+      System.arraycopy(this.array, 0, array, 0, index);
+      System.arraycopy(this.array, index + 2, array, index, array.length - index);
+      return new BitmapNode(this.bitmap ^ bit, array);
+    }
+
+    private static final Object[] set(final Object[] array, final int index, final Object value) {
+      final Object[] returnValue = array.clone();
+      returnValue[index] = value;
+      return returnValue;
+    }
+
+  }
+
+  /**
+   * A {@link Node} holding mappings for distinct keys whose hashes
+   * are all equal.
+   */
+  private static final class CollisionNode extends Node {
+
+    private final int hash;
+
+    private CollisionNode(final int hash, final Object[] array) {
+      super(array);
+      this.hash = hash;
+    }
+
+    @Override
+    final Object find(final int shift, final int hash, final Object key) {
+      final int index = this.indexOf(key);
+      return index < 0 ? NOT_FOUND : this.array[index + 1];
+    }
+
+    @Override
+    final Node with(final int shift, final int hash, final Object key, final Object value, final boolean[] added) {
+      if (hash != this.hash) {
+        return new BitmapNode(bit(this.hash, shift), new Object[] { null, this }).with(shift, hash, key, value, added);
+      }
+      final int index = this.indexOf(key);
+      if (index >= 0) {
+        if (this.array[index + 1] == value) {
+          return this;
+        }
+        final Object[] array = this.array.clone();
+        array[index + 1] = value;
+        return new CollisionNode(hash, array);
+      }
+      final Object[] array = new Object[this.array.length + 2];
+      System.arraycopy(this.array, 0, array, 0, this.array.length);
+      array[this.array.length] = key;
+      array[this.array.length + 1] = value;
+      added[0] = true;
+      return new CollisionNode(hash, array);
+    }
+
+    @Override
+    final Node without(final int shift, final int hash, final Object key) {
+      if (this.array.length == 2) {
+        return null;
+      }
+      final int index = this.indexOf(key);
+      final Object[] array = new Object[this.array.length - 2];
+      System.arraycopy(this.array, 0, array, 0, index);
+      System.arraycopy(this.array, index + 2, array, index, array.length - index);
+      return new CollisionNode(hash, array);
+    }
+
+    private final int indexOf(final Object key) {
+      for (int i = 0; i < this.array.length; i += 2) {
+        if (key.equals(this.array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+  }
+
+  private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+    private EntrySet() {
+      super();
+    }
+
+    @Override
+    public final int size() {
+      return PersistentHashMap.this.size;
+    }
+
+    @Override
+    public final Iterator<Entry<K, V>> iterator() {
+      return new EntryIterator(PersistentHashMap.this.root);
+    }
+
+  }
+
+  /**
+   * Walks the trie depth-first, keeping the arrays of the {@link
+   * Node}s on the current path and a position in each.
+   */
+  private final class EntryIterator implements Iterator<Entry<K, V>> {
+
+    // Seven levels of five bits each cover a 32-bit hash; one more
+    // accommodates a CollisionNode.
+    private final Object[][] arrays;
+
+    private final int[] positions;
+
+    private int depth;
+
+    private Object nextKey;
+
+    private Object nextValue;
+
+    private EntryIterator(final Node root) {
+      super();
+      this.arrays = new Object[8][];
+      this.positions = new int[8];
+      this.depth = root == null ? -1 : 0;
+      if (root != null) {
+        this.arrays[0] = root.array;
+      }
+      this.advance();
+    }
+
+    private final void advance() {
+      this.nextKey = null;
+      while (this.depth >= 0) {
+        final Object[] array = this.arrays[this.depth];
+        final int position = this.positions[this.depth];
+        if (position >= array.length) {
+          this.depth--;
+          continue;
+        }
+        this.positions[this.depth] = position + 2;
+        final Object key = array[position];
+        if (key == null) {
+          this.depth++;
+          this.arrays[this.depth] = ((Node)array[position + 1]).array;
+          this.positions[this.depth] = 0;
+        } else {
+          this.nextKey = key;
+          this.nextValue = array[position + 1];
+          return;
+        }
+      }
+    }
+
+    @Override
+    public final boolean hasNext() {
+      return this.nextKey != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final Entry<K, V> next() {
+      if (this.nextKey == null) {
+        throw new NoSuchElementException();
+      }
+      final Entry<K, V> entry = new SimpleImmutableEntry<>((K)this.nextKey, (V)this.nextValue);
+      this.advance();
+      return entry;
+    }
+
+  }
+
+}
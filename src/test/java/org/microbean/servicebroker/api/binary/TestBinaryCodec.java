@@ -0,0 +1,168 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.binary;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.net.URI;
+
+import java.nio.ByteBuffer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.microbean.servicebroker.api.AbstractStatefulObject;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.query.LastOperationQuery;
+
+import org.microbean.servicebroker.api.query.state.Catalog;
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+import org.microbean.servicebroker.api.query.state.LastOperation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBinaryCodec {
+
+  public TestBinaryCodec() {
+    super();
+  }
+
+  @Test
+  public void testValuesRoundTrip() throws MalformedBinaryException {
+    final Map<String, Object> value = parameters();
+    final BinaryWriter writer = new BinaryWriter();
+    writer.writeValue(value);
+    final ByteBuffer message = writer.endMessage();
+    final BinaryReader reader = new BinaryReader();
+    assertTrue(reader.beginMessage(message));
+    assertEquals(value, reader.readValue());
+    assertFalse(reader.hasMore());
+    reader.endMessage();
+    assertFalse(message.hasRemaining());
+  }
+
+  @Test
+  public void testObjectsRoundTrip() throws Exception {
+    final Map<String, Object> parameters = parameters();
+    final List<AbstractStatefulObject> objects = Arrays.asList(
+      new ProvisionServiceInstanceCommand("instance", "service", "plan", Collections.singletonMap("platform", "cloudfoundry"), true, "organization", "space", parameters),
+      new UpdateServiceInstanceCommand("instance", null, "service", "plan-2", parameters, false,
+                                       new UpdateServiceInstanceCommand.PreviousValues("service", "plan", "organization", "space")),
+      new DeleteServiceInstanceCommand("instance", "service", "plan", true),
+      new ProvisionBindingCommand("binding", "instance", "service", "plan",
+                                  new ProvisionBindingCommand.BindResource("application", new URI("http://route.example.com")), parameters),
+      new DeleteBindingCommand("binding", "instance", "service", "plan"),
+      new ProvisionServiceInstanceCommand.Response(new URI("http://dashboard.example.com"), "operation"),
+      new UpdateServiceInstanceCommand.Response("operation"),
+      new DeleteServiceInstanceCommand.Response(),
+      new ProvisionBindingCommand.Response(parameters, new URI("syslog://drain.example.com"), null,
+                                           Collections.singleton(Collections.singletonMap("key", "value"))),
+      new DeleteBindingCommand.Response(),
+      new LastOperationQuery("service", "instance", "plan", "operation"),
+      new LastOperation(LastOperation.State.FAILED, "description"),
+      catalog());
+    for (final AbstractStatefulObject object : objects) {
+      final ByteBuffer encoded = BinaryCodec.encode(object);
+      final AbstractStatefulObject decoded = BinaryCodec.decode(encoded.duplicate(), object.getClass());
+      assertEquals(object.getClass(), decoded.getClass());
+      // Objects do not all define equals(Object), so compare their
+      // encodings.
+      assertEquals(object.getClass().getName(), encoded, BinaryCodec.encode(decoded));
+    }
+    final ProvisionServiceInstanceCommand command =
+      BinaryCodec.decode(BinaryCodec.encode(objects.get(0)), ProvisionServiceInstanceCommand.class);
+    assertEquals("instance", command.getInstanceId());
+    assertEquals("organization", command.getOrganizationGuid());
+    assertEquals(parameters, command.getParameters());
+    final Catalog catalog = BinaryCodec.decode(BinaryCodec.encode(objects.get(objects.size() - 1)), Catalog.class);
+    assertTrue(catalog.contentEquals((Catalog)objects.get(objects.size() - 1)));
+  }
+
+  @Test
+  public void testRejectsTruncatedMessages() {
+    final ByteBuffer encoded = BinaryCodec.encode(catalog());
+    for (int length = 0; length < encoded.remaining(); length++) {
+      final ByteBuffer truncated = encoded.duplicate();
+      truncated.limit(length);
+      try {
+        BinaryCodec.decode(truncated, Catalog.class);
+        fail("Accepted " + length + " of " + encoded.remaining() + " bytes");
+      } catch (final MalformedBinaryException expected) {
+
+      }
+    }
+  }
+
+  @Test
+  public void testRejectsDeepNesting() {
+    Object value = Collections.emptyList();
+    for (int i = 0; i < 1000; i++) {
+      value = Collections.singletonList(value);
+    }
+    final BinaryWriter writer = new BinaryWriter();
+    writer.writeValue(value);
+    final BinaryReader reader = new BinaryReader();
+    try {
+      assertTrue(reader.beginMessage(writer.endMessage()));
+      reader.readValue();
+      fail("Accepted deeply nested value");
+    } catch (final MalformedBinaryException expected) {
+
+    }
+  }
+
+  private static final Map<String, Object> parameters() {
+    final Map<String, Object> parameters = new LinkedHashMap<>();
+    parameters.put("string", "café 😀");
+    parameters.put("integer", Integer.MIN_VALUE);
+    parameters.put("long", Long.MAX_VALUE);
+    parameters.put("double", -0.25);
+    parameters.put("float", 1.5f);
+    parameters.put("bigInteger", new BigInteger("123456789012345678901234567890"));
+    parameters.put("bigDecimal", new BigDecimal("1.10"));
+    parameters.put("list", Arrays.asList("a", null, Boolean.TRUE, Boolean.FALSE));
+    parameters.put("map", Collections.singletonMap("nested", Collections.emptyMap()));
+    parameters.put("null", null);
+    return parameters;
+  }
+
+  private static final Catalog catalog() {
+    final Plan free = new Plan("plan", "small", "A small plan", Collections.singletonMap("cost", 0), true, null);
+    final Plan paid = new Plan("plan-2", "large", "A large plan", null, false, Boolean.FALSE);
+    final Service service = new Service("service", "database", "A database", Collections.singleton("sql"), null, true, null, null, true,
+                                        new LinkedHashSet<>(Arrays.asList(free, paid)));
+    return new Catalog(Collections.singleton(service));
+  }
+
+}
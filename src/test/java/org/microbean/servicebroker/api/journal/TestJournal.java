@@ -0,0 +1,194 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.journal;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestJournal {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  public TestJournal() {
+    super();
+  }
+
+  @Test
+  public void testReopenReplaysSyncedRecords() throws IOException {
+    final Path directory = Files.createTempDirectory("journal");
+    try {
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        append(journal, "one", "two", "three");
+      }
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        assertEquals(Arrays.asList("one", "two", "three"), replay(journal));
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testReopenDiscardsTornTail() throws IOException {
+    final Path directory = Files.createTempDirectory("journal");
+    try {
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        append(journal, "one", "two");
+      }
+      // Leave the header of a record whose append was interrupted, with
+      // a length that runs past its bytes and a wrong checksum, after
+      // the last complete record.
+      final Path last = lastSegment(directory);
+      try (final FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        final ByteBuffer torn = ByteBuffer.allocate(12);
+        torn.putInt(100).putInt(0x12345678).put("thr".getBytes(StandardCharsets.UTF_8)).flip();
+        channel.write(torn, end(channel));
+        channel.force(true);
+      }
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        assertEquals(Arrays.asList("one", "two"), replay(journal));
+        append(journal, "three");
+      }
+      // The torn tail is no longer in the last segment, and must still
+      // not be mistaken for corruption.
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        assertEquals(Arrays.asList("one", "two", "three"), replay(journal));
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testReopenDiscardsHeaderlessSegment() throws IOException {
+    final Path directory = Files.createTempDirectory("journal");
+    try {
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        append(journal, "one");
+      }
+      // A crash after creating the next segment but before its header
+      // reached the disk leaves it filled with zeros.
+      final String name = lastSegment(directory).getFileName().toString();
+      final long index = Long.parseLong(name.substring("segment-".length(), name.length() - ".journal".length()), 16);
+      Files.write(directory.resolve(String.format("segment-%016x.journal", Long.valueOf(index + 1L))), new byte[SEGMENT_SIZE]);
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        assertEquals(Collections.singletonList("one"), replay(journal));
+        append(journal, "two");
+      }
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        assertEquals(Arrays.asList("one", "two"), replay(journal));
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testOversizedSummaryLeavesJournalUnchanged() throws IOException {
+    final Path directory = Files.createTempDirectory("journal");
+    try {
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        append(journal, "one");
+        final int segmentCount = journal.getSegmentCount();
+        try {
+          journal.compact(ByteBuffer.allocate(journal.getMaxRecordSize() + 1));
+          fail("Accepted an oversized summary");
+        } catch (final IllegalArgumentException expected) {
+
+        }
+        assertEquals(segmentCount, journal.getSegmentCount());
+        journal.compact(ByteBuffer.allocate(journal.getMaxRecordSize()));
+        assertEquals(1, journal.getSegmentCount());
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  private static final void append(final Journal journal, final String... records) throws IOException {
+    long position = 0L;
+    for (final String record : records) {
+      position = journal.append(ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8)));
+    }
+    journal.sync(position);
+  }
+
+  private static final List<String> replay(final Journal journal) throws IOException {
+    final List<String> records = new ArrayList<>();
+    journal.replay(record -> {
+        final byte[] bytes = new byte[record.remaining()];
+        record.get(bytes);
+        records.add(new String(bytes, StandardCharsets.UTF_8));
+      });
+    return records;
+  }
+
+  /**
+   * Returns the offset of the end marker that follows the records of
+   * the segment open on the supplied {@link FileChannel}.
+   */
+  private static final int end(final FileChannel channel) throws IOException {
+    final ByteBuffer segment = ByteBuffer.allocate((int)channel.size());
+    channel.read(segment, 0L);
+    int position = 16;
+    while (segment.getInt(position) != 0) {
+      position += 8 + segment.getInt(position);
+    }
+    return position;
+  }
+
+  private static final Path lastSegment(final Path directory) throws IOException {
+    final List<Path> segments = new ArrayList<>();
+    try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.journal")) {
+      for (final Path segment : stream) {
+        segments.add(segment);
+      }
+    }
+    Collections.sort(segments);
+    return segments.get(segments.size() - 1);
+  }
+
+  private static final void delete(final Path directory) throws IOException {
+    try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (final Path file : stream) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+}
@@ -0,0 +1,138 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestJsonReader {
+
+  public TestJsonReader() {
+    super();
+  }
+
+  @Test
+  public void testRejectsBadEscapes() {
+    for (final String json : new String[] { "\"\\q\"", "\"\\uZZZZ\"", "\"\\u12\"", "\"\\" }) {
+      assertRejected(json.getBytes(StandardCharsets.ISO_8859_1));
+      assertLazyRejected(member(json).getBytes(StandardCharsets.ISO_8859_1));
+    }
+  }
+
+  @Test
+  public void testRejectsBadUtf8() {
+    final int[][] sequences = {
+      { 0x80 },                   // continuation byte without a lead byte
+      { 0xC0, 0x80 },             // overlong NUL
+      { 0xE0, 0x80, 0x80 },       // overlong three-byte encoding
+      { 0xED, 0xA0, 0x80 },       // encoded surrogate
+      { 0xF4, 0x90, 0x80, 0x80 }, // above U+10FFFF
+      { 0xF5, 0x80, 0x80, 0x80 }, // invalid lead byte
+      { 0xFF },                   // invalid lead byte
+      { 0xE2, 0x28, 0xA1 }        // bad continuation byte
+    };
+    for (final int[] sequence : sequences) {
+      final byte[] string = new byte[sequence.length + 2];
+      string[0] = '"';
+      for (int i = 0; i < sequence.length; i++) {
+        string[i + 1] = (byte)sequence[i];
+      }
+      string[string.length - 1] = '"';
+      assertRejected(string);
+      final byte[] object = new byte[string.length + 6];
+      System.arraycopy("{\"a\":".getBytes(StandardCharsets.ISO_8859_1), 0, object, 0, 5);
+      System.arraycopy(string, 0, object, 5, string.length);
+      object[object.length - 1] = '}';
+      assertLazyRejected(object);
+    }
+  }
+
+  @Test
+  public void testRejectsDeepNesting() {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      sb.append('[');
+    }
+    for (int i = 0; i < 10000; i++) {
+      sb.append(']');
+    }
+    assertRejected(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+    assertLazyRejected(member(sb.toString()).getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  public void testRejectsNumbersOutOfRange() {
+    for (final String json : new String[] { "1e999", "-1e999", "1.7976931348623159e308" }) {
+      assertRejected(json.getBytes(StandardCharsets.ISO_8859_1));
+      assertLazyRejected(member(json).getBytes(StandardCharsets.ISO_8859_1));
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    final Map<String, Object> value = new LinkedHashMap<>();
+    value.put("ascii", "plain");
+    value.put("escaped", "quote \" backslash \\ newline \n tab \t control \u0001");
+    value.put("unicode", "caf\u00e9 \u20ac \ud83d\ude00");
+    value.put("numbers", Arrays.asList(0, -1, Integer.MAX_VALUE, Long.MIN_VALUE, 1.5));
+    value.put("nested", Collections.singletonMap("empty", Collections.emptyList()));
+    value.put("null", null);
+    value.put("boolean", Boolean.TRUE);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (final JsonWriter writer = new JsonWriter(out)) {
+      writer.value(value);
+    }
+    final byte[] bytes = out.toByteArray();
+    assertEquals(value, new JsonReader(bytes).readValue());
+    assertEquals(value, new JsonReader(bytes).readLazyObject());
+  }
+
+  private static final String member(final String json) {
+    return "{\"a\":" + json + "}";
+  }
+
+  private static final void assertRejected(final byte[] bytes) {
+    try {
+      new JsonReader(bytes).readValue();
+      fail("Accepted " + new String(bytes, StandardCharsets.ISO_8859_1));
+    } catch (final MalformedJsonException expected) {
+
+    }
+  }
+
+  private static final void assertLazyRejected(final byte[] bytes) {
+    try {
+      new JsonReader(bytes).readLazyObject();
+      fail("Accepted " + new String(bytes, StandardCharsets.ISO_8859_1));
+    } catch (final MalformedJsonException expected) {
+
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.query.state;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestCatalogCanonicalizer {
+
+  public TestCatalogCanonicalizer() {
+    super();
+  }
+
+  @Test
+  public void testUnchangedServiceIsRetained() {
+    final CatalogCanonicalizer canonicalizer = new CatalogCanonicalizer();
+    final Service first = single(canonicalizer.canonicalize(Collections.singleton(service("old desc", true))));
+    final Service second = single(canonicalizer.canonicalize(Collections.singleton(service("old desc", true))));
+    assertSame(first, second);
+  }
+
+  @Test
+  public void testChangedPlanIsNotReplacedByItsPreviousVersion() {
+    final CatalogCanonicalizer canonicalizer = new CatalogCanonicalizer();
+    final Service first = single(canonicalizer.canonicalize(Collections.singleton(service("old desc", true))));
+    final Service second = single(canonicalizer.canonicalize(Collections.singleton(service("new desc", false))));
+    assertNotSame(first, second);
+    final Plan changed = second.getPlan("plan-2");
+    assertEquals("new desc", changed.getDescription());
+    assertEquals(Boolean.FALSE, changed.getBindable());
+    assertFalse(changed.contentEquals(first.getPlan("plan-2")));
+    // The plan that did not change is carried over as is.
+    assertSame(first.getPlan("plan-1"), second.getPlan("plan-1"));
+  }
+
+  private static final Service service(final String description, final boolean bindable) {
+    final Plan unchanged = new Plan("plan-1", "small", "A small plan", null, true, null);
+    final Plan changed = new Plan("plan-2", "large", description, null, false, Boolean.valueOf(bindable));
+    return new Service("service-1", "database", "A database", null, null, true, null, null, false,
+                       new LinkedHashSet<>(Arrays.asList(unchanged, changed)));
+  }
+
+  private static final Service single(final Set<? extends Service> services) {
+    final Iterator<? extends Service> iterator = services.iterator();
+    final Service returnValue = iterator.next();
+    assertFalse(iterator.hasNext());
+    return returnValue;
+  }
+
+}
@@ -0,0 +1,93 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.query.state;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import org.microbean.servicebroker.api.query.state.Catalog.Service;
+import org.microbean.servicebroker.api.query.state.Catalog.Service.Plan;
+
+import org.microbean.servicebroker.api.query.state.CatalogDelta.PlanDelta;
+import org.microbean.servicebroker.api.query.state.CatalogDelta.ServiceDelta;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCatalogDelta {
+
+  public TestCatalogDelta() {
+    super();
+  }
+
+  @Test
+  public void testUnchangedCatalogHasEmptyDelta() {
+    assertTrue(CatalogDelta.between(catalog(plan("plan-2", "A plan", 1)), catalog(plan("plan-2", "A plan", 1L))).isEmpty());
+  }
+
+  @Test
+  public void testInitialCatalogAddsEverything() {
+    final Catalog current = catalog(plan("plan-2", "A plan", 1));
+    final CatalogDelta delta = CatalogDelta.between(null, current);
+    assertFalse(delta.isEmpty());
+    assertEquals(1, delta.getAddedServices().size());
+    assertTrue(delta.getRemovedServices().isEmpty());
+    assertTrue(delta.getModifiedServices().isEmpty());
+  }
+
+  @Test
+  public void testModifiedPlanReportsChangedFields() {
+    final CatalogDelta delta = CatalogDelta.between(catalog(plan("plan-2", "A plan", 1)), catalog(plan("plan-2", "A changed plan", 2)));
+    assertTrue(delta.getAddedServices().isEmpty());
+    assertTrue(delta.getRemovedServices().isEmpty());
+    assertEquals(1, delta.getModifiedServices().size());
+    final ServiceDelta serviceDelta = delta.getModifiedServices().get(0);
+    assertEquals(Collections.singleton("plans"), serviceDelta.getChangedFields());
+    assertTrue(serviceDelta.getAddedPlans().isEmpty());
+    assertTrue(serviceDelta.getRemovedPlans().isEmpty());
+    assertEquals(1, serviceDelta.getModifiedPlans().size());
+    final PlanDelta planDelta = serviceDelta.getModifiedPlans().get(0);
+    assertEquals("plan-2", planDelta.getCurrent().getId());
+    assertEquals(new HashSet<>(Arrays.asList("description", "metadata")), planDelta.getChangedFields());
+  }
+
+  @Test
+  public void testReplacedPlanIsAddedAndRemoved() {
+    final CatalogDelta delta = CatalogDelta.between(catalog(plan("plan-2", "A plan", 1)), catalog(plan("plan-3", "A plan", 1)));
+    final ServiceDelta serviceDelta = delta.getModifiedServices().get(0);
+    assertEquals("plan-3", serviceDelta.getAddedPlans().get(0).getId());
+    assertEquals("plan-2", serviceDelta.getRemovedPlans().get(0).getId());
+    assertTrue(serviceDelta.getModifiedPlans().isEmpty());
+  }
+
+  private static final Plan plan(final String id, final String description, final Object cost) {
+    return new Plan(id, "large", description, Collections.singletonMap("cost", cost), false, null);
+  }
+
+  private static final Catalog catalog(final Plan plan) {
+    final Plan unchanged = new Plan("plan-1", "small", "A small plan", null, true, null);
+    final Service service = new Service("service-1", "database", "A database", null, null, true, null, null, false,
+                                        new LinkedHashSet<>(Arrays.asList(unchanged, plan)));
+    return new Catalog(Collections.singleton(service));
+  }
+
+}
@@ -0,0 +1,122 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.registry;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestOffHeapIndex {
+
+  private static final int[] CAPACITIES = { 0, 1, 10, 64, 100, 1000, 5000, 20000 };
+
+  public TestOffHeapIndex() {
+    super();
+  }
+
+  @Test
+  public void testFillToCapacity() {
+    for (final int capacity : CAPACITIES) {
+      for (long seed = 0L; seed < 20L; seed++) {
+        final OffHeapIndex index = new OffHeapIndex(capacity);
+        final List<UUID> keys = keys(capacity, seed);
+        for (final UUID key : keys) {
+          assertTrue(index.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), 1, 2, 3, 4, null));
+        }
+        assertEquals(capacity, index.size());
+        for (final UUID key : keys) {
+          assertTrue(index.get(key.getMostSignificantBits(), key.getLeastSignificantBits(), null));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testChurnAtCapacity() {
+    final int capacity = 1000;
+    final OffHeapIndex index = new OffHeapIndex(capacity);
+    List<UUID> keys = keys(capacity, 0L);
+    for (final UUID key : keys) {
+      index.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), 1, 2, 3, 4, null);
+    }
+    // Replacing every entry many times over leaves removed slots
+    // behind that only rebuilding the segments can reclaim.
+    for (long seed = 1L; seed < 10L; seed++) {
+      for (final UUID key : keys) {
+        assertTrue(index.remove(key.getMostSignificantBits(), key.getLeastSignificantBits()));
+      }
+      keys = keys(capacity, seed);
+      for (final UUID key : keys) {
+        assertTrue(index.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), 1, 2, 3, 4, null));
+      }
+      assertEquals(capacity, index.size());
+    }
+  }
+
+  @Test
+  public void testMappedRebuildSurvivesReopening() throws IOException {
+    final int capacity = 1000;
+    final Path path = Files.createTempFile("index", ".bin");
+    try {
+      List<UUID> keys = keys(capacity, 0L);
+      try (final OffHeapIndex index = new OffHeapIndex(path, capacity)) {
+        for (final UUID key : keys) {
+          index.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), 1, 2, 3, 4, null);
+        }
+        for (final UUID key : keys) {
+          index.remove(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        }
+        keys = keys(capacity, 1L);
+        for (final UUID key : keys) {
+          index.put(key.getMostSignificantBits(), key.getLeastSignificantBits(), 1, 2, 3, 4, null);
+        }
+      }
+      try (final OffHeapIndex index = new OffHeapIndex(path, capacity)) {
+        assertEquals(capacity, index.size());
+        for (final UUID key : keys) {
+          assertTrue(index.get(key.getMostSignificantBits(), key.getLeastSignificantBits(), null));
+        }
+        final UUID absent = keys(1, 2L).get(0);
+        assertFalse(index.get(absent.getMostSignificantBits(), absent.getLeastSignificantBits(), null));
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  private static final List<UUID> keys(final int count, final long seed) {
+    final Random random = new Random(seed);
+    final List<UUID> returnValue = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      returnValue.add(new UUID(random.nextLong(), random.nextLong()));
+    }
+    return returnValue;
+  }
+
+}
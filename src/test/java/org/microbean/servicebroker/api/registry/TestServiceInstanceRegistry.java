@@ -0,0 +1,189 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.registry;
+
+import java.io.IOException;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.microbean.servicebroker.api.command.DeleteBindingCommand;
+import org.microbean.servicebroker.api.command.DeleteServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.ProvisionBindingCommand;
+import org.microbean.servicebroker.api.command.ProvisionServiceInstanceCommand;
+import org.microbean.servicebroker.api.command.UpdateServiceInstanceCommand;
+
+import org.microbean.servicebroker.api.journal.Journal;
+
+import org.microbean.servicebroker.api.registry.ServiceInstanceRegistry.ServiceInstance;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestServiceInstanceRegistry {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  public TestServiceInstanceRegistry() {
+    super();
+  }
+
+  @Test
+  public void testLifecycle() throws IOException {
+    final ServiceInstanceRegistry registry = new ServiceInstanceRegistry();
+    populate(registry);
+    assertState(registry);
+  }
+
+  @Test
+  public void testRebuildFromJournal() throws IOException {
+    final Path directory = Files.createTempDirectory("registry");
+    try {
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        populate(new ServiceInstanceRegistry(journal));
+      }
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        assertState(new ServiceInstanceRegistry(journal));
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testRebuildFromSnapshot() throws IOException {
+    final Path directory = Files.createTempDirectory("registry");
+    try {
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        final ServiceInstanceRegistry registry = new ServiceInstanceRegistry(journal);
+        populate(registry);
+        assertTrue(registry.snapshot());
+        registry.serviceInstanceProvisioned(provision("instance-4", "plan"), false);
+      }
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        final ServiceInstanceRegistry registry = new ServiceInstanceRegistry(journal);
+        assertTrue(registry.containsServiceInstance("instance-4"));
+        registry.serviceInstanceDeprovisioned(new DeleteServiceInstanceCommand("instance-4", "service", "plan", false), false);
+        assertState(registry);
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testSnapshotsBoundSegments() throws IOException {
+    final Path directory = Files.createTempDirectory("registry");
+    try {
+      try (final Journal journal = new Journal(directory, 64 * 1024)) {
+        final ServiceInstanceRegistry registry = new ServiceInstanceRegistry(journal);
+        for (int i = 0; i < 4000; i++) {
+          registry.serviceInstanceProvisioned(provision("instance-" + i, "plan"), false);
+          if (i % 8 != 0) {
+            registry.serviceInstanceDeprovisioned(new DeleteServiceInstanceCommand("instance-" + i, "service", "plan", false), false);
+          }
+        }
+        // Snapshots replace the events before them whenever the
+        // journal rolls over.
+        assertTrue(journal.getSegmentCount() <= 2);
+      }
+      try (final Journal journal = new Journal(directory, 64 * 1024)) {
+        final ServiceInstanceRegistry registry = new ServiceInstanceRegistry(journal);
+        assertEquals(500, registry.getServiceInstanceCount());
+        assertTrue(registry.containsServiceInstance("instance-3992"));
+        assertFalse(registry.containsServiceInstance("instance-3999"));
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  @Test
+  public void testOversizedSnapshotKeepsEvents() throws IOException {
+    final Path directory = Files.createTempDirectory("registry");
+    try {
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        final ServiceInstanceRegistry registry = new ServiceInstanceRegistry(journal);
+        for (int i = 0; i < 500; i++) {
+          registry.serviceInstanceProvisioned(provision("instance-" + i, "plan"), false);
+        }
+        assertFalse(registry.snapshot());
+        assertTrue(journal.getSegmentCount() > 1);
+      }
+      try (final Journal journal = new Journal(directory, SEGMENT_SIZE)) {
+        assertEquals(500, new ServiceInstanceRegistry(journal).getServiceInstanceCount());
+      }
+    } finally {
+      delete(directory);
+    }
+  }
+
+  /**
+   * Leaves the registry with {@code instance-1} on {@code plan-2}
+   * with one binding, {@code instance-2} being deprovisioned, and
+   * {@code instance-3} removed with its binding.
+   */
+  private static final void populate(final ServiceInstanceRegistry registry) throws IOException {
+    registry.serviceInstanceProvisioned(provision("instance-1", "plan"), true);
+    registry.operationCompleted("instance-1", true);
+    registry.serviceInstanceUpdated(new UpdateServiceInstanceCommand("instance-1", "service", "plan-2", null, null), true);
+    registry.operationCompleted("instance-1", true);
+    registry.bindingProvisioned(new ProvisionBindingCommand("binding-1", "instance-1", "service", "plan-2", null, null));
+    registry.bindingProvisioned(new ProvisionBindingCommand("binding-2", "instance-1", "service", "plan-2", null, null));
+    registry.bindingDeprovisioned(new DeleteBindingCommand("binding-2", "instance-1", "service", "plan-2"));
+    registry.serviceInstanceProvisioned(provision("instance-2", "plan"), false);
+    registry.serviceInstanceDeprovisioned(new DeleteServiceInstanceCommand("instance-2", "service", "plan", true), true);
+    registry.serviceInstanceProvisioned(provision("instance-3", "plan"), false);
+    registry.bindingProvisioned(new ProvisionBindingCommand("binding-3", "instance-3", "service", "plan", null, null));
+    registry.serviceInstanceDeprovisioned(new DeleteServiceInstanceCommand("instance-3", "service", "plan", false), false);
+  }
+
+  private static final void assertState(final ServiceInstanceRegistry registry) {
+    assertEquals(2, registry.getServiceInstanceCount());
+    final ServiceInstance instance1 = registry.getServiceInstance("instance-1");
+    assertEquals("plan-2", instance1.getPlanId());
+    assertEquals(ServiceInstance.Status.PROVISIONED, instance1.getStatus());
+    assertEquals(1, registry.getServiceInstancesOfPlan("service", "plan-2").size());
+    assertEquals(1, registry.getServiceInstancesInSpace("organization", "space").size());
+    assertEquals(1, registry.getBindingCount());
+    assertTrue(registry.containsBinding("binding-1"));
+    assertEquals(1, registry.getBindings("instance-1").size());
+    assertEquals(ServiceInstance.Status.DEPROVISIONING, registry.getServiceInstance("instance-2").getStatus());
+    assertNull(registry.getServiceInstance("instance-3"));
+    assertFalse(registry.containsBinding("binding-3"));
+  }
+
+  private static final ProvisionServiceInstanceCommand provision(final String instanceId, final String planId) {
+    final String spaceGuid = "instance-1".equals(instanceId) ? "space" : "other-space";
+    return new ProvisionServiceInstanceCommand(instanceId, "service", planId, null, true, "organization", spaceGuid, null);
+  }
+
+  private static final void delete(final Path directory) throws IOException {
+    try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (final Path file : stream) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+}
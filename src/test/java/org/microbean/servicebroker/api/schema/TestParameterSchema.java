@@ -0,0 +1,55 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.schema;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TestParameterSchema {
+
+  public TestParameterSchema() {
+    super();
+  }
+
+  @Test
+  public void testEnumMatchesEqualNumbersOfDifferentTypes() {
+    final ParameterSchema schema =
+      ParameterSchema.compile(Collections.singletonMap("enum", Arrays.asList(1000000000000000000L, Long.MAX_VALUE, new BigInteger("10000000000000000000"))));
+    assertNull(schema.validate(1e18));
+    assertNull(schema.validate(new BigDecimal("1000000000000000000.0")));
+    assertNull(schema.validate(new BigDecimal(Long.MAX_VALUE)));
+    assertNull(schema.validate(1e19));
+    assertNotNull(schema.validate(5));
+  }
+
+  @Test
+  public void testUniqueItemsRejectsEqualNumbersOfDifferentTypes() {
+    final ParameterSchema schema = ParameterSchema.compile(Collections.singletonMap("uniqueItems", Boolean.TRUE));
+    assertNotNull(schema.validate(Arrays.asList(1e18, 1000000000000000000L)));
+    assertNotNull(schema.validate(Arrays.asList(1, 1.0)));
+    assertNull(schema.validate(Arrays.asList(1e18, 1000000000000000001L)));
+  }
+
+}
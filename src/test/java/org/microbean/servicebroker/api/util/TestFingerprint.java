@@ -0,0 +1,62 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TestFingerprint {
+
+  public TestFingerprint() {
+    super();
+  }
+
+  @Test
+  public void testEqualNumbersOfDifferentTypesFingerprintAlike() {
+    assertSameFingerprint(1, 1L, 1.0, 1.0f, new BigInteger("1"), new BigDecimal("1.00"));
+    assertSameFingerprint(1000000000000000000L, 1e18, new BigInteger("1000000000000000000"), new BigDecimal("1E+18"));
+    assertSameFingerprint(Long.MAX_VALUE, new BigInteger(Long.toString(Long.MAX_VALUE)), new BigDecimal(Long.MAX_VALUE));
+    assertSameFingerprint(Long.MIN_VALUE, new BigDecimal(Long.MIN_VALUE));
+    assertSameFingerprint(1e19, new BigInteger("10000000000000000000"));
+    assertSameFingerprint(0, 0.0, -0.0, BigDecimal.ZERO.setScale(3));
+    assertSameFingerprint(0.5, 0.5f, new BigDecimal("0.50"));
+  }
+
+  @Test
+  public void testDifferentNumbersFingerprintDifferently() {
+    assertFalse(fingerprint(1000000000000000000L).equals(fingerprint(1000000000000000001L)));
+    assertFalse(fingerprint(1).equals(fingerprint(1.5)));
+    assertFalse(fingerprint(1).equals(fingerprint("1")));
+  }
+
+  private static final void assertSameFingerprint(final Object... values) {
+    final Fingerprint expected = fingerprint(values[0]);
+    for (int i = 1; i < values.length; i++) {
+      assertEquals(values[i] + " (" + values[i].getClass().getSimpleName() + ")", expected, fingerprint(values[i]));
+    }
+  }
+
+  private static final Fingerprint fingerprint(final Object value) {
+    return new Fingerprint.Hasher().put(value).fingerprint();
+  }
+
+}
@@ -0,0 +1,107 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2017 MicroBean.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.servicebroker.api.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestPersistentHashMap {
+
+  public TestPersistentHashMap() {
+    super();
+  }
+
+  @Test
+  public void testAgreesWithHashMap() {
+    final Random random = new Random(0L);
+    final Map<Key, Integer> expected = new HashMap<>();
+    PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+    for (int i = 0; i < 20000; i++) {
+      // Few, well spread hash codes, so that the trie is several
+      // levels deep and many keys share a hash code outright.
+      final Key key = new Key(random.nextInt(2000), random.nextInt(256) * 0x9E3779B9);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        map = map.without(key);
+      } else {
+        final Integer value = random.nextInt(10) == 0 ? null : Integer.valueOf(i);
+        expected.put(key, value);
+        map = map.with(key, value);
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    assertEquals(expected, map);
+    for (final Map.Entry<Key, Integer> entry : expected.entrySet()) {
+      assertTrue(map.containsKey(entry.getKey()));
+      assertEquals(entry.getValue(), map.get(entry.getKey()));
+    }
+  }
+
+  @Test
+  public void testUpdatesLeaveOriginalsUnchanged() {
+    final PersistentHashMap<String, String> empty = PersistentHashMap.empty();
+    final PersistentHashMap<String, String> one = empty.with("a", "1");
+    final PersistentHashMap<String, String> two = one.with("a", "2");
+    final PersistentHashMap<String, String> none = two.without("a");
+    assertTrue(empty.isEmpty());
+    assertEquals("1", one.get("a"));
+    assertEquals("2", two.get("a"));
+    assertFalse(none.containsKey("a"));
+    assertNull(none.get("a"));
+    assertSame(one, one.with("a", "1"));
+    assertSame(one, one.without("b"));
+  }
+
+  private static final class Key {
+
+    private final int id;
+
+    private final int hashCode;
+
+    private Key(final int id, final int hashCode) {
+      super();
+      this.id = id;
+      this.hashCode = hashCode;
+    }
+
+    @Override
+    public final int hashCode() {
+      return this.hashCode;
+    }
+
+    @Override
+    public final boolean equals(final Object other) {
+      return other instanceof Key && ((Key)other).id == this.id && ((Key)other).hashCode == this.hashCode;
+    }
+
+    @Override
+    public final String toString() {
+      return this.id + "@" + this.hashCode;
+    }
+
+  }
+
+}